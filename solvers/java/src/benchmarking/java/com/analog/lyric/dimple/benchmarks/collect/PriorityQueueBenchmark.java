@@ -0,0 +1,193 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.benchmarks.collect;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import com.analog.lyric.benchmarking.Benchmark;
+import com.analog.lyric.collect.BinaryHeap;
+import com.analog.lyric.collect.IKeyed;
+import com.analog.lyric.collect.IntBinaryHeap;
+import com.analog.lyric.collect.KeyedPriorityQueue;
+
+/**
+ * Compares {@link IntBinaryHeap} against the generic {@link BinaryHeap} and {@link KeyedPriorityQueue}
+ * on the same workloads: repeatedly filling the queue with random priorities, changing the priority
+ * of a fraction of the entries, and draining it, as residual scheduling and deferred Gibbs updates do.
+ * <p>
+ * {@link KeyedPriorityQueue} has no way to change priorities, so its priority changes are done by removing
+ * and re-adding the element.
+ */
+public class PriorityQueueBenchmark
+{
+	private static final int SIZE = 10000;
+	private static final int ROUNDS = 200;
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean intBinaryHeap()
+	{
+		final double[] priorities = priorities();
+		final int[] changes = changes();
+		final IntBinaryHeap heap = new IntBinaryHeap(SIZE);
+
+		long checksum = 0;
+		for (int round = 0; round < ROUNDS; ++round)
+		{
+			for (int key = 0; key < SIZE; ++key)
+			{
+				heap.offer(key, priorities[key]);
+			}
+			for (int key : changes)
+			{
+				heap.changePriority(key, heap.getPriority(key) / 2);
+			}
+			for (int key; (key = heap.poll()) >= 0;)
+			{
+				checksum += key;
+			}
+		}
+
+		return checksum < 0;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean binaryHeap()
+	{
+		final double[] priorities = priorities();
+		final int[] changes = changes();
+		final BinaryHeap<Integer> heap = new BinaryHeap<Integer>(SIZE);
+		final BinaryHeap.Entry<Integer>[] entries = newEntryArray(SIZE);
+
+		long checksum = 0;
+		for (int round = 0; round < ROUNDS; ++round)
+		{
+			for (int key = 0; key < SIZE; ++key)
+			{
+				entries[key] = heap.offer(key, priorities[key]);
+			}
+			for (int key : changes)
+			{
+				heap.changePriority(entries[key], entries[key].getPriority() / 2);
+			}
+			for (BinaryHeap.Entry<Integer> entry; (entry = heap.pollEntry()) != null;)
+			{
+				checksum += entry.getElement();
+			}
+		}
+
+		return checksum < 0;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean keyedPriorityQueue()
+	{
+		final double[] priorities = priorities();
+		final int[] changes = changes();
+		final KeyedPriorityQueue<Integer,Element> queue =
+			new KeyedPriorityQueue<Integer,Element>(SIZE, ElementComparator.INSTANCE);
+
+		long checksum = 0;
+		for (int round = 0; round < ROUNDS; ++round)
+		{
+			for (int key = 0; key < SIZE; ++key)
+			{
+				queue.offer(new Element(key, priorities[key]));
+			}
+			for (int key : changes)
+			{
+				Element element = queue.get(key);
+				queue.removeKey(key);
+				queue.offer(new Element(key, element._priority / 2));
+			}
+			for (Element element; (element = queue.poll()) != null;)
+			{
+				checksum += element._key;
+			}
+		}
+
+		return checksum < 0;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <E> BinaryHeap.Entry<E>[] newEntryArray(int size)
+	{
+		return new BinaryHeap.Entry[size];
+	}
+
+	private static double[] priorities()
+	{
+		final Random rand = new Random(42);
+		final double[] priorities = new double[SIZE];
+		for (int i = 0; i < SIZE; ++i)
+		{
+			priorities[i] = rand.nextDouble();
+		}
+		return priorities;
+	}
+
+	/**
+	 * Distinct keys whose priority is changed in each round.
+	 */
+	private static int[] changes()
+	{
+		final Random rand = new Random(23);
+		final int[] changes = new int[SIZE / 10];
+		for (int i = 0; i < changes.length; ++i)
+		{
+			changes[i] = i * 10 + rand.nextInt(10);
+		}
+		return changes;
+	}
+
+	private static final class Element implements IKeyed<Integer>
+	{
+		private final int _key;
+		private final double _priority;
+
+		private Element(int key, double priority)
+		{
+			_key = key;
+			_priority = priority;
+		}
+
+		@Override
+		public Integer getKey()
+		{
+			return _key;
+		}
+	}
+
+	private static enum ElementComparator implements Comparator<Element>
+	{
+		INSTANCE;
+
+		@Override
+		public int compare(Element element1, Element element2)
+		{
+			return Double.compare(element1._priority, element2._priority);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ *   Copyright 2014 Analog Devices, Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ ********************************************************************************/
+
+package com.analog.lyric.dimple.benchmarks.hmm;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import com.analog.lyric.benchmarking.Benchmark;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.repeated.BatchedDataSink;
+import com.analog.lyric.dimple.model.repeated.DiscreteStream;
+import com.analog.lyric.dimple.model.repeated.GenericDataSink;
+import com.analog.lyric.dimple.model.repeated.IDataSink;
+import com.analog.lyric.dimple.model.repeated.IDataSource;
+import com.analog.lyric.dimple.model.repeated.PrefetchingDataSource;
+import com.analog.lyric.dimple.model.variables.Discrete;
+
+/**
+ * Throughput of a rolled-up HMM whose observation likelihoods come from a source with per-record
+ * latency, read either synchronously or through {@link PrefetchingDataSource} and {@link BatchedDataSink}.
+ */
+public class hmmStreamingBenchmark
+{
+	private static final int STEPS = 20000;
+	private static final int BUFFER_SIZE = 20;
+	private static final int STATES = 16;
+	private static final long SOURCE_LATENCY_NANOS = 20000;
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean hmmStreamingSumProductSynchronous()
+	{
+		GenericDataSink<Object> sink = new GenericDataSink<Object>();
+		hmmStreaming(new LikelihoodSource(STEPS, STATES), sink);
+		return sink.hasNext();
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean hmmStreamingSumProductPrefetching()
+	{
+		GenericDataSink<Object> sink = new GenericDataSink<Object>();
+		BatchedDataSink batched = new BatchedDataSink(sink);
+		PrefetchingDataSource source = new PrefetchingDataSource(new LikelihoodSource(STEPS, STATES), 256);
+		hmmStreaming(source, batched);
+		batched.close();
+		return sink.hasNext();
+	}
+
+	private void hmmStreaming(IDataSource source, IDataSink sink)
+	{
+		final Random rng = new Random(0);
+		final DiscreteDomain stateDomain = DiscreteDomain.range(0, STATES - 1);
+
+		Discrete previous = new Discrete(stateDomain);
+		Discrete next = new Discrete(stateDomain);
+		FactorGraph step = new FactorGraph(previous, next);
+		IFactorTable transitions = FactorTable.create(stateDomain, stateDomain);
+		double[] weights = new double[STATES * STATES];
+		for (int i = 0; i < weights.length; i++)
+			weights[i] = rng.nextDouble();
+		transitions.setWeightsDense(weights);
+		step.addFactor(transitions, previous, next);
+
+		DiscreteStream states = new DiscreteStream(stateDomain);
+		states.setDataSource(source);
+		states.setDataSink(sink);
+
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		fg.addRepeatedFactorWithBufferSize(step, BUFFER_SIZE, states, states.getSlice(1));
+		fg.getSolver().setNumIterations(1);
+		fg.solve();
+	}
+
+	/**
+	 * Generates random likelihoods, waiting {@link #SOURCE_LATENCY_NANOS} for each one to simulate
+	 * reading from a device or network.
+	 */
+	private static class LikelihoodSource implements IDataSource
+	{
+		private final Random _rng = new Random(1);
+		private final int _domainSize;
+		private int _remaining;
+
+		private LikelihoodSource(int size, int domainSize)
+		{
+			_remaining = size;
+			_domainSize = domainSize;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return _remaining > 0;
+		}
+
+		@Override
+		public Object getNext()
+		{
+			LockSupport.parkNanos(SOURCE_LATENCY_NANOS);
+			--_remaining;
+			double[] likelihoods = new double[_domainSize];
+			for (int i = 0; i < _domainSize; i++)
+				likelihoods[i] = _rng.nextDouble();
+			return likelihoods;
+		}
+	}
+}
@@ -73,6 +73,27 @@ public class ImageDenoisingBenchmark
 		return false;
 	}
 
+	@Benchmark(warmupIterations = 0, iterations = 1)
+	public boolean imageDenoisingSumProductFlatTableEngine() throws IOException
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		com.analog.lyric.dimple.solvers.sumproduct.SFactorGraph solver = (com.analog.lyric.dimple.solvers.sumproduct.SFactorGraph) fg
+				.getSolver();
+		solver.useFlatTableFactorEngine(true);
+		solver.setNumIterations(1);
+
+		int imageDimension = 100;
+		int xImageOffset = 800;
+		int yImageOffset = 1925;
+		int xImageSize = imageDimension;
+		int yImageSize = imageDimension;
+		double noiseSigma = 1.0;
+		imageDenoisingInference(fg, "images/1202.4002.3.png", "sumproductflat", imageDimension, xImageOffset, yImageOffset, xImageSize,
+				yImageSize, noiseSigma);
+		return false;
+	}
+
 	@Benchmark(warmupIterations = 0, iterations = 1)
 	public boolean imageDenoisingMinSum() throws IOException
 	{
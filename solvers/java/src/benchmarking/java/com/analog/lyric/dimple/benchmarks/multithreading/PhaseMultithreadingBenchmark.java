@@ -0,0 +1,99 @@
+/*******************************************************************************
+ *   Copyright 2014 Analog Devices, Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ ********************************************************************************/
+
+package com.analog.lyric.dimple.benchmarks.multithreading;
+
+import java.util.Random;
+
+import com.analog.lyric.benchmarking.Benchmark;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingMode;
+
+/**
+ * Compares the phase multithreading modes on a small grid of bits, where each phase
+ * contains little work so that the cost of dispatching phases to the workers dominates.
+ */
+public class PhaseMultithreadingBenchmark
+{
+	private static final Random rng = new Random(0);
+
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean smallGridSumProductSingleThreaded()
+	{
+		gridInference(null, 16, 2000);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean smallGridSumProductPhase()
+	{
+		gridInference(MultithreadingMode.Phase, 16, 2000);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean smallGridSumProductPersistentPhase()
+	{
+		gridInference(MultithreadingMode.PersistentPhase, 16, 2000);
+		return false;
+	}
+
+	/**
+	 * Runs sum-product on an n x n grid of bits using the given multithreading {@code mode},
+	 * or single threaded if null.
+	 */
+	private void gridInference(MultithreadingMode mode, int n, int iterations)
+	{
+		FactorGraph fg = new FactorGraph();
+		SFactorGraphBase solver = (SFactorGraphBase)fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		solver.setNumIterations(iterations);
+
+		Discrete[][] vars = new Discrete[n][n];
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				vars[i][j] = new Discrete(DiscreteDomain.bit());
+				final double p = rng.nextDouble();
+				vars[i][j].setInput(1 - p, p);
+				if (i > 0)
+					addRandomFactor(fg, vars[i-1][j], vars[i][j]);
+				if (j > 0)
+					addRandomFactor(fg, vars[i][j-1], vars[i][j]);
+			}
+		}
+
+		if (mode != null)
+		{
+			solver.useMultithreading(true);
+			solver.getMultithreadingManager().setMode(mode);
+		}
+
+		fg.solve();
+	}
+
+	private void addRandomFactor(FactorGraph fg, Discrete a, Discrete b)
+	{
+		int[][] indices = new int[][] { {0,0}, {0,1}, {1,0}, {1,1} };
+		double[] weights = new double[4];
+		for (int i = 0; i < 4; ++i)
+			weights[i] = rng.nextDouble() + .01;
+		fg.addFactor(indices, weights, a, b);
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ *   Copyright 2014 Analog Devices, Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ ********************************************************************************/
+
+package com.analog.lyric.dimple.benchmarks.particleBP;
+
+import com.analog.lyric.benchmarking.Benchmark;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.particleBP.SFactorGraph;
+
+/**
+ * Measures particle BP on a chain of real variables with Gaussian priors and pairwise
+ * factors, for a range of particle counts. The cost of each iteration grows with the
+ * square of the number of particles, from resampling and from the factor messages.
+ */
+public class ParticleBPBenchmark
+{
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean particleChain50()
+	{
+		chainInference(50, 10);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean particleChain100()
+	{
+		chainInference(100, 10);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean particleChain200()
+	{
+		chainInference(200, 5);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean particleChain500()
+	{
+		chainInference(500, 3);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 1)
+	public boolean particleChain1000()
+	{
+		chainInference(1000, 2);
+		return false;
+	}
+
+	/**
+	 * Runs particle BP on a chain of real variables with {@code numParticles} particles each.
+	 */
+	private void chainInference(int numParticles, int iterations)
+	{
+		final int length = 8;
+		
+		FactorGraph fg = new FactorGraph();
+		SFactorGraph solver = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.particleBP.Solver());
+		solver.setNumIterations(iterations);
+		solver.setNumParticles(numParticles);
+		solver.setResamplingUpdatesPerParticle(1);
+		solver.setSeed(0);
+
+		Real[] vars = new Real[length];
+		for (int i = 0; i < length; ++i)
+		{
+			vars[i] = new Real();
+			vars[i].setInputObject(new Normal(i % 3 - 1, 1));
+			fg.addVariables(vars[i]);
+			if (i > 0)
+				fg.addFactor(new Normal(0, 1), vars[i-1], vars[i]);
+		}
+
+		fg.solve();
+	}
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *   Copyright 2014 Analog Devices, Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ ********************************************************************************/
+
+package com.analog.lyric.dimple.benchmarks.schedule;
+
+import java.util.Random;
+
+import com.analog.lyric.benchmarking.Benchmark;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+
+/**
+ * Compares running the default schedule of a small grid of bits with and without
+ * {@link SFactorGraphBase#setUseCompiledSchedule(boolean)}. Updates of binary nodes are
+ * cheap, so the cost of walking the schedule is a significant part of each iteration.
+ */
+public class CompiledScheduleBenchmark
+{
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean smallGridSumProductSchedule()
+	{
+		gridInference(false, 16, 2000);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean smallGridSumProductCompiledSchedule()
+	{
+		gridInference(true, 16, 2000);
+		return false;
+	}
+
+	/**
+	 * Runs sum-product on an n x n grid of bits, using a compiled schedule if {@code compiled}.
+	 */
+	static void gridInference(boolean compiled, int n, int iterations)
+	{
+		final Random rng = new Random(0);
+		FactorGraph fg = new FactorGraph();
+		SFactorGraphBase solver = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		solver.setNumIterations(iterations);
+		solver.setUseCompiledSchedule(compiled);
+
+		Discrete[][] vars = new Discrete[n][n];
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				vars[i][j] = new Discrete(DiscreteDomain.bit());
+				final double p = rng.nextDouble();
+				vars[i][j].setInput(1 - p, p);
+				if (i > 0)
+					addRandomFactor(fg, rng, vars[i-1][j], vars[i][j]);
+				if (j > 0)
+					addRandomFactor(fg, rng, vars[i][j-1], vars[i][j]);
+			}
+		}
+
+		fg.solve();
+	}
+
+	private static void addRandomFactor(FactorGraph fg, Random rng, Discrete a, Discrete b)
+	{
+		int[][] indices = new int[][] { {0,0}, {0,1}, {1,0}, {1,1} };
+		double[] weights = new double[4];
+		for (int i = 0; i < 4; ++i)
+			weights[i] = rng.nextDouble() + .01;
+		fg.addFactor(indices, weights, a, b);
+	}
+}
@@ -23,6 +23,7 @@ import com.analog.lyric.benchmarking.utils.doublespace.DoubleSpace;
 import com.analog.lyric.benchmarking.utils.functional.Functions;
 import com.analog.lyric.dimple.benchmarks.utils.Image;
 import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.schedulers.ResidualScheduler;
 
 public class StereoVisionBenchmark
 {
@@ -49,6 +50,31 @@ public class StereoVisionBenchmark
 		return false;
 	}
 
+	@Benchmark(warmupIterations = 0, iterations = 2)
+	public boolean stereoVisionArtScaledSumProductFlatTableEngine() throws IOException
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		com.analog.lyric.dimple.solvers.sumproduct.SFactorGraph solver = (com.analog.lyric.dimple.solvers.sumproduct.SFactorGraph)fg.getSolver();
+		solver.useFlatTableFactorEngine(true);
+		solver.setNumIterations(10);
+		depthInference(fg, "art_scaled", 75, "sumproductflat");
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 0, iterations = 2)
+	public boolean stereoVisionArtScaledSumProductResidual() throws IOException
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		ResidualScheduler scheduler = new ResidualScheduler();
+		scheduler.setConvergenceThreshold(1e-4);
+		fg.setScheduler(scheduler);
+		fg.getSolver().setNumIterations(10);
+		depthInference(fg, "art_scaled", 75, "sumproductresidual");
+		return false;
+	}
+
 	@Benchmark(warmupIterations = 0, iterations = 2)
 	public boolean stereoVisionArtScaledMinSum() throws IOException
 	{
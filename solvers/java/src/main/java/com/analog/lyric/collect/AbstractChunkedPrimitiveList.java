@@ -0,0 +1,193 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.collect;
+
+import java.util.Arrays;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Base class for append-only lists of unboxed primitive values stored in fixed size chunks.
+ * <p>
+ * Unlike a list of boxed values, this does not allocate an object per element, and unlike
+ * a single growable array, growing the list never copies the existing elements: each new
+ * chunk is simply added to the end. This makes it suitable for accumulating very long
+ * sequences of values, such as the samples produced by a Gibbs solver.
+ * <p>
+ * Subclasses provide the element-specific accessors.
+ * <p>
+ * @param <A> is the primitive array type used for chunks, e.g. {@code int[]}.
+ * @see ChunkedIntList
+ * @see ChunkedDoubleList
+ * @since 0.06
+ */
+@NotThreadSafe
+public abstract class AbstractChunkedPrimitiveList<A>
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Default value of log2 of the number of elements per chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SHIFT = 12;
+
+	protected final int _chunkShift;
+	protected final int _chunkMask;
+	protected A[] _chunks;
+	protected int _size;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs empty list with chunks of 2<sup>{@code chunkShift}</sup> elements.
+	 *
+	 * @throws IllegalArgumentException if {@code chunkShift} is not in the range [0,30].
+	 */
+	protected AbstractChunkedPrimitiveList(int chunkShift)
+	{
+		if (chunkShift < 0 || chunkShift > 30)
+		{
+			throw new IllegalArgumentException(String.format("Chunk shift %d not in range [0,30]", chunkShift));
+		}
+		_chunkShift = chunkShift;
+		_chunkMask = (1 << chunkShift) - 1;
+		_chunks = newChunkArray(4);
+	}
+
+	/*---------------------------------------
+	 * AbstractChunkedPrimitiveList methods
+	 */
+
+	/**
+	 * Removes all of the elements from the list, releasing all but the first chunk.
+	 */
+	public void clear()
+	{
+		Arrays.fill(_chunks, 1, _chunks.length, null);
+		_size = 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return _size == 0;
+	}
+
+	/**
+	 * The number of elements in the list.
+	 */
+	public int size()
+	{
+		return _size;
+	}
+
+	/*-------------------
+	 * Protected methods
+	 */
+
+	/**
+	 * Allocates a new chunk array of the given {@code length}.
+	 */
+	protected abstract A newChunk(int length);
+
+	/**
+	 * Allocates a new array of {@code length} chunks.
+	 */
+	protected abstract A[] newChunkArray(int length);
+
+	/**
+	 * Appends {@code end - start} elements of {@code values} starting at {@code start}.
+	 */
+	protected void addRange(A values, int start, int end)
+	{
+		while (start < end)
+		{
+			final A chunk = chunkForAppend();
+			final int offset = _size & _chunkMask;
+			final int n = Math.min(end - start, _chunkMask + 1 - offset);
+			System.arraycopy(values, start, chunk, offset, n);
+			start += n;
+			_size += n;
+		}
+	}
+
+	/**
+	 * Appends all of the elements of {@code other}, which must have the same element type.
+	 */
+	protected void addAllFrom(AbstractChunkedPrimitiveList<A> other)
+	{
+		final int size = other._size;
+		for (int start = 0, chunk = 0; start < size; ++chunk)
+		{
+			final int length = Math.min(size - start, 1 << other._chunkShift);
+			addRange(other._chunks[chunk], 0, length);
+			start += length;
+		}
+	}
+
+	/**
+	 * Copies {@code length} consecutive elements starting at {@code index} into {@code dest}.
+	 *
+	 * @throws IndexOutOfBoundsException if range is not entirely within the list.
+	 */
+	protected A getRange(int index, A dest, int length)
+	{
+		checkIndex(index, length);
+		for (int offset = 0; offset < length; )
+		{
+			final int i = index + offset;
+			final int n = Math.min(length - offset, _chunkMask + 1 - (i & _chunkMask));
+			System.arraycopy(_chunks[i >>> _chunkShift], i & _chunkMask, dest, offset, n);
+			offset += n;
+		}
+		return dest;
+	}
+
+	protected void checkIndex(int index, int length)
+	{
+		if (index < 0 || length < 0 || index > _size - length)
+		{
+			throw new IndexOutOfBoundsException(String.format("Index %d out of range [0,%d)", index, _size));
+		}
+	}
+
+	/**
+	 * Returns chunk that will hold the element at index {@link #_size}, allocating it if necessary.
+	 */
+	protected A chunkForAppend()
+	{
+		if (_size == Integer.MAX_VALUE)
+		{
+			throw new IllegalStateException(getClass().getSimpleName() + " is full");
+		}
+
+		final int chunkIndex = _size >>> _chunkShift;
+		if (chunkIndex >= _chunks.length)
+		{
+			_chunks = Arrays.copyOf(_chunks, _chunks.length * 2);
+		}
+		A chunk = _chunks[chunkIndex];
+		if (chunk == null)
+		{
+			chunk = _chunks[chunkIndex] = newChunk(_chunkMask + 1);
+		}
+		return chunk;
+	}
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.collect;
+
+import java.util.NoSuchElementException;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Append-only list of unboxed doubles stored in fixed size chunks.
+ * <p>
+ * A fixed-length record of values (e.g. a sample of a multidimensional variable) may be
+ * stored by adding its elements consecutively using {@link #add(double[])} and reading
+ * them back with {@link #get(int, double[])}.
+ * <p>
+ * @see ChunkedIntList
+ * @since 0.06
+ */
+@NotThreadSafe
+public class ChunkedDoubleList extends AbstractChunkedPrimitiveList<double[]> implements PrimitiveIterable.OfDouble
+{
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs empty list with chunks of 2<sup>{@link #DEFAULT_CHUNK_SHIFT}</sup> elements.
+	 */
+	public ChunkedDoubleList()
+	{
+		this(DEFAULT_CHUNK_SHIFT);
+	}
+
+	/**
+	 * Constructs empty list with chunks of 2<sup>{@code chunkShift}</sup> elements.
+	 *
+	 * @throws IllegalArgumentException if {@code chunkShift} is not in the range [0,30].
+	 */
+	public ChunkedDoubleList(int chunkShift)
+	{
+		super(chunkShift);
+	}
+
+	/*--------------------------
+	 * PrimitiveIterable methods
+	 */
+
+	/**
+	 * Iterates over the elements of the list. The iterator will not see elements
+	 * added after it was created.
+	 */
+	@Override
+	public PrimitiveIterator.OfDouble iterator()
+	{
+		return new Iterator(_size);
+	}
+
+	/*--------------------------
+	 * ChunkedDoubleList methods
+	 */
+
+	/**
+	 * Appends {@code value} to the end of the list.
+	 */
+	public void add(double value)
+	{
+		chunkForAppend()[_size & _chunkMask] = value;
+		++_size;
+	}
+
+	/**
+	 * Appends all of the elements of {@code values} to the end of the list.
+	 */
+	public void add(double[] values)
+	{
+		addRange(values, 0, values.length);
+	}
+
+	/**
+	 * Appends all of the elements of {@code other} to the end of the list.
+	 */
+	public void addAll(ChunkedDoubleList other)
+	{
+		addAllFrom(other);
+	}
+
+	/**
+	 * Returns the element at the given {@code index}.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code index} is negative or not less than {@link #size()}.
+	 */
+	public double get(int index)
+	{
+		checkIndex(index, 1);
+		return _chunks[index >>> _chunkShift][index & _chunkMask];
+	}
+
+	/**
+	 * Copies {@code dest.length} consecutive elements starting at {@code index} into {@code dest}.
+	 *
+	 * @return {@code dest}
+	 * @throws IndexOutOfBoundsException if range is not entirely within the list.
+	 */
+	public double[] get(int index, double[] dest)
+	{
+		return getRange(index, dest, dest.length);
+	}
+
+	/**
+	 * Returns a newly allocated array containing all of the elements of the list.
+	 */
+	public double[] toArray()
+	{
+		return get(0, new double[_size]);
+	}
+
+	/*-------------------
+	 * Protected methods
+	 */
+
+	@Override
+	protected double[] newChunk(int length)
+	{
+		return new double[length];
+	}
+
+	@Override
+	protected double[][] newChunkArray(int length)
+	{
+		return new double[length][];
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private class Iterator implements PrimitiveIterator.OfDouble
+	{
+		private final int _end;
+		private int _index;
+
+		private Iterator(int end)
+		{
+			_end = end;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return _index < _end;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("PrimitiveIterator.remove");
+		}
+
+		@Override
+		public Double next()
+		{
+			return nextDouble();
+		}
+
+		@Override
+		public double nextDouble()
+		{
+			if (_index >= _end)
+			{
+				throw new NoSuchElementException();
+			}
+			final int i = _index++;
+			return _chunks[i >>> _chunkShift][i & _chunkMask];
+		}
+	}
+}
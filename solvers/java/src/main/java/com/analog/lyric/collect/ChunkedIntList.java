@@ -0,0 +1,190 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.collect;
+
+import java.util.NoSuchElementException;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Append-only list of unboxed ints stored in fixed size chunks.
+ * <p>
+ * A fixed-length record of values (e.g. a sample of a multidimensional variable) may be
+ * stored by adding its elements consecutively using {@link #add(int[])} and reading
+ * them back with {@link #get(int, int[])}.
+ * <p>
+ * @see ChunkedDoubleList
+ * @since 0.06
+ */
+@NotThreadSafe
+public class ChunkedIntList extends AbstractChunkedPrimitiveList<int[]> implements PrimitiveIterable.OfInt
+{
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs empty list with chunks of 2<sup>{@link #DEFAULT_CHUNK_SHIFT}</sup> elements.
+	 */
+	public ChunkedIntList()
+	{
+		this(DEFAULT_CHUNK_SHIFT);
+	}
+
+	/**
+	 * Constructs empty list with chunks of 2<sup>{@code chunkShift}</sup> elements.
+	 *
+	 * @throws IllegalArgumentException if {@code chunkShift} is not in the range [0,30].
+	 */
+	public ChunkedIntList(int chunkShift)
+	{
+		super(chunkShift);
+	}
+
+	/*--------------------------
+	 * PrimitiveIterable methods
+	 */
+
+	/**
+	 * Iterates over the elements of the list. The iterator will not see elements
+	 * added after it was created.
+	 */
+	@Override
+	public PrimitiveIterator.OfInt iterator()
+	{
+		return new Iterator(_size);
+	}
+
+	/*--------------------------
+	 * ChunkedIntList methods
+	 */
+
+	/**
+	 * Appends {@code value} to the end of the list.
+	 */
+	public void add(int value)
+	{
+		chunkForAppend()[_size & _chunkMask] = value;
+		++_size;
+	}
+
+	/**
+	 * Appends all of the elements of {@code values} to the end of the list.
+	 */
+	public void add(int[] values)
+	{
+		addRange(values, 0, values.length);
+	}
+
+	/**
+	 * Appends all of the elements of {@code other} to the end of the list.
+	 */
+	public void addAll(ChunkedIntList other)
+	{
+		addAllFrom(other);
+	}
+
+	/**
+	 * Returns the element at the given {@code index}.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code index} is negative or not less than {@link #size()}.
+	 */
+	public int get(int index)
+	{
+		checkIndex(index, 1);
+		return _chunks[index >>> _chunkShift][index & _chunkMask];
+	}
+
+	/**
+	 * Copies {@code dest.length} consecutive elements starting at {@code index} into {@code dest}.
+	 *
+	 * @return {@code dest}
+	 * @throws IndexOutOfBoundsException if range is not entirely within the list.
+	 */
+	public int[] get(int index, int[] dest)
+	{
+		return getRange(index, dest, dest.length);
+	}
+
+	/**
+	 * Returns a newly allocated array containing all of the elements of the list.
+	 */
+	public int[] toArray()
+	{
+		return get(0, new int[_size]);
+	}
+
+	/*-------------------
+	 * Protected methods
+	 */
+
+	@Override
+	protected int[] newChunk(int length)
+	{
+		return new int[length];
+	}
+
+	@Override
+	protected int[][] newChunkArray(int length)
+	{
+		return new int[length][];
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private class Iterator implements PrimitiveIterator.OfInt
+	{
+		private final int _end;
+		private int _index;
+
+		private Iterator(int end)
+		{
+			_end = end;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return _index < _end;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("PrimitiveIterator.remove");
+		}
+
+		@Override
+		public Integer next()
+		{
+			return nextInt();
+		}
+
+		@Override
+		public int nextInt()
+		{
+			if (_index >= _end)
+			{
+				throw new NoSuchElementException();
+			}
+			final int i = _index++;
+			return _chunks[i >>> _chunkShift][i & _chunkMask];
+		}
+	}
+}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.collect;
+
+import java.util.Arrays;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Binary heap of non-negative int keys with double priorities, backed by parallel primitive arrays.
+ * <p>
+ * This is a primitive counterpart to {@link BinaryHeap} and {@link KeyedPriorityQueue} for
+ * cases in which the elements can be identified by small dense integers, such as node indexes:
+ * <ul>
+ * <li>An entry with the lowest priority will be at the head of the queue.
+ * <li>There can be at most one entry per key, and entries are looked up, removed or have
+ * their priority changed by key in O(1) plus O(log({@link #size})) for reordering.
+ * <li>When two entries have the same priority, the first one added will be returned first
+ * by {@link #poll()}, as in {@link KeyedPriorityQueue}.
+ * <li>Nothing is allocated once the arrays have grown to hold the largest key and largest size used.
+ * </ul>
+ * Memory used is proportional to the largest key, so keys should be dense.
+ * <p>
+ * @since 0.06
+ */
+@NotThreadSafe
+public class IntBinaryHeap
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Keys in heap order.
+	 */
+	private int[] _keys;
+
+	/**
+	 * Priority of the entry at the corresponding offset in {@link #_keys}.
+	 */
+	private double[] _priorities;
+
+	/**
+	 * Insertion order of the entry at the corresponding offset in {@link #_keys}. Used to break ties.
+	 */
+	private long[] _insertOrders;
+
+	/**
+	 * Offset in {@link #_keys} of each key, or -1 if key is not in the heap.
+	 */
+	private int[] _offsets;
+
+	private int _size = 0;
+	private long _insertOrder = 0;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Construct empty heap.
+	 */
+	public IntBinaryHeap()
+	{
+		this(16);
+	}
+
+	/**
+	 * Construct empty heap with initial space for keys less than {@code keyCapacity}.
+	 */
+	public IntBinaryHeap(int keyCapacity)
+	{
+		keyCapacity = Math.max(keyCapacity, 1);
+		_keys = new int[keyCapacity];
+		_priorities = new double[keyCapacity];
+		_insertOrders = new long[keyCapacity];
+		_offsets = new int[keyCapacity];
+		Arrays.fill(_offsets, -1);
+	}
+
+	/*-----------------------
+	 * IntBinaryHeap methods
+	 */
+
+	/**
+	 * Removes all entries from the heap. This is O({@link #size}) and does not release any memory.
+	 */
+	public void clear()
+	{
+		final int[] keys = _keys;
+		final int[] offsets = _offsets;
+		for (int i = _size; --i>=0;)
+		{
+			offsets[keys[i]] = -1;
+		}
+		_size = 0;
+		_insertOrder = 0;
+	}
+
+	/**
+	 * Changes priority of entry with given {@code key}.
+	 *
+	 * @return false if the heap does not contain {@code key}.
+	 * @throws IllegalArgumentException if {@code priority} is NaN.
+	 */
+	public boolean changePriority(int key, double priority)
+	{
+		checkPriority(priority);
+
+		final int offset = offsetOf(key);
+		if (offset < 0)
+		{
+			return false;
+		}
+
+		final double oldPriority = _priorities[offset];
+		_priorities[offset] = priority;
+		if (priority < oldPriority)
+		{
+			siftUp(offset);
+		}
+		else if (priority > oldPriority)
+		{
+			siftDown(offset);
+		}
+
+		return true;
+	}
+
+	/**
+	 * True if heap contains an entry with given {@code key}.
+	 */
+	public boolean containsKey(int key)
+	{
+		return offsetOf(key) >= 0;
+	}
+
+	/**
+	 * Ensures that keys less than {@code keyCapacity} can be added without reallocating.
+	 */
+	public void ensureKeyCapacity(int keyCapacity)
+	{
+		final int oldCapacity = _offsets.length;
+		if (keyCapacity > oldCapacity)
+		{
+			final int newCapacity = Math.max(keyCapacity, oldCapacity * 2);
+			_keys = Arrays.copyOf(_keys, newCapacity);
+			_priorities = Arrays.copyOf(_priorities, newCapacity);
+			_insertOrders = Arrays.copyOf(_insertOrders, newCapacity);
+			_offsets = Arrays.copyOf(_offsets, newCapacity);
+			Arrays.fill(_offsets, oldCapacity, newCapacity, -1);
+		}
+	}
+
+	/**
+	 * The priority of the entry with given {@code key} or NaN if the heap does not contain it.
+	 */
+	public double getPriority(int key)
+	{
+		final int offset = offsetOf(key);
+		return offset >= 0 ? _priorities[offset] : Double.NaN;
+	}
+
+	public boolean isEmpty()
+	{
+		return _size == 0;
+	}
+
+	/**
+	 * Adds {@code key} to the heap with given {@code priority} unless the heap already contains it.
+	 *
+	 * @return false if the heap already contains {@code key}, in which case its priority is not changed.
+	 * @throws IllegalArgumentException if {@code key} is negative or {@code priority} is NaN.
+	 */
+	public boolean offer(int key, double priority)
+	{
+		if (key < 0)
+		{
+			throw new IllegalArgumentException("key is negative");
+		}
+		checkPriority(priority);
+		ensureKeyCapacity(key + 1);
+
+		if (_offsets[key] >= 0)
+		{
+			return false;
+		}
+
+		final int offset = _size++;
+		_keys[offset] = key;
+		_priorities[offset] = priority;
+		_insertOrders[offset] = _insertOrder++;
+		_offsets[key] = offset;
+		siftUp(offset);
+
+		return true;
+	}
+
+	/**
+	 * Adds {@code key} with given {@code priority} or changes its priority if already in the heap.
+	 *
+	 * @return true if {@code key} was added.
+	 * @throws IllegalArgumentException if {@code key} is negative or {@code priority} is NaN.
+	 */
+	public boolean offerOrChangePriority(int key, double priority)
+	{
+		return !changePriority(key, priority) && offer(key, priority);
+	}
+
+	/**
+	 * The key of the head of the heap, or -1 if empty.
+	 */
+	public int peek()
+	{
+		return _size > 0 ? _keys[0] : -1;
+	}
+
+	/**
+	 * The priority of the head of the heap, or NaN if empty.
+	 */
+	public double peekPriority()
+	{
+		return _size > 0 ? _priorities[0] : Double.NaN;
+	}
+
+	/**
+	 * Removes the head of the heap and returns its key, or returns -1 if empty.
+	 */
+	public int poll()
+	{
+		if (_size == 0)
+		{
+			_insertOrder = 0;
+			return -1;
+		}
+
+		final int key = _keys[0];
+		removeAt(0);
+		return key;
+	}
+
+	/**
+	 * Removes entry with given {@code key} from the heap.
+	 *
+	 * @return false if heap did not contain {@code key}.
+	 */
+	public boolean removeKey(int key)
+	{
+		final int offset = offsetOf(key);
+		if (offset < 0)
+		{
+			return false;
+		}
+
+		removeAt(offset);
+		return true;
+	}
+
+	public int size()
+	{
+		return _size;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void checkPriority(double priority)
+	{
+		if (Double.isNaN(priority))
+		{
+			throw new IllegalArgumentException("priority is not a number");
+		}
+	}
+
+	/**
+	 * True if entry at {@code offset1} should come before the one at {@code offset2}.
+	 */
+	private boolean precedes(int offset1, int offset2)
+	{
+		final double priority1 = _priorities[offset1], priority2 = _priorities[offset2];
+		return priority1 < priority2 || (priority1 == priority2 && _insertOrders[offset1] < _insertOrders[offset2]);
+	}
+
+	private int offsetOf(int key)
+	{
+		return key >= 0 && key < _offsets.length ? _offsets[key] : -1;
+	}
+
+	private void removeAt(int offset)
+	{
+		final int[] keys = _keys;
+		_offsets[keys[offset]] = -1;
+
+		final int last = --_size;
+		if (offset != last)
+		{
+			move(last, offset);
+			if (offset > 0 && precedes(offset, (offset - 1) / 2))
+			{
+				siftUp(offset);
+			}
+			else
+			{
+				siftDown(offset);
+			}
+		}
+		else if (last == 0)
+		{
+			_insertOrder = 0;
+		}
+	}
+
+	/**
+	 * Moves entry at {@code from} to {@code to}, overwriting what was there.
+	 */
+	private void move(int from, int to)
+	{
+		final int key = _keys[from];
+		_keys[to] = key;
+		_priorities[to] = _priorities[from];
+		_insertOrders[to] = _insertOrders[from];
+		_offsets[key] = to;
+	}
+
+	private void swap(int offset1, int offset2)
+	{
+		final int[] keys = _keys;
+		final double[] priorities = _priorities;
+		final long[] insertOrders = _insertOrders;
+
+		final int key1 = keys[offset1];
+		final double priority1 = priorities[offset1];
+		final long insertOrder1 = insertOrders[offset1];
+
+		final int key2 = keys[offset2];
+		keys[offset1] = key2;
+		priorities[offset1] = priorities[offset2];
+		insertOrders[offset1] = insertOrders[offset2];
+		_offsets[key2] = offset1;
+
+		keys[offset2] = key1;
+		priorities[offset2] = priority1;
+		insertOrders[offset2] = insertOrder1;
+		_offsets[key1] = offset2;
+	}
+
+	private void siftUp(int offset)
+	{
+		while (offset > 0)
+		{
+			final int parent = (offset - 1) / 2;
+			if (!precedes(offset, parent))
+			{
+				break;
+			}
+			swap(offset, parent);
+			offset = parent;
+		}
+	}
+
+	private void siftDown(int offset)
+	{
+		final int size = _size;
+		while (true)
+		{
+			final int left = 2 * offset + 1;
+			if (left >= size)
+			{
+				break;
+			}
+			final int right = left + 1;
+			final int child = right < size && precedes(right, left) ? right : left;
+			if (!precedes(child, offset))
+			{
+				break;
+			}
+			swap(offset, child);
+			offset = child;
+		}
+	}
+}
@@ -47,6 +47,15 @@ public class DimpleException extends RuntimeException implements IDimpleExceptio
 		super(String.format(format, args));
 	}
 
+	/**
+	 * Constructs exception with message formatted by {@link String#format} and given {@code cause}.
+	 * @since 0.06
+	 */
+	public DimpleException(Throwable cause, String format, Object...args)
+	{
+		super(String.format(format, args), cause);
+	}
+
 	/**
 	 * Constructs exception wrapping given exception.
 	 */
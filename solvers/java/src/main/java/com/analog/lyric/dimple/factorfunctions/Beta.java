@@ -111,6 +111,67 @@ public class Beta extends FactorFunction
     		return N * _logBetaAlphaBeta - sum;
 		}
 	}
+    
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Unlike the other evaluation methods, this does not update the alpha and beta
+	 * parameters of this object when they are not constant.
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int first = _parametersConstant ? 0 : 2;
+    	final int length = arguments.length;
+    	final int N = length - first;			// Number of non-parameter variables
+    	for (int row = 0; row < numRows; row++)
+    	{
+    		double alphaMinusOne = _alphaMinusOne;
+    		double betaMinusOne = _betaMinusOne;
+    		double logBetaAlphaBeta = _logBetaAlphaBeta;
+    		if (!_parametersConstant)
+    		{
+    			final double alpha = arguments[0][row];
+    			final double beta = arguments[1][row];
+    			if (alpha < 0 || beta < 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			alphaMinusOne = alpha - 1;
+    			betaMinusOne = beta - 1;
+    			logBetaAlphaBeta = org.apache.commons.math3.special.Beta.logBeta(alpha, beta);
+    		}
+
+    		double energy = N * logBetaAlphaBeta;
+    		if (alphaMinusOne == 0 && betaMinusOne == 0)
+    		{
+    			energy = 0;		// Uniform within 0 <= x <= 1
+    			for (int index = first; index < length; index++)
+    			{
+    				final double x = arguments[index][row];		// Remaining inputs are Beta variables
+    				if (x < 0 || x > 1)
+    				{
+    					energy = Double.POSITIVE_INFINITY;
+    					break;
+    				}
+    			}
+    		}
+    		else
+    		{
+    			for (int index = first; index < length; index++)
+    			{
+    				final double x = arguments[index][row];		// Remaining inputs are Beta variables
+    				if (alphaMinusOne != 0)
+    					energy -= alphaMinusOne * Math.log(x);
+    				if (betaMinusOne != 0)
+    					energy -= betaMinusOne * Math.log(1 - x);
+    			}
+    		}
+    		energies[row] = energy;
+    	}
+    }
 
     @Override
     public final boolean isDirected() {return true;}
@@ -150,6 +150,76 @@ public class Gamma extends FactorFunction
     	}
 	}
     
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Unlike the other evaluation methods, this does not update the alpha and beta
+	 * parameters of this object when they are not constant.
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int first = _parametersConstant ? 0 : 2;
+    	final int length = arguments.length;
+    	final int N = length - first;			// Number of non-parameter variables
+    	rows:
+    	for (int row = 0; row < numRows; row++)
+    	{
+    		double alpha = _alpha;
+    		double beta = _beta;
+    		double logBeta = _logBeta;
+    		if (!_parametersConstant)
+    		{
+    			alpha = arguments[0][row];
+    			beta = arguments[1][row];
+    			if (alpha <= 0 || beta <= 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			logBeta = Math.log(beta);
+    		}
+
+    		double sum = 0;
+    		if (alpha == 1)
+    		{
+    			for (int index = first; index < length; index++)
+    			{
+    				double x = arguments[index][row];			// Remaining inputs are Gamma variables
+    				if (x < 0)
+    				{
+    					energies[row] = Double.POSITIVE_INFINITY;
+    					continue rows;
+    				}
+    				sum += x;
+    			}
+    			energies[row] = sum * beta - N * logBeta;
+    		}
+    		else
+    		{
+    			double alphaMinusOne = _alphaMinusOne;
+    			double logGammaAlphaMinusAlphaLogBeta = _logGammaAlphaMinusAlphaLogBeta;
+    			if (!_parametersConstant)
+    			{
+    				alphaMinusOne = alpha - 1;
+    				logGammaAlphaMinusAlphaLogBeta = org.apache.commons.math3.special.Gamma.logGamma(alpha) - alpha * logBeta;
+    			}
+    			for (int index = first; index < length; index++)
+    			{
+    				double x = arguments[index][row];			// Remaining inputs are Gamma variables
+    				if (x < 0)
+    				{
+    					energies[row] = Double.POSITIVE_INFINITY;
+    					continue rows;
+    				}
+    				sum += x * beta - Math.log(x) * alphaMinusOne;
+    			}
+    			energies[row] = sum + N * logGammaAlphaMinusAlphaLogBeta;
+    		}
+    	}
+    }
+    
     @Override
     public final boolean isDirected() {return true;}
     @Override
@@ -85,6 +85,55 @@ public class LogNormal extends FactorFunction
     	return sum - N * _logSqrtPrecisionOver2Pi;
 	}
     
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Unlike the other evaluation methods, this does not update the mean and precision
+	 * parameters of this object when they are not constant.
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int first = _parametersConstant ? 0 : 2;
+    	final int length = arguments.length;
+    	final int N = length - first;			// Number of non-parameter variables
+    	rows:
+    	for (int row = 0; row < numRows; row++)
+    	{
+    		double mean = _mean;
+    		double precisionOverTwo = _precisionOverTwo;
+    		double logSqrtPrecisionOver2Pi = _logSqrtPrecisionOver2Pi;
+    		if (!_parametersConstant)
+    		{
+    			mean = arguments[0][row];
+    			final double precision = arguments[1][row];
+    			if (precision < 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			precisionOverTwo = precision*0.5;
+    			logSqrtPrecisionOver2Pi = Math.log(precision)*0.5 - _logSqrt2pi;
+    		}
+
+    		double sum = 0;
+    		for (int index = first; index < length; index++)
+    		{
+    			final double x = arguments[index][row];		// Remaining inputs are LogNormal variables
+    			if (x <= 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue rows;
+    			}
+    			final double logX = Math.log(x);
+    			final double relLogX = logX - mean;
+    			sum += logX + relLogX*relLogX*precisionOverTwo;
+    		}
+    		energies[row] = sum - N * logSqrtPrecisionOver2Pi;
+    	}
+    }
+    
     @Override
     public final boolean isDirected() {return true;}
     @Override
@@ -83,6 +83,47 @@ public class NegativeExpGamma extends FactorFunction
     	return sum + N * _logGammaAlphaMinusAlphaLogBeta;
 	}
     
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Unlike the other evaluation methods, this does not update the alpha and beta
+	 * parameters of this object when they are not constant.
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int first = _parametersConstant ? 0 : 2;
+    	final int length = arguments.length;
+    	final int N = length - first;			// Number of non-parameter variables
+    	for (int row = 0; row < numRows; row++)
+    	{
+    		double beta = _beta;
+    		double alphaMinusOne = _alphaMinusOne;
+    		double logGammaAlphaMinusAlphaLogBeta = _logGammaAlphaMinusAlphaLogBeta;
+    		if (!_parametersConstant)
+    		{
+    			final double alpha = arguments[0][row];
+    			beta = arguments[1][row];
+    			if (alpha <= 0 || beta <= 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			alphaMinusOne = alpha - 1;
+    			logGammaAlphaMinusAlphaLogBeta = org.apache.commons.math3.special.Gamma.logGamma(alpha) - alpha * Math.log(beta);
+    		}
+
+    		double sum = 0;
+    		for (int index = first; index < length; index++)
+    		{
+    			final double x = arguments[index][row];		// Remaining inputs are NegativeExpGamma variables
+    			sum += x * alphaMinusOne + Math.exp(-x) * beta;
+    		}
+    		energies[row] = sum + N * logGammaAlphaMinusAlphaLogBeta;
+    	}
+    }
+    
     @Override
     public final boolean isDirected() {return true;}
     @Override
@@ -18,6 +18,7 @@ package com.analog.lyric.dimple.factorfunctions;
 
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunctionUtilities;
+import com.analog.lyric.dimple.model.values.Value;
 
 
 /**
@@ -60,19 +61,38 @@ public class Product extends FactorFunction
     	for (int i = 1; i < length; i++)
     		product *= FactorFunctionUtilities.toDouble(arguments[i]);
     	
-    	if (_smoothingSpecified)
-    	{
-    		double diff = product - out;
-    		double potential = diff*diff;
-    		return potential*_beta;
-    	}
-    	else
+    	return energy(product, out);
+    }
+    
+    @Override
+    public double evalEnergy(Value[] values)
+    {
+    	int length = values.length;
+    	double out = values[0].getDouble();
+    	double product = 1;
+    	for (int i = 1; i < length; i++)
+    		product *= values[i].getDouble();
+
+    	return energy(product, out);
+    }
+    
+	/**
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int length = arguments.length;
+    	final double[] outs = arguments[0];
+    	for (int row = 0; row < numRows; row++)
     	{
-    		return (product == out) ? 0 : Double.POSITIVE_INFINITY;
+    		double product = 1;
+    		for (int i = 1; i < length; i++)
+    			product *= arguments[i][row];
+    		energies[row] = energy(product, outs[row]);
     	}
     }
     
-    
     @Override
     public final boolean isDirected() {return true;}
     @Override
@@ -90,4 +110,18 @@ public class Product extends FactorFunction
     	
     	arguments[0] = product;		// Replace the output value
     }
+    
+    private double energy(double product, double out)
+    {
+    	if (_smoothingSpecified)
+    	{
+    		double diff = product - out;
+    		double potential = diff*diff;
+    		return potential*_beta;
+    	}
+    	else
+    	{
+    		return (product == out) ? 0 : Double.POSITIVE_INFINITY;
+    	}
+    }
 }
@@ -75,6 +75,50 @@ public class Rayleigh extends FactorFunction
     	return sum;
 	}
     
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Unlike the other evaluation methods, this does not update the sigma
+	 * parameters of this object when they are not constant.
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int first = _parametersConstant ? 0 : 1;
+    	final int length = arguments.length;
+    	rows:
+    	for (int row = 0; row < numRows; row++)
+    	{
+    		double inverseSigmaSquared = _inverseSigmaSquared;
+    		double halfInverseSigmaSquared = _halfInverseSigmaSquared;
+    		if (!_parametersConstant)
+    		{
+    			final double sigma = arguments[0][row];
+    			if (sigma < 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			inverseSigmaSquared = 1/(sigma*sigma);
+    			halfInverseSigmaSquared = inverseSigmaSquared * 0.5;
+    		}
+
+    		double sum = 0;
+    		for (int index = first; index < length; index++)
+    		{
+    			final double x = arguments[index][row];		// Remaining inputs are Rayleigh variables
+    			if (x < 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue rows;
+    			}
+    			sum += x*x*halfInverseSigmaSquared - Math.log(x*inverseSigmaSquared);
+    		}
+    		energies[row] = sum;
+    	}
+    }
+    
     @Override
     public final boolean isDirected() {return true;}
     @Override
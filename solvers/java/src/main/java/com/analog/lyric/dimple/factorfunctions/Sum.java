@@ -18,6 +18,7 @@ package com.analog.lyric.dimple.factorfunctions;
 
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunctionUtilities;
+import com.analog.lyric.dimple.model.values.Value;
 
 
 /**
@@ -60,19 +61,38 @@ public class Sum extends FactorFunction
     	for (int i = 1; i < length; i++)
     		sum += FactorFunctionUtilities.toDouble(arguments[i]);
     	
-    	if (_smoothingSpecified)
-    	{
-    		double diff = sum - out;
-    		double potential = diff*diff;
-    		return potential*_beta;
-    	}
-    	else
+    	return energy(sum, out);
+    }
+    
+    @Override
+    public double evalEnergy(Value[] values)
+    {
+    	int length = values.length;
+    	double out = values[0].getDouble();
+    	double sum = 0;
+    	for (int i = 1; i < length; i++)
+    		sum += values[i].getDouble();
+
+    	return energy(sum, out);
+    }
+    
+	/**
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int length = arguments.length;
+    	final double[] outs = arguments[0];
+    	for (int row = 0; row < numRows; row++)
     	{
-    		return (sum == out) ? 0 : Double.POSITIVE_INFINITY;
+    		double sum = 0;
+    		for (int i = 1; i < length; i++)
+    			sum += arguments[i][row];
+    		energies[row] = energy(sum, outs[row]);
     	}
     }
     
-    
     @Override
     public final boolean isDirected()	{return true;}
     @Override
@@ -90,4 +110,18 @@ public class Sum extends FactorFunction
     	
     	arguments[0] = sum;		// Replace the output value
     }
+    
+    private double energy(double sum, double out)
+    {
+    	if (_smoothingSpecified)
+    	{
+    		double diff = sum - out;
+    		double potential = diff*diff;
+    		return potential*_beta;
+    	}
+    	else
+    	{
+    		return (sum == out) ? 0 : Double.POSITIVE_INFINITY;
+    	}
+    }
 }
@@ -81,6 +81,52 @@ public class VonMises extends FactorFunction
     	return sum * _precision + N * _log2piBesseli0Precision;
 	}
     
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Unlike the other evaluation methods, this does not update the mean and precision
+	 * parameters of this object when they are not constant.
+	 * @since 0.06
+	 */
+    @Override
+    public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+    {
+    	final int first = _parametersConstant ? 0 : 2;
+    	final int length = arguments.length;
+    	final int N = length - first;			// Number of non-parameter variables
+    	rows:
+    	for (int row = 0; row < numRows; row++)
+    	{
+    		double mean = _mean;
+    		double precision = _precision;
+    		double log2piBesseli0Precision = _log2piBesseli0Precision;
+    		if (!_parametersConstant)
+    		{
+    			mean = arguments[0][row];
+    			precision = arguments[1][row];
+    			if (precision < 0)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			log2piBesseli0Precision = Math.log(Bessel.i0(precision)) + _log2pi;
+    		}
+
+    		double sum = 0;
+    		for (int index = first; index < length; index++)
+    		{
+    			final double x = arguments[index][row];		// Remaining inputs are VonMises variables
+    			if (x < MINUS_PI || x > PI)
+    			{
+    				energies[row] = Double.POSITIVE_INFINITY;
+    				continue rows;
+    			}
+    			sum -= Math.cos(x - mean);
+    		}
+    		energies[row] = sum * precision + N * log2piBesseli0Precision;
+    	}
+    }
+    
     @Override
     public final boolean isDirected() {return true;}
     @Override
@@ -33,6 +33,7 @@ import com.analog.lyric.dimple.model.domains.DomainList;
 import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.IndexedValue;
+import com.analog.lyric.dimple.model.values.RealValue;
 import com.analog.lyric.dimple.model.values.Value;
 
 @ThreadSafe
@@ -114,6 +115,38 @@ public abstract class FactorFunction
 		return evalEnergy(objects);
 	}
 
+	/**
+	 * Computes the energy for each of a batch of rows of real-valued arguments.
+	 * <p>
+	 * The arguments are given by column: {@code arguments[i][row]} is the value of
+	 * the {@code i}th argument for the given row, and the energy for that row is written to
+	 * {@code energies[row]}, for each row in the range [0, {@code numRows}).
+	 * <p>
+	 * This avoids allocating and boxing the arguments for each evaluation, which can be
+	 * significant when evaluating the same function over many values, e.g. for the particles
+	 * of a particle BP variable. The default implementation evaluates each row using
+	 * {@link #evalEnergy(Value[])} with a single array of reused {@link RealValue}s. Unless that
+	 * method is also overridden, this still boxes each argument, so functions that are evaluated
+	 * over many values should override this with a primitive loop, as the built-in continuous
+	 * distributions and {@code Sum} and {@code Product} do.
+	 * <p>
+	 * @since 0.06
+	 */
+	public void evalEnergies(double[][] arguments, int numRows, double[] energies)
+	{
+		final int nArgs = arguments.length;
+		final RealValue[] values = new RealValue[nArgs];
+		for (int i = 0; i < nArgs; ++i)
+			values[i] = RealValue.create();
+
+		for (int row = 0; row < numRows; ++row)
+		{
+			for (int i = 0; i < nArgs; ++i)
+				values[i].setDouble(arguments[i][row]);
+			energies[row] = evalEnergy(values);
+		}
+	}
+
 
 	/**
 	 * @since 0.05
@@ -240,6 +273,25 @@ public abstract class FactorFunction
     	return getFactorTable(factor.getDomainList().asJointDomainIndexer());
     }
 
+    /**
+     * Like {@link #getFactorTable(JointDomainIndexer)} except that if the table is not already
+     * cached, it will be created but not added to the cache. This can be used to avoid holding
+     * on to large tables that are only needed temporarily.
+     * 
+     * @since 0.06
+     */
+    public IFactorTable getFactorTableUncached(JointDomainIndexer domains)
+    {
+    	if (domains == null)
+    	{
+    		throw new DimpleException("only support getFactorTable for discrete domains");
+    	}
+    	
+    	final ConcurrentMap<JointDomainIndexer, IFactorTable> factorTables = _factorTables.get();
+    	final IFactorTable factorTable = factorTables != null ? factorTables.get(domains) : null;
+    	return factorTable != null ? factorTable : createTableForDomains(domains);
+    }
+
     /**
      * @since 0.05
      */
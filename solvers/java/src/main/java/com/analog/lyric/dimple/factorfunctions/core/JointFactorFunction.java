@@ -183,7 +183,7 @@ public class JointFactorFunction extends FactorFunction
 	
 	private static class Cache extends AbstractLoadingCache<Functions,JointFactorFunction>
 	{
-		private static ConcurrentMap<Functions, JointFactorFunction> _map =
+		private final ConcurrentMap<Functions, JointFactorFunction> _map =
 			new ConcurrentHashMap<Functions, JointFactorFunction>();
 		
 		@Override
@@ -16,6 +16,9 @@
 
 package com.analog.lyric.dimple.matlabproxy;
 
+import java.util.Arrays;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.core.Node;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.VariableBase;
@@ -95,6 +98,41 @@ public class PDiscreteVariableVector extends PVariableVector
 		}
 	}
 	
+	/**
+	 * Offsets of the values for each of the variables with the given {@code indices} in the flat
+	 * arrays used by {@link #setInputFlat} and {@link #getDiscreteBeliefsFlat}. The values for
+	 * {@code indices[i]} start at entry {@code i} and end before entry {@code i+1}, so the last
+	 * entry is the total length.
+	 */
+	public int[] getFlatOffsets(int[] indices)
+	{
+		int[] offsets = new int[indices.length + 1];
+		for (int i = 0; i < indices.length; i++)
+			offsets[i + 1] = offsets[i] + getDiscreteVariable(indices[i]).getDiscreteDomain().size();
+		return offsets;
+	}
+	
+	/**
+	 * Sets the inputs of the variables with the given {@code indices} from one flat array holding
+	 * the input for each variable in turn, with as many values as the size of its domain.
+	 * This avoids converting a matrix or cell array to a {@code double[][]} in MATLAB.
+	 */
+	public void setInputFlat(int[] indices, double[] inputs)
+	{
+		int offset = 0;
+		for (int i = 0; i < indices.length; i++)
+		{
+			Discrete var = getDiscreteVariable(indices[i]);
+			int size = var.getDiscreteDomain().size();
+			if (offset + size > inputs.length)
+				throw new DimpleException("Input array is too short for the domains of the variables");
+			var.setInput(Arrays.copyOfRange(inputs, offset, offset + size));	// Variables keep a reference to their input
+			offset += size;
+		}
+		if (offset != inputs.length)
+			throw new DimpleException("Input array is too long for the domains of the variables");
+	}
+	
 	public void setFixedValueIndices(int[] indices, int[] fixedValueIndices)
 	{
 		for (int i = 0; i < indices.length; i++)
@@ -130,6 +168,23 @@ public class PDiscreteVariableVector extends PVariableVector
 		
 	}
 
+	/**
+	 * Returns the beliefs of the variables with the given {@code indices} in one flat array, laid
+	 * out as described for {@link #getFlatOffsets}.
+	 */
+	public double [] getDiscreteBeliefsFlat(int [] indices)
+	{
+		int[] offsets = getFlatOffsets(indices);
+		double[] beliefs = new double[offsets[indices.length]];
+		
+		for (int i = 0; i < indices.length; i++)
+		{
+			double[] belief = getDiscreteVariable(indices[i]).getBelief();
+			System.arraycopy(belief, 0, beliefs, offsets[i], offsets[i + 1] - offsets[i]);
+		}
+		return beliefs;
+	}
+
 	public Object [] getBeliefs(int [] indices)
 	{
 		Object [] beliefs = new Object[indices.length];
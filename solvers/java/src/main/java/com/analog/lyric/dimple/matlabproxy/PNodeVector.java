@@ -326,62 +326,48 @@ public abstract class PNodeVector extends PObject
 	
 	public void invokeSolverMethod(String methodName,Object ... args)
 	{
-		ISolverNode sn = _nodes[0].getSolver();
-		
-		Method [] ms = sn.getClass().getMethods();
-		for (Method m : ms)
-		{
-			if (m.getName().equals(methodName))
-			{
-				boolean keepTrying = false;
-				for (int i = 0; i < _nodes.length; i++)
-				{
-					try
-					{
-						m.invoke(_nodes[i].getSolver(),args);
-					}
-					catch (IllegalArgumentException e) {keepTrying = true;}	// Might be another version with different signature
-					catch (Exception e)
-					{
-						throw new DimpleException(e);
-					}
-				}
-				if (!keepTrying) return;
-			}
-		}
-
-		
-		throw new DimpleException("method not found");
+		invokeSolverMethodOnNodes(methodName, null, args);
 	}
 	
 	public Object [] invokeSolverMethodWithReturnValue(String methodName,Object ... args)
 	{
-		ISolverNode sn = _nodes[0].getSolver();
+		Object [] retval = new Object[_nodes.length];
+		invokeSolverMethodOnNodes(methodName, retval, args);
+		return retval;
+	}
+	
+	/**
+	 * Invokes the named solver method on the solver object of each node, saving the return values in
+	 * {@code retval} if it is not null. Methods are looked up in {@link SolverMethodCache} once for each
+	 * run of nodes with the same solver class.
+	 */
+	private void invokeSolverMethodOnNodes(String methodName, Object [] retval, Object [] args)
+	{
+		Class<?> solverClass = null;
+		Method method = null;
 		
-		Method [] ms = sn.getClass().getMethods();
-		for (Method m : ms)
+		for (int i = 0; i < _nodes.length; i++)
 		{
-			if (m.getName().equals(methodName))
+			ISolverNode sn = _nodes[i].getSolver();
+			
+			if (sn.getClass() != solverClass)
+			{
+				solverClass = sn.getClass();
+				method = SolverMethodCache.findMethod(solverClass, methodName, args);
+				if (method == null)
+					throw new DimpleException("method not found");
+			}
+			
+			try
 			{
-				boolean keepTrying = false;
-				Object [] retval = new Object[_nodes.length];
-				for (int i = 0; i < _nodes.length; i++)
-				{
-					try
-					{
-						retval[i] = m.invoke(_nodes[i].getSolver(),args);
-					}
-					catch (IllegalArgumentException e) {keepTrying = true;}	// Might be another version with different signature
-					catch (Exception e)
-					{
-						throw new DimpleException(e);
-					}
-				}
-				if (!keepTrying) return retval;
+				Object value = method.invoke(sn, args);
+				if (retval != null)
+					retval[i] = value;
+			}
+			catch (Exception e)
+			{
+				throw new DimpleException(e);
 			}
 		}
-
-		
-		throw new DimpleException("method not found");
 	}
 }
@@ -0,0 +1,170 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.matlabproxy;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the public methods of solver classes by name for {@link PNodeVector#invokeSolverMethod}.
+ * <p>
+ * Overloads are chosen by checking the arguments against the parameter types, using the same
+ * unboxing and widening conversions as {@link Method#invoke}, instead of invoking each overload
+ * until one does not throw an {@link IllegalArgumentException}.
+ * <p>
+ * @since 0.06
+ */
+final class SolverMethodCache
+{
+	/*-------
+	 * State
+	 */
+
+	private static final Method[] NO_METHODS = new Method[0];
+
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Method[]>> _methodsByClass =
+		new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Method[]>>();
+
+	private SolverMethodCache()
+	{
+	}
+
+	/*---------------------------
+	 * SolverMethodCache methods
+	 */
+
+	/**
+	 * Returns the first public method of {@code c} named {@code name} that can be invoked
+	 * with {@code args}, or null if there is none.
+	 */
+	static Method findMethod(Class<?> c, String name, Object[] args)
+	{
+		for (Method method : getMethods(c, name))
+		{
+			if (isApplicable(method, args))
+				return method;
+		}
+		return null;
+	}
+
+	/**
+	 * True if {@code method} can be invoked with {@code args} without throwing an {@link IllegalArgumentException}
+	 * for the argument types.
+	 */
+	static boolean isApplicable(Method method, Object[] args)
+	{
+		final Class<?>[] parameterTypes = method.getParameterTypes();
+		final int nArgs = args == null ? 0 : args.length;
+		if (parameterTypes.length != nArgs)
+			return false;
+
+		for (int i = 0; i < nArgs; ++i)
+		{
+			final Class<?> parameterType = parameterTypes[i];
+			final Object arg = args[i];
+			if (arg == null)
+			{
+				if (parameterType.isPrimitive())
+					return false;
+			}
+			else if (parameterType.isPrimitive())
+			{
+				if (!isWidening(primitiveType(arg.getClass()), parameterType))
+					return false;
+			}
+			else if (!parameterType.isInstance(arg))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private static Method[] getMethods(Class<?> c, String name)
+	{
+		ConcurrentMap<String, Method[]> methodsByName = _methodsByClass.get(c);
+		if (methodsByName == null)
+		{
+			methodsByName = new ConcurrentHashMap<String, Method[]>();
+			final ConcurrentMap<String, Method[]> existing = _methodsByClass.putIfAbsent(c, methodsByName);
+			if (existing != null)
+				methodsByName = existing;
+		}
+
+		Method[] methods = methodsByName.get(name);
+		if (methods == null)
+		{
+			final ArrayList<Method> list = new ArrayList<Method>();
+			for (Method method : c.getMethods())
+			{
+				if (method.getName().equals(name))
+					list.add(method);
+			}
+			methods = list.isEmpty() ? NO_METHODS : list.toArray(new Method[list.size()]);
+			methodsByName.put(name, methods);
+		}
+
+		return methods;
+	}
+
+	/**
+	 * The primitive type for a wrapper class, or null if {@code c} is not a wrapper class.
+	 */
+	private static Class<?> primitiveType(Class<?> c)
+	{
+		if (c == Double.class) return double.class;
+		if (c == Integer.class) return int.class;
+		if (c == Boolean.class) return boolean.class;
+		if (c == Long.class) return long.class;
+		if (c == Float.class) return float.class;
+		if (c == Short.class) return short.class;
+		if (c == Byte.class) return byte.class;
+		if (c == Character.class) return char.class;
+		return null;
+	}
+
+	/**
+	 * True if {@code from} is the same as {@code to} or can be converted to it by a widening
+	 * primitive conversion.
+	 */
+	private static boolean isWidening(Class<?> from, Class<?> to)
+	{
+		if (from == null)
+			return false;
+		if (from == to)
+			return true;
+
+		if (to == double.class)
+			return from == float.class || from == long.class || from == int.class || from == char.class || from == short.class || from == byte.class;
+		if (to == float.class)
+			return from == long.class || from == int.class || from == char.class || from == short.class || from == byte.class;
+		if (to == long.class)
+			return from == int.class || from == char.class || from == short.class || from == byte.class;
+		if (to == int.class)
+			return from == char.class || from == short.class || from == byte.class;
+		if (to == short.class)
+			return from == byte.class;
+		return false;
+	}
+}
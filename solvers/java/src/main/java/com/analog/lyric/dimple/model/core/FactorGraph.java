@@ -64,6 +64,7 @@ import com.analog.lyric.dimple.model.variables.VariableList;
 import com.analog.lyric.dimple.schedulers.DefaultScheduler;
 import com.analog.lyric.dimple.schedulers.IScheduler;
 import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
+import com.analog.lyric.dimple.schedulers.schedule.ScheduleBase;
 import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
 import com.analog.lyric.util.misc.FactorGraphDiffs;
@@ -97,7 +98,13 @@ public class FactorGraph extends FactorBase
 	private IScheduler _associatedScheduler = null;
 	private IScheduler _solverSpecificDefaultScheduler = null;
 	private long _versionId = 0;
+	/*
+	 * Counts changes to the graph's variables and subgraphs that are not reflected in _versionId,
+	 * because they do not invalidate its schedule.
+	 */
+	private long _membershipVersionId = 0;
 	private long _scheduleVersionId = 0;
+	private FactorGraphTopology _flatTopology = null;
 	private long _scheduleAssociatedGraphVerisionId = -1;
 	private boolean _customScheduleSet = false;
 	private Class<? extends ISolverFactorGraph> _schedulerSolverClass;
@@ -551,6 +558,7 @@ public class FactorGraph extends FactorBase
 		v.setParentGraph(null);
 		removeNode(v);
 
+		_membershipVersionId++;					// The graph's variables have changed
 	}
 		
 	public void addBoundaryVariables(VariableBase ... vars)
@@ -566,6 +574,7 @@ public class FactorGraph extends FactorBase
 				_ownedVariables.remove(v);
 	
 			_boundaryVariables.add(v);
+			_membershipVersionId++;				// The graph's variables have changed
 	
 	
 			UUID uuid = v.getUUID();
@@ -609,7 +618,7 @@ public class FactorGraph extends FactorBase
 			}
 			addOwnedVariable(v);
 			v.createSolverObject(_solverFactorGraph);
-
+			_membershipVersionId++;				// The graph's variables have changed
 		}
 	}
 
@@ -1390,6 +1399,8 @@ public class FactorGraph extends FactorBase
 	 * <li>Initializes all model factors contained directly in the graph by calling
 	 * {@link Factor#initialize()} on each.
 	 * <li>Initializes nested graphs by invoking this method recursively on each.
+	 * <li>If a schedule derived from {@link ScheduleBase} has already been created for the graph,
+	 * invokes {@link ScheduleBase#reset()} on it.
 	 * <li>Finally, if {@link #getSolver()} is not null, invokes {@link ISolverFactorGraph#initialize()}
 	 * on the solver graph to initialize solver state. The solver is responsible for initializing
 	 * its component variables, factors and any other state.
@@ -1410,6 +1421,9 @@ public class FactorGraph extends FactorBase
 		for (FactorGraph g : getNestedGraphs())
 			g.initialize();
 
+		if (_schedule instanceof ScheduleBase)
+			((ScheduleBase)_schedule).reset();
+		
 		if (_solverFactorGraph != null)
 			_solverFactorGraph.initialize();
 	}
@@ -1506,6 +1520,7 @@ public class FactorGraph extends FactorBase
 		removeNode(subgraph);
 		_ownedFactors.remove(subgraph);
 		_ownedSubGraphs.remove(subgraph);
+		_membershipVersionId++;					// The graph's subgraphs have changed
 
 		for (VariableBase v : boundary)
 		{
@@ -1630,6 +1645,11 @@ public class FactorGraph extends FactorBase
 	
 	private boolean isTreeOrForest(int relativeNestingDepth, boolean checkForForest)
 	{
+		if (relativeNestingDepth == Integer.MAX_VALUE)
+		{
+			return getFlatTopology().isTreeOrForest(checkForForest);
+		}
+		
 		FactorGraph g = this;
 		// Get all the nodes in the graph and all sub-graphs--both variables and
 		// functions (not including boundary variables unless this graph has no
@@ -2296,6 +2316,40 @@ public class FactorGraph extends FactorBase
 		return _versionId;
 	}
 
+	/**
+	 * Changes whenever the variables, factors or subgraphs of this graph change. Unlike
+	 * {@link #getVersionId()}, which determines whether a schedule is still up to date, this
+	 * also changes when variables are added or removed without changing any factors.
+	 * Nested graphs have their own topology versions.
+	 * <p>
+	 * @since 0.06
+	 */
+	public long getTopologyVersionId()
+	{
+		// Both counts only increase, so the sum changes whenever either does
+		return _versionId + _membershipVersionId;
+	}
+
+	/**
+	 * Returns a compressed sparse row view of the structure of the graph including all nested
+	 * graphs, which can be iterated over without allocating.
+	 * <p>
+	 * The topology is cached and only rebuilt when the {@linkplain #getTopologyVersionId() topology version}
+	 * of this graph or one of its nested graphs has changed, so callers should not hold onto it
+	 * across changes to the graph.
+	 * <p>
+	 * @since 0.06
+	 */
+	public FactorGraphTopology getFlatTopology()
+	{
+		FactorGraphTopology topology = _flatTopology;
+		if (topology == null || !topology.isValid())
+		{
+			_flatTopology = topology = new FactorGraphTopology(this);
+		}
+		return topology;
+	}
+
 	public long getScheduleVersionId()
 	{
 		return _scheduleVersionId;
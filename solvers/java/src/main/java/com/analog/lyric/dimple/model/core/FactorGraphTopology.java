@@ -0,0 +1,396 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.core;
+
+import java.util.ArrayList;
+
+import net.jcip.annotations.Immutable;
+import cern.colt.map.OpenIntIntHashMap;
+
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.factors.FactorList;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.model.variables.VariableList;
+
+/**
+ * Immutable snapshot of the flattened structure of a {@link FactorGraph} in compressed sparse row form.
+ * <p>
+ * Variables are numbered in the order returned by {@link FactorGraph#getVariablesFlat()} and
+ * factors in the order returned by {@link FactorGraph#getNonGraphFactorsFlat()}. The edges of
+ * variable {@code i} are at offsets {@code getVariableEdgeOffsets()[i]} up to but not including
+ * {@code getVariableEdgeOffsets()[i+1]} in the variable edge arrays, in port order, and likewise
+ * for factors. For each edge the arrays give the index of the node at the other end and the
+ * port number of the edge on that node, so that the opposite edge of variable edge {@code e} is at
+ * {@code getFactorEdgeOffsets()[getVariableEdgeSiblings()[e]] + getVariableEdgePorts()[e]}.
+ * <p>
+ * In the topology of a nested graph, edges that lead to nodes outside of the graph (i.e.
+ * the boundary variables) have a sibling index and port of -1.
+ * <p>
+ * Use {@link FactorGraph#getFlatTopology()} to obtain an instance, which is cached
+ * by the graph and only rebuilt when the {@link FactorGraph#getTopologyVersionId()} of the graph
+ * or one of its nested graphs has changed. Since it is immutable, the same instance
+ * can be read from multiple threads. The arrays returned by the accessor methods
+ * are not copied and must not be modified.
+ * <p>
+ * @since 0.06
+ */
+@Immutable
+public final class FactorGraphTopology
+{
+	/*-------
+	 * State
+	 */
+
+	private final FactorGraph _graph;
+
+	/**
+	 * The graph and all of its nested graphs and the value of {@link FactorGraph#getTopologyVersionId()}
+	 * of each when the topology was built.
+	 */
+	private final FactorGraph[] _graphs;
+	private final long[] _versionIds;
+
+	private final VariableBase[] _variables;
+	private final Factor[] _factors;
+
+	/**
+	 * Maps {@link INode#getId()} to one plus the index of the variable or factor.
+	 */
+	private final OpenIntIntHashMap _idToIndex;
+
+	private final int[] _variableEdgeOffsets;
+	private final int[] _variableEdgeSiblings;
+	private final int[] _variableEdgePorts;
+
+	private final int[] _factorEdgeOffsets;
+	private final int[] _factorEdgeSiblings;
+	private final int[] _factorEdgePorts;
+
+	private final int[] _variableDegrees;
+	private final int[] _factorDegrees;
+	private final int[] _domainSizes;
+
+	/*--------------
+	 * Construction
+	 */
+
+	FactorGraphTopology(FactorGraph graph)
+	{
+		_graph = graph;
+
+		final ArrayList<FactorGraph> graphs = new ArrayList<FactorGraph>();
+		addGraphs(graph, graphs);
+		final int nGraphs = graphs.size();
+		_graphs = graphs.toArray(new FactorGraph[nGraphs]);
+		_versionIds = new long[nGraphs];
+		for (int i = 0; i < nGraphs; ++i)
+		{
+			_versionIds[i] = _graphs[i].getTopologyVersionId();
+		}
+
+		final VariableList variables = graph.getVariablesFlat();
+		final FactorList factors = graph.getNonGraphFactorsFlat();
+		final int nVariables = variables.size();
+		final int nFactors = factors.size();
+		_variables = variables.toArray(new VariableBase[nVariables]);
+		_factors = factors.toArray(new Factor[nFactors]);
+
+		final OpenIntIntHashMap idToIndex = _idToIndex = new OpenIntIntHashMap(nVariables + nFactors);
+		for (int i = 0; i < nVariables; ++i)
+		{
+			idToIndex.put(_variables[i].getId(), i + 1);
+		}
+		for (int i = 0; i < nFactors; ++i)
+		{
+			idToIndex.put(_factors[i].getId(), i + 1);
+		}
+
+		_variableDegrees = new int[nVariables];
+		_domainSizes = new int[nVariables];
+		_variableEdgeOffsets = new int[nVariables + 1];
+		for (int i = 0; i < nVariables; ++i)
+		{
+			final VariableBase variable = _variables[i];
+			final Domain domain = variable.getDomain();
+			_domainSizes[i] = domain.isDiscrete() ? domain.asDiscrete().size() : -1;
+			_variableDegrees[i] = variable.getSiblingCount();
+			_variableEdgeOffsets[i + 1] = _variableEdgeOffsets[i] + _variableDegrees[i];
+		}
+
+		_factorDegrees = new int[nFactors];
+		_factorEdgeOffsets = new int[nFactors + 1];
+		for (int i = 0; i < nFactors; ++i)
+		{
+			_factorDegrees[i] = _factors[i].getSiblingCount();
+			_factorEdgeOffsets[i + 1] = _factorEdgeOffsets[i] + _factorDegrees[i];
+		}
+
+		final int nVariableEdges = _variableEdgeOffsets[nVariables];
+		_variableEdgeSiblings = new int[nVariableEdges];
+		_variableEdgePorts = new int[nVariableEdges];
+		for (int i = 0, edge = 0; i < nVariables; ++i)
+		{
+			final VariableBase variable = _variables[i];
+			for (int port = 0, end = _variableDegrees[i]; port < end; ++port, ++edge)
+			{
+				final int sibling = indexOf(variable.getSibling(port));
+				_variableEdgeSiblings[edge] = sibling;
+				_variableEdgePorts[edge] = sibling >= 0 ? variable.getSiblingPortIndex(port) : -1;
+			}
+		}
+
+		final int nFactorEdges = _factorEdgeOffsets[nFactors];
+		_factorEdgeSiblings = new int[nFactorEdges];
+		_factorEdgePorts = new int[nFactorEdges];
+		for (int i = 0, edge = 0; i < nFactors; ++i)
+		{
+			final Factor factor = _factors[i];
+			for (int port = 0, end = _factorDegrees[i]; port < end; ++port, ++edge)
+			{
+				final int sibling = indexOf(factor.getSibling(port));
+				_factorEdgeSiblings[edge] = sibling;
+				_factorEdgePorts[edge] = sibling >= 0 ? factor.getSiblingPortIndex(port) : -1;
+			}
+		}
+	}
+
+	private static void addGraphs(FactorGraph graph, ArrayList<FactorGraph> graphs)
+	{
+		graphs.add(graph);
+		for (FactorGraph subgraph : graph.getNestedGraphs())
+		{
+			addGraphs(subgraph, graphs);
+		}
+	}
+
+	/*-----------------------------
+	 * FactorGraphTopology methods
+	 */
+
+	/**
+	 * The graph from which the topology was built.
+	 */
+	public FactorGraph getGraph()
+	{
+		return _graph;
+	}
+
+	/**
+	 * False if the structure of the graph or of any of its nested graphs has changed since
+	 * the topology was built.
+	 */
+	public boolean isValid()
+	{
+		final FactorGraph[] graphs = _graphs;
+		for (int i = graphs.length; --i>=0;)
+		{
+			if (graphs[i].getTopologyVersionId() != _versionIds[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getVariableCount()
+	{
+		return _variables.length;
+	}
+
+	public int getFactorCount()
+	{
+		return _factors.length;
+	}
+
+	public VariableBase getVariable(int index)
+	{
+		return _variables[index];
+	}
+
+	public Factor getFactor(int index)
+	{
+		return _factors[index];
+	}
+
+	/**
+	 * The index of {@code variable} in the topology or -1 if it is not in the graph.
+	 */
+	public int getVariableIndex(VariableBase variable)
+	{
+		final int index = _idToIndex.get(variable.getId()) - 1;
+		return index >= 0 && index < _variables.length && _variables[index] == variable ? index : -1;
+	}
+
+	/**
+	 * The index of {@code factor} in the topology or -1 if it is not in the graph.
+	 */
+	public int getFactorIndex(Factor factor)
+	{
+		final int index = _idToIndex.get(factor.getId()) - 1;
+		return index >= 0 && index < _factors.length && _factors[index] == factor ? index : -1;
+	}
+
+	/**
+	 * Offsets of the first edge of each variable into {@link #getVariableEdgeSiblings()}
+	 * and {@link #getVariableEdgePorts()}, followed by the total number of variable edges.
+	 * Do not modify.
+	 */
+	public int[] getVariableEdgeOffsets()
+	{
+		return _variableEdgeOffsets;
+	}
+
+	/**
+	 * Index of the factor at the other end of each variable edge. Do not modify.
+	 */
+	public int[] getVariableEdgeSiblings()
+	{
+		return _variableEdgeSiblings;
+	}
+
+	/**
+	 * Port number of each variable edge on the factor at its other end. Do not modify.
+	 */
+	public int[] getVariableEdgePorts()
+	{
+		return _variableEdgePorts;
+	}
+
+	/**
+	 * Offsets of the first edge of each factor into {@link #getFactorEdgeSiblings()}
+	 * and {@link #getFactorEdgePorts()}, followed by the total number of factor edges.
+	 * Do not modify.
+	 */
+	public int[] getFactorEdgeOffsets()
+	{
+		return _factorEdgeOffsets;
+	}
+
+	/**
+	 * Index of the variable at the other end of each factor edge. Do not modify.
+	 */
+	public int[] getFactorEdgeSiblings()
+	{
+		return _factorEdgeSiblings;
+	}
+
+	/**
+	 * Port number of each factor edge on the variable at its other end. Do not modify.
+	 */
+	public int[] getFactorEdgePorts()
+	{
+		return _factorEdgePorts;
+	}
+
+	/**
+	 * The number of siblings of each variable. Do not modify.
+	 */
+	public int[] getVariableDegrees()
+	{
+		return _variableDegrees;
+	}
+
+	/**
+	 * The number of siblings of each factor. Do not modify.
+	 */
+	public int[] getFactorDegrees()
+	{
+		return _factorDegrees;
+	}
+
+	/**
+	 * The size of the domain of each discrete variable, or -1 for variables with non-discrete
+	 * domains. Do not modify.
+	 */
+	public int[] getDomainSizes()
+	{
+		return _domainSizes;
+	}
+
+	/**
+	 * True if there are no cycles in the graph, i.e. it is a tree or a forest of disjoint
+	 * trees. If {@code checkForForest} is false, this additionally requires that the graph
+	 * be connected.
+	 * <p>
+	 * This is the same as {@link FactorGraph#isForest()} and {@link FactorGraph#isTree()}
+	 * but does not walk the graph.
+	 */
+	public boolean isTreeOrForest(boolean checkForForest)
+	{
+		final int nVariables = _variables.length;
+		final int nVertices = nVariables + _factors.length;
+
+		// Only count edges between nodes in the topology, not boundary edges to outer nodes.
+		int nEdges = 0;
+		for (int sibling : _variableEdgeSiblings)
+		{
+			if (sibling >= 0)
+				++nEdges;
+		}
+
+		if (nVertices == 0)
+			return true;
+		if (nEdges > nVertices - 1)
+			return false;
+		if (!checkForForest && nEdges < nVertices - 1)
+			return false;
+
+		// Union-find over the variables followed by the factors. An edge that joins two
+		// nodes that are already connected closes a cycle.
+		final int[] parents = new int[nVertices];
+		for (int i = 0; i < nVertices; ++i)
+			parents[i] = i;
+
+		for (int i = 0; i < nVariables; ++i)
+		{
+			for (int edge = _variableEdgeOffsets[i], end = _variableEdgeOffsets[i + 1]; edge < end; ++edge)
+			{
+				final int sibling = _variableEdgeSiblings[edge];
+				if (sibling < 0)
+					continue;
+				final int root1 = findRoot(parents, i);
+				final int root2 = findRoot(parents, nVariables + sibling);
+				if (root1 == root2)
+					return false;
+				parents[root1] = root2;
+			}
+		}
+
+		// With no cycles and exactly nVertices - 1 edges, the graph must be connected.
+		return true;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private int indexOf(INode node)
+	{
+		return _idToIndex.get(node.getId()) - 1;
+	}
+
+	private static int findRoot(int[] parents, int i)
+	{
+		while (parents[i] != i)
+		{
+			final int parent = parents[i] = parents[parents[i]];
+			i = parent;
+		}
+		return i;
+	}
+}
@@ -194,10 +194,10 @@ public abstract class Node implements INode, Cloneable
 		int reverseIndex = _siblingIndices[index] - 1;
 		
 		INode sibling = _siblings.get(index);
-		if (reverseIndex < 0 || sibling.getSibling(reverseIndex) != this)
+		if (reverseIndex < 0 || reverseIndex >= sibling.getSiblingCount() || sibling.getSibling(reverseIndex) != this)
 		{
-			// Update reverse index if it was not yet initialized or it points to the wrong node,
-			// which can happen if nodes were removed.
+			// Update reverse index if it was not yet initialized or it is out of range or points
+			// to the wrong node, which can happen if nodes were removed.
 			reverseIndex = sibling.getPortNum(this);
 			_siblingIndices[index] = reverseIndex + 1;
 		}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.repeated;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Data sink that collects values into blocks and passes them on to another sink on a background thread.
+ * <p>
+ * Values pushed to this sink are collected into blocks of {@link #getBatchSize()} values. Each full
+ * block is queued for a background thread that pushes its values to the underlying sink in order. At
+ * most {@link #getMaxPendingBatches()} blocks can be waiting; when that many are queued, {@link #push}
+ * waits for the background thread to catch up, so a slow sink cannot use up memory.
+ * <p>
+ * Call {@link #flush()} to pass on a partially filled block and wait until all values have reached
+ * the underlying sink, before reading from it. {@link #close()} flushes and stops the background
+ * thread. The underlying sink must not be used directly in between.
+ * <p>
+ * Values are passed on by reference, so they must not be modified after they are pushed. This is
+ * the case for the belief objects pushed by {@link VariableStreamBase#advanceState()}, which are
+ * newly created for each step.
+ * <p>
+ * @since 0.06
+ */
+public class BatchedDataSink implements IDataSink, Closeable
+{
+	/*-------
+	 * State
+	 */
+
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	public static final int DEFAULT_MAX_PENDING_BATCHES = 4;
+
+	// Queue element that tells the background thread to exit.
+	private static final Object[] END = new Object[0];
+
+	private final IDataSink _sink;
+	private final int _batchSize;
+	private final ArrayBlockingQueue<Object[]> _queue;
+	private final Thread _thread;
+
+	private Object[] _batch;
+	private int _batchCount = 0;
+	private boolean _closed = false;
+
+	// Number of blocks queued and number passed on to the underlying sink, guarded by _lock.
+	private final Object _lock = new Object();
+	private long _batchesQueued = 0;
+	private long _batchesWritten = 0;
+
+	private volatile Throwable _error = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public BatchedDataSink(IDataSink sink)
+	{
+		this(sink, DEFAULT_BATCH_SIZE, DEFAULT_MAX_PENDING_BATCHES);
+	}
+
+	/**
+	 * Passes values on to {@code sink} on a background daemon thread in blocks of {@code batchSize}
+	 * with at most {@code maxPendingBatches} blocks waiting.
+	 */
+	public BatchedDataSink(IDataSink sink, int batchSize, int maxPendingBatches)
+	{
+		if (batchSize < 1)
+			throw new DimpleException("Batch size must be at least one");
+		if (maxPendingBatches < 1)
+			throw new DimpleException("Maximum number of pending batches must be at least one");
+
+		_sink = sink;
+		_batchSize = batchSize;
+		_batch = new Object[batchSize];
+		_queue = new ArrayBlockingQueue<Object[]>(maxPendingBatches);
+		_thread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				writeBehind();
+			}
+		}, "Dimple data sink writer");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	/*-------------------
+	 * IDataSink methods
+	 */
+
+	@Override
+	public void push(Object data)
+	{
+		if (_closed)
+			throw new DimpleException("Data sink has been closed");
+		checkError();
+
+		_batch[_batchCount++] = data;
+		if (_batchCount == _batchSize)
+		{
+			queue(_batch);
+			_batch = new Object[_batchSize];
+			_batchCount = 0;
+		}
+	}
+
+	/*-------------------
+	 * Closeable methods
+	 */
+
+	/**
+	 * Flushes any remaining values and stops the background thread.
+	 */
+	@Override
+	public void close()
+	{
+		if (!_closed)
+		{
+			flush();
+			_closed = true;
+			queue(END);
+		}
+	}
+
+	/*-------------------------
+	 * BatchedDataSink methods
+	 */
+
+	public int getBatchSize()
+	{
+		return _batchSize;
+	}
+
+	public int getMaxPendingBatches()
+	{
+		return _queue.size() + _queue.remainingCapacity();
+	}
+
+	/**
+	 * Passes on any partially filled block and waits until all values pushed so far have been
+	 * pushed to the underlying sink.
+	 */
+	public void flush()
+	{
+		if (_batchCount > 0)
+		{
+			queue(Arrays.copyOf(_batch, _batchCount));
+			Arrays.fill(_batch, 0, _batchCount, null);
+			_batchCount = 0;
+		}
+
+		synchronized (_lock)
+		{
+			try
+			{
+				while (_batchesWritten < _batchesQueued)
+					_lock.wait();
+			}
+			catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw new DimpleException(ex);
+			}
+		}
+
+		checkError();
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void checkError()
+	{
+		final Throwable error = _error;
+		if (error != null)
+			throw new DimpleException(error, "Error writing to data sink: %s", error.toString());
+	}
+
+	private void queue(Object[] batch)
+	{
+		if (batch != END)
+		{
+			synchronized (_lock)
+			{
+				++_batchesQueued;
+			}
+		}
+
+		try
+		{
+			_queue.put(batch);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new DimpleException(ex);
+		}
+	}
+
+	private void writeBehind()
+	{
+		try
+		{
+			while (true)
+			{
+				final Object[] batch = _queue.take();
+				if (batch == END)
+					break;
+
+				// After an error, keep consuming batches so that the producer is not blocked.
+				if (_error == null)
+				{
+					try
+					{
+						for (Object value : batch)
+							_sink.push(value);
+					}
+					catch (Throwable ex)
+					{
+						_error = ex;
+					}
+				}
+
+				synchronized (_lock)
+				{
+					++_batchesWritten;
+					_lock.notifyAll();
+				}
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			// Exit
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.repeated;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Data source that reads fixed-length records of doubles from a memory-mapped binary file.
+ * <p>
+ * The file must consist of consecutive records of {@link #getRecordLength()} doubles with no
+ * header, for instance as written by MATLAB's {@code fwrite(fid, data, 'double')} with one
+ * column per record. Each call to {@link #getNext()} returns a new {@code double[]} holding the next
+ * record, which is suitable as the input of a discrete variable when the record length is the size of
+ * its domain. Any trailing partial record is ignored.
+ * <p>
+ * The file is mapped a region at a time, so files larger than 2GB are supported. Reads are
+ * served by the operating system's page cache. To overlap them with solving as well, wrap the
+ * source in a {@link PrefetchingDataSource}.
+ * <p>
+ * @since 0.06
+ */
+public class BinaryFileDataSource implements IDataSource, Closeable
+{
+	/*-------
+	 * State
+	 */
+
+	// Largest region mapped at once, rounded down to a whole number of records.
+	private static final long MAX_REGION_BYTES = 1L << 30;
+
+	private final RandomAccessFile _file;
+	private final FileChannel _channel;
+	private final ByteOrder _order;
+	private final int _recordLength;
+	private final long _recordCount;
+	private final long _recordsPerRegion;
+
+	private long _nextRecord = 0;
+	private long _regionEnd = 0;
+	private DoubleBuffer _region = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Opens {@code file} with records of {@code recordLength} doubles in the platform's native byte order.
+	 */
+	public BinaryFileDataSource(File file, int recordLength) throws IOException
+	{
+		this(file, recordLength, ByteOrder.nativeOrder());
+	}
+
+	public BinaryFileDataSource(File file, int recordLength, ByteOrder order) throws IOException
+	{
+		if (recordLength < 1)
+			throw new DimpleException("Record length must be at least one");
+
+		_file = new RandomAccessFile(file, "r");
+		_channel = _file.getChannel();
+		_order = order;
+		_recordLength = recordLength;
+
+		final long recordBytes = 8L * recordLength;
+		_recordCount = _channel.size() / recordBytes;
+		_recordsPerRegion = Math.max(1, MAX_REGION_BYTES / recordBytes);
+	}
+
+	/*---------------------
+	 * IDataSource methods
+	 */
+
+	@Override
+	public boolean hasNext()
+	{
+		return _nextRecord < _recordCount;
+	}
+
+	@Override
+	public double[] getNext()
+	{
+		if (!hasNext())
+			throw new DimpleException("No more data in data source");
+
+		if (_nextRecord >= _regionEnd)
+			mapRegion();
+
+		final double[] record = new double[_recordLength];
+		_region.get(record);
+		++_nextRecord;
+		return record;
+	}
+
+	/*-------------------
+	 * Closeable methods
+	 */
+
+	@Override
+	public void close() throws IOException
+	{
+		_region = null;
+		_nextRecord = _recordCount;
+		_file.close();
+	}
+
+	/*------------------------------
+	 * BinaryFileDataSource methods
+	 */
+
+	/**
+	 * The number of doubles in each record.
+	 */
+	public int getRecordLength()
+	{
+		return _recordLength;
+	}
+
+	/**
+	 * The total number of whole records in the file.
+	 */
+	public long getRecordCount()
+	{
+		return _recordCount;
+	}
+
+	/**
+	 * The number of records that have not yet been read.
+	 */
+	public long getRemainingRecords()
+	{
+		return _recordCount - _nextRecord;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void mapRegion()
+	{
+		final long recordBytes = 8L * _recordLength;
+		final long nRecords = Math.min(_recordsPerRegion, _recordCount - _nextRecord);
+
+		try
+		{
+			final MappedByteBuffer buffer =
+				_channel.map(FileChannel.MapMode.READ_ONLY, _nextRecord * recordBytes, nRecords * recordBytes);
+			buffer.order(_order);
+			_region = buffer.asDoubleBuffer();
+		}
+		catch (IOException ex)
+		{
+			throw new DimpleException(ex);
+		}
+
+		_regionEnd = _nextRecord + nRecords;
+	}
+}
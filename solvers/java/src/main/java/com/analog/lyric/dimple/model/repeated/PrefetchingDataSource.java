@@ -0,0 +1,212 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.repeated;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Data source that reads ahead from another source on a background thread.
+ * <p>
+ * Up to {@link #getCapacity()} values are read ahead into a bounded queue. When the queue is full,
+ * the background thread waits until values have been consumed, so a fast source cannot use up
+ * memory. {@link #hasNext()} only blocks when the background thread has not yet produced the next
+ * value, so a rolled-up graph solved with
+ * <pre>
+ *     while (fg.hasNext()) { fg.solve(); fg.advance(); }
+ * </pre>
+ * does not wait on the underlying source as long as it can keep up on average.
+ * <p>
+ * Once constructed, the underlying source is only accessed from the background thread, so it
+ * must not be used directly. An exception thrown by the underlying source is rethrown as a
+ * {@link DimpleException} from {@link #hasNext()} or {@link #getNext()} after the values that were
+ * read before it have been consumed.
+ * <p>
+ * @since 0.06
+ */
+public class PrefetchingDataSource implements IDataSource, Closeable
+{
+	/*-------
+	 * State
+	 */
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	// Queue elements that stand in for null values and for the end of the data.
+	private static final Object NULL = new Object();
+	private static final Object END = new Object();
+
+	private final IDataSource _source;
+	private final ArrayBlockingQueue<Object> _queue;
+	private final Thread _thread;
+
+	private volatile boolean _closed = false;
+	private volatile Throwable _error = null;
+
+	/**
+	 * The value taken from the queue by {@link #hasNext()} but not yet returned by {@link #getNext()},
+	 * or null if there is none.
+	 */
+	private Object _next = null;
+	private boolean _done = false;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public PrefetchingDataSource(IDataSource source)
+	{
+		this(source, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Starts reading ahead from {@code source} on a background daemon thread, with at
+	 * most {@code capacity} values waiting to be consumed.
+	 */
+	public PrefetchingDataSource(IDataSource source, int capacity)
+	{
+		if (capacity < 1)
+			throw new DimpleException("Prefetch capacity must be at least one");
+
+		_source = source;
+		_queue = new ArrayBlockingQueue<Object>(capacity);
+		_thread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				readAhead();
+			}
+		}, "Dimple data source prefetch");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	/*---------------------
+	 * IDataSource methods
+	 */
+
+	@Override
+	public boolean hasNext()
+	{
+		if (_next != null)
+			return true;
+		if (_done)
+			return false;
+
+		Object value;
+		try
+		{
+			value = _queue.take();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new DimpleException(ex);
+		}
+
+		if (value == END)
+		{
+			_done = true;
+			final Throwable error = _error;
+			if (error != null && !_closed)
+				throw new DimpleException(error, "Error reading data source: %s", error.toString());
+			return false;
+		}
+
+		_next = value;
+		return true;
+	}
+
+	@Override
+	public Object getNext()
+	{
+		if (!hasNext())
+			throw new DimpleException("No more data in data source");
+
+		final Object value = _next;
+		_next = null;
+		return value == NULL ? null : value;
+	}
+
+	/*-------------------
+	 * Closeable methods
+	 */
+
+	/**
+	 * Stops reading ahead and discards any values that have not been consumed.
+	 * This does not close the underlying source.
+	 */
+	@Override
+	public void close()
+	{
+		_closed = true;
+		_thread.interrupt();
+		_queue.clear();
+		_next = null;
+		_done = true;
+	}
+
+	/*-------------------------------
+	 * PrefetchingDataSource methods
+	 */
+
+	/**
+	 * The maximum number of values that are read ahead.
+	 */
+	public int getCapacity()
+	{
+		return _queue.size() + _queue.remainingCapacity();
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void readAhead()
+	{
+		try
+		{
+			while (!_closed && _source.hasNext())
+			{
+				final Object value = _source.getNext();
+				_queue.put(value == null ? NULL : value);
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			// Closed
+		}
+		catch (Throwable ex)
+		{
+			_error = ex;
+		}
+
+		if (!_closed)
+		{
+			try
+			{
+				_queue.put(END);
+			}
+			catch (InterruptedException ex)
+			{
+				// Closed
+			}
+		}
+	}
+}
@@ -139,6 +139,9 @@ public class JunctionTreeTransform
 	public static final int DEFAULT_MAX_TRANSFORMATION_ATTEMPTS = 10;
 	
 	private int _nEliminationAttempts = DEFAULT_MAX_TRANSFORMATION_ATTEMPTS;
+	private long _maxEliminationMillis = 0;
+	private int _nEliminationThreads = 1;
+	private long _maxTotalCliqueCardinality = 0;
 	private boolean _useConditioning = false;
 	private CostFunction[] _costFunctions = {};
 	private Random _rand = new Random();
@@ -272,6 +275,90 @@ public class JunctionTreeTransform
 		return this;
 	}
 
+	/**
+	 * Specifies a wall-clock time budget in milliseconds for determining the variable elimination
+	 * ordering. If positive, new attempts will not be started once the budget has been exceeded,
+	 * and if {@link #maxTransformationAttempts()} is not positive, the number of attempts will only
+	 * be limited by time.
+	 * <p>
+	 * Default value is zero, which means there is no time limit.
+	 * <p>
+	 * @see #maxTransformationMillis(long)
+	 * @see VariableEliminator#generateInParallel(VariableEliminator, int, int, long, Stats, CostFunction...)
+	 * @since 0.06
+	 */
+	public long maxTransformationMillis()
+	{
+		return _maxEliminationMillis;
+	}
+	
+	/**
+	 * Sets {@link #maxTransformationMillis()} to the specified value.
+	 * @return this
+	 * @since 0.06
+	 */
+	public JunctionTreeTransform maxTransformationMillis(long millis)
+	{
+		_maxEliminationMillis = millis;
+		return this;
+	}
+	
+	/**
+	 * Specifies the maximum number of threads used to run variable elimination attempts
+	 * concurrently when determining the variable elimination ordering.
+	 * <p>
+	 * Default value is one, which runs all attempts on the calling thread.
+	 * <p>
+	 * @see #transformationThreads(int)
+	 * @since 0.06
+	 */
+	public int transformationThreads()
+	{
+		return _nEliminationThreads;
+	}
+	
+	/**
+	 * Sets {@link #transformationThreads()} to the specified value.
+	 * @return this
+	 * @since 0.06
+	 */
+	public JunctionTreeTransform transformationThreads(int nThreads)
+	{
+		_nEliminationThreads = nThreads;
+		return this;
+	}
+
+	/**
+	 * Specifies the maximum total number of factor table entries allowed across all of the cliques
+	 * of the junction tree, as estimated by {@link Stats#totalCliqueCardinality()} before any clique
+	 * tables are built.
+	 * <p>
+	 * If the best elimination ordering found exceeds this limit and {@link #useConditioning()} is false,
+	 * then the transformation will try again conditioning out variables with fixed values. If the limit
+	 * still cannot be met, {@link #transform(FactorGraph)} will throw a {@link DimpleException} rather than
+	 * attempting to allocate the tables.
+	 * <p>
+	 * Default value is zero, which means there is no limit.
+	 * <p>
+	 * @see #maxTotalCliqueCardinality(long)
+	 * @since 0.06
+	 */
+	public long maxTotalCliqueCardinality()
+	{
+		return _maxTotalCliqueCardinality;
+	}
+	
+	/**
+	 * Sets {@link #maxTotalCliqueCardinality()} to the specified value.
+	 * @return this
+	 * @since 0.06
+	 */
+	public JunctionTreeTransform maxTotalCliqueCardinality(long cardinality)
+	{
+		_maxTotalCliqueCardinality = cardinality;
+		return this;
+	}
+
 	/*------------------------------
 	 * Inner implementation classes
 	 */
@@ -418,8 +505,10 @@ public class JunctionTreeTransform
 				}
 			}
 			
-			// Compute new factor table energies and indices.
-			final IFactorTable oldFactorTable = _mergedFactor.getFactorTable();
+			// Compute new factor table energies and indices. The merged table is only needed
+			// until it has been rewritten, so don't let the factor function cache it.
+			final IFactorTable oldFactorTable = _mergedFactor.getFactorFunction().getFactorTableUncached(
+				_mergedFactor.getDomainList().asJointDomainIndexer());
 			final int nEntries = oldFactorTable.countNonZeroWeights();
 
 			final int[][] indices = new int[nEntries][];
@@ -610,7 +699,19 @@ public class JunctionTreeTransform
 	 */
 	public JunctionTreeTransformMap transform(FactorGraph model)
 	{
-		return transform(model, buildEliminationOrder(model));
+		Ordering ordering = buildEliminationOrder(model, _useConditioning);
+		
+		if (!_useConditioning && exceedsCliqueBudget(ordering.stats) && hasFixedValue(model))
+		{
+			// Conditioning on fixed values may shrink the cliques enough to fit.
+			final Ordering conditionedOrdering = buildEliminationOrder(model, true);
+			if (conditionedOrdering.stats.totalCliqueCardinality() < ordering.stats.totalCliqueCardinality())
+			{
+				ordering = conditionedOrdering;
+			}
+		}
+		
+		return transform(model, ordering);
 	}
 
 	/**
@@ -688,6 +789,13 @@ public class JunctionTreeTransform
 			return JunctionTreeTransformMap.identity(model);
 		}
 		
+		if (exceedsCliqueBudget(orderStats))
+		{
+			throw new DimpleException(
+				"Junction tree for '%s' would require up to %d factor table entries, which exceeds limit of %d",
+				model.getLabel(), orderStats.totalCliqueCardinality(), _maxTotalCliqueCardinality);
+		}
+		
 		if (orderStats.factorsWithDuplicateVariables() > 0)
 		{
 			throw DimpleException.unsupported("factors with duplicate variables"); // FIXME
@@ -767,7 +875,7 @@ public class JunctionTreeTransform
 	// Private methods
 	//
 	
-	private Ordering buildEliminationOrder(FactorGraph model)
+	private Ordering buildEliminationOrder(FactorGraph model, boolean useConditioning)
 	{
 		// Find max cardinality of existing factors - we can't do better than that.
 		int maxCardinality = 0;
@@ -781,14 +889,34 @@ public class JunctionTreeTransform
 		
 		VariableEliminator.Stats threshold = new VariableEliminator.Stats().maxCliqueCardinality(maxCardinality);
 		
-		VariableEliminator eliminator = new VariableEliminator(model, _useConditioning, _rand);
+		VariableEliminator eliminator = new VariableEliminator(model, useConditioning, _rand);
 		
-		return VariableEliminator.generate(eliminator, _nEliminationAttempts, threshold, _costFunctions);
+		return VariableEliminator.generateInParallel(eliminator, _nEliminationThreads, _nEliminationAttempts,
+			_maxEliminationMillis, threshold, _costFunctions);
+	}
+	
+	private boolean exceedsCliqueBudget(Stats stats)
+	{
+		return _maxTotalCliqueCardinality > 0 && stats.totalCliqueCardinality() > _maxTotalCliqueCardinality;
+	}
+	
+	private static boolean hasFixedValue(FactorGraph model)
+	{
+		for (VariableBase var : model.getVariables())
+		{
+			if (var.hasFixedValue())
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private int disconnectConditionedVariables(Ordering eliminationOrder, JunctionTreeTransformMap transformMap)
 	{
-		final int nConditioned = _useConditioning ? eliminationOrder.stats.conditionedVariables() : 0;
+		// Orderings only have conditioned variables if they were generated with conditioning,
+		// which may have been enabled just for this transformation to meet the clique budget.
+		final int nConditioned = Math.max(0, eliminationOrder.stats.conditionedVariables());
 		if (nConditioned > 0)
 		{
 			// Build list of factors that need to be modified
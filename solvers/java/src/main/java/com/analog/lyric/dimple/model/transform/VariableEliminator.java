@@ -27,6 +27,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.jcip.annotations.Immutable;
 
@@ -37,9 +43,9 @@ import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.factors.FactorBase;
-import com.analog.lyric.dimple.model.factors.FactorList;
 import com.analog.lyric.dimple.model.variables.VariableBase;
 import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 
@@ -453,6 +459,150 @@ public class VariableEliminator
 		return new Ordering(bestList, bestStats);
 	}
 	
+	/**
+	 * Invokes {@link #generateInParallel(VariableEliminator, int, int, long, Stats, VariableCost...)}
+	 * with all standard {@link VariableCost} functions.
+	 * <p>
+	 * @since 0.06
+	 */
+	public static Ordering generateInParallel(
+		VariableEliminator eliminator,
+		int nThreads,
+		int nAttempts,
+		long maxMillis,
+		Stats threshold)
+	{
+		return generateInParallel(eliminator, nThreads, nAttempts, maxMillis, threshold, VariableCost.values());
+	}
+	
+	/**
+	 * Computes a variable elimination order by running randomized attempts concurrently on multiple
+	 * threads.
+	 * <p>
+	 * Same as {@link #generateInParallel(VariableEliminator, int, int, long, Stats, CostFunction...)}
+	 * but using standard cost functions.
+	 * <p>
+	 * @since 0.06
+	 */
+	public static Ordering generateInParallel(
+		VariableEliminator eliminator,
+		int nThreads,
+		int nAttempts,
+		long maxMillis,
+		Stats threshold,
+		VariableCost ... costFunctions)
+	{
+		return generateInParallel(eliminator, nThreads, nAttempts, maxMillis, threshold,
+			VariableCost.toFunctions(costFunctions));
+	}
+	
+	/**
+	 * Computes a variable elimination order by running randomized attempts concurrently on multiple
+	 * threads.
+	 * <p>
+	 * This works like {@link #generate(VariableEliminator, int, Stats, CostFunction...)}, except that
+	 * attempts are divided among {@code nThreads} workers: the calling thread and up to
+	 * {@code nThreads - 1} tasks submitted to the shared {@link ThreadPool}. Each worker has its own
+	 * eliminator with its own {@link Random} (seeded from {@code eliminator}'s randomizer) and
+	 * adjusts its own cost function weights based on its own timings. The best statistics found
+	 * so far are shared by all workers, and an attempt is abandoned as soon as its partial statistics
+	 * compare no better than the best, which is safe because statistics never decrease as more variables
+	 * are eliminated.
+	 * <p>
+	 * @param nThreads is the maximum number of threads to use. If less than two, then all attempts
+	 * will be run on the calling thread.
+	 * @param nAttempts is the maximum number of orderings to attempt. If not positive and {@code maxMillis}
+	 * is positive, then the number of attempts is only limited by time. If both are not positive,
+	 * then each cost function will be tried once deterministically.
+	 * @param maxMillis if positive specifies a wall-clock time budget in milliseconds after which
+	 * no new attempts will be started. At least one attempt will always be completed.
+	 * @param threshold is as described for {@link #generate(FactorGraph, boolean, int, Stats, VariableCost...)}
+	 * @param costFunctions is a list of cost functions to be used. If empty, all will be tried.
+	 * 
+	 * @since 0.06
+	 */
+	public static Ordering generateInParallel(
+		VariableEliminator eliminator,
+		int nThreads,
+		int nAttempts,
+		long maxMillis,
+		Stats threshold,
+		CostFunction ... costFunctions)
+	{
+		if (costFunctions.length == 0)
+		{
+			costFunctions = VariableCost.toFunctions(VariableCost.values());
+		}
+
+		final boolean deterministic = nAttempts <= 0 && maxMillis <= 0;
+		if (deterministic)
+		{
+			nAttempts = costFunctions.length;
+		}
+		else if (nAttempts <= 0)
+		{
+			nAttempts = Integer.MAX_VALUE;
+		}
+		
+		final long deadline = maxMillis > 0 ? System.nanoTime() + maxMillis * 1000000 : Long.MAX_VALUE;
+		final SharedSearchState state = new SharedSearchState(nAttempts, deadline, threshold);
+		
+		nThreads = Math.max(1, Math.min(nThreads, nAttempts));
+		final Search[] searches = new Search[nThreads];
+		searches[0] = new Search(eliminator, state, deterministic, costFunctions);
+		for (int i = 1; i < nThreads; ++i)
+		{
+			final Random rand = eliminator._rand;
+			final VariableEliminator workerEliminator = new VariableEliminator(eliminator._model,
+				eliminator._useConditioning, rand != null ? new Random(rand.nextLong()) : null);
+			searches[i] = new Search(workerEliminator, state, deterministic, costFunctions);
+		}
+		
+		if (nThreads > 1)
+		{
+			final ExecutorService service = ThreadPool.getThreadPool();
+			final List<Future<?>> futures = new ArrayList<Future<?>>(nThreads - 1);
+			for (int i = 1; i < nThreads; ++i)
+			{
+				futures.add(service.submit(searches[i]));
+			}
+			
+			try
+			{
+				searches[0].run();
+			}
+			finally
+			{
+				state._done = true;
+				
+				// Wait for workers that have started. Workers that have not started yet will
+				// not be run.
+				for (int i = 1; i < nThreads; ++i)
+				{
+					if (!searches[i].claim())
+					{
+						waitFor(futures.get(i - 1));
+					}
+				}
+			}
+		}
+		else
+		{
+			searches[0].run();
+		}
+		
+		Search best = null;
+		for (Search search : searches)
+		{
+			if (search._bestStats != null && (best == null || search._bestStats.compareTo(best._bestStats, threshold) < 0))
+			{
+				best = search;
+			}
+		}
+		
+		return new Ordering(best._bestList, best._bestStats);
+	}
+	
 	/**
 	 * The model for which ordering can be computed.
 	 */
@@ -526,6 +676,240 @@ public class VariableEliminator
 		}
 	}
 	
+	/*--------
+	 * Search
+	 */
+	
+	/**
+	 * State shared by all of the {@link Search} workers of a single call to
+	 * {@link VariableEliminator#generateInParallel}.
+	 */
+	private static final class SharedSearchState
+	{
+		private final int _nAttempts;
+		private final long _deadline;
+		private final Stats _threshold;
+		private final AtomicInteger _nextAttempt = new AtomicInteger();
+		
+		/**
+		 * The best statistics found so far by any worker.
+		 */
+		private final AtomicReference<Stats> _bestStats = new AtomicReference<Stats>();
+		
+		/**
+		 * Set when no more attempts should be started.
+		 */
+		private volatile boolean _done = false;
+		
+		private SharedSearchState(int nAttempts, long deadline, Stats threshold)
+		{
+			_nAttempts = nAttempts;
+			_deadline = deadline;
+			_threshold = threshold;
+		}
+		
+		/**
+		 * Returns the index of the next attempt to run or -1 if done.
+		 */
+		private int nextAttempt()
+		{
+			if (_done)
+			{
+				return -1;
+			}
+			
+			final int attempt = _nextAttempt.getAndIncrement();
+			if (attempt >= _nAttempts || attempt < 0 || (attempt > 0 && System.nanoTime() > _deadline))
+			{
+				_done = true;
+				return -1;
+			}
+			
+			return attempt;
+		}
+		
+		/**
+		 * Updates best statistics if {@code stats} are better.
+		 */
+		private void offer(Stats stats)
+		{
+			while (true)
+			{
+				final Stats best = _bestStats.get();
+				if (best != null && stats.compareTo(best, _threshold) >= 0)
+				{
+					break;
+				}
+				if (_bestStats.compareAndSet(best, stats))
+				{
+					break;
+				}
+			}
+			
+			if (stats.addedEdges() == 0 || stats.meetsThreshold(_threshold))
+			{
+				_done = true;
+			}
+		}
+	}
+	
+	/**
+	 * A single worker for {@link VariableEliminator#generateInParallel}, which runs attempts
+	 * until the {@link SharedSearchState} indicates it is done and keeps the best ordering it finds.
+	 */
+	private static final class Search implements Runnable
+	{
+		private final VariableEliminator _eliminator;
+		private final SharedSearchState _state;
+		private final boolean _deterministic;
+		private final CostFunction[] _costFunctions;
+		
+		/**
+		 * Cumulative distribution function for choosing cost function.
+		 */
+		private final double[] _functionCDF;
+		private final long[] _timePerFunction;
+		private long _totalTime = 0;
+		
+		private final AtomicBoolean _claimed = new AtomicBoolean();
+		
+		private ArrayList<VariableBase> _curList;
+		private ArrayList<VariableBase> _bestList;
+		private Stats _bestStats = null;
+		
+		private Search(VariableEliminator eliminator, SharedSearchState state, boolean deterministic,
+			CostFunction[] costFunctions)
+		{
+			_eliminator = eliminator;
+			_state = state;
+			_deterministic = deterministic;
+			_costFunctions = costFunctions;
+			_curList = new ArrayList<VariableBase>(eliminator._nVariables);
+			_bestList = new ArrayList<VariableBase>(eliminator._nVariables);
+
+			// Initially set to uniform weights.
+			final int nFunctions = costFunctions.length;
+			_functionCDF = new double[nFunctions];
+			final double increment = 1.0 / nFunctions;
+			double cumProb = increment;
+			for (int i = 0; i < nFunctions; ++i)
+			{
+				_functionCDF[i] = cumProb;
+				cumProb += increment;
+			}
+			_timePerFunction = new long[nFunctions];
+		}
+
+		/**
+		 * Claims the right to run this worker. Returns false if already claimed.
+		 */
+		private boolean claim()
+		{
+			return _claimed.compareAndSet(false, true);
+		}
+		
+		@Override
+		public void run()
+		{
+			if (!claim())
+			{
+				return;
+			}
+			
+			try
+			{
+				for (int attempt; (attempt = _state.nextAttempt()) >= 0; )
+				{
+					runAttempt(attempt);
+				}
+			}
+			catch (RuntimeException ex)
+			{
+				_state._done = true;
+				throw ex;
+			}
+		}
+		
+		private void runAttempt(int attempt)
+		{
+			final CostFunction[] costFunctions = _costFunctions;
+			final int nFunctions = costFunctions.length;
+			final SharedSearchState state = _state;
+			final Stats threshold = state._threshold;
+			
+			// Pick a cost function
+			int costIndex = 0;
+			if (nFunctions > 1)
+			{
+				if (_deterministic)
+				{
+					costIndex = attempt;
+				}
+				else
+				{
+					costIndex = Arrays.binarySearch(_functionCDF, _eliminator._rand.nextDouble());
+					if (costIndex < 0)
+					{
+						costIndex = -costIndex - 1;
+					}
+					costIndex = Math.min(costIndex, nFunctions - 1);
+				}
+			}
+			
+			CostFunction cost = costFunctions[costIndex];
+			
+			// Run variable elimination, abandoning the attempt once it cannot beat the best so far.
+			final ArrayList<VariableBase> curList = _curList;
+			curList.clear();
+			final long beforeNS = System.nanoTime();
+			OrderIterator iterator = _eliminator.orderIterator(cost);
+			final Stats curStats = iterator.getStats();
+			boolean abandoned = false;
+			while (iterator.hasNext())
+			{
+				curList.add(iterator.next());
+				final Stats bestStats = state._bestStats.get();
+				if (bestStats != null && curStats.compareTo(bestStats, threshold) >= 0)
+				{
+					abandoned = true;
+					break;
+				}
+			}
+			long elapsedNS = System.nanoTime() - beforeNS;
+			if (abandoned)
+			{
+				// Charge an abandoned attempt as if it had eliminated every variable at the same rate,
+				// so that functions that are often cut off early do not look cheaper than they are.
+				elapsedNS = (long)((double)elapsedNS * _eliminator._nVariables / curList.size());
+			}
+			_timePerFunction[costIndex] += elapsedNS;
+			_totalTime += elapsedNS;
+			
+			// Compare stats
+			if (!abandoned &&
+				(_bestStats == null || curStats.addedEdges() == 0 || curStats.compareTo(_bestStats, threshold) < 0))
+			{
+				_curList = _bestList;
+				_bestList = curList;
+				_bestStats = curStats;
+				state.offer(curStats);
+			}
+			
+			// Update functionCDF based on timings to favor cheaper cost function.
+			// TODO: give bonus weight to functions that improved the stats.
+			if (nFunctions > 1 && !_deterministic)
+			{
+				final long totalTime = _totalTime;
+				final double normalizer = (double)totalTime * (nFunctions - 1);
+				double cumProb = 0.0;
+				for (int i = 0; i < nFunctions; ++i)
+				{
+					_functionCDF[i] = cumProb += (totalTime - _timePerFunction[i]) / normalizer;
+				}
+			}
+		}
+	}
+	
 	/*----------------
 	 * OrderIterator
 	 */
@@ -602,7 +986,7 @@ public class VariableEliminator
 				cliqueCardinality *= neighbor.cardinality();
 			}
 			
-			_stats.addClique(var, cliqueCardinality);
+			_stats.addClique(var, cliqueCardinality, isConditioned);
 
 			// Add edges between remaining neighbors
 			for (VarLink link1 = var._neighborList._next; link1._var != null; link1 = link1._next)
@@ -720,6 +1104,7 @@ public class VariableEliminator
 		private int _factorsWithDuplicateVariables;
 		private int _maxClique;
 		private long _maxCliqueCardinality;
+		private long _totalCliqueCardinality;
 		private int _mergedFactors;
 		private int _variablesWithDuplicateEdges;
 
@@ -745,6 +1130,7 @@ public class VariableEliminator
 			_factorsWithDuplicateVariables = value;
 			_maxClique = value;
 			_maxCliqueCardinality = value;
+			_totalCliqueCardinality = value;
 			_mergedFactors = value;
 			_variablesWithDuplicateEdges = value;
 		}
@@ -758,6 +1144,7 @@ public class VariableEliminator
 			_factorsWithDuplicateVariables = that._factorsWithDuplicateVariables;
 			_maxClique = that._maxClique;
 			_maxCliqueCardinality = that._maxCliqueCardinality;
+			_totalCliqueCardinality = that._totalCliqueCardinality;
 			_mergedFactors = that._mergedFactors;
 			_variablesWithDuplicateEdges = that._variablesWithDuplicateEdges;
 		}
@@ -974,6 +1361,31 @@ public class VariableEliminator
 			return this;
 		}
 		
+		/**
+		 * Returns the sum of the cardinalities of the cliques induced by the execution of the algorithm,
+		 * not including those of conditioned variables.
+		 * This is an upper bound on the total number of entries in the factor tables of a junction tree
+		 * built from the ordering, and therefore provides an estimate of the memory it requires.
+		 * <p>
+		 * Note: this attribute is not used by {@link #compareTo(Stats, Stats)} or {@link #meetsThreshold(Stats)}.
+		 * <p>
+		 * @since 0.06
+		 */
+		public long totalCliqueCardinality()
+		{
+			return _totalCliqueCardinality;
+		}
+		
+		/**
+		 * Sets value of {@link #totalCliqueCardinality()} and returns this object.
+		 * @since 0.06
+		 */
+		public Stats totalCliqueCardinality(long cardinality)
+		{
+			_totalCliqueCardinality = cardinality;
+			return this;
+		}
+		
 		/**
 		 * The number of factors that would need to be merged into other factors.
 		 */
@@ -1020,11 +1432,17 @@ public class VariableEliminator
 			_addedEdgeWeight += weight;
 		}
 		
-		private void addClique(Var var, long cardinality)
+		private void addClique(Var var, long cardinality, boolean isConditioned)
 		{
 			final int size = 1 + var.nNeighbors();
 			_maxClique = Math.max(_maxClique, size);
 			_maxCliqueCardinality = Math.max(_maxCliqueCardinality, cardinality);
+			if (!isConditioned)
+			{
+				// Conditioned variables are removed from their factors rather than joined into a clique.
+				final long total = _totalCliqueCardinality + cardinality;
+				_totalCliqueCardinality = total < 0 ? Long.MAX_VALUE : total;
+			}
 			
 			final VariableBase variable = var._variable;
 			final int nFactors = variable.getSiblingCount();
@@ -1103,6 +1521,11 @@ public class VariableEliminator
 		
 		final boolean _isConditioned;
 		
+		/**
+		 * Temporary mark used while building adjacency list.
+		 */
+		private boolean _marked = false;
+		
 		/*--------------
 		 * Construction
 		 */
@@ -1444,6 +1867,9 @@ public class VariableEliminator
 	
 	private List<Var> buildAdjacencyList(Stats stats)
 	{
+		// NOTE: this does not use the marks on the model's nodes so that multiple
+		// eliminators can run on the same model concurrently.
+		
 		final List<Var> list = new LinkedList<Var>();
 		final VariableList variables = _model.getVariables();
 		final Map<VariableBase,Var> map = new LinkedHashMap<VariableBase,Var>(variables.size());
@@ -1457,17 +1883,11 @@ public class VariableEliminator
 			Var var = new Var(variable, generateCostIncrement(variable), isConditioned(variable));
 			map.put(variable, var);
 			list.add(var);
-			variable.clearMarked();
-		}
-
-		final FactorList factors = _model.getFactors();
-		for (Factor factor : factors)
-		{
-			factor.clearMarked();
 		}
 
 		Set<Factor> factorsWithDuplicateVars = new HashSet<Factor>();
 		Set<VariableBase> variablesWithDuplicateEdges = new HashSet<VariableBase>();
+		Set<Factor> visitedFactors = new HashSet<Factor>();
 		
 		for (Var var : map.values())
 		{
@@ -1479,12 +1899,11 @@ public class VariableEliminator
 			for (int fi = 0, nFactors = variable.getSiblingCount(); fi < nFactors; ++fi)
 			{
 				final Factor factor = variable.getSibling(fi);
-				if (factor.isMarked())
+				if (!visitedFactors.add(factor))
 				{
 					factorsWithDuplicateVars.add(factor);
 					continue;
 				}
-				factor.setMarked();
 
 				for (int vi = 0, nVariables = factor.getSiblingCount(); vi < nVariables; ++vi)
 				{
@@ -1496,28 +1915,24 @@ public class VariableEliminator
 					if (neighborVar._isConditioned)
 						continue;
 
-					if (neighborVariable.isMarked())
+					if (neighborVar._marked)
 					{
 						variablesWithDuplicateEdges.add(variable);
 					}
 					else
 					{
-						neighborVariable.setMarked();
-						var.addNeighbor(map.get(neighborVariable));
+						neighborVar._marked = true;
+						var.addNeighbor(neighborVar);
 					}
 				}
 			}
 
 			// Reset marks for visited factors and variables.
-			for (int fi = 0, nFactors = variable.getSiblingCount(); fi < nFactors; ++fi)
-			{
-				final Factor factor = variable.getSibling(fi);
-				factor.clearMarked();
-			}
+			visitedFactors.clear();
 
 			for (VarLink link = var._neighborList._next; link._var != null; link = link._next)
 			{
-				link._var._variable.clearMarked();
+				link._var._marked = false;
 			}
 		}
 
@@ -1550,6 +1965,27 @@ public class VariableEliminator
 		}
 	}
 	
+	private static void waitFor(Future<?> future)
+	{
+		try
+		{
+			future.get();
+		}
+		catch (ExecutionException ex)
+		{
+			final Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			throw new DimpleException(ex);
+		}
+		catch (InterruptedException ex)
+		{
+			throw new DimpleException(ex);
+		}
+	}
+	
 	private boolean isConditioned(VariableBase variable)
 	{
 		return _useConditioning && variable.hasFixedValue();
@@ -17,7 +17,7 @@
 package com.analog.lyric.dimple.schedulers;
 
 import com.analog.lyric.dimple.model.core.FactorGraph;
-import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.model.core.FactorGraphTopology;
 import com.analog.lyric.dimple.schedulers.schedule.FixedSchedule;
 import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
 import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
@@ -45,8 +45,9 @@ public class GibbsSequentialScanScheduler implements IScheduler
 		FixedSchedule schedule = new FixedSchedule();
 
 		// Update all owned variables
-		for (VariableBase v : g.getVariablesFlat())
-			schedule.add(new NodeScheduleEntry(v));
+		final FactorGraphTopology topology = g.getFlatTopology();
+		for (int i = 0, n = topology.getVariableCount(); i < n; ++i)
+			schedule.add(new NodeScheduleEntry(topology.getVariable(i)));
 
 		return schedule;
 	}
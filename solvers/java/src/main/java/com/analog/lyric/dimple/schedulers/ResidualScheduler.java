@@ -0,0 +1,89 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.schedulers;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
+import com.analog.lyric.dimple.schedulers.schedule.ResidualSchedule;
+
+/**
+ * Creates a {@link ResidualSchedule}, which dynamically updates the edge with the largest
+ * pending change in its input messages and stops early once all changes are below a
+ * convergence threshold.
+ * <p>
+ * For example:
+ * <pre>
+ *     ResidualScheduler scheduler = new ResidualScheduler();
+ *     scheduler.setConvergenceThreshold(1e-4);
+ *     fg.setScheduler(scheduler);
+ *     fg.getSolver().setNumIterations(100);
+ *     fg.solve();
+ * </pre>
+ * Each solver iteration performs at most as many edge updates as there are directed edges
+ * in the graph, so the number of iterations bounds the total work.
+ * <p>
+ * WARNING: This scheduler DOES NOT respect any existing sub-graph scheduler associations.
+ * <p>
+ * @since 0.06
+ */
+public class ResidualScheduler implements IScheduler
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Default value for {@link #getConvergenceThreshold()}.
+	 */
+	public static final double DEFAULT_CONVERGENCE_THRESHOLD = 1e-6;
+
+	private double _convergenceThreshold = DEFAULT_CONVERGENCE_THRESHOLD;
+
+	/*--------------------
+	 * IScheduler methods
+	 */
+
+	@Override
+	public ISchedule createSchedule(FactorGraph g)
+	{
+		return new ResidualSchedule(g, _convergenceThreshold);
+	}
+
+	/*---------------------------
+	 * ResidualScheduler methods
+	 */
+
+	/**
+	 * Schedules created by this scheduler will stop producing updates once the change in
+	 * every edge's inputs is less than this value.
+	 * <p>
+	 * Default is {@link #DEFAULT_CONVERGENCE_THRESHOLD}.
+	 */
+	public double getConvergenceThreshold()
+	{
+		return _convergenceThreshold;
+	}
+
+	/**
+	 * Sets value of {@link #getConvergenceThreshold()}. This only affects schedules
+	 * created after this is called.
+	 */
+	public void setConvergenceThreshold(double threshold)
+	{
+		_convergenceThreshold = threshold;
+	}
+}
@@ -20,8 +20,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.FactorGraphTopology;
 import com.analog.lyric.dimple.model.variables.VariableBase;
-import com.analog.lyric.dimple.model.variables.VariableList;
 import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
 import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
 import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
@@ -43,7 +43,7 @@ import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
  */
 public class GibbsRandomScanSchedule extends ScheduleBase
 {
-	protected VariableList _variables;
+	protected FactorGraphTopology _topology;
 	protected int _numVariables;
 	
 	public GibbsRandomScanSchedule(FactorGraph factorGraph)
@@ -61,8 +61,8 @@ public class GibbsRandomScanSchedule extends ScheduleBase
 
 	protected void initialize()
 	{
-		_variables = _factorGraph.getVariables();
-		_numVariables = _variables.size();
+		_topology = _factorGraph.getFlatTopology();
+		_numVariables = _topology.getVariableCount();
 	}
 
 	@Override
@@ -71,10 +71,10 @@ public class GibbsRandomScanSchedule extends ScheduleBase
 		ArrayList<IScheduleEntry> updateList = new ArrayList<IScheduleEntry>();
 		
 		// Note: the GibbsSolverRandomGenerator is used here so that if a fixed seed is set in the solver, then the schedule will also be repeatable
-		int variableIndex = SolverRandomGenerator.rand.nextInt(_numVariables);
+		int variableIndex = SolverRandomGenerator.rand().nextInt(_numVariables);
 		
 		// Create a single schedule entry that includes all of the selected variable
-		VariableBase v = ((ArrayList<VariableBase>)_variables.values()).get(variableIndex);
+		VariableBase v = _topology.getVariable(variableIndex);
 		updateList.add(new NodeScheduleEntry(v));
 		
 		return updateList.iterator();
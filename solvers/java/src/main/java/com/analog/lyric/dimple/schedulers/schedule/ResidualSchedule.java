@@ -0,0 +1,358 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.schedulers.schedule;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.analog.lyric.collect.BinaryHeap;
+import com.analog.lyric.collect.IHeap.IEntry;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.FactorGraphTopology;
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.schedulers.ResidualScheduler;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.EdgeScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+
+/**
+ * Dynamic schedule that always updates the edge with the largest pending change in its inputs
+ * (residual belief propagation).
+ * <p>
+ * Every directed edge of the graph has a residual, which is an estimate of how much its outgoing message
+ * would change if it were updated now. All residuals start out infinite, so that every edge is updated at
+ * least once. When an edge's message is recomputed, its residual is reset to zero, and the maximum absolute
+ * change in the message is added to the residuals of the edges leaving the node that receives it, other than
+ * the edge leading straight back. Edges are kept in a {@link BinaryHeap} keyed on residual.
+ * <p>
+ * Each iteration over the schedule produces at most as many edge updates as there are directed edges in
+ * the graph, so an iteration costs about the same as one iteration of a flooding schedule. Iteration stops
+ * early once the largest residual falls below the {@linkplain #getConvergenceThreshold() convergence threshold},
+ * after which further iterations produce no updates until the graph is {@linkplain #reset() initialized}
+ * again.
+ * <p>
+ * Message changes can only be measured for solvers whose messages are {@code double[]} arrays (e.g.
+ * sum-product and min-sum). For other message types every update is treated as a change of unknown size, so
+ * the schedule will never converge early.
+ * <p>
+ * WARNING: This schedule DOES NOT respect any existing sub-graph scheduler associations and it is not
+ * supported by the multithreading solver modes.
+ * <p>
+ * @see ResidualScheduler
+ * @since 0.06
+ */
+public class ResidualSchedule extends ScheduleBase
+{
+	/*-------
+	 * State
+	 */
+
+	private final double _convergenceThreshold;
+	private BinaryHeap<ResidualEdgeEntry> _heap = new BinaryHeap<ResidualEdgeEntry>();
+	private ResidualEdgeEntry[][] _edges = new ResidualEdgeEntry[0][];
+	private long _updateCount = 0;
+
+	/**
+	 * Holds copy of message before it is updated.
+	 */
+	private double[] _savedMsg = new double[0];
+
+	/*--------------
+	 * Construction
+	 */
+
+	public ResidualSchedule(FactorGraph factorGraph, double convergenceThreshold)
+	{
+		_factorGraph = factorGraph;
+		_convergenceThreshold = convergenceThreshold;
+		createEdges();
+	}
+
+	/*------------------
+	 * ISchedule methods
+	 */
+
+	@Override
+	public void attach(FactorGraph factorGraph)
+	{
+		super.attach(factorGraph);
+		createEdges();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Resets the residuals of all edges to infinity.
+	 */
+	@Override
+	public void reset()
+	{
+		final BinaryHeap<ResidualEdgeEntry> heap = _heap;
+		heap.deferOrderingForBulkChange(heap.size());
+		for (ResidualEdgeEntry[] nodeEdges : _edges)
+		{
+			for (ResidualEdgeEntry edge : nodeEdges)
+			{
+				edge._residual = Double.POSITIVE_INFINITY;
+				heap.changePriority(edge._heapEntry, Double.NEGATIVE_INFINITY);
+			}
+		}
+	}
+
+	@Override
+	public Iterator<IScheduleEntry> iterator()
+	{
+		return new ResidualIterator(_heap.size());
+	}
+
+	/*--------------------------
+	 * ResidualSchedule methods
+	 */
+
+	/**
+	 * Iteration over the schedule will stop early once all edges have residuals less than this value.
+	 */
+	public double getConvergenceThreshold()
+	{
+		return _convergenceThreshold;
+	}
+
+	/**
+	 * The largest residual of any edge in the graph. This will be infinite until every edge has been
+	 * updated at least once.
+	 */
+	public double getMaxResidual()
+	{
+		final IEntry<ResidualEdgeEntry> entry = _heap.peekEntry();
+		return entry != null ? entry.getElement()._residual : 0.0;
+	}
+
+	/**
+	 * True if the {@linkplain #getMaxResidual() largest residual} is less than the
+	 * {@linkplain #getConvergenceThreshold() convergence threshold}.
+	 */
+	public boolean hasConverged()
+	{
+		return getMaxResidual() < _convergenceThreshold;
+	}
+
+	/**
+	 * The total number of edge updates performed by this schedule.
+	 */
+	public long getUpdateCount()
+	{
+		return _updateCount;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void createEdges()
+	{
+		final FactorGraphTopology topology = _factorGraph.getFlatTopology();
+		final int nVariables = topology.getVariableCount();
+		final int nFactors = topology.getFactorCount();
+
+		// Variables followed by factors
+		final ResidualEdgeEntry[][] edges = new ResidualEdgeEntry[nVariables + nFactors][];
+		final BinaryHeap<ResidualEdgeEntry> heap = new BinaryHeap<ResidualEdgeEntry>();
+
+		for (int i = 0, n = edges.length; i < n; ++i)
+		{
+			final INode node = i < nVariables ? topology.getVariable(i) : topology.getFactor(i - nVariables);
+			final int nSiblings = node.getSiblingCount();
+			final ResidualEdgeEntry[] nodeEdges = edges[i] = new ResidualEdgeEntry[nSiblings];
+			for (int port = 0; port < nSiblings; ++port)
+			{
+				final ResidualEdgeEntry edge = nodeEdges[port] = new ResidualEdgeEntry(node, port);
+				edge._heapEntry = heap.offer(edge, Double.NEGATIVE_INFINITY);
+			}
+		}
+
+		// Link each edge to the edges leaving the node at its other end.
+		linkEdges(edges, 0, nVariables, nVariables,
+			topology.getVariableEdgeOffsets(), topology.getVariableEdgeSiblings(), topology.getVariableEdgePorts());
+		linkEdges(edges, nVariables, nFactors, 0,
+			topology.getFactorEdgeOffsets(), topology.getFactorEdgeSiblings(), topology.getFactorEdgePorts());
+
+		_edges = edges;
+		_heap = heap;
+	}
+
+	/**
+	 * Links edges of {@code nNodes} nodes starting at {@code start} in {@code edges} to the edges of
+	 * their siblings, whose indexes in the topology are offset by {@code siblingStart}.
+	 */
+	private static void linkEdges(ResidualEdgeEntry[][] edges, int start, int nNodes, int siblingStart,
+		int[] edgeOffsets, int[] edgeSiblings, int[] edgePorts)
+	{
+		for (int i = 0; i < nNodes; ++i)
+		{
+			final ResidualEdgeEntry[] nodeEdges = edges[start + i];
+			for (int port = 0, edge = edgeOffsets[i], end = nodeEdges.length; port < end; ++port, ++edge)
+			{
+				final int sibling = edgeSiblings[edge];
+				if (sibling >= 0)
+				{
+					final ResidualEdgeEntry entry = nodeEdges[port];
+					entry._siblingEdges = edges[siblingStart + sibling];
+					entry._siblingPort = edgePorts[edge];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum absolute difference between the saved message and {@code msg}.
+	 */
+	private double messageChange(Object msg, int savedLength)
+	{
+		if (msg instanceof double[])
+		{
+			final double[] values = (double[])msg;
+			if (values.length == savedLength)
+			{
+				final double[] saved = _savedMsg;
+				double maxChange = 0.0;
+				for (int i = 0; i < savedLength; ++i)
+				{
+					final double change = Math.abs(values[i] - saved[i]);
+					if (change > maxChange)
+						maxChange = change;
+				}
+				return maxChange;
+			}
+		}
+
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Saves a copy of {@code msg} if it is a {@code double[]} and returns its length, otherwise returns -1.
+	 */
+	private int saveMessage(Object msg)
+	{
+		if (msg instanceof double[])
+		{
+			final double[] values = (double[])msg;
+			final int length = values.length;
+			if (_savedMsg.length < length)
+				_savedMsg = new double[length];
+			System.arraycopy(values, 0, _savedMsg, 0, length);
+			return length;
+		}
+
+		return -1;
+	}
+
+	/*---------------
+	 * Inner classes
+	 */
+
+	private final class ResidualEdgeEntry extends EdgeScheduleEntry
+	{
+		private IEntry<ResidualEdgeEntry> _heapEntry;
+		private double _residual = Double.POSITIVE_INFINITY;
+
+		/**
+		 * Edges of the node at the other end of this edge, or null if that node is not
+		 * part of the schedule.
+		 */
+		private ResidualEdgeEntry[] _siblingEdges = null;
+
+		/**
+		 * Index of edge in {@link #_siblingEdges} leading back to this edge's node.
+		 */
+		private int _siblingPort = -1;
+
+		private ResidualEdgeEntry(INode node, int portNum)
+		{
+			super(node, portNum);
+		}
+
+		@Override
+		public void update()
+		{
+			final INode node = getNode();
+			final int port = getPortNum();
+
+			final int savedLength = saveMessage(node.getSolver().getOutputMsg(port));
+			super.update();
+			++_updateCount;
+
+			final BinaryHeap<ResidualEdgeEntry> heap = _heap;
+			_residual = 0.0;
+			heap.changePriority(_heapEntry, 0.0);
+
+			final ResidualEdgeEntry[] siblingEdges = _siblingEdges;
+			if (siblingEdges != null)
+			{
+				final double change = messageChange(node.getSolver().getOutputMsg(port), savedLength);
+				if (change > 0)
+				{
+					for (int i = 0, n = siblingEdges.length; i < n; ++i)
+					{
+						if (i != _siblingPort)
+						{
+							final ResidualEdgeEntry edge = siblingEdges[i];
+							edge._residual += change;
+							heap.changePriority(edge._heapEntry, -edge._residual);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Produces edges in order of decreasing residual until the update limit is reached or
+	 * the schedule has converged.
+	 */
+	private final class ResidualIterator implements Iterator<IScheduleEntry>
+	{
+		private int _remaining;
+
+		private ResidualIterator(int maxUpdates)
+		{
+			_remaining = maxUpdates;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return _remaining > 0 && !hasConverged();
+		}
+
+		@Override
+		public IScheduleEntry next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+
+			--_remaining;
+			return _heap.peek();
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("remove");
+		}
+	}
+}
@@ -35,6 +35,16 @@ public abstract class ScheduleBase implements ISchedule
 		_factorGraph = factorGraph;
 	}
 	
+	/**
+	 * This method is called when the FactorGraph to which the schedule is attached is initialized.
+	 * Dynamic schedules may override this to reset any state that depends on the solver's messages.
+	 * Does nothing by default.
+	 * @since 0.06
+	 */
+	public void reset()
+	{
+	}
+	
 	@Override
 	public FactorGraph getFactorGraph()
 	{
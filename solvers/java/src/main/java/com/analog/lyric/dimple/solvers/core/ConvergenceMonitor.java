@@ -0,0 +1,207 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import java.util.ArrayList;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+
+/**
+ * Tracks the change in variable beliefs from one solver iteration to the next, so that
+ * iterative solvers can stop once their beliefs have converged.
+ * <p>
+ * The residual of an iteration is the largest absolute change in any element of any
+ * variable's belief. Only beliefs represented as {@code double[]} can be compared; if any
+ * variable has a belief of some other type, the residual is always infinite.
+ * <p>
+ * Monitoring is disabled when the {@linkplain #getTolerance() tolerance} is zero, in which
+ * case beliefs are not computed but the number of iterations is still counted.
+ * <p>
+ * @see SFactorGraphBase#setConvergenceTolerance(double)
+ * @since 0.06
+ */
+@NotThreadSafe
+public class ConvergenceMonitor
+{
+	/*-------
+	 * State
+	 */
+
+	private double _tolerance = 0.0;
+	private int _iterationsUsed = 0;
+	private double _residual = Double.POSITIVE_INFINITY;
+
+	private final ArrayList<ISolverVariable> _variables = new ArrayList<ISolverVariable>();
+	private double[][] _beliefs = new double[0][];
+
+	/*--------------------------
+	 * ConvergenceMonitor methods
+	 */
+
+	/**
+	 * Iteration stops once the residual is less than this value. Zero disables monitoring.
+	 * <p>
+	 * Default is zero.
+	 */
+	public double getTolerance()
+	{
+		return _tolerance;
+	}
+
+	/**
+	 * Sets {@link #getTolerance()}, which must not be negative.
+	 */
+	public void setTolerance(double tolerance)
+	{
+		if (tolerance < 0 || Double.isNaN(tolerance))
+		{
+			throw new IllegalArgumentException(String.format("Convergence tolerance %g must not be negative", tolerance));
+		}
+		_tolerance = tolerance;
+	}
+
+	/**
+	 * True if {@link #getTolerance()} is positive.
+	 */
+	public boolean isEnabled()
+	{
+		return _tolerance > 0;
+	}
+
+	/**
+	 * Number of iterations performed since the last call to {@link #start(FactorGraph)}.
+	 */
+	public int getIterationsUsed()
+	{
+		return _iterationsUsed;
+	}
+
+	/**
+	 * Residual computed after the most recent iteration. This is infinite if no iterations have been
+	 * performed since the last call to {@link #start(FactorGraph)} or if monitoring is not
+	 * {@linkplain #isEnabled() enabled}.
+	 */
+	public double getResidual()
+	{
+		return _residual;
+	}
+
+	/**
+	 * True if the most recent {@linkplain #getResidual() residual} is less than the
+	 * {@linkplain #getTolerance() tolerance}.
+	 */
+	public boolean hasConverged()
+	{
+		return _residual < _tolerance;
+	}
+
+	/**
+	 * Prepares to monitor a new sequence of iterations on the given graph, recording the current
+	 * variable beliefs if monitoring is {@linkplain #isEnabled() enabled}.
+	 */
+	public void start(FactorGraph graph)
+	{
+		_iterationsUsed = 0;
+		_residual = Double.POSITIVE_INFINITY;
+		_variables.clear();
+
+		if (isEnabled())
+		{
+			for (VariableBase variable : graph.getVariables())
+			{
+				_variables.add(variable.getSolver());
+			}
+
+			if (_beliefs.length != _variables.size())
+			{
+				_beliefs = new double[_variables.size()][];
+			}
+
+			updateBeliefs();
+		}
+	}
+
+	/**
+	 * Records the completion of an iteration and computes its residual if monitoring is
+	 * {@linkplain #isEnabled() enabled}.
+	 *
+	 * @return true if the solver has {@linkplain #hasConverged() converged} and should stop iterating.
+	 */
+	public boolean iterationCompleted()
+	{
+		++_iterationsUsed;
+
+		if (isEnabled())
+		{
+			_residual = updateBeliefs();
+			return hasConverged();
+		}
+
+		return false;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Replaces saved beliefs with current beliefs and returns the largest change.
+	 */
+	private double updateBeliefs()
+	{
+		final double[][] beliefs = _beliefs;
+		double residual = 0.0;
+
+		for (int i = 0, n = _variables.size(); i < n; ++i)
+		{
+			final Object belief = _variables.get(i).getBelief();
+			if (belief instanceof double[])
+			{
+				final double[] values = (double[])belief;
+				final int size = values.length;
+				double[] saved = beliefs[i];
+				if (saved == null || saved.length != size)
+				{
+					residual = Double.POSITIVE_INFINITY;
+					saved = beliefs[i] = new double[size];
+				}
+				else
+				{
+					for (int j = 0; j < size; ++j)
+					{
+						final double change = Math.abs(values[j] - saved[j]);
+						if (change > residual)
+							residual = change;
+						else if (Double.isNaN(change))
+							residual = Double.POSITIVE_INFINITY;
+					}
+				}
+				System.arraycopy(values, 0, saved, 0, size);
+			}
+			else
+			{
+				residual = Double.POSITIVE_INFINITY;
+			}
+		}
+
+		return residual;
+	}
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import java.util.ArrayList;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+
+/**
+ * Holds a copy of all of the discrete edge messages of a solver graph in a single
+ * array, so that the message state can be saved and restored in bulk.
+ * <p>
+ * If the graph's messages have been packed into a {@link MessageStore}, the contents of the
+ * store are saved and restored with a single array copy. These are followed by the messages of
+ * any edges of {@link SDiscreteVariableDoubleArray} variables that were not packed: for each
+ * port, the input message followed by the output message. Messages of other kinds of variables
+ * are not included.
+ * <p>
+ * The layout is computed when the snapshot is {@linkplain #save() saved}, so a snapshot can only be
+ * {@linkplain #restore() restored} to the graph it was saved from, and only if the structure of
+ * the graph and the packing of its messages have not changed since then.
+ * <p>
+ * @see SFactorGraphBase#saveMessages()
+ * @since 0.06
+ */
+@NotThreadSafe
+public final class MessageSnapshot
+{
+	/*-------
+	 * State
+	 */
+
+	private final SFactorGraphBase _solverGraph;
+
+	/**
+	 * The variables whose messages are held in {@link #_values} in layout order.
+	 */
+	private SDiscreteVariableDoubleArray[] _variables = new SDiscreteVariableDoubleArray[0];
+
+	/**
+	 * The {@link FactorGraph#getTopologyVersionId()} of the graph when the layout was computed,
+	 * or -1 if never saved.
+	 */
+	private long _versionId = -1;
+
+	/**
+	 * The graph's message store when the snapshot was saved, if any. Its contents are held
+	 * at the start of {@link #_values}.
+	 */
+	private MessageStore _store = null;
+
+	private double[] _values = new double[0];
+
+	/*--------------
+	 * Construction
+	 */
+
+	public MessageSnapshot(SFactorGraphBase solverGraph)
+	{
+		_solverGraph = solverGraph;
+	}
+
+	/*---------------------
+	 * MessageSnapshot methods
+	 */
+
+	public SFactorGraphBase getSolverGraph()
+	{
+		return _solverGraph;
+	}
+
+	/**
+	 * The total number of message values held in the snapshot.
+	 */
+	public int size()
+	{
+		return _values.length;
+	}
+
+	/**
+	 * The saved message values. Do not modify.
+	 */
+	public double[] getValues()
+	{
+		return _values;
+	}
+
+	/**
+	 * Copies the current discrete edge messages of the graph into the snapshot, replacing
+	 * any previously saved values.
+	 */
+	public void save()
+	{
+		final FactorGraph fg = _solverGraph.getModelObject();
+		final MessageStore store = _solverGraph.getMessageStore();
+		final double[] buffer = store != null ? store.getBuffer() : null;
+
+		final ArrayList<SDiscreteVariableDoubleArray> variables = new ArrayList<SDiscreteVariableDoubleArray>();
+		for (VariableBase var : fg.getVariablesFlat())
+		{
+			final ISolverVariable svar = var.getSolver();
+			if (svar instanceof SDiscreteVariableDoubleArray)
+			{
+				variables.add((SDiscreteVariableDoubleArray)svar);
+			}
+		}
+
+		_variables = variables.toArray(new SDiscreteVariableDoubleArray[variables.size()]);
+		_versionId = fg.getTopologyVersionId();
+		_store = store;
+
+		final int storeSize = store != null ? store.size() : 0;
+		final int size = storeSize + unpackedSize(buffer);
+		if (_values.length != size)
+		{
+			_values = new double[size];
+		}
+
+		final double[] values = _values;
+		if (store != null)
+		{
+			System.arraycopy(buffer, 0, values, 0, storeSize);
+		}
+		int offset = storeSize;
+		for (SDiscreteVariableDoubleArray dvar : _variables)
+		{
+			final int length = dvar.getModelObject().getDomain().size();
+			for (int port = 0, end = dvar._inputMessages.length; port < end; ++port)
+			{
+				if (dvar._inputMessages[port] != buffer)
+				{
+					System.arraycopy(dvar._inputMessages[port], dvar._inputMsgOffsets[port], values, offset, length);
+					offset += length;
+					System.arraycopy(dvar._outputMessages[port], dvar._outputMsgOffsets[port], values, offset, length);
+					offset += length;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the messages saved by the last call to {@link #save()} back into the graph.
+	 *
+	 * @throws DimpleException if the snapshot has not been saved or the graph has changed since then.
+	 */
+	public void restore()
+	{
+		final FactorGraph fg = _solverGraph.getModelObject();
+		if (_versionId != fg.getTopologyVersionId())
+		{
+			throw new DimpleException(_versionId < 0 ? "Messages have not been saved" :
+				"Cannot restore messages because graph has changed since they were saved");
+		}
+
+		final MessageStore store = _store;
+		final double[] buffer = store != null ? store.getBuffer() : null;
+		final int storeSize = store != null ? store.size() : 0;
+		if (store != _solverGraph.getMessageStore() || storeSize + unpackedSize(buffer) != _values.length)
+		{
+			throw new DimpleException("Cannot restore messages because graph has changed since they were saved");
+		}
+
+		final double[] values = _values;
+		if (store != null)
+		{
+			System.arraycopy(values, 0, buffer, 0, storeSize);
+		}
+		int offset = storeSize;
+		for (SDiscreteVariableDoubleArray dvar : _variables)
+		{
+			final int length = dvar.getModelObject().getDomain().size();
+			for (int port = 0, end = dvar._inputMessages.length; port < end; ++port)
+			{
+				if (dvar._inputMessages[port] != buffer)
+				{
+					System.arraycopy(values, offset, dvar._inputMessages[port], dvar._inputMsgOffsets[port], length);
+					offset += length;
+					System.arraycopy(values, offset, dvar._outputMessages[port], dvar._outputMsgOffsets[port], length);
+					offset += length;
+				}
+			}
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * The number of message values of {@link #_variables} that are not held in {@code buffer}.
+	 */
+	private int unpackedSize(double[] buffer)
+	{
+		int size = 0;
+		for (SDiscreteVariableDoubleArray dvar : _variables)
+		{
+			final int length = dvar.getModelObject().getDomain().size();
+			for (int port = 0, end = dvar._inputMessages.length; port < end; ++port)
+			{
+				if (dvar._inputMessages[port] != buffer)
+				{
+					size += 2 * length;
+				}
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Holds the discrete edge messages of a solver graph packed together in a single array.
+ * <p>
+ * Each {@linkplain #pack packed} edge between a {@link SDiscreteVariableDoubleArray} and a
+ * {@link STableFactorDoubleArray} occupies a contiguous block of the {@linkplain #getBuffer() buffer}:
+ * the variable's input message followed by its output message. Both solver nodes then refer to the
+ * buffer itself in place of their per-port message arrays, and locate the messages using the offsets
+ * returned by {@link SDiscreteVariableDoubleArray#getInputMsgOffset(int)},
+ * {@link STableFactorDoubleArray#getInPortMsgOffsets()} and so on. Edges that were not packed keep their
+ * own arrays at offset zero, so solver code that supports packing must always index messages using the
+ * offsets.
+ * <p>
+ * The capacity of the store is fixed when it is constructed, so that the buffer never has to be
+ * reallocated after solver nodes refer to it.
+ * <p>
+ * @see MessageSnapshot
+ * @since 0.06
+ */
+@NotThreadSafe
+public final class MessageStore
+{
+	/*-------
+	 * State
+	 */
+
+	private final double[] _buffer;
+	private int _size = 0;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs an empty store with room for {@code capacity} message values.
+	 */
+	public MessageStore(int capacity)
+	{
+		_buffer = new double[capacity];
+	}
+
+	/*----------------------
+	 * MessageStore methods
+	 */
+
+	/**
+	 * The array holding the packed messages. Values beyond {@link #size()} are unused.
+	 */
+	public double[] getBuffer()
+	{
+		return _buffer;
+	}
+
+	/**
+	 * The maximum number of message values that can be packed into the store.
+	 */
+	public int capacity()
+	{
+		return _buffer.length;
+	}
+
+	/**
+	 * The number of message values that have been packed into the store.
+	 */
+	public int size()
+	{
+		return _size;
+	}
+
+	/**
+	 * Copies the messages of the edge connecting port {@code varPort} of {@code variable} and port
+	 * {@code factorPort} of {@code factor} into the store and makes both nodes refer to them there.
+	 * <p>
+	 * @return the offset of the edge's messages in the {@linkplain #getBuffer() buffer}.
+	 * @throws DimpleException if the nodes do not share the edge's messages or if the store does not have
+	 * room for them.
+	 */
+	public int pack(SDiscreteVariableDoubleArray variable, int varPort, STableFactorDoubleArray factor, int factorPort)
+	{
+		checkEdge(variable, varPort, factor, factorPort);
+
+		final int length = variable.getModelObject().getDomain().size();
+		final int offset = _size;
+		if (offset + 2 * length > _buffer.length)
+		{
+			throw new DimpleException("Message store does not have room for %d more values", 2 * length);
+		}
+		_size += 2 * length;
+
+		final double[] buffer = _buffer;
+		System.arraycopy(variable._inputMessages[varPort], variable._inputMsgOffsets[varPort], buffer, offset, length);
+		System.arraycopy(variable._outputMessages[varPort], variable._outputMsgOffsets[varPort], buffer, offset + length, length);
+		setEdgeMessages(variable, varPort, factor, factorPort, buffer, offset, buffer, offset + length);
+
+		return offset;
+	}
+
+	/**
+	 * Gives the edge connecting port {@code varPort} of {@code variable} and port {@code factorPort} of
+	 * {@code factor} its own message arrays again, copying the current messages from wherever they are held.
+	 * <p>
+	 * @throws DimpleException if the nodes do not share the edge's messages.
+	 */
+	public static void unpack(SDiscreteVariableDoubleArray variable, int varPort, STableFactorDoubleArray factor, int factorPort)
+	{
+		checkEdge(variable, varPort, factor, factorPort);
+
+		final int length = variable.getModelObject().getDomain().size();
+		final double[] input = new double[length], output = new double[length];
+		System.arraycopy(variable._inputMessages[varPort], variable._inputMsgOffsets[varPort], input, 0, length);
+		System.arraycopy(variable._outputMessages[varPort], variable._outputMsgOffsets[varPort], output, 0, length);
+		setEdgeMessages(variable, varPort, factor, factorPort, input, 0, output, 0);
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private static void checkEdge(SDiscreteVariableDoubleArray variable, int varPort, STableFactorDoubleArray factor, int factorPort)
+	{
+		if (variable._inputMessages[varPort] != factor._outputMsgs[factorPort] ||
+			variable._inputMsgOffsets[varPort] != factor._outputMsgOffsets[factorPort] ||
+			variable._outputMessages[varPort] != factor._inputMsgs[factorPort] ||
+			variable._outputMsgOffsets[varPort] != factor._inputMsgOffsets[factorPort])
+		{
+			throw new DimpleException("Port %d of %s and port %d of %s do not share their messages",
+				varPort, variable.getModelObject().getLabel(), factorPort, factor.getFactor().getLabel());
+		}
+	}
+
+	private static void setEdgeMessages(SDiscreteVariableDoubleArray variable, int varPort,
+		STableFactorDoubleArray factor, int factorPort,
+		double[] input, int inputOffset, double[] output, int outputOffset)
+	{
+		variable._inputMessages[varPort] = input;
+		variable._inputMsgOffsets[varPort] = inputOffset;
+		variable._outputMessages[varPort] = output;
+		variable._outputMsgOffsets[varPort] = outputOffset;
+		factor._outputMsgs[factorPort] = input;
+		factor._outputMsgOffsets[factorPort] = inputOffset;
+		factor._inputMsgs[factorPort] = output;
+		factor._inputMsgOffsets[factorPort] = outputOffset;
+	}
+}
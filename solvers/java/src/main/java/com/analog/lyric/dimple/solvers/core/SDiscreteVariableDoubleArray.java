@@ -32,6 +32,14 @@ public abstract class SDiscreteVariableDoubleArray extends SDiscreteVariableBase
 	protected double [][] _inputMessages = new double[0][];
 	protected double [][] _outputMessages = new double[0][];
 	
+	/**
+	 * Index of the first element of each port's message in the corresponding array in
+	 * {@link #_inputMessages} and {@link #_outputMessages}. These are zero unless the messages
+	 * have been packed into a {@link MessageStore}, in which case the arrays are the store's buffer.
+	 */
+	protected int [] _inputMsgOffsets = new int[0];
+	protected int [] _outputMsgOffsets = new int[0];
+	
 	public SDiscreteVariableDoubleArray(VariableBase var)
 	{
 		super(var);
@@ -78,9 +86,13 @@ public abstract class SDiscreteVariableDoubleArray extends SDiscreteVariableBase
 		int newArraySize = Math.max(_inputMessages.length,portNum + 1);
 		_inputMessages = Arrays.copyOf(_inputMessages,newArraySize);
 		_outputMessages = Arrays.copyOf(_outputMessages,newArraySize);
+		_inputMsgOffsets = Arrays.copyOf(_inputMsgOffsets,newArraySize);
+		_outputMsgOffsets = Arrays.copyOf(_outputMsgOffsets,newArraySize);
 		
 		_inputMessages[portNum] = createDefaultMessage();
 		_outputMessages[portNum] = createDefaultMessage();
+		_inputMsgOffsets[portNum] = 0;
+		_outputMsgOffsets[portNum] = 0;
 
 		/**
 		 * Return the new messages so that the factor can cache them.
@@ -97,27 +109,53 @@ public abstract class SDiscreteVariableDoubleArray extends SDiscreteVariableBase
 	@Override
 	public void resetEdgeMessages(int portNum)
 	{
-		resetInputMessage(_inputMessages[portNum]);
-		resetInputMessage(_outputMessages[portNum]);
+		resetMessage(_inputMessages[portNum], _inputMsgOffsets[portNum]);
+		resetMessage(_outputMessages[portNum], _outputMsgOffsets[portNum]);
 		
 	}
 
 	/**
-	 * This method is used for introspection
+	 * This method is used for introspection. If the messages have been packed into
+	 * a {@link MessageStore}, this returns a copy of the message.
 	 */
 	@Override
 	public Object getInputMsg(int portIndex)
 	{
-		return _inputMessages[portIndex];
+		return message(_inputMessages[portIndex], _inputMsgOffsets[portIndex]);
 	}
 
 	/**
-	 * This method is used for introspection
+	 * This method is used for introspection. If the messages have been packed into
+	 * a {@link MessageStore}, this returns a copy of the message.
 	 */
 	@Override
 	public Object getOutputMsg(int portIndex)
 	{
-		return _outputMessages[portIndex];
+		return message(_outputMessages[portIndex], _outputMsgOffsets[portIndex]);
+	}
+	
+	/**
+	 * The index of the first element of the input message for the given port in the array
+	 * that holds it.
+	 * <p>
+	 * @see MessageStore
+	 * @since 0.06
+	 */
+	public int getInputMsgOffset(int portIndex)
+	{
+		return _inputMsgOffsets[portIndex];
+	}
+	
+	/**
+	 * The index of the first element of the output message for the given port in the array
+	 * that holds it.
+	 * <p>
+	 * @see MessageStore
+	 * @since 0.06
+	 */
+	public int getOutputMsgOffset(int portIndex)
+	{
+		return _outputMsgOffsets[portIndex];
 	}
 
 	/**
@@ -130,6 +168,8 @@ public abstract class SDiscreteVariableDoubleArray extends SDiscreteVariableBase
 		SDiscreteVariableDoubleArray sother = (SDiscreteVariableDoubleArray)other;
 		_inputMessages[thisPortNum] = sother._inputMessages[otherPortNum];
 		_outputMessages[thisPortNum] = sother._outputMessages[otherPortNum];
+		_inputMsgOffsets[thisPortNum] = sother._inputMsgOffsets[otherPortNum];
+		_outputMsgOffsets[thisPortNum] = sother._outputMsgOffsets[otherPortNum];
 
 	}
 
@@ -146,6 +186,7 @@ public abstract class SDiscreteVariableDoubleArray extends SDiscreteVariableBase
 	public void setInputMsg(int portIndex, Object obj)
 	{
 		_inputMessages[portIndex] = (double[])obj;
+		_inputMsgOffsets[portIndex] = 0;
 		
 	}
 
@@ -153,17 +194,32 @@ public abstract class SDiscreteVariableDoubleArray extends SDiscreteVariableBase
 	public void setInputMsgValues(int portIndex, Object obj)
 	{
 		double [] tmp = (double[])obj;
-		for (int i = 0; i <tmp.length; i++)
-			_inputMessages[portIndex][i] = tmp[i];
+		System.arraycopy(tmp, 0, _inputMessages[portIndex], _inputMsgOffsets[portIndex], tmp.length);
 	}
 	
 	@Override
 	public void setOutputMsgValues(int portIndex, Object obj)
 	{
 		double [] tmp = (double[])obj;
-		for (int i = 0; i <tmp.length; i++)
-			_outputMessages[portIndex][i] = tmp[i];
+		System.arraycopy(tmp, 0, _outputMessages[portIndex], _outputMsgOffsets[portIndex], tmp.length);
 	}
 
-
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private double[] message(double[] array, int offset)
+	{
+		final int length = _var.asDiscreteVariable().getDiscreteDomain().size();
+		return offset == 0 && array.length == length ? array : Arrays.copyOfRange(array, offset, offset + length);
+	}
+	
+	private void resetMessage(double[] array, int offset)
+	{
+		final int length = _var.asDiscreteVariable().getDiscreteDomain().size();
+		if (offset == 0 && array.length == length)
+			resetInputMessage(array);
+		else
+			System.arraycopy(createDefaultMessage(), 0, array, offset, length);
+	}
 }
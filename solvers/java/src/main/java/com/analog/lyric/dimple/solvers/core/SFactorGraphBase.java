@@ -16,6 +16,8 @@
 
 package com.analog.lyric.dimple.solvers.core;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
@@ -34,6 +36,7 @@ import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+import com.analog.lyric.options.IOptionKey;
 
 public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGraph
 {
@@ -41,6 +44,10 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	protected int _numIterations = 1;		// Default number of iterations unless otherwise specified
 	private MultiThreadingManager _multithreader; // = new MultiThreadingManager();
 	private boolean _useMultithreading = false;
+	private final ConvergenceMonitor _convergenceMonitor = new ConvergenceMonitor();
+	private boolean _useCompiledSchedule = false;
+	private CompiledSchedule _compiledSchedule = null;
+	private volatile ConcurrentMap<IOptionKey<?>,Object> _localOptions = null;
 
 	public SFactorGraphBase(FactorGraph fg)
 	{
@@ -48,6 +55,32 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 		_factorGraph = fg;
 	}
 
+	/*-----------------------
+	 * IOptionHolder methods
+	 */
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Solver graphs hold their own option settings, which are inherited by the solver nodes
+	 * they contain and by nested solver graphs.
+	 */
+	@Override
+	public ConcurrentMap<IOptionKey<?>,Object> getLocalOptions(boolean create)
+	{
+		if (_localOptions == null && create)
+		{
+			synchronized(this)
+			{
+				if (_localOptions == null)
+				{
+					_localOptions = new ConcurrentHashMap<IOptionKey<?>,Object>();
+				}
+			}
+		}
+		return _localOptions;
+	}
+
 	public FactorGraph getModel()
 	{
 		return _factorGraph;
@@ -147,6 +180,13 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	@Override
 	public void update()
 	{
+		final CompiledSchedule compiled = getCompiledScheduleIfEnabled();
+		if (compiled != null)
+		{
+			compiled.run();
+			return;
+		}
+		
 		for (IScheduleEntry entry : _factorGraph.getSchedule())
 		{
 			entry.update();
@@ -169,6 +209,8 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	@Override
 	public void iterate(int numIters)
 	{
+		final ConvergenceMonitor monitor = startConvergenceMonitor();
+		
 		if (_multithreader == null || ! _useMultithreading)
 		{
 			// *** Single thread
@@ -176,15 +218,34 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 			{
 				update();
 				
+				if (monitor.iterationCompleted())
+					return;
+				
 				// Allow interruption (if the solver is run as a thread); currently interruption is allowed only between iterations, not within a single iteration
 				if (Thread.interrupted())
 					return;
 			}
 		}
-		else
+		else if (!monitor.isEnabled())
 		{
 			// *** Multiple threads
 			_multithreader.iterate(numIters);
+			for (int iterNum = 0; iterNum < numIters; iterNum++)
+				monitor.iterationCompleted();
+		}
+		else
+		{
+			// *** Multiple threads, checking for convergence between iterations
+			for (int iterNum = 0; iterNum < numIters; iterNum++)
+			{
+				_multithreader.iterate(1);
+				
+				if (monitor.iterationCompleted())
+					return;
+				
+				if (Thread.interrupted())
+					return;
+			}
 		}
 	}
 	
@@ -336,11 +397,13 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	@Override
 	public void startContinueSolve()
 	{
+		final SolverRandomGenerator random = SolverRandomGenerator.current();	// Continue the caller's random sequence
 		_thread = new Thread(new Runnable()
 		{
 
 			@Override
 			public void run() {
+				SolverRandomGenerator.setCurrent(random);
 				try
 				{
 					continueSolve();
@@ -359,11 +422,13 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	@Override
 	public void startSolveOneStep()
 	{
+		final SolverRandomGenerator random = SolverRandomGenerator.current();	// Continue the caller's random sequence
 		_thread = new Thread(new Runnable()
 		{
 
 			@Override
 			public void run() {
+				SolverRandomGenerator.setCurrent(random);
 				try
 				{
 					solveOneStep();
@@ -382,11 +447,13 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	@Override
 	public void startSolver()
 	{
+		final SolverRandomGenerator random = SolverRandomGenerator.current();	// Continue the caller's random sequence
 		_thread = new Thread(new Runnable()
 		{
 
 			@Override
 			public void run() {
+				SolverRandomGenerator.setCurrent(random);
 				try
 				{
 					solve();
@@ -440,6 +507,148 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 
 
 
+	/***********************************************
+	 * 
+	 * Convergence
+	 * 
+	 ***********************************************/
+	
+	/**
+	 * Sets the tolerance used to stop iteration early. If positive, {@link #iterate(int)}, and therefore
+	 * {@link #solve()}, will stop as soon as the largest change in any variable's belief over
+	 * an iteration is less than {@code tolerance}. Zero, the default, disables the check, so that
+	 * {@link #getNumIterations()} iterations are always performed.
+	 * <p>
+	 * Checking for convergence requires computing all variable beliefs after each iteration.
+	 * 
+	 * @since 0.06
+	 * @see #getConvergenceMonitor()
+	 */
+	public void setConvergenceTolerance(double tolerance)
+	{
+		_convergenceMonitor.setTolerance(tolerance);
+	}
+	
+	/**
+	 * The tolerance set by {@link #setConvergenceTolerance(double)}.
+	 * 
+	 * @since 0.06
+	 */
+	public double getConvergenceTolerance()
+	{
+		return _convergenceMonitor.getTolerance();
+	}
+	
+	/**
+	 * Number of iterations actually performed by the most recent call to {@link #iterate(int)}.
+	 * 
+	 * @since 0.06
+	 */
+	public int getNumIterationsUsed()
+	{
+		return _convergenceMonitor.getIterationsUsed();
+	}
+	
+	/**
+	 * Largest change in any variable's belief over the final iteration of the most recent call to {@link #iterate(int)}.
+	 * This is only computed when a {@linkplain #setConvergenceTolerance(double) convergence tolerance} has been set and
+	 * is otherwise infinite.
+	 * 
+	 * @since 0.06
+	 */
+	public double getConvergenceResidual()
+	{
+		return _convergenceMonitor.getResidual();
+	}
+	
+	/**
+	 * Object that tracks the convergence of {@link #iterate(int)}.
+	 * 
+	 * @since 0.06
+	 */
+	public ConvergenceMonitor getConvergenceMonitor()
+	{
+		return _convergenceMonitor;
+	}
+	
+	/**
+	 * Starts the {@linkplain #getConvergenceMonitor() convergence monitor} for a new call to {@link #iterate(int)}.
+	 * Subclasses that override {@link #iterate(int)} should call this before the first iteration and
+	 * stop when {@link ConvergenceMonitor#iterationCompleted()} returns true.
+	 * 
+	 * @since 0.06
+	 */
+	protected ConvergenceMonitor startConvergenceMonitor()
+	{
+		_convergenceMonitor.start(_factorGraph);
+		return _convergenceMonitor;
+	}
+	
+	/***********************************************
+	 * 
+	 * Compiled schedules
+	 * 
+	 ***********************************************/
+	
+	/**
+	 * Enables running the schedule from a {@link CompiledSchedule} in single-threaded {@link #update()}
+	 * and {@link #iterate(int)}. This is off by default.
+	 * <p>
+	 * The schedule is compiled the first time it is needed and recompiled whenever the structure or
+	 * schedule of the graph changes. Dynamic schedules are never compiled and are always run
+	 * entry by entry. Only the schedule walk is flattened; node updates are dispatched as before,
+	 * so this does not noticeably speed up solving (see {@link CompiledSchedule}).
+	 * 
+	 * @since 0.06
+	 * @see #compileSchedule()
+	 */
+	public void setUseCompiledSchedule(boolean use)
+	{
+		_useCompiledSchedule = use;
+		if (!use)
+		{
+			_compiledSchedule = null;
+		}
+	}
+	
+	/**
+	 * True if enabled by {@link #setUseCompiledSchedule(boolean)}.
+	 * 
+	 * @since 0.06
+	 */
+	public boolean getUseCompiledSchedule()
+	{
+		return _useCompiledSchedule;
+	}
+	
+	/**
+	 * Returns a {@link CompiledSchedule} for the current schedule of the graph, compiling it
+	 * if there is no valid one cached. Returns null if the schedule is dynamic.
+	 * <p>
+	 * The result is only cached for later use by {@link #update()} if {@link #getUseCompiledSchedule()}
+	 * is true.
+	 * 
+	 * @since 0.06
+	 */
+	public CompiledSchedule compileSchedule()
+	{
+		CompiledSchedule compiled = _compiledSchedule;
+		if (compiled == null || !compiled.isValid())
+		{
+			compiled = CompiledSchedule.compile(_factorGraph);
+			if (_useCompiledSchedule)
+			{
+				_compiledSchedule = compiled;
+			}
+		}
+		return compiled;
+	}
+	
+	private CompiledSchedule getCompiledScheduleIfEnabled()
+	{
+		return _useCompiledSchedule ? compileSchedule() : null;
+	}
+	
 	/***********************************************
 	 * 
 	 * For multi-threaded computation
@@ -475,6 +684,56 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 		_multithreader = manager;
 	}
 
+	/***********************************************
+	 * 
+	 * Saving and restoring messages
+	 * 
+	 ***********************************************/
+
+	/**
+	 * Copies all of the discrete edge messages of the graph into a newly allocated
+	 * {@link MessageSnapshot}, which can later be passed to {@link #restoreMessages(MessageSnapshot)}
+	 * to return the graph to its current message state, e.g. to try out different inputs
+	 * from a common starting point without resolving from scratch.
+	 * <p>
+	 * To avoid reallocating the snapshot, an existing snapshot may be updated using {@link MessageSnapshot#save()}.
+	 *
+	 * @since 0.06
+	 */
+	public MessageSnapshot saveMessages()
+	{
+		MessageSnapshot snapshot = new MessageSnapshot(this);
+		snapshot.save();
+		return snapshot;
+	}
+
+	/**
+	 * The store into which the discrete edge messages of this graph have been packed, or null
+	 * if they have not been packed. This implementation returns null.
+	 *
+	 * @since 0.06
+	 */
+	public MessageStore getMessageStore()
+	{
+		return null;
+	}
+
+	/**
+	 * Restores the discrete edge messages saved in {@code snapshot}.
+	 *
+	 * @throws DimpleException if {@code snapshot} was not saved from this graph or the graph
+	 * has changed since it was saved.
+	 * @since 0.06
+	 */
+	public void restoreMessages(MessageSnapshot snapshot)
+	{
+		if (snapshot.getSolverGraph() != this)
+		{
+			throw new DimpleException("Cannot restore messages saved from a different graph");
+		}
+		snapshot.restore();
+	}
+
 	/***********************************************
 	 * 
 	 * Initialization methods
@@ -16,6 +16,8 @@
 
 package com.analog.lyric.dimple.solvers.core;
 
+import java.util.Arrays;
+
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
@@ -24,6 +26,14 @@ public abstract class STableFactorDoubleArray extends STableFactorBase
 {
 	protected double [][] _inputMsgs = new double[0][];
 	protected double [][] _outputMsgs;
+	
+	/**
+	 * Index of the first element of each port's message in the corresponding array in
+	 * {@link #_inputMsgs} and {@link #_outputMsgs}. These are zero unless the messages
+	 * have been packed into a {@link MessageStore}, in which case the arrays are the store's buffer.
+	 */
+	protected int [] _inputMsgOffsets = new int[0];
+	protected int [] _outputMsgOffsets = new int[0];
 
 	public STableFactorDoubleArray(Factor factor)
 	{
@@ -40,6 +50,8 @@ public abstract class STableFactorDoubleArray extends STableFactorBase
 		
 	    _inputMsgs = new double[nVars][];
 	    _outputMsgs = new double[nVars][];
+	    _inputMsgOffsets = new int[nVars];
+	    _outputMsgOffsets = new int[nVars];
 	    
 	    for (int index = 0, end = nVars; index < end; index++)
 	    {
@@ -65,36 +77,75 @@ public abstract class STableFactorDoubleArray extends STableFactorBase
 		STableFactorDoubleArray sother = (STableFactorDoubleArray)other;
 	    _inputMsgs[portNum] = sother._inputMsgs[otherPort];
 	    _outputMsgs[portNum] = sother._outputMsgs[otherPort];
+	    _inputMsgOffsets[portNum] = sother._inputMsgOffsets[otherPort];
+	    _outputMsgOffsets[portNum] = sother._outputMsgOffsets[otherPort];
 	    
 	}
 
 
+	/**
+	 * If the messages have been packed into a {@link MessageStore}, this returns a copy of the message.
+	 */
 	@Override
 	public Object getInputMsg(int portIndex)
 	{
-		return _inputMsgs[portIndex];
+		return message(portIndex, _inputMsgs[portIndex], _inputMsgOffsets[portIndex]);
 	}
 
+	/**
+	 * If the messages have been packed into a {@link MessageStore}, this returns a copy of the message.
+	 */
 	@Override
 	public Object getOutputMsg(int portIndex)
 	{
-		return _outputMsgs[portIndex];
+		return message(portIndex, _outputMsgs[portIndex], _outputMsgOffsets[portIndex]);
+	}
+	
+	/**
+	 * The index of the first element of each port's input message in the corresponding
+	 * array. Do not modify.
+	 * <p>
+	 * @see MessageStore
+	 * @since 0.06
+	 */
+	public int[] getInPortMsgOffsets()
+	{
+		return _inputMsgOffsets;
+	}
+	
+	/**
+	 * The index of the first element of each port's output message in the corresponding
+	 * array. Do not modify.
+	 * <p>
+	 * @see MessageStore
+	 * @since 0.06
+	 */
+	public int[] getOutPortMsgOffsets()
+	{
+		return _outputMsgOffsets;
 	}
 
 	@Override
 	public void setInputMsgValues(int portIndex, Object obj)
 	{
 		double [] tmp = (double[])obj;
-		for (int i = 0; i <tmp.length; i++)
-			_inputMsgs[portIndex][i] = tmp[i];
+		System.arraycopy(tmp, 0, _inputMsgs[portIndex], _inputMsgOffsets[portIndex], tmp.length);
 	}
 	
 	@Override
 	public void setOutputMsgValues(int portIndex, Object obj)
 	{
 		double [] tmp = (double[])obj;
-		for (int i = 0; i <tmp.length; i++)
-			_outputMsgs[portIndex][i] = tmp[i];
+		System.arraycopy(tmp, 0, _outputMsgs[portIndex], _outputMsgOffsets[portIndex], tmp.length);
 	}
 	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private double[] message(int portIndex, double[] array, int offset)
+	{
+		final int length = _factor.getSibling(portIndex).asDiscreteVariable().getDiscreteDomain().size();
+		return offset == 0 && array.length == length ? array : Arrays.copyOfRange(array, offset, offset + length);
+	}
 }
@@ -20,28 +20,385 @@ import org.apache.commons.math3.random.RandomGenerator;
 
 import cern.jet.random.engine.RandomEngine;
 
-
+/**
+ * Source of random numbers for solvers that sample.
+ * <p>
+ * Each thread has its own generator, so threads never contend for, or corrupt, each other's state.
+ * {@link #setSeed(long)} seeds the calling thread's generator exactly as the single shared generator
+ * used to be seeded, so single-threaded results for a given seed are the same as they have always been.
+ * It also restarts a shared sequence of seeds from which every other thread's generator is reseeded the
+ * next time that thread uses it. Code that divides sampling among worker threads should instead give each
+ * worker its own generator, {@linkplain #split() split} from the {@linkplain #current() current} generator
+ * of the dividing thread and installed in the worker with {@link #setCurrent}. Split generators are based
+ * on {@link SplittableRandomGenerator}, so such results are repeatable for a given seed and division of
+ * work regardless of which threads do the work, but differ from single-threaded results.
+ * <p>
+ * Samplers should use {@link #rand()}, {@link #randGamma()} and {@link #randBeta()} at the point of
+ * use rather than caching the returned objects, which belong to the current thread and are replaced
+ * by {@link #setSeed(long)}.
+ */
 public class SolverRandomGenerator
 {
-	public static RandomGenerator rand = new org.apache.commons.math3.random.MersenneTwister();
+	/*-------
+	 * State
+	 */
 	
-	// Other random number generators not supported by the Apache framework
-	private static RandomEngine randEngine = new cern.jet.random.engine.MersenneTwister(rand.nextInt());
-	public static cern.jet.random.Gamma randGamma = new cern.jet.random.Gamma(1, 1, randEngine);
-	public static cern.jet.random.Beta randBeta = new cern.jet.random.Beta(1, 1, randEngine);
+	/**
+	 * Uniform generator that delegates to the calling thread's generator.
+	 * 
+	 * @deprecated Use {@link #rand()} instead.
+	 */
+	@Deprecated
+	public static final RandomGenerator rand = new CurrentRandomGenerator();
 	
+	/**
+	 * Gamma distribution generator whose samples are drawn using the calling thread's generator.
+	 * 
+	 * @deprecated Use {@link #randGamma()} instead.
+	 */
+	@Deprecated
+	public static final cern.jet.random.Gamma randGamma = new CurrentGamma();
 	
-	public static void setSeed(long seed)
+	/**
+	 * Beta distribution generator whose samples are drawn using the calling thread's generator.
+	 * 
+	 * @deprecated Use {@link #randBeta()} instead.
+	 */
+	@Deprecated
+	public static final cern.jet.random.Beta randBeta = new CurrentBeta();
+	
+	/*
+	 * Sequence of seeds for the generators of threads that have not called setSeed themselves, which is
+	 * restarted by setSeed. Its version is incremented each time, so that threads can tell that their
+	 * generators need to be reseeded.
+	 */
+	private static final Object _seedLock = new Object();
+	private static RandomGenerator _seeds = new org.apache.commons.math3.random.MersenneTwister();
+	private static volatile int _seedVersion = 0;
+	
+	private static final ThreadLocal<SolverRandomGenerator> _current = new ThreadLocal<SolverRandomGenerator>() {
+		@Override
+		protected SolverRandomGenerator initialValue()
+		{
+			return nextThreadGenerator();
+		}
+	};
+	
+	private final RandomGenerator _rand;
+
+	// Other random number generators not supported by the Apache framework, driven by a common engine
+	private cern.jet.random.Gamma _randGamma;
+	private cern.jet.random.Beta _randBeta;
+	
+	/**
+	 * The value of {@link #_seedVersion} when this thread's generator was seeded, or -1 if this generator
+	 * was split from another one, in which case it is never reseeded.
+	 */
+	private final int _version;
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	private SolverRandomGenerator(long seed, int version)
 	{
 		// Work-around for bug in apache-commons.math-2.2
 		// Bug 723: https://issues.apache.org/jira/browse/MATH-723
 		// Can't just set the seed; must replace the object instead
-		// WARNING: setting the seed creates new objects; which will not be used if reference to original object is cached
-		rand = new org.apache.commons.math3.random.MersenneTwister(seed);
+		_rand = new org.apache.commons.math3.random.MersenneTwister(seed);
+		setEngine(new cern.jet.random.engine.MersenneTwister((int)seed));
+		_version = version;
+	}
+	
+	private SolverRandomGenerator(SplittableRandomGenerator rand)
+	{
+		_rand = rand;
+		setEngine(new Engine(rand));
+		_version = -1;
+	}
+	
+	/**
+	 * Returns a new generator whose values are statistically independent of this one, advancing
+	 * the state of this generator.
+	 * 
+	 * @since 0.06
+	 */
+	public SolverRandomGenerator split()
+	{
+		final RandomGenerator rand = _rand;
+		if (rand instanceof SplittableRandomGenerator)
+		{
+			return new SolverRandomGenerator(((SplittableRandomGenerator)rand).split());
+		}
+		return new SolverRandomGenerator(new SplittableRandomGenerator(rand.nextLong()));
+	}
+	
+	/*----------------
+	 * Static methods
+	 */
+	
+	/**
+	 * The generator used by the calling thread.
+	 * 
+	 * @since 0.06
+	 */
+	public static SolverRandomGenerator current()
+	{
+		SolverRandomGenerator generator = _current.get();
+		final int version = generator._version;
+		if (version >= 0 && version != _seedVersion)
+		{
+			// Another thread has set the seed since this thread's generator was seeded
+			generator = nextThreadGenerator();
+			_current.set(generator);
+		}
+		return generator;
+	}
+	
+	/**
+	 * Makes {@code generator} the {@linkplain #current() current} generator for the calling thread
+	 * and returns the previous one, which should be restored when the caller is done.
+	 * 
+	 * @since 0.06
+	 */
+	public static SolverRandomGenerator setCurrent(SolverRandomGenerator generator)
+	{
+		final SolverRandomGenerator previous = _current.get();
+		_current.set(generator);
+		return previous;
+	}
+	
+	/**
+	 * Uniform generator for the calling thread.
+	 */
+	public static RandomGenerator rand()
+	{
+		return current()._rand;
+	}
+	
+	/**
+	 * Gamma distribution generator for the calling thread.
+	 */
+	public static cern.jet.random.Gamma randGamma()
+	{
+		return current()._randGamma;
+	}
+	
+	/**
+	 * Beta distribution generator for the calling thread.
+	 */
+	public static cern.jet.random.Beta randBeta()
+	{
+		return current()._randBeta;
+	}
+	
+	/**
+	 * Seeds the calling thread's generator and restarts the sequence of seeds for the generators
+	 * of other threads. Generators subsequently split from them, for instance by multithreaded
+	 * solvers, are also repeatable.
+	 */
+	public static void setSeed(long seed)
+	{
+		synchronized (_seedLock)
+		{
+			_seeds = new SplittableRandomGenerator(seed);
+			// WARNING: setting the seed creates new objects; which will not be used if reference to original object is cached
+			_current.set(new SolverRandomGenerator(seed, ++_seedVersion));
+		}
+	}
+	
+	/*--------------------------------
+	 * SolverRandomGenerator methods
+	 */
+	
+	/**
+	 * @since 0.06
+	 */
+	public RandomGenerator getRandom()
+	{
+		return _rand;
+	}
+	
+	/**
+	 * @since 0.06
+	 */
+	public cern.jet.random.Gamma getGamma()
+	{
+		return _randGamma;
+	}
+
+	/**
+	 * @since 0.06
+	 */
+	public cern.jet.random.Beta getBeta()
+	{
+		return _randBeta;
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private static SolverRandomGenerator nextThreadGenerator()
+	{
+		synchronized (_seedLock)
+		{
+			return new SolverRandomGenerator(_seeds.nextLong(), _seedVersion);
+		}
+	}
+	
+	private void setEngine(RandomEngine engine)
+	{
+		_randGamma = new cern.jet.random.Gamma(1, 1, engine);
+		_randBeta = new cern.jet.random.Beta(1, 1, engine);
+	}
+	
+	/*---------------
+	 * Inner classes
+	 */
+	
+	/**
+	 * Adapts a split uniform generator for use by the cern.jet distributions.
+	 */
+	private static class Engine extends RandomEngine
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final RandomGenerator _rand;
+		
+		private Engine(RandomGenerator rand)
+		{
+			_rand = rand;
+		}
+		
+		@Override
+		public int nextInt()
+		{
+			return _rand.nextInt();
+		}
+	}
+	
+	/**
+	 * Implementation of the deprecated {@link SolverRandomGenerator#rand} alias.
+	 */
+	private static class CurrentRandomGenerator implements RandomGenerator
+	{
+		@Override
+		public void setSeed(int seed)
+		{
+			rand().setSeed(seed);
+		}
+
+		@Override
+		public void setSeed(int[] seed)
+		{
+			rand().setSeed(seed);
+		}
+
+		@Override
+		public void setSeed(long seed)
+		{
+			rand().setSeed(seed);
+		}
+
+		@Override
+		public void nextBytes(byte[] bytes)
+		{
+			rand().nextBytes(bytes);
+		}
+
+		@Override
+		public int nextInt()
+		{
+			return rand().nextInt();
+		}
+
+		@Override
+		public int nextInt(int n)
+		{
+			return rand().nextInt(n);
+		}
+
+		@Override
+		public long nextLong()
+		{
+			return rand().nextLong();
+		}
+
+		@Override
+		public boolean nextBoolean()
+		{
+			return rand().nextBoolean();
+		}
+
+		@Override
+		public float nextFloat()
+		{
+			return rand().nextFloat();
+		}
+
+		@Override
+		public double nextDouble()
+		{
+			return rand().nextDouble();
+		}
+
+		@Override
+		public double nextGaussian()
+		{
+			return rand().nextGaussian();
+		}
+	}
+	
+	/**
+	 * Implementation of the deprecated {@link SolverRandomGenerator#randGamma} alias. Its own
+	 * parameters, as set by {@link #setState}, are used by {@link #nextDouble()}.
+	 */
+	private static class CurrentGamma extends cern.jet.random.Gamma
+	{
+		private static final long serialVersionUID = 1L;
+
+		private CurrentGamma()
+		{
+			super(1, 1, new Engine(rand));
+		}
+		
+		@Override
+		public double nextDouble()
+		{
+			return nextDouble(alpha, lambda);
+		}
+		
+		@Override
+		public double nextDouble(double alpha, double lambda)
+		{
+			return randGamma().nextDouble(alpha, lambda);
+		}
+	}
+	
+	/**
+	 * Implementation of the deprecated {@link SolverRandomGenerator#randBeta} alias. Its own
+	 * parameters, as set by {@link #setState}, are used by {@link #nextDouble()}.
+	 */
+	private static class CurrentBeta extends cern.jet.random.Beta
+	{
+		private static final long serialVersionUID = 1L;
+
+		private CurrentBeta()
+		{
+			super(1, 1, new Engine(rand));
+		}
+		
+		@Override
+		public double nextDouble()
+		{
+			return nextDouble(alpha, beta);
+		}
 		
-		// WARNING: setting the seed creates new objects; which will not be used if reference to original object is cached
-		randEngine = new cern.jet.random.engine.MersenneTwister((int)seed);
-		randGamma = new cern.jet.random.Gamma(1, 1, randEngine);
-		randBeta = new cern.jet.random.Beta(1, 1, randEngine);
+		@Override
+		public double nextDouble(double alpha, double beta)
+		{
+			return randBeta().nextDouble(alpha, beta);
+		}
 	}
 }
@@ -0,0 +1,201 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+/**
+ * Fast pseudo-random generator that can be split into statistically independent generators.
+ * <p>
+ * Implements the SplitMix64 algorithm (Steele, Lea and Flood, "Fast Splittable Pseudorandom Number
+ * Generators", OOPSLA 2014), which is also used by {@code java.util.SplittableRandom} in Java 8. The state
+ * is just two longs, so creating a generator for each thread or block of work is cheap, and the sequence
+ * of values produced by a generator and by any generators {@linkplain #split() split} from it is entirely
+ * determined by its original seed.
+ * <p>
+ * Instances are not thread-safe. Use {@link #split()} to create a separate generator for each thread.
+ * <p>
+ * @since 0.06
+ */
+@NotThreadSafe
+public class SplittableRandomGenerator extends BitsStreamGenerator
+{
+	/*-------
+	 * State
+	 */
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	private long _seed;
+	private final long _gamma;
+
+	private double _nextGaussian = Double.NaN;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public SplittableRandomGenerator(long seed)
+	{
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private SplittableRandomGenerator(long seed, long gamma)
+	{
+		_seed = seed;
+		_gamma = gamma;
+	}
+
+	/**
+	 * Returns a new generator whose values are statistically independent of this one, advancing
+	 * the state of this generator.
+	 */
+	public SplittableRandomGenerator split()
+	{
+		return new SplittableRandomGenerator(nextLong(), mixGamma(nextSeed()));
+	}
+
+	/*-----------------------------
+	 * BitsStreamGenerator methods
+	 */
+
+	@Override
+	public void setSeed(int seed)
+	{
+		setSeed((long)seed);
+	}
+
+	@Override
+	public void setSeed(int[] seed)
+	{
+		long combined = 0;
+		for (int value : seed)
+		{
+			combined = mix64(combined * 31 + value);
+		}
+		setSeed(combined);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Generators split from this one are not affected.
+	 */
+	@Override
+	public void setSeed(long seed)
+	{
+		_seed = seed;
+		_nextGaussian = Double.NaN;
+	}
+
+	@Override
+	protected int next(int bits)
+	{
+		return mix32(nextSeed()) >>> (32 - bits);
+	}
+
+	@Override
+	public int nextInt()
+	{
+		return mix32(nextSeed());
+	}
+
+	@Override
+	public long nextLong()
+	{
+		return mix64(nextSeed());
+	}
+
+	@Override
+	public double nextDouble()
+	{
+		return (mix64(nextSeed()) >>> 11) * DOUBLE_UNIT;
+	}
+
+	@Override
+	public boolean nextBoolean()
+	{
+		return mix32(nextSeed()) < 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Uses the polar method, caching the second value of each generated pair.
+	 */
+	@Override
+	public double nextGaussian()
+	{
+		final double cached = _nextGaussian;
+		if (cached == cached) // not NaN
+		{
+			_nextGaussian = Double.NaN;
+			return cached;
+		}
+
+		double v1, v2, s;
+		do
+		{
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+
+		final double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+		_nextGaussian = v2 * multiplier;
+		return v1 * multiplier;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private long nextSeed()
+	{
+		return _seed += _gamma;
+	}
+
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mix32(long z)
+	{
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int)(((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * Produces an odd gamma value with enough bit transitions to give a good sequence.
+	 */
+	private static long mixGamma(long z)
+	{
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		final int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
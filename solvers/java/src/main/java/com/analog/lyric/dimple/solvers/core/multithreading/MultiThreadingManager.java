@@ -22,6 +22,7 @@ import java.util.concurrent.ExecutorService;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.schedulers.dependencyGraph.StaticDependencyGraph;
+import com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm.PersistentPhaseMultithreadingAlgorithm;
 import com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm.PhaseMultithreadingAlgorithm;
 import com.analog.lyric.dimple.solvers.core.multithreading.singlequeuealgorithm.SingleQueueMutlithreadingAlgorithm;
 
@@ -45,6 +46,7 @@ public class MultiThreadingManager
 		setNumWorkersToDefault();
 		_mode2alg.put(MultithreadingMode.Phase,new PhaseMultithreadingAlgorithm(this));
 		_mode2alg.put(MultithreadingMode.SingleQueue,new SingleQueueMutlithreadingAlgorithm(this));
+		_mode2alg.put(MultithreadingMode.PersistentPhase,new PersistentPhaseMultithreadingAlgorithm(this));
 		_factorGraph = fg;
 	}
 
@@ -17,12 +17,15 @@
 package com.analog.lyric.dimple.solvers.core.multithreading;
 
 /**
- * Provides two multithreading options.
+ * Provides the multithreading options.
+ * <p>
+ * PersistentPhase is like Phase but runs the phases on a persistent team of worker
+ * threads, which is faster for graphs with many small phases.
  * 
  * @author shershey
  *
  */
 public enum MultithreadingMode 
 {
-	Phase, SingleQueue;	
+	Phase, SingleQueue, PersistentPhase;	
 }
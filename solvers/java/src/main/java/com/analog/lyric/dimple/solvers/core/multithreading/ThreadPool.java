@@ -17,7 +17,9 @@
 package com.analog.lyric.dimple.solvers.core.multithreading;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -35,6 +37,29 @@ public class ThreadPool
 	private static ExecutorService _service; 
 	private static int _numThreads;
 	
+	/*
+	 * True on the pool's own threads, so that code running on the pool can tell that it
+	 * must not wait for other tasks submitted to it.
+	 */
+	private static final ThreadLocal<Boolean> _isPoolThread = new ThreadLocal<Boolean>();
+	
+	private static final ThreadFactory _threadFactory = new ThreadFactory() {
+		private final ThreadFactory _defaultFactory = Executors.defaultThreadFactory();
+		
+		@Override
+		public Thread newThread(final Runnable r)
+		{
+			return _defaultFactory.newThread(new Runnable() {
+				@Override
+				public void run()
+				{
+					_isPoolThread.set(Boolean.TRUE);
+					r.run();
+				}
+			});
+		}
+	};
+	
 	private ThreadPool()
 	{
 		
@@ -64,7 +89,7 @@ public class ThreadPool
 		_numThreads = numThreads;
 		ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads,
 				numThreads, 1L, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>());
+				new LinkedBlockingQueue<Runnable>(), _threadFactory);
 		pool.allowCoreThreadTimeOut(true);
 		_service = pool;
 	}
@@ -74,6 +99,18 @@ public class ThreadPool
 		return _numThreads;
 	}
 	
+	/**
+	 * True if the current thread belongs to the thread pool. Tasks running on the pool
+	 * should not submit more tasks to it and wait for them, since that can deadlock once
+	 * all of the pool's threads are waiting.
+	 * 
+	 * @since 0.06
+	 */
+	public static boolean isPoolThread()
+	{
+		return _isPoolThread.get() != null;
+	}
+	
 	private static void cleanupService()
 	{
 		if (_service != null)
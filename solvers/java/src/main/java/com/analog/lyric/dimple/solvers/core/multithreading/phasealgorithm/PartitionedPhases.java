@@ -0,0 +1,227 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import net.jcip.annotations.Immutable;
+
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.factors.DiscreteFactor;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.schedulers.dependencyGraph.StaticDependencyGraph;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.EdgeScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
+
+/**
+ * The phases of a {@link StaticDependencyGraph} with the entries of each phase divided
+ * among a fixed number of workers so that each gets roughly the same amount of work.
+ * <p>
+ * The entries of each phase are assigned using the longest processing time first rule,
+ * using {@link #estimateCost(IScheduleEntry)} as the cost of each entry. The entries
+ * assigned to each worker are stored contiguously in a single array per phase.
+ * <p>
+ * Package protected
+ *
+ * @since 0.06
+ */
+@Immutable
+final class PartitionedPhases
+{
+	/*-------
+	 * State
+	 */
+
+	private final StaticDependencyGraph _dependencyGraph;
+	private final int _numWorkers;
+
+	/**
+	 * Entries for each phase, ordered by worker.
+	 */
+	private final IScheduleEntry[][] _entries;
+
+	/**
+	 * For each phase, the entries for worker {@code w} are in the range
+	 * [{@code _bounds[phase][w]}, {@code _bounds[phase][w+1]}).
+	 */
+	private final int[][] _bounds;
+
+	/*--------------
+	 * Construction
+	 */
+
+	PartitionedPhases(StaticDependencyGraph dependencyGraph, int numWorkers)
+	{
+		final ArrayList<ArrayList<IScheduleEntry>> phases = dependencyGraph.getPhases();
+		final int nPhases = phases.size();
+
+		_dependencyGraph = dependencyGraph;
+		_numWorkers = numWorkers;
+		_entries = new IScheduleEntry[nPhases][];
+		_bounds = new int[nPhases][];
+
+		for (int phase = 0; phase < nPhases; ++phase)
+		{
+			partition(phase, phases.get(phase));
+		}
+	}
+
+	/*--------------------------
+	 * PartitionedPhases methods
+	 */
+
+	StaticDependencyGraph getDependencyGraph()
+	{
+		return _dependencyGraph;
+	}
+
+	int getNumWorkers()
+	{
+		return _numWorkers;
+	}
+
+	int getNumPhases()
+	{
+		return _entries.length;
+	}
+
+	/**
+	 * The entries of the given phase, ordered by worker. Do not modify.
+	 */
+	IScheduleEntry[] getEntries(int phase)
+	{
+		return _entries[phase];
+	}
+
+	/**
+	 * The boundaries of the workers' entries for the given phase, with length one more than
+	 * the number of workers. Do not modify.
+	 */
+	int[] getBounds(int phase)
+	{
+		return _bounds[phase];
+	}
+
+	/**
+	 * Estimates the relative cost of updating the given schedule entry.
+	 * <p>
+	 * The cost of updating a discrete factor is proportional to the number of non-zero entries
+	 * in its factor table, and the cost of updating a discrete variable is proportional to the
+	 * size of its domain. Updating an entire node costs one edge update per sibling. Entries
+	 * whose cost is not otherwise known are assumed to cost one.
+	 */
+	static double estimateCost(IScheduleEntry entry)
+	{
+		INode node;
+		int edges;
+
+		if (entry instanceof NodeScheduleEntry)
+		{
+			node = ((NodeScheduleEntry)entry).getNode();
+			edges = node.getSiblingCount();
+		}
+		else if (entry instanceof EdgeScheduleEntry)
+		{
+			node = ((EdgeScheduleEntry)entry).getNode();
+			edges = 1;
+		}
+		else
+		{
+			return 1;
+		}
+
+		double edgeCost = 1;
+		if (node instanceof DiscreteFactor)
+		{
+			edgeCost = ((DiscreteFactor)node).getFactorTable().countNonZeroWeights();
+		}
+		else if (node instanceof VariableBase)
+		{
+			final Domain domain = ((VariableBase)node).getDomain();
+			if (domain.isDiscrete())
+			{
+				edgeCost = ((DiscreteDomain)domain).size();
+			}
+		}
+
+		return Math.max(1, edgeCost * Math.max(1, edges));
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void partition(int phase, ArrayList<IScheduleEntry> phaseEntries)
+	{
+		final int nEntries = phaseEntries.size();
+		final int numWorkers = _numWorkers;
+
+		// Consider the entries in order of decreasing cost
+		final double[] costs = new double[nEntries];
+		final Integer[] order = new Integer[nEntries];
+		for (int i = 0; i < nEntries; ++i)
+		{
+			costs[i] = estimateCost(phaseEntries.get(i));
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2)
+			{
+				return Double.compare(costs[i2], costs[i1]);
+			}
+		});
+
+		// Assign each entry to the worker with the least work so far
+		final double[] loads = new double[numWorkers];
+		final int[] workerOf = new int[nEntries];
+		final int[] counts = new int[numWorkers];
+		for (int i : order)
+		{
+			int worker = 0;
+			for (int w = 1; w < numWorkers; ++w)
+			{
+				if (loads[w] < loads[worker])
+					worker = w;
+			}
+			loads[worker] += costs[i];
+			workerOf[i] = worker;
+			++counts[worker];
+		}
+
+		// Lay out each worker's entries contiguously, preserving the original order within each worker
+		final int[] bounds = new int[numWorkers + 1];
+		for (int w = 0; w < numWorkers; ++w)
+		{
+			bounds[w + 1] = bounds[w] + counts[w];
+		}
+		final int[] next = Arrays.copyOf(bounds, numWorkers);
+		final IScheduleEntry[] entries = new IScheduleEntry[nEntries];
+		for (int i = 0; i < nEntries; ++i)
+		{
+			entries[next[workerOf[i]]++] = phaseEntries.get(i);
+		}
+
+		_entries[phase] = entries;
+		_bounds[phase] = bounds;
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm;
+
+import com.analog.lyric.dimple.schedulers.dependencyGraph.StaticDependencyGraph;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingAlgorithm;
+
+/**
+ * Phase based multithreading using a persistent team of worker threads.
+ * <p>
+ * Like {@link PhaseMultithreadingAlgorithm}, this runs through the phases of the dependency
+ * graph, updating the entries of each phase concurrently. The difference is that the division
+ * of each phase among the workers is computed once per dependency graph, weighted by the
+ * estimated cost of each entry, and the phases are run on a {@link PhaseWorkerTeam} whose
+ * threads persist across phases and iterations instead of submitting new tasks to the
+ * executor for every phase. This greatly reduces the overhead for graphs with many small
+ * phases.
+ * <p>
+ * Phases with only a single entry are updated directly in the calling thread.
+ *
+ * @since 0.06
+ */
+public class PersistentPhaseMultithreadingAlgorithm extends MultithreadingAlgorithm
+{
+	/*-------
+	 * State
+	 */
+
+	private PartitionedPhases _partitionedPhases = null;
+	private PhaseWorkerTeam _team = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public PersistentPhaseMultithreadingAlgorithm(MultiThreadingManager manager)
+	{
+		super(manager);
+	}
+
+	/*--------------------------------
+	 * MultithreadingAlgorithm methods
+	 */
+
+	@Override
+	public void iterate(int numIters)
+	{
+		final PartitionedPhases phases = getPartitionedPhases(getManager().getNumWorkers());
+		final int nPhases = phases.getNumPhases();
+		final PhaseWorkerTeam team = getTeam(phases.getNumWorkers());
+
+		for (int i = 0; i < numIters; i++)
+		{
+			for (int phase = 0; phase < nPhases; phase++)
+			{
+				final IScheduleEntry[] entries = phases.getEntries(phase);
+				if (team == null || entries.length < 2)
+				{
+					for (IScheduleEntry entry : entries)
+					{
+						entry.update();
+					}
+				}
+				else
+				{
+					team.run(entries, phases.getBounds(phase));
+				}
+			}
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Returns a team with {@code numWorkers} workers, or null if there is only one worker. A team
+	 * of a different size is shut down and replaced.
+	 */
+	private PhaseWorkerTeam getTeam(int numWorkers)
+	{
+		PhaseWorkerTeam team = _team;
+		if (team != null && team.getNumWorkers() != numWorkers)
+		{
+			team.shutdown();
+			_team = team = null;
+		}
+		if (team == null && numWorkers > 1)
+		{
+			_team = team = new PhaseWorkerTeam(numWorkers);
+		}
+		return team;
+	}
+
+	/**
+	 * Returns the partitioned phases of the manager's current dependency graph, recomputing them
+	 * if the graph or number of workers has changed.
+	 */
+	private PartitionedPhases getPartitionedPhases(int numWorkers)
+	{
+		final StaticDependencyGraph dependencyGraph = getManager().getDependencyGraph();
+
+		PartitionedPhases phases = _partitionedPhases;
+		if (phases == null || phases.getDependencyGraph() != dependencyGraph || phases.getNumWorkers() != numWorkers)
+		{
+			_partitionedPhases = phases = new PartitionedPhases(dependencyGraph, numWorkers);
+		}
+
+		return phases;
+	}
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+
+/**
+ * A fixed team of worker threads that update the entries of a phase together.
+ * <p>
+ * The thread that calls {@link #run(IScheduleEntry[], int[])} acts as worker zero and the
+ * remaining workers are helper threads that persist between phases. Between phases the helpers
+ * spin briefly waiting for the next phase and then park, so that a sequence of small phases does
+ * not pay for creating tasks or handing them off to an executor. Helpers that have been idle for
+ * {@link #IDLE_TIMEOUT_MILLIS} exit and are restarted when needed, so an unused team does not
+ * hold onto threads. A team that will not be used again should be {@linkplain #shutdown() shut down}
+ * so that its helpers exit right away.
+ * <p>
+ * Each worker first updates its own range of entries and then steals entries from the
+ * ranges of the other workers until none are left.
+ * <p>
+ * Only one thread may run phases on a team at a time.
+ * <p>
+ * Package protected
+ *
+ * @since 0.06
+ */
+@ThreadSafe
+final class PhaseWorkerTeam
+{
+	/*-------
+	 * State
+	 */
+
+	static final long IDLE_TIMEOUT_MILLIS = 1000;
+
+	/**
+	 * Number of times a waiting thread checks for a change before yielding or parking. Spinning
+	 * is pointless on a single processor, since the thread being waited for cannot run.
+	 */
+	private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 14 : 0;
+
+	/**
+	 * Spacing between cursors in {@link #_cursors} to keep them on separate cache lines.
+	 */
+	private static final int CURSOR_STRIDE = 16;
+
+	private static final int RUNNING = 0;
+	private static final int PARKED = 1;
+	private static final int EXITED = 2;
+
+	private final int _numWorkers;
+
+	/**
+	 * State of each helper thread, indexed by worker index. The entry for worker zero is unused.
+	 */
+	private final AtomicIntegerArray _states;
+	private final Thread[] _threads;
+
+	/**
+	 * Incremented by the calling thread to start a new phase. The fields describing the phase are
+	 * written before it is incremented, which makes them visible to helpers that observe the new value.
+	 */
+	private volatile int _generation = 0;
+	private IScheduleEntry[] _entries;
+	private int[] _bounds;
+	private final AtomicIntegerArray _cursors;
+
+	/**
+	 * Number of helpers that have not yet finished the current phase.
+	 */
+	private final AtomicInteger _pending = new AtomicInteger();
+	private final AtomicReference<Throwable> _error = new AtomicReference<Throwable>();
+
+	private volatile boolean _shutdown = false;
+
+	/*--------------
+	 * Construction
+	 */
+
+	PhaseWorkerTeam(int numWorkers)
+	{
+		_numWorkers = numWorkers;
+		_states = new AtomicIntegerArray(numWorkers);
+		_threads = new Thread[numWorkers];
+		_cursors = new AtomicIntegerArray(numWorkers * CURSOR_STRIDE);
+		for (int i = 1; i < numWorkers; ++i)
+		{
+			_states.set(i, EXITED);
+		}
+	}
+
+	/*------------------------
+	 * PhaseWorkerTeam methods
+	 */
+
+	int getNumWorkers()
+	{
+		return _numWorkers;
+	}
+
+	/**
+	 * Updates all of the {@code entries}, which must be independent of each other, and returns
+	 * when they are done. The entries in [{@code bounds[w]}, {@code bounds[w+1]}) are initially
+	 * assigned to worker {@code w}.
+	 * <p>
+	 * If an update throws an exception, the remaining entries may not be updated and the exception
+	 * is rethrown in the calling thread, wrapped in a {@link DimpleException} if it is checked.
+	 */
+	void run(IScheduleEntry[] entries, int[] bounds)
+	{
+		final int numWorkers = _numWorkers;
+
+		_entries = entries;
+		_bounds = bounds;
+		for (int w = 0; w < numWorkers; ++w)
+		{
+			_cursors.set(w * CURSOR_STRIDE, bounds[w]);
+		}
+		_pending.set(numWorkers - 1);
+		++_generation;
+
+		for (int w = 1; w < numWorkers; ++w)
+		{
+			wake(w);
+		}
+
+		work(0);
+
+		for (int spins = 0; _pending.get() != 0; ++spins)
+		{
+			if (spins >= SPIN_LIMIT)
+			{
+				Thread.yield();
+			}
+		}
+
+		final Throwable error = _error.getAndSet(null);
+		if (error != null)
+		{
+			if (error instanceof RuntimeException)
+				throw (RuntimeException)error;
+			if (error instanceof Error)
+				throw (Error)error;
+			throw new DimpleException((Exception)error);
+		}
+	}
+
+	/**
+	 * Makes the helper threads exit once they are idle. The team may not be run again.
+	 */
+	void shutdown()
+	{
+		_shutdown = true;
+		for (int w = 1; w < _numWorkers; ++w)
+		{
+			if (_states.compareAndSet(w, PARKED, RUNNING))
+			{
+				LockSupport.unpark(_threads[w]);
+			}
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Ensures that helper {@code w} will see the new generation, either by waking it if it is
+	 * parked or starting a new thread if it has exited.
+	 */
+	private void wake(int w)
+	{
+		while (true)
+		{
+			switch (_states.get(w))
+			{
+			case RUNNING:
+				return;
+
+			case PARKED:
+				if (_states.compareAndSet(w, PARKED, RUNNING))
+				{
+					LockSupport.unpark(_threads[w]);
+					return;
+				}
+				break;
+
+			case EXITED:
+				_states.set(w, RUNNING);
+				final Thread thread = new Thread(new Helper(w, _generation - 1), "Dimple phase worker " + w);
+				thread.setDaemon(true);
+				_threads[w] = thread;
+				thread.start();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Updates entries, starting with those assigned to worker {@code w}, until none are left.
+	 */
+	private void work(int w)
+	{
+		final IScheduleEntry[] entries = _entries;
+		final int[] bounds = _bounds;
+		final int numWorkers = _numWorkers;
+
+		try
+		{
+			for (int i = 0; i < numWorkers; ++i)
+			{
+				final int victim = (w + i) % numWorkers;
+				final int end = bounds[victim + 1];
+				for (int entry; (entry = _cursors.getAndIncrement(victim * CURSOR_STRIDE)) < end; )
+				{
+					entries[entry].update();
+				}
+			}
+		}
+		catch (Throwable ex)
+		{
+			_error.compareAndSet(null, ex);
+
+			// Claim the rest of the entries so that the other workers stop
+			for (int i = 0; i < numWorkers; ++i)
+			{
+				_cursors.set(i * CURSOR_STRIDE, bounds[i + 1]);
+			}
+		}
+	}
+
+	private class Helper implements Runnable
+	{
+		private final int _index;
+		private int _lastGeneration;
+
+		private Helper(int index, int lastGeneration)
+		{
+			_index = index;
+			_lastGeneration = lastGeneration;
+		}
+
+		@Override
+		public void run()
+		{
+			final int w = _index;
+
+			while (awaitPhase())
+			{
+				_lastGeneration = _generation;
+				work(w);
+				_pending.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Waits for the next phase, spinning and then parking.
+		 *
+		 * @return false if the helper has been idle for too long or the team has been shut down,
+		 * and the helper should exit.
+		 */
+		private boolean awaitPhase()
+		{
+			final int w = _index;
+
+			for (int spins = 0; _generation == _lastGeneration; ++spins)
+			{
+				if (_shutdown)
+				{
+					_states.set(w, EXITED);
+					return false;
+				}
+
+				if (spins < SPIN_LIMIT)
+				{
+					continue;
+				}
+
+				_states.set(w, PARKED);
+				final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS);
+				while (_generation == _lastGeneration && _states.get(w) == PARKED && !_shutdown)
+				{
+					final long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+					{
+						if (_states.compareAndSet(w, PARKED, EXITED))
+						{
+							return false;
+						}
+						break;
+					}
+					LockSupport.parkNanos(this, remaining);
+				}
+
+				// Either woken by the calling thread, which has already set the state to running,
+				// or noticed the new phase first.
+				_states.compareAndSet(w, PARKED, RUNNING);
+				spins = 0;
+			}
+
+			return true;
+		}
+	}
+}
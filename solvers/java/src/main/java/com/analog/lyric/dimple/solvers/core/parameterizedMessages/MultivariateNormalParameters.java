@@ -16,6 +16,8 @@
 
 package com.analog.lyric.dimple.solvers.core.parameterizedMessages;
 
+import java.util.Arrays;
+
 import Jama.Matrix;
 
 import com.analog.lyric.math.LyricEigenvalueDecomposition;
@@ -28,12 +30,16 @@ public class MultivariateNormalParameters implements Cloneable, IParameterizedMe
 	private boolean _isInInformationForm;
 	private double eps = 0.0000001; //minimum value for small eigenvalues or 1/(max value)
 
+	// Workspace for converting between forms, allocated on first conversion and reused after that
+	private double [] _vectorWorkspace;
+	private double [][] _matrixWorkspace;
+
 	
 	// Constructors
 	public MultivariateNormalParameters() {}
 	public MultivariateNormalParameters(double[] mean, double[][] covariance)
 	{
-		setMeanAndCovariance(mean.clone(), cloneMatrix(covariance));
+		setMeanAndCovariance(mean, covariance);
 	}
 	public MultivariateNormalParameters(MultivariateNormalParameters other)		// Copy constructor
 	{
@@ -46,25 +52,23 @@ public class MultivariateNormalParameters implements Cloneable, IParameterizedMe
 	}
 	
 
+	// The setters copy their arguments into the existing arrays when the dimension has not changed
 	public final void setMeanAndCovariance(double[] mean, double[][] covariance)
 	{
-		_vector = mean.clone();
-		_matrix = cloneMatrix(covariance);
+		copyFrom(mean, covariance);
 		_isInInformationForm = false;
 	}
 	
 	public final void setInformation(double[] informationVector, double[][] informationMatrix)
 	{
-		_vector = informationVector.clone();
-		_matrix = cloneMatrix(informationMatrix);
+		copyFrom(informationVector, informationMatrix);
 		_isInInformationForm = true;
 	}
 
 	// Set from another parameter set without first extracting the components or determining which form
 	public final void set(MultivariateNormalParameters other)
 	{
-		_vector = other._vector.clone();
-		_matrix = cloneMatrix(other._matrix);
+		copyFrom(other._vector, other._matrix);
 		_isInInformationForm = other._isInInformationForm;
 	}
 	
@@ -79,34 +83,53 @@ public class MultivariateNormalParameters implements Cloneable, IParameterizedMe
 	public final double[] getMeans() {return getMean();}	// For backward compatibility
 	public final double[] getMean() 
 	{
-		if (_isInInformationForm)
-			ConvertType();
-		return _vector.clone();
+		return _getMeanUnsafe().clone();
 	}
 
 	public final double [][] getCovariance() 
+	{
+		return cloneMatrix(_getCovarianceUnsafe());
+	}
+	
+	public final double [] getInformationVector() 
+	{
+		return _getInformationVectorUnsafe().clone();
+	}
+
+	public final double [][] getInformationMatrix() 
+	{
+		return cloneMatrix(_getInformationMatrixUnsafe());
+	}
+	
+	// These are meant for internal use, not as user accessible methods.
+	// They return the internal arrays without copying, after converting to the requested form if necessary.
+	// The arrays must not be modified and are only valid until the parameters are next set or converted.
+	public final double[] _getMeanUnsafe()
 	{
 		if (_isInInformationForm)
 			ConvertType();
-
-		return cloneMatrix(_matrix);
+		return _vector;
 	}
 	
-	public final double [] getInformationVector() 
+	public final double[][] _getCovarianceUnsafe()
+	{
+		if (_isInInformationForm)
+			ConvertType();
+		return _matrix;
+	}
+	
+	public final double[] _getInformationVectorUnsafe()
 	{
 		if (!_isInInformationForm)
 			ConvertType();
-		
-		return _vector.clone();
+		return _vector;
 	}
-
-	public final double [][] getInformationMatrix() 
+	
+	public final double[][] _getInformationMatrixUnsafe()
 	{
 		if (!_isInInformationForm)
 			ConvertType();
-		
-		return cloneMatrix(_matrix);
-
+		return _matrix;
 	}
 	
 	public final int getVectorLength()
@@ -133,12 +156,32 @@ public class MultivariateNormalParameters implements Cloneable, IParameterizedMe
 		return retval;
 	}
 
+	private final void copyFrom(double[] vector, double[][] matrix)
+	{
+		final int n = vector.length;
+		if (_vector == null || _vector.length != n || _matrix.length != matrix.length)
+		{
+			_vector = vector.clone();
+			_matrix = cloneMatrix(matrix);
+			return;
+		}
+		
+		System.arraycopy(vector, 0, _vector, 0, n);
+		for (int i = 0; i < matrix.length; i++)
+		{
+			if (_matrix[i].length == matrix[i].length)
+				System.arraycopy(matrix[i], 0, _matrix[i], 0, matrix[i].length);
+			else
+				_matrix[i] = matrix[i].clone();
+		}
+	}
+
 
-	private final boolean isInfiniteIdentity(Matrix m)
+	private final boolean isInfiniteIdentity(double[][] m)
 	{
-		for (int i = 0; i < m.getColumnDimension(); i++)
+		for (int i = 0; i < m.length; i++)
 		{
-			if (!Double.isInfinite(m.get(i,i)))
+			if (!Double.isInfinite(m[i][i]))
 				return false;
 		}
 		return true;
@@ -146,51 +189,153 @@ public class MultivariateNormalParameters implements Cloneable, IParameterizedMe
 	
 	private final void ConvertType() 
 	{
-		int i;
+		final int n = _matrix.length;
 		
-		Jama.Matrix mat = new Jama.Matrix(_matrix);
-				
-		Matrix inv;
-		Matrix vec;
-				
-		if (isInfiniteIdentity(mat))
+		if (isInfiniteIdentity(_matrix))
 		{
 			//Handle the special case where variances are infinite
-			inv = new Matrix(mat.getRowDimension(),mat.getColumnDimension());
-			vec = new Matrix(mat.getRowDimension(),1);
+			for (int i = 0; i < n; i++)
+				Arrays.fill(_matrix[i], 0);
+			Arrays.fill(_vector, 0);
 		}
-		else
+		else if (!invertByCholesky())
 		{
-			LyricEigenvalueDecomposition eig = new LyricEigenvalueDecomposition(mat);
-			
-			Matrix D = eig.getD();
-			Matrix V = eig.getV();
-			
-			int N = D.getColumnDimension();
-			
-			for (i=0; i<N; i++) {
-				//Compute inverse of eigenvalues except for those less than eps we set to large constant.
-
-				double d = D.get(i,i);
-				d = (d>eps) ? (1/d) : 1/eps;
-				D.set(i,i,d);
+			invertByEigenvalueDecomposition();
+		}
+		
+		_isInInformationForm = !_isInInformationForm;
+	}
 	
-				assert(d > 0); // Eigenvalues should always be positive for positive definite matrices 
-			}
+	/**
+	 * Replaces the matrix with its inverse and the vector with the product of the inverse and the vector,
+	 * using a Cholesky factorization in the workspace. Nothing is allocated once the workspace exists.
+	 * <p>
+	 * Returns false without modifying the parameters if the matrix is not numerically positive definite
+	 * or has an eigenvalue smaller than {@code eps}, which the eigenvalue decomposition handles by
+	 * regularizing. Since the smallest eigenvalue is only bounded by the pivots and the diagonal of the
+	 * inverse, a few nearly singular matrices may be inverted here without that regularization.
+	 */
+	private final boolean invertByCholesky()
+	{
+		final double[][] A = _matrix;
+		final int n = A.length;
+		
+		double[][] L = _matrixWorkspace;
+		if (L == null || L.length != n)
+		{
+			_matrixWorkspace = L = new double[n][n];
+			_vectorWorkspace = new double[n];
+		}
+		
+		// Factor A = L*L^T into the lower triangle of the workspace
+		for (int j = 0; j < n; j++)
+		{
+			final double[] Lj = L[j];
+			double d = A[j][j];
+			for (int k = 0; k < j; k++)
+				d -= Lj[k] * Lj[k];
+			if (!(d > eps) || Double.isInfinite(d))
+				return false;	// Not positive definite, possibly with NaN or infinite entries
+			final double Ljj = Math.sqrt(d);
+			Lj[j] = Ljj;
 			
-			inv = V.times(D.times(V.transpose()));
-	
+			for (int i = j + 1; i < n; i++)
+			{
+				final double[] Li = L[i];
+				double s = A[i][j];
+				for (int k = 0; k < j; k++)
+					s -= Li[k] * Lj[k];
+				Li[j] = s / Ljj;
+			}
+		}
+		
+		// Invert L in place
+		for (int j = 0; j < n; j++)
+		{
+			L[j][j] = 1 / L[j][j];
+			for (int i = j + 1; i < n; i++)
+			{
+				final double[] Li = L[i];
+				double s = 0;
+				for (int k = j; k < i; k++)
+					s -= Li[k] * L[k][j];
+				Li[j] = s / Li[i];
+			}
+		}
+		
+		// Reject matrices whose inverse has a diagonal element that implies an eigenvalue below eps
+		final double maxInverseDiagonal = 1 / eps;
+		for (int i = 0; i < n; i++)
+		{
+			double d = 0;
+			for (int k = i; k < n; k++)
+				d += L[k][i] * L[k][i];
+			if (!(d <= maxInverseDiagonal))
+				return false;
+		}
+		
+		// A^-1 = L^-T * L^-1
+		for (int i = 0; i < n; i++)
+		{
+			for (int j = 0; j <= i; j++)
+			{
+				double s = 0;
+				for (int k = i; k < n; k++)
+					s += L[k][i] * L[k][j];
+				A[i][j] = s;
+				A[j][i] = s;
+			}
+		}
+		
+		// New vector is A^-1 times the old one
+		final double[] v = _vector;
+		final double[] w = _vectorWorkspace;
+		for (int i = 0; i < n; i++)
+		{
+			final double[] Ai = A[i];
+			double s = 0;
+			for (int k = 0; k < n; k++)
+				s += Ai[k] * v[k];
+			w[i] = s;
+		}
+		_vectorWorkspace = v;
+		_vector = w;
+		
+		return true;
+	}
 	
-			vec = new Matrix(new double [][] {_vector}).transpose();
-			
-			vec = inv.times(vec);
+	private final void invertByEigenvalueDecomposition()
+	{
+		int i;
+		
+		Jama.Matrix mat = new Jama.Matrix(_matrix);
+				
+		LyricEigenvalueDecomposition eig = new LyricEigenvalueDecomposition(mat);
+		
+		Matrix D = eig.getD();
+		Matrix V = eig.getV();
+		
+		int N = D.getColumnDimension();
+		
+		for (i=0; i<N; i++) {
+			//Compute inverse of eigenvalues except for those less than eps we set to large constant.
+
+			double d = D.get(i,i);
+			d = (d>eps) ? (1/d) : 1/eps;
+			D.set(i,i,d);
+
+			assert(d > 0); // Eigenvalues should always be positive for positive definite matrices 
 		}
+		
+		Matrix inv = V.times(D.times(V.transpose()));
 
-		_matrix = inv.getArray();
-		_vector = vec.transpose().getArray()[0];
+
+		Matrix vec = new Matrix(new double [][] {_vector}).transpose();
 		
-		_isInInformationForm = !_isInInformationForm;
+		vec = inv.times(vec);
 
+		_matrix = inv.getArray();
+		_vector = vec.transpose().getArray()[0];
 	}
 
 }
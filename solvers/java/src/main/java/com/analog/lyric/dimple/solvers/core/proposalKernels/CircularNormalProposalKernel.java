@@ -29,7 +29,7 @@ public class CircularNormalProposalKernel implements IProposalKernel
 
 	public Proposal next(Value currentValue, Domain variableDomain)
 	{
-		double value = currentValue.getDouble() + _standardDeviation * SolverRandomGenerator.rand.nextGaussian();
+		double value = currentValue.getDouble() + _standardDeviation * SolverRandomGenerator.rand().nextGaussian();
 		value = ((((value - _min) % _range) + _range) % _range) + _min;		// Wrap from -pi to pi
 		return new Proposal(value);
 	}
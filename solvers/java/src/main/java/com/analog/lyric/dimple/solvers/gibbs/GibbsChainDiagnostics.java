@@ -0,0 +1,234 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Convergence diagnostics for a set of independent Gibbs chains, computed from the sequence of
+ * sample scores (total potentials) produced by each chain.
+ * <p>
+ * The {@linkplain #getPotentialScaleReduction() potential scale reduction} (Gelman and Rubin's R-hat)
+ * compares the variance of the scores between chains to that within chains; values close to one
+ * indicate that the chains have mixed. The {@linkplain #getEffectiveSampleSize(int) effective sample size}
+ * of a chain estimates how many independent samples its correlated samples are worth, using Geyer's
+ * initial positive sequence estimator of the autocorrelation time.
+ * <p>
+ * The static methods may also be used to compute the same diagnostics for any other scalar
+ * function of the samples.
+ * <p>
+ * @see SFactorGraph#setNumChains(int)
+ * @since 0.06
+ */
+@Immutable
+public final class GibbsChainDiagnostics
+{
+	/*-------
+	 * State
+	 */
+
+	private final double[][] _chainScores;
+	private final double _potentialScaleReduction;
+	private final double[] _effectiveSampleSizes;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Computes diagnostics for the given per-chain score sequences, which are copied.
+	 */
+	public GibbsChainDiagnostics(double[][] chainScores)
+	{
+		final int nChains = chainScores.length;
+		_chainScores = new double[nChains][];
+		_effectiveSampleSizes = new double[nChains];
+		for (int chain = 0; chain < nChains; ++chain)
+		{
+			_chainScores[chain] = chainScores[chain].clone();
+			_effectiveSampleSizes[chain] = effectiveSampleSize(chainScores[chain]);
+		}
+		_potentialScaleReduction = potentialScaleReduction(chainScores);
+	}
+
+	/*-------------------------------
+	 * GibbsChainDiagnostics methods
+	 */
+
+	/**
+	 * The number of chains.
+	 */
+	public int getChainCount()
+	{
+		return _chainScores.length;
+	}
+
+	/**
+	 * Returns a copy of the sequence of sample scores produced by the given chain.
+	 */
+	public double[] getChainScores(int chain)
+	{
+		return _chainScores[chain].clone();
+	}
+
+	/**
+	 * The potential scale reduction (R-hat) of the chains' scores.
+	 *
+	 * @see #potentialScaleReduction(double[][])
+	 */
+	public double getPotentialScaleReduction()
+	{
+		return _potentialScaleReduction;
+	}
+
+	/**
+	 * The effective sample size of the scores of the given chain.
+	 *
+	 * @see #effectiveSampleSize(double[])
+	 */
+	public double getEffectiveSampleSize(int chain)
+	{
+		return _effectiveSampleSizes[chain];
+	}
+
+	/**
+	 * The sum of the effective sample sizes of all of the chains.
+	 */
+	public double getEffectiveSampleSize()
+	{
+		double sum = 0;
+		for (double ess : _effectiveSampleSizes)
+			sum += ess;
+		return sum;
+	}
+
+	/*----------------
+	 * Static methods
+	 */
+
+	/**
+	 * Computes the Gelman-Rubin potential scale reduction factor for the given chains.
+	 * <p>
+	 * Only the first <i>n</i> values of each chain are used, where <i>n</i> is the length of the
+	 * shortest chain. Returns NaN if there are fewer than two chains or fewer than two values per
+	 * chain. Returns one if all of the values are the same.
+	 */
+	public static double potentialScaleReduction(double[][] chains)
+	{
+		final int m = chains.length;
+		if (m < 2)
+			return Double.NaN;
+
+		int n = Integer.MAX_VALUE;
+		for (double[] chain : chains)
+			n = Math.min(n, chain.length);
+		if (n < 2)
+			return Double.NaN;
+
+		final double[] means = new double[m];
+		double grandMean = 0;
+		double within = 0;
+		for (int j = 0; j < m; ++j)
+		{
+			final double[] chain = chains[j];
+			double mean = 0;
+			for (int i = 0; i < n; ++i)
+				mean += chain[i];
+			mean /= n;
+			means[j] = mean;
+			grandMean += mean;
+
+			double variance = 0;
+			for (int i = 0; i < n; ++i)
+			{
+				final double diff = chain[i] - mean;
+				variance += diff * diff;
+			}
+			within += variance / (n - 1);
+		}
+		grandMean /= m;
+		within /= m;
+
+		double between = 0;
+		for (double mean : means)
+		{
+			final double diff = mean - grandMean;
+			between += diff * diff;
+		}
+		between *= (double)n / (m - 1);
+
+		if (within == 0)
+			return between == 0 ? 1.0 : Double.POSITIVE_INFINITY;
+
+		final double pooledVariance = (n - 1.0) / n * within + between / n;
+		return Math.sqrt(pooledVariance / within);
+	}
+
+	/**
+	 * Estimates the effective sample size of a single chain as its length divided by its
+	 * integrated autocorrelation time, which is computed using Geyer's initial positive
+	 * sequence estimator. Returns the length of the chain if all of its values are the same.
+	 */
+	public static double effectiveSampleSize(double[] chain)
+	{
+		final int n = chain.length;
+		if (n < 2)
+			return n;
+
+		double mean = 0;
+		for (double value : chain)
+			mean += value;
+		mean /= n;
+
+		final double[] centered = new double[n];
+		double variance = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			final double diff = centered[i] = chain[i] - mean;
+			variance += diff * diff;
+		}
+		if (variance == 0)
+			return n;
+
+		// Sum pairs of adjacent autocorrelations while they remain positive.
+		double tau = -1;
+		for (int lag = 0; lag + 1 < n; lag += 2)
+		{
+			final double pair = (autocovariance(centered, lag) + autocovariance(centered, lag + 1)) / variance;
+			if (pair <= 0)
+				break;
+			tau += 2 * pair;
+		}
+
+		return tau > 0 ? n / tau : n;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Unnormalized autocovariance of centered values at given lag.
+	 */
+	private static double autocovariance(double[] centered, int lag)
+	{
+		double sum = 0;
+		for (int i = 0, end = centered.length - lag; i < end; ++i)
+			sum += centered[i] * centered[i + lag];
+		return sum;
+	}
+}
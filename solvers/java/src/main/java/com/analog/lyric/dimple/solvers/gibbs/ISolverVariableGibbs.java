@@ -55,4 +55,32 @@ public interface ISolverVariableGibbs extends ISolverNodeGibbs, ISolverVariable
 	public void randomRestart(int restartCount);
 	@Internal
 	public void postAddFactor(Factor f);
+	
+	/**
+	 * The change in the total potential of the graph caused by the most recent invocation of
+	 * {@link #update()}, computed from the scores already evaluated while sampling the new value.
+	 * Returns NaN if the change is not known, in which case the solver must recompute the total
+	 * potential from scratch.
+	 * @since 0.06
+	 */
+	@Internal
+	public double getUpdatePotentialDelta();
+	
+	/**
+	 * Prepares this variable, which belongs to a copy of the graph used to run an independent
+	 * sampling chain, to be sampled in the same way as {@code original}: copies its sampler
+	 * selection, initial sample value and whether all samples are saved.
+	 * @since 0.06
+	 */
+	@Internal
+	public void startChain(ISolverVariableGibbs original);
+	
+	/**
+	 * Adds the belief statistics and any saved samples of {@code chainVariable}, the corresponding
+	 * variable in a copy of the graph that was used to run an independent chain, to this variable.
+	 * If {@code isBestChain}, the best sample of this variable is replaced by that of the chain.
+	 * @since 0.06
+	 */
+	@Internal
+	public void mergeChain(ISolverVariableGibbs chainVariable, boolean isBestChain);
 }
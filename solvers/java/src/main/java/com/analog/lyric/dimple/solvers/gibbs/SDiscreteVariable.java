@@ -16,9 +16,10 @@
 
 package com.analog.lyric.dimple.solvers.gibbs;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 
+import com.analog.lyric.collect.ChunkedIntList;
+import com.analog.lyric.collect.PrimitiveIterator;
 import com.analog.lyric.collect.ReleasableIterator;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.domains.DiscreteDomain;
@@ -53,7 +54,7 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 	private long[] _beliefHistogram;
 	private double[] _input;
 	private double[] _conditional;
-	private ArrayList<Integer> _sampleIndexArray;
+	private ChunkedIntList _sampleIndexArray;
 	private int _bestSampleIndex;
 	private DiscreteValue _initialSampleValue = null;
 	private double _beta = 1;
@@ -62,6 +63,11 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 	private IGenericSampler _sampler;
 	private String _defaultSamplerName = DEFAULT_DISCRETE_SAMPLER_NAME;
 	private boolean _samplerSpecificallySpecified = false;
+	
+	/**
+	 * Change in total graph potential resulting from the last call to {@link #update()}, NaN if unknown.
+	 */
+	private double _updatePotentialDelta = 0;
 
 	/**
 	 * List of neighbors for sample scoring. Instantiated during initialization.
@@ -91,6 +97,8 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 	@Override
 	public final void update()
 	{
+		_updatePotentialDelta = 0;
+		
 		// Don't bother to re-sample deterministic dependent variables (those that are the output of a directional deterministic factor)
 		if (_var.isDeterministicOutput()) return;
 
@@ -103,6 +111,7 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 		
 		final int messageLength = _input.length;
 		final int numPorts = _var.getSiblingCount();
+		final int previousIndex = _outputMsg.getIndex();
 		double minEnergy = Double.POSITIVE_INFINITY;
 
 		// Compute the conditional probability
@@ -160,6 +169,18 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 			((IDiscreteDirectSampler)_sampler).nextSample(_outputMsg.clone(), _conditional, minEnergy, this);
 		else if (_sampler instanceof IMCMCSampler)
 			((IMCMCSampler)_sampler).nextSample(_outputMsg.clone(), this);
+		
+		// The conditional energies include every term of the total potential that depends on this variable,
+		// so their difference is the change in the total potential. This does not hold if the same factor is
+		// connected to this variable more than once, in which case the messages do not account for the other edges.
+		final int index = _outputMsg.getIndex();
+		if (index != previousIndex)
+		{
+			if (_neighbors != null && !_var.isDeterministicInput())
+				_updatePotentialDelta = Double.NaN;
+			else
+				_updatePotentialDelta = (_conditional[index] - _conditional[previousIndex]) / _beta;
+		}
 	}
 	
 	/*-------------------------
@@ -229,6 +250,12 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 	}
 	}
 
+	@Override
+	public double getUpdatePotentialDelta()
+	{
+		return _updatePotentialDelta;
+	}
+	
 	// TODO - move up to ISolverVariable
 	@Override
 	public final double getSampleScore(Value sampleValue)
@@ -365,7 +392,7 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
     @Override
 	public final void saveAllSamples()
     {
-    	_sampleIndexArray = new ArrayList<Integer>();
+    	_sampleIndexArray = new ChunkedIntList();
     }
     
     @Override
@@ -494,19 +521,43 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 		int length = _sampleIndexArray.size();
     	DiscreteDomain domain = _varDiscrete.getDiscreteDomain();
     	Object[] retval = new Object[length];
+    	PrimitiveIterator.OfInt indices = _sampleIndexArray.iterator();
     	for (int i = 0; i < length; i++)
-    		retval[i] = domain.getElement(_sampleIndexArray.get(i));
+    		retval[i] = domain.getElement(indices.nextInt());
     	return retval;
     }
     public final int[] getAllSampleIndices()
     {
 		if (_sampleIndexArray == null)
 			throw new DimpleException("No samples saved. Must call saveAllSamples on variable or entire graph prior to solving");
-    	int length = _sampleIndexArray.size();
-    	int[] retval = new int[length];
-    	for (int i = 0; i < length; i++)
-    		retval[i] = _sampleIndexArray.get(i);
-    	return retval;
+    	return _sampleIndexArray.toArray();
+    }
+    
+    /**
+     * The number of samples saved since the solver was initialized, or zero if
+     * samples are not being saved.
+     * 
+     * @see #saveAllSamples()
+     * @since 0.06
+     */
+    public final int getSampleCount()
+    {
+    	return _sampleIndexArray != null ? _sampleIndexArray.size() : 0;
+    }
+    
+    /**
+     * Iterates over the domain indices of the saved samples without copying them.
+     * <p>
+     * The iterator will not see samples saved after it was created.
+     * 
+     * @see #getAllSampleIndices()
+     * @since 0.06
+     */
+    public final PrimitiveIterator.OfInt getSampleIndexIterator()
+    {
+		if (_sampleIndexArray == null)
+			throw new DimpleException("No samples saved. Must call saveAllSamples on variable or entire graph prior to solving");
+    	return _sampleIndexArray.iterator();
     }
 
 	public final void setAndHoldSampleValue(Object value)
@@ -689,6 +740,31 @@ public class SDiscreteVariable extends SDiscreteVariableBase implements ISolverV
 		_inPortMsgs[thisPortNum] = ovar._inPortMsgs[otherPortNum];
 	}
 	
+	@Override
+	public void startChain(ISolverVariableGibbs original)
+	{
+		final SDiscreteVariable ovar = (SDiscreteVariable)original;
+		_defaultSamplerName = ovar._defaultSamplerName;
+		if (ovar._samplerSpecificallySpecified)
+			setSampler(ovar._sampler.getClass().getSimpleName());
+		_initialSampleValue = ovar._initialSampleValue;
+		if (ovar._sampleIndexArray != null)
+			saveAllSamples();
+	}
+	
+	@Override
+	public void mergeChain(ISolverVariableGibbs chainVariable, boolean isBestChain)
+	{
+		final SDiscreteVariable chain = (SDiscreteVariable)chainVariable;
+		final long[] histogram = _beliefHistogram, chainHistogram = chain._beliefHistogram;
+		for (int i = 0; i < histogram.length; i++)
+			histogram[i] += chainHistogram[i];
+		if (_sampleIndexArray != null && chain._sampleIndexArray != null)
+			_sampleIndexArray.addAll(chain._sampleIndexArray);
+		if (isBestChain)
+			_bestSampleIndex = chain._bestSampleIndex;
+	}
+	
 	// TODO move to ISolverVariable
 	@Override
     public void moveNonEdgeSpecificState(ISolverNode other)
@@ -17,9 +17,19 @@
 package com.analog.lyric.dimple.solvers.gibbs;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.analog.lyric.collect.KeyedPriorityQueue;
+import com.analog.lyric.collect.ChunkedDoubleList;
+import com.analog.lyric.collect.IntBinaryHeap;
+import com.analog.lyric.collect.PrimitiveIterator;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.Bernoulli;
 import com.analog.lyric.dimple.factorfunctions.Beta;
@@ -39,6 +49,8 @@ import com.analog.lyric.dimple.factorfunctions.NegativeExpGamma;
 import com.analog.lyric.dimple.factorfunctions.Normal;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.FactorGraphTopology;
+import com.analog.lyric.dimple.model.core.Node;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.repeated.BlastFromThePastFactor;
 import com.analog.lyric.dimple.model.repeated.FactorGraphStream;
@@ -51,8 +63,10 @@ import com.analog.lyric.dimple.model.variables.VariableBase;
 import com.analog.lyric.dimple.schedulers.GibbsDefaultScheduler;
 import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
 import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
 import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
 import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
 import com.analog.lyric.dimple.solvers.gibbs.customFactors.CustomBernoulli;
 import com.analog.lyric.dimple.solvers.gibbs.customFactors.CustomBeta;
 import com.analog.lyric.dimple.solvers.gibbs.customFactors.CustomBinomial;
@@ -71,6 +85,7 @@ import com.analog.lyric.dimple.solvers.interfaces.ISolverBlastFromThePastFactor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+import com.google.common.primitives.Doubles;
 
 
 public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGraph
@@ -90,16 +105,27 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	private double _minPotential = Double.MAX_VALUE;
 	private boolean _firstSample = true;
 	private boolean _saveAllScores = false;
-	private ArrayList<Double> _scoreArray;
+	private ChunkedDoubleList _scoreArray;
+	private int _sampleThinning = 1;
+	private int _sampleCount;
 	private String _defaultRealSamplerName = SRealVariable.DEFAULT_REAL_SAMPLER_NAME;
 	private String _defaultDiscreteSamplerName = SDiscreteVariable.DEFAULT_DISCRETE_SAMPLER_NAME;
 	private final double LOG2 = Math.log(2);
 	
 	/**
 	 * Priority queue of deterministic factors whose outputs should be
-	 * reevaluated. Lazily created.
+	 * reevaluated, keyed by {@link SFactorUpdate#index()}. Lazily created.
 	 */
-	private KeyedPriorityQueue<ISolverFactorGibbs, SFactorUpdate> _deferredDeterministicFactorUpdates = null;
+	private IntBinaryHeap _deferredDeterministicFactorUpdates = null;
+	
+	/**
+	 * Reusable update objects for deterministic factors, indexed by {@link SFactorUpdate#index()}
+	 * and looked up by solver factor. Discarded when the graph's version id changes while no updates
+	 * are pending.
+	 */
+	private final ArrayList<SFactorUpdate> _factorUpdates = new ArrayList<SFactorUpdate>();
+	private final Map<ISolverFactorGibbs, SFactorUpdate> _factorUpdateMap = new HashMap<ISolverFactorGibbs, SFactorUpdate>();
+	private long _factorUpdatesVersionId = -1;
 	
 	/**
 	 * The number of requests to defer update of deterministic directed factor outputs.
@@ -109,6 +135,46 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	 */
 	private int _deferDeterministicFactorUpdatesCounter = 0;
 	
+	/**
+	 * Coloring used for chromatic sampling when multithreading is enabled. Recomputed when the
+	 * graph's version id changes. Null if the graph does not support concurrent updates.
+	 */
+	private GibbsVariableColoring _coloring = null;
+	private long _coloringVersionId = -1;
+	
+	/**
+	 * Next color to be updated in chromatic sampling.
+	 */
+	private int _nextColor = 0;
+	
+	/**
+	 * Colors with fewer than this many variables are updated in the calling thread.
+	 */
+	private static final int MIN_CONCURRENT_COLOR_SIZE = 32;
+	
+	/**
+	 * Number of independent chains run by {@link #solveOneStep()}.
+	 */
+	private int _numChains = 1;
+	
+	/**
+	 * Diagnostics from most recent run of multiple chains, or null.
+	 */
+	private GibbsChainDiagnostics _chainDiagnostics = null;
+	
+	/**
+	 * Default value for {@link #getPotentialRefreshInterval()}.
+	 */
+	public static final int DEFAULT_POTENTIAL_REFRESH_INTERVAL = 100;
+	
+	/**
+	 * Total potential of the current sample, maintained incrementally from the changes reported by
+	 * variable updates. NaN if not currently known, in which case it will be recomputed from scratch.
+	 */
+	private double _trackedTotalPotential = Double.NaN;
+	private int _samplesSincePotentialRefresh = 0;
+	private int _potentialRefreshInterval = DEFAULT_POTENTIAL_REFRESH_INTERVAL;
+	
 	// Arguments for the constructor
 	public static class Arguments
 	{
@@ -134,6 +200,7 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 		configureInitialTemperature(arguments.initialTemperature);
 		configureTemperingHalfLifeInSamples(arguments.temperingHalfLifeInSamples);
 		_factorGraph.setSolverSpecificDefaultScheduler(new GibbsDefaultScheduler());	// Override the common default scheduler
+		setMultithreadingManager(new MultiThreadingManager(getModelObject()));
 	}
 
 	@Override
@@ -248,13 +315,16 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 		
 		_schedule = _factorGraph.getSchedule();
 		_scheduleIterator = _schedule.iterator();
+		_nextColor = 0;
 		_minPotential = Double.POSITIVE_INFINITY;
 		_firstSample = true;
+		_sampleCount = 0;
+		_trackedTotalPotential = Double.NaN;
 		
 		if (_scansPerSample >= 0)
 			setScansPerSample(_scansPerSample);
 		
-		if (_burnInScans >= 0) _burnInUpdates = _burnInScans * _factorGraph.getVariables().size();
+		if (_burnInScans >= 0) _burnInUpdates = _burnInScans * _factorGraph.getFlatTopology().getVariableCount();
 		if (_temper) setTemperature(_initialTemperature);
 		
 		if (_scoreArray != null)
@@ -264,8 +334,16 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	@Override
 	public void solveOneStep()
 	{
+		if (_numChains > 1)
+		{
+			solveChains();
+			return;
+		}
+		
+		_chainDiagnostics = null;
 		_minPotential = Double.POSITIVE_INFINITY;
 		_firstSample = true;
+		_trackedTotalPotential = Double.NaN;	// Sample values may have been changed since last step
 		
 		for (int restartCount = 0; restartCount < _numRandomRestarts + 1; restartCount++)
 		{
@@ -302,16 +380,26 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	// specified number of single-variable updates, regardless of other parameter settings.
 	// The iterate() method behaves differently than for other solvers due to the fact that the
 	// update() method for Gibbs-specific schedules will update only a single variable.
-	// Also, multithreaded operation for Gibbs is not supported
+	// When multithreading is enabled, the schedule is replaced by a chromatic one; see useMultithreading(boolean).
 	@Override
 	public void iterate(int numIters)
 	{
-		for (int iterNum = 0; iterNum < numIters; iterNum++)
+		final GibbsVariableColoring coloring = useMultithreading() ? getVariableColoring() : null;
+		if (coloring != null)
+		{
+			iterateChromatic(coloring, numIters);
+		}
+		else
 		{
-			if (!_scheduleIterator.hasNext())
-				_scheduleIterator = _schedule.iterator();	// Wrap-around the schedule if reached the end
+			for (int iterNum = 0; iterNum < numIters; iterNum++)
+			{
+				if (!_scheduleIterator.hasNext())
+					_scheduleIterator = _schedule.iterator();	// Wrap-around the schedule if reached the end
 
-			_scheduleIterator.next().update();
+				final IScheduleEntry entry = _scheduleIterator.next();
+				entry.update();
+				trackPotentialChange(entry);
+			}
 		}
 		
 		// Allow interruption (if the solver is run as a thread); currently interruption is allowed only between iterations, not within a single iteration
@@ -323,25 +411,31 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	protected void oneSample()
 	{
 		iterate(_updatesPerSample);
-		for (VariableBase v : _factorGraph.getVariables())
+		
+		// When thinning, only every _sampleThinning'th sample and score is saved, but all samples contribute to the beliefs
+		final boolean saveSample = ++_sampleCount % _sampleThinning == 0;
+		final FactorGraphTopology topology = _factorGraph.getFlatTopology();
+		final int nVariables = topology.getVariableCount();
+		for (int i = 0; i < nVariables; ++i)
 		{
-			ISolverVariableGibbs vs = getSolverVariable(v);
+			ISolverVariableGibbs vs = getSolverVariable(topology.getVariable(i));
 			vs.updateBelief();
-			vs.saveCurrentSample();		// Note that the first sample saved is one full sample after burn in, not immediately after burn in (in case the burn in is zero)
+			if (saveSample)
+				vs.saveCurrentSample();		// Note that the first sample saved is one full sample after burn in, not immediately after burn in (in case the burn in is zero)
 		}
 		
 		// Save the best sample value seen so far
-		double totalPotential = getTotalPotential();
+		double totalPotential = getTrackedTotalPotential();
 		if (totalPotential < _minPotential || _firstSample)
 		{
-			for (VariableBase v : _factorGraph.getVariables())
-				getSolverVariable(v).saveBestSample();
+			for (int i = 0; i < nVariables; ++i)
+				getSolverVariable(topology.getVariable(i)).saveBestSample();
 			_minPotential = totalPotential;
 			_firstSample = false;
 		}
 		
 		// If requested save score value for each sample
-		if (_saveAllScores)
+		if (_saveAllScores && saveSample)
 			_scoreArray.add(totalPotential);
 		
 		// If tempering, reduce the temperature
@@ -367,30 +461,66 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 				getSolverVariable(vb).randomRestart(0);
 			}
 		}
+		_trackedTotalPotential = Double.NaN;
 	}
 	
 	public void randomRestart(int restartCount)
 	{
 		deferDeterministicUpdates();
 		
-		for (VariableBase v : _factorGraph.getVariables())
-			getSolverVariable(v).randomRestart(restartCount);
+		final FactorGraphTopology topology = _factorGraph.getFlatTopology();
+		for (int i = 0, n = topology.getVariableCount(); i < n; ++i)
+			getSolverVariable(topology.getVariable(i)).randomRestart(restartCount);
 		
 		processDeferredDeterministicUpdates();
+		_trackedTotalPotential = Double.NaN;
 		
 		if (_temper) setTemperature(_initialTemperature);	// Reset the temperature, if tempering
 	}
 	
 	
 
+	/**
+	 * Sets the maximum number of samples between full recomputations of the total potential.
+	 * <p>
+	 * The total potential of each sample, which is used to find the best sample and for
+	 * {@link #saveAllScores()}, is maintained incrementally from the change in potential computed
+	 * by each variable update, which only depends on the variable's neighbors. To avoid accumulating
+	 * floating point error, it is recomputed over the entire graph after this many samples. It is also
+	 * recomputed whenever the change in potential from an update is not known, for instance after
+	 * a conjugate sampler or block update. The default is {@link #DEFAULT_POTENTIAL_REFRESH_INTERVAL}.
+	 * An interval of one recomputes the total potential on every sample.
+	 * 
+	 * @throws DimpleException if {@code samples} is less than one.
+	 * @since 0.06
+	 */
+	public void setPotentialRefreshInterval(int samples)
+	{
+		if (samples < 1)
+			throw new DimpleException("Potential refresh interval must be at least one, but was %d", samples);
+		_potentialRefreshInterval = samples;
+	}
+	
+	/**
+	 * The maximum number of samples between full recomputations of the total potential.
+	 * 
+	 * @see #setPotentialRefreshInterval(int)
+	 * @since 0.06
+	 */
+	public int getPotentialRefreshInterval()
+	{
+		return _potentialRefreshInterval;
+	}
+
 	// Get the total potential over all factors of the graph given the current sample values (including input priors on variables)
 	public double getTotalPotential()
 	{
 		double totalPotential = 0;
-		for (Factor f : _factorGraph.getNonGraphFactors())
-			totalPotential += getSolverFactor(f).getPotential();
-		for (VariableBase v : _factorGraph.getVariables())		// Variables contribute too because they have inputs, which are factors
-			totalPotential += getSolverVariable(v).getPotential();
+		final FactorGraphTopology topology = _factorGraph.getFlatTopology();
+		for (int i = 0, n = topology.getFactorCount(); i < n; ++i)
+			totalPotential += getSolverFactor(topology.getFactor(i)).getPotential();
+		for (int i = 0, n = topology.getVariableCount(); i < n; ++i)		// Variables contribute too because they have inputs, which are factors
+			totalPotential += getSolverVariable(topology.getVariable(i)).getPotential();
 		return totalPotential;
 	}
 	
@@ -412,7 +542,7 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	public void saveAllScores()
 	{
 		_saveAllScores = true;
-		_scoreArray = new ArrayList<Double>();
+		_scoreArray = new ChunkedDoubleList();
 	}
 	
 	/**
@@ -430,24 +560,63 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	public final double[] getAllScores()
 	{
 		if (_saveAllScores)
-		{
-			int length = _scoreArray.size();
-			double[] retval = new double[length];
-			for (int i = 0; i < length; i++)
-				retval[i] = _scoreArray.get(i);
-			return retval;
-		}
+			return _scoreArray.toArray();
 		else
 			return null;
 	}
 	
+	/**
+	 * Iterates over the saved score values without copying them, or returns null if scores
+	 * are not being saved.
+	 * <p>
+	 * The iterator will not see scores saved after it was created.
+	 * 
+	 * @see #saveAllScores()
+	 * @see #getAllScores()
+	 * @since 0.06
+	 */
+	public final PrimitiveIterator.OfDouble getScoreIterator()
+	{
+		return _saveAllScores ? _scoreArray.iterator() : null;
+	}
+	
+	/**
+	 * Sets the interval at which samples and scores are saved when {@link #saveAllSamples()} or
+	 * {@link #saveAllScores()} is in effect.
+	 * <p>
+	 * With a thinning interval of <i>k</i>, only every <i>k</i>th sample is saved, which reduces
+	 * the memory used by the saved samples and their autocorrelation. All samples still contribute
+	 * to the beliefs. The default is one, which saves every sample.
+	 * 
+	 * @throws DimpleException if {@code thinning} is less than one.
+	 * @since 0.06
+	 */
+	public void setSampleThinning(int thinning)
+	{
+		if (thinning < 1)
+			throw new DimpleException("Sample thinning interval must be at least one, but was %d", thinning);
+		_sampleThinning = thinning;
+	}
+	
+	/**
+	 * The interval at which samples and scores are saved.
+	 * 
+	 * @see #setSampleThinning(int)
+	 * @since 0.06
+	 */
+	public int getSampleThinning()
+	{
+		return _sampleThinning;
+	}
+	
 	// Set/get the current temperature for all variables in the graph (for tempering)
 	public void setTemperature(double T)
 	{
 		_temperature = T;
 		double beta = 1/T;
-		for (VariableBase v : _factorGraph.getVariables())
-			getSolverVariable(v).setBeta(beta);
+		final FactorGraphTopology topology = _factorGraph.getFlatTopology();
+		for (int i = 0, n = topology.getVariableCount(); i < n; ++i)
+			getSolverVariable(topology.getVariable(i)).setBeta(beta);
 	}
 	public double getTemperature() {return _temperature;}
 	
@@ -477,7 +646,7 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 			throw new DimpleException("Scans per sample must be greater than 0.");
 		
 		_scansPerSample = scansPerSample;
-		_updatesPerSample = _scansPerSample * _factorGraph.getVariables().size();
+		_updatesPerSample = _scansPerSample * _factorGraph.getFlatTopology().getVariableCount();
 	}
 	
 	// Set/get the number of single-variable updates for the burn-in period prior to collecting samples
@@ -673,18 +842,30 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	{
 		if (_deferDeterministicFactorUpdatesCounter > 0)
 		{
-			if (_deferredDeterministicFactorUpdates == null)
+			IntBinaryHeap deferredUpdates = _deferredDeterministicFactorUpdates;
+			if (deferredUpdates == null)
 			{
-				// TODO: Currently uses FIFO order. Instead calculate directed dependency order and use that.
-				_deferredDeterministicFactorUpdates =
-					new KeyedPriorityQueue<ISolverFactorGibbs, SFactorUpdate>(11, SFactorUpdate.Equal.INSTANCE);
+				deferredUpdates = _deferredDeterministicFactorUpdates = new IntBinaryHeap();
 			}
-			SFactorUpdate update = _deferredDeterministicFactorUpdates.get(sfactor);
+			SFactorUpdate update = _factorUpdateMap.get(sfactor);
 			if (update == null)
 			{
-				update = new SFactorUpdate(sfactor);
-				_deferredDeterministicFactorUpdates.offer(update);
+				final long versionId = _factorGraph.getVersionId();
+				if (versionId != _factorUpdatesVersionId && deferredUpdates.isEmpty())
+				{
+					// Drop updates for factors that may no longer be in the graph.
+					_factorUpdatesVersionId = versionId;
+					_factorUpdates.clear();
+					_factorUpdateMap.clear();
+				}
+				update = new SFactorUpdate(sfactor, _factorUpdates.size());
+				_factorUpdates.add(update);
+				_factorUpdateMap.put(sfactor, update);
+				deferredUpdates.ensureKeyCapacity(_factorUpdates.size());
 			}
+			// TODO: Currently uses FIFO order. Instead calculate directed dependency order and use that
+			// as the priority.
+			deferredUpdates.offer(update.index(), 0.0);
 			update.addVariableUpdate(changedVariableIndex, oldValue);
 		}
 		else
@@ -713,10 +894,10 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 			++_deferDeterministicFactorUpdatesCounter;
 			if (_deferredDeterministicFactorUpdates != null)
 			{
-				SFactorUpdate update = null;
-				while ((update = _deferredDeterministicFactorUpdates.poll()) != null)
+				final IntBinaryHeap deferredUpdates = _deferredDeterministicFactorUpdates;
+				for (int index; (index = deferredUpdates.poll()) >= 0;)
 				{
-					update.performUpdate();
+					_factorUpdates.get(index).performUpdate();
 				}
 			}
 		}
@@ -732,4 +913,419 @@ public class SFactorGraph extends SFactorGraphBase //implements ISolverFactorGra
 	{
 		return false;
 	}
+	
+	/***********************************************
+	 * 
+	 * Parallel chains
+	 * 
+	 ***********************************************/
+	
+	/**
+	 * Sets the number of independent chains run when the graph is solved. Default is one.
+	 * <p>
+	 * When more than one, each chain samples its own copy of the graph, with the same sampling parameters
+	 * as this solver, and the chains are run concurrently using the {@linkplain #getMultithreadingManager()
+	 * multithreading manager}'s executor service. When all of the chains have finished, their results are
+	 * merged into this solver's variables:
+	 * <ul>
+	 * <li>Beliefs are computed from the samples of all chains.
+	 * <li>If all samples are saved, each variable's samples are the concatenation of those of the chains.
+	 * <li>The best sample is the best over all chains.
+	 * <li>If all scores are saved, the scores are the concatenation of those of the chains.
+	 * <li>The current sample is the final sample of the first chain.
+	 * </ul>
+	 * Diagnostics for the chains are available from {@link #getChainDiagnostics()}.
+	 * <p>
+	 * Each chain uses a random generator split from the solving thread's, so results are repeatable
+	 * after a call to {@link #setSeed(long)}. Each chain is sampled sequentially, so this setting takes
+	 * precedence over {@link #useMultithreading(boolean)}. Parallel chains are only supported on root
+	 * graphs without rolled-up graph streams, and do not preserve held sample values or sampler-specific
+	 * parameters of individual variables.
+	 * 
+	 * @since 0.06
+	 */
+	public void setNumChains(int numChains)
+	{
+		if (numChains < 1)
+			throw new DimpleException("Number of chains must be at least one");
+		_numChains = numChains;
+	}
+	
+	/**
+	 * @see #setNumChains(int)
+	 * @since 0.06
+	 */
+	public int getNumChains()
+	{
+		return _numChains;
+	}
+	
+	/**
+	 * Diagnostics for the chains run by the most recent solve with {@linkplain #setNumChains(int) multiple chains},
+	 * or null if the most recent solve used a single chain.
+	 * 
+	 * @since 0.06
+	 */
+	public GibbsChainDiagnostics getChainDiagnostics()
+	{
+		return _chainDiagnostics;
+	}
+	
+	private void solveChains()
+	{
+		final FactorGraph fg = _factorGraph;
+		if (fg.hasParentGraph())
+			throw new DimpleException("Multiple chains can only be run on the root graph");
+		if (!fg.getFactorGraphStreams().isEmpty())
+			throw new DimpleException("Multiple chains are not supported for rolled-up graphs");
+		
+		final int nChains = _numChains;
+		final ArrayList<VariableBase> variables = new ArrayList<VariableBase>(fg.getVariables());
+		final int nVariables = variables.size();
+		final SFactorGraph[] chains = new SFactorGraph[nChains];
+		final ISolverVariableGibbs[][] chainVariables = new ISolverVariableGibbs[nChains][nVariables];
+		
+		final SolverRandomGenerator random = SolverRandomGenerator.current();
+		final ArrayList<Callable<Object>> runners = new ArrayList<Callable<Object>>(nChains);
+		for (int chain = 0; chain < nChains; ++chain)
+		{
+			final Map<Node,Node> old2new = new HashMap<Node,Node>();
+			final FactorGraph copy = fg.copyRoot(old2new);
+			final SFactorGraph sChain = chains[chain] = copy.setSolverFactory(new Solver());
+			sChain.startChain(this);
+			for (int i = 0; i < nVariables; ++i)
+			{
+				final VariableBase variable = variables.get(i);
+				final ISolverVariableGibbs chainVariable = chainVariables[chain][i] =
+					sChain.getSolverVariable((VariableBase)old2new.get(variable));
+				chainVariable.startChain(getSolverVariable(variable));
+			}
+			runners.add(new ChainRunner(sChain, random.split()));
+		}
+		
+		try
+		{
+			final List<Future<Object>> results = getMultithreadingManager().getService().invokeAll(runners);
+			for (Future<Object> result : results)
+				result.get();
+		}
+		catch (InterruptedException e)
+		{
+			throw new DimpleException(e);
+		}
+		catch (ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new DimpleException(e);
+		}
+		
+		// Merge the results
+		int bestChain = 0;
+		final double[][] chainScores = new double[nChains][];
+		for (int chain = 0; chain < nChains; ++chain)
+		{
+			final SFactorGraph sChain = chains[chain];
+			if (sChain._minPotential < chains[bestChain]._minPotential)
+				bestChain = chain;
+			
+			final ChunkedDoubleList scores = sChain._scoreArray;
+			chainScores[chain] = scores.toArray();
+			if (_saveAllScores)
+				_scoreArray.addAll(scores);
+		}
+		
+		for (int chain = 0; chain < nChains; ++chain)
+		{
+			for (int i = 0; i < nVariables; ++i)
+				getSolverVariable(variables.get(i)).mergeChain(chainVariables[chain][i], chain == bestChain);
+		}
+		
+		deferDeterministicUpdates();
+		for (int i = 0; i < nVariables; ++i)
+		{
+			final VariableBase variable = variables.get(i);
+			if (!variable.hasFixedValue())
+				getSolverVariable(variable).setCurrentSample(chainVariables[0][i].getCurrentSampleValue());
+		}
+		processDeferredDeterministicUpdates();
+		
+		_minPotential = chains[bestChain]._minPotential;
+		_firstSample = false;
+		if (_temper)
+			setTemperature(chains[0]._temperature);
+		
+		_chainDiagnostics = new GibbsChainDiagnostics(chainScores);
+	}
+	
+	/**
+	 * Copies the sampling parameters of {@code original} to this solver, which runs a chain on a copy of its graph.
+	 */
+	private void startChain(SFactorGraph original)
+	{
+		_numSamples = original._numSamples;
+		_updatesPerSample = original._updatesPerSample;
+		_scansPerSample = original._scansPerSample;
+		_sampleThinning = original._sampleThinning;
+		_potentialRefreshInterval = original._potentialRefreshInterval;
+		_burnInUpdates = original._burnInUpdates;
+		_burnInScans = original._burnInScans;
+		_numRandomRestarts = original._numRandomRestarts;
+		_temper = original._temper;
+		_initialTemperature = original._initialTemperature;
+		_temperingDecayConstant = original._temperingDecayConstant;
+		setDefaultRealSampler(original._defaultRealSamplerName);
+		setDefaultDiscreteSampler(original._defaultDiscreteSamplerName);
+		saveAllScores();
+	}
+	
+	/**
+	 * Solves the graph of a single chain in a worker thread.
+	 */
+	private static class ChainRunner implements Callable<Object>
+	{
+		private final SFactorGraph _chain;
+		private final SolverRandomGenerator _random;
+		
+		private ChainRunner(SFactorGraph chain, SolverRandomGenerator random)
+		{
+			_chain = chain;
+			_random = random;
+		}
+		
+		@Override
+		public Object call()
+		{
+			final SolverRandomGenerator threadRandom = SolverRandomGenerator.setCurrent(_random);
+			try
+			{
+				_chain.solve();
+			}
+			finally
+			{
+				SolverRandomGenerator.setCurrent(threadRandom);
+			}
+			return null;
+		}
+	}
+	
+	/***********************************************
+	 * 
+	 * Chromatic sampling
+	 * 
+	 ***********************************************/
+	
+	/**
+	 * Enables or disables multithreaded chromatic sampling.
+	 * <p>
+	 * When enabled, the variables of the graph are partitioned into colors (see
+	 * {@link GibbsVariableColoring}) and {@link #iterate(int)} resamples one color at a time,
+	 * updating all of the variables in the color concurrently using the
+	 * {@linkplain #getMultithreadingManager() multithreading manager}'s executor service and number of
+	 * workers. Each sample then consists of whole passes over the colors, so the graph's schedule is
+	 * not used and {@link #getUpdatesPerSample()} is rounded up to a whole number of colors. After a call
+	 * to {@link #setSeed(long)}, results are repeatable for a given number of workers.
+	 * <p>
+	 * Graphs containing deterministic directed factors cannot be sampled concurrently and will
+	 * continue to be updated sequentially using the schedule.
+	 * 
+	 * @since 0.06
+	 */
+	@Override
+	public void useMultithreading(boolean use)
+	{
+		super.useMultithreading(use);
+	}
+	
+	/**
+	 * Returns the coloring used for chromatic sampling when {@linkplain #useMultithreading(boolean)
+	 * multithreading} is enabled, computing it if the graph has changed. Returns null if the
+	 * graph contains deterministic directed factors, which prevent concurrent updates.
+	 * 
+	 * @since 0.06
+	 */
+	public GibbsVariableColoring getVariableColoring()
+	{
+		final FactorGraph fg = _factorGraph;
+		final long versionId = fg.getTopologyVersionId();
+		if (versionId != _coloringVersionId)
+		{
+			_coloringVersionId = versionId;
+			_coloring = null;
+			_nextColor = 0;
+			
+			boolean hasDeterministicFactors = false;
+			for (Factor factor : fg.getNonGraphFactors())
+			{
+				if (factor.getFactorFunction().isDeterministicDirected())
+				{
+					hasDeterministicFactors = true;
+					break;
+				}
+			}
+			
+			if (!hasDeterministicFactors)
+				_coloring = GibbsVariableColoring.create(fg);
+		}
+		
+		return _coloring;
+	}
+	
+	/**
+	 * Updates the tracked total potential with the change in potential resulting from the
+	 * update of {@code entry}.
+	 */
+	private void trackPotentialChange(IScheduleEntry entry)
+	{
+		if (entry instanceof NodeScheduleEntry)
+		{
+			final ISolverNode node = ((NodeScheduleEntry)entry).getNode().getSolver();
+			if (node instanceof ISolverVariableGibbs)
+			{
+				_trackedTotalPotential += ((ISolverVariableGibbs)node).getUpdatePotentialDelta();
+				return;
+			}
+		}
+		
+		// The change is not known for other kinds of updates, such as block updates
+		_trackedTotalPotential = Double.NaN;
+	}
+	
+	/**
+	 * Returns the total potential of the current sample, recomputing it from scratch if it is not
+	 * known or it has not been recomputed for {@link #getPotentialRefreshInterval()} samples.
+	 */
+	private double getTrackedTotalPotential()
+	{
+		if (!Doubles.isFinite(_trackedTotalPotential) || ++_samplesSincePotentialRefresh >= _potentialRefreshInterval)
+		{
+			_trackedTotalPotential = getTotalPotential();
+			_samplesSincePotentialRefresh = 0;
+		}
+		return _trackedTotalPotential;
+	}
+	
+	/**
+	 * Performs at least {@code numUpdates} single-variable updates, updating whole colors at a time.
+	 */
+	private void iterateChromatic(GibbsVariableColoring coloring, int numUpdates)
+	{
+		final int nColors = coloring.getColorCount();
+		if (nColors == 0)
+			return;
+		
+		final MultiThreadingManager manager = getMultithreadingManager();
+		final ExecutorService service = manager.getService();
+		final int numWorkers = manager.getNumWorkers();
+		
+		for (int updates = 0; updates < numUpdates; )
+		{
+			final int color = _nextColor;
+			final int colorSize = coloring.getColorSize(color);
+			
+			if (numWorkers < 2 || colorSize < MIN_CONCURRENT_COLOR_SIZE)
+			{
+				for (int i = 0; i < colorSize; ++i)
+					coloring.getVariable(color, i).update();
+			}
+			else
+			{
+				updateColorConcurrently(service, numWorkers, coloring, color);
+			}
+			
+			// Variables of the same color share no factors, so their changes in potential are independent.
+			// Sum them in a fixed order so that the result does not depend on the scheduling of the workers.
+			for (int i = 0; i < colorSize; ++i)
+				_trackedTotalPotential += coloring.getVariable(color, i).getUpdatePotentialDelta();
+			
+			updates += colorSize;
+			_nextColor = (color + 1) % nColors;
+		}
+	}
+	
+	private static void updateColorConcurrently(ExecutorService service, int numWorkers, GibbsVariableColoring coloring, int color)
+	{
+		// Workers claim blocks of variables from a shared cursor, so that a worker that finishes
+		// early takes on work that would otherwise wait for a slower worker.
+		final int colorSize = coloring.getColorSize(color);
+		final int blockSize = Math.max(1, colorSize / (numWorkers * 4));
+		final AtomicInteger cursor = new AtomicInteger();
+		
+		// Each block gets its own random generator split from this thread's, so that results are
+		// repeatable regardless of which worker updates the block.
+		final SolverRandomGenerator parentRandom = SolverRandomGenerator.current();
+		final SolverRandomGenerator[] blockRandoms = new SolverRandomGenerator[(colorSize + blockSize - 1) / blockSize];
+		for (int i = 0; i < blockRandoms.length; ++i)
+			blockRandoms[i] = parentRandom.split();
+		
+		final ArrayList<Callable<Object>> workers = new ArrayList<Callable<Object>>(numWorkers);
+		for (int i = 0; i < numWorkers; ++i)
+			workers.add(new ColorUpdater(coloring, color, cursor, blockSize, blockRandoms));
+		
+		try
+		{
+			final List<Future<Object>> results = service.invokeAll(workers);
+			for (Future<Object> result : results)
+				result.get();
+		}
+		catch (InterruptedException e)
+		{
+			throw new DimpleException(e);
+		}
+		catch (ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new DimpleException(e);
+		}
+	}
+	
+	/**
+	 * Updates blocks of variables of a single color until none are left.
+	 */
+	private static class ColorUpdater implements Callable<Object>
+	{
+		private final GibbsVariableColoring _coloring;
+		private final int _color;
+		private final AtomicInteger _cursor;
+		private final int _blockSize;
+		private final SolverRandomGenerator[] _blockRandoms;
+		
+		private ColorUpdater(GibbsVariableColoring coloring, int color, AtomicInteger cursor, int blockSize,
+			SolverRandomGenerator[] blockRandoms)
+		{
+			_coloring = coloring;
+			_color = color;
+			_cursor = cursor;
+			_blockSize = blockSize;
+			_blockRandoms = blockRandoms;
+		}
+		
+		@Override
+		public Object call()
+		{
+			final GibbsVariableColoring coloring = _coloring;
+			final int color = _color;
+			final int colorSize = coloring.getColorSize(color);
+			
+			final SolverRandomGenerator threadRandom = SolverRandomGenerator.current();
+			try
+			{
+				for (int start; (start = _cursor.getAndAdd(_blockSize)) < colorSize; )
+				{
+					SolverRandomGenerator.setCurrent(_blockRandoms[start / _blockSize]);
+					for (int i = start, end = Math.min(start + _blockSize, colorSize); i < end; ++i)
+						coloring.getVariable(color, i).update();
+				}
+			}
+			finally
+			{
+				SolverRandomGenerator.setCurrent(threadRandom);
+			}
+			
+			return null;
+		}
+	}
 }
@@ -16,7 +16,6 @@
 
 package com.analog.lyric.dimple.solvers.gibbs;
 
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -27,6 +26,11 @@ import com.analog.lyric.dimple.model.values.IndexedValue;
 import com.analog.lyric.dimple.model.values.Value;
 
 /**
+ * Pending update of the outputs of a deterministic directed factor, accumulating
+ * the variable values that changed since it was scheduled.
+ * <p>
+ * Instances are reused across updates of the same factor.
+ * 
  * @since 0.05
  */
 @NotThreadSafe
@@ -37,27 +41,24 @@ public final class SFactorUpdate implements IKeyed<ISolverFactorGibbs>
 	 */
 	
 	private final ISolverFactorGibbs _sfactor;
+	private final int _index;
 	private Set<IndexedValue> _updates;
+	
+	/**
+	 * Emptied set that will replace {@link #_updates} when the update is performed, so
+	 * that sets are not reallocated.
+	 */
+	private Set<IndexedValue> _spareUpdates;
 	private final int _incrementalUpdateThreshold;
-
-	static enum Equal implements Comparator<SFactorUpdate>
-	{
-		INSTANCE;
-		
-		@Override
-		public int compare(SFactorUpdate o1, SFactorUpdate o2)
-		{
-			return 0;
-		}
-	}
 	
 	/*--------------
 	 * Construction
 	 */
 	
-	SFactorUpdate(ISolverFactorGibbs sfactor)
+	SFactorUpdate(ISolverFactorGibbs sfactor, int index)
 	{
 		_sfactor = sfactor;
+		_index = index;
 		int nEdges = sfactor.getModelObject().getSiblingCount();
 		_incrementalUpdateThreshold = sfactor.getModelObject().getFactorFunction().updateDeterministicLimit(nEdges);
 		_updates = _incrementalUpdateThreshold > 0 ? new HashSet<IndexedValue>() : null;
@@ -91,9 +92,34 @@ public final class SFactorUpdate implements IKeyed<ISolverFactorGibbs>
 		}
 	}
 	
+	/**
+	 * Performs the update and resets the accumulated variable updates. The factor may be
+	 * rescheduled while the update is being performed.
+	 */
 	void performUpdate()
 	{
-		_sfactor.updateNeighborVariableValuesNow(_updates);
+		final Set<IndexedValue> updates = _updates;
+		if (_incrementalUpdateThreshold > 0)
+		{
+			Set<IndexedValue> spare = _spareUpdates;
+			_spareUpdates = null;
+			_updates = spare != null ? spare : new HashSet<IndexedValue>();
+		}
+		_sfactor.updateNeighborVariableValuesNow(updates);
+		if (updates != null)
+		{
+			updates.clear();
+			_spareUpdates = updates;
+		}
+	}
+	
+	/**
+	 * Unique index of this update within its {@link SFactorGraph}, used as its key in the
+	 * deferred update queue.
+	 */
+	int index()
+	{
+		return _index;
 	}
 	
 	ISolverFactorGibbs sfactor()
@@ -17,10 +17,12 @@
 package com.analog.lyric.dimple.solvers.gibbs;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.analog.lyric.collect.ChunkedDoubleList;
 import com.analog.lyric.collect.ReleasableIterator;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
@@ -74,12 +76,13 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 	private boolean _initialSampleValueSet = false;
 	private FactorFunction[] _inputArray;
 	private FactorFunction _inputJoint;
+	private final RealValue[] _inputArgument = new RealValue[] { RealValue.create() };	// Reused to evaluate _inputArray without boxing
 	private RealJointDomain _domain;
 	private String _defaultSamplerName = SRealVariable.DEFAULT_REAL_SAMPLER_NAME;
 	private IMCMCSampler _sampler = null;
 	private IRealJointConjugateSampler _conjugateSampler = null;
 	private boolean _samplerSpecificallySpecified = false;
-	private ArrayList<double[]> _sampleArray;
+	private ChunkedDoubleList _sampleArray;
 	private double[] _bestSampleValue;
 	private double _beta = 1;
 	private boolean _holdSampleValue = false;
@@ -87,6 +90,16 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 	private int _tempIndex = 0;
 	private boolean _visited = false;
 	
+	/*
+	 * State used to compute the change in potential resulting from update(), using the scores
+	 * evaluated by the sampler. The start score is NaN until the score of the starting value is known.
+	 */
+	private double _updatePotentialDelta = 0;
+	private double[] _updateStartValue = null;
+	private double _updateStartScore = Double.NaN;
+	private double _currentScore;
+	private boolean _currentScoreValid = false;
+	
 	/**
 	 * List of neighbors for sample scoring. Instantiated during initialization.
 	 */
@@ -131,6 +144,8 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 	@Override
 	public final void update()
 	{
+		_updatePotentialDelta = 0;
+		
 		// Don't bother to re-sample deterministic dependent variables (those that are the output of a directional deterministic factor)
 		if (getModelObject().isDeterministicOutput()) return;
 
@@ -144,6 +159,12 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 		if (_conjugateSampler == null)
 		{
 			// Use MCMC sampler
+			if (_updateStartValue == null || _updateStartValue.length != _numRealVars)
+				_updateStartValue = new double[_numRealVars];
+			System.arraycopy(_sampleValue, 0, _updateStartValue, 0, _numRealVars);
+			_updateStartScore = Double.NaN;
+			_currentScoreValid = false;
+			
 			RealValue nextSample = RealValue.create();
 			for (int i = 0; i < _numRealVars; i++)
 			{
@@ -151,6 +172,13 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 				nextSample.setDouble(_sampleValue[i]);
 				_sampler.nextSample(nextSample, this);
 			}
+			
+			if (!Arrays.equals(_sampleValue, _updateStartValue))
+			{
+				// NaN if the sampler did not score the starting value
+				final double score = _currentScoreValid ? _currentScore : getCurrentSampleScore();
+				_updatePotentialDelta = (score - _updateStartScore) / _beta;
+			}
 		}
 		else
 		{
@@ -167,6 +195,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 				((ISolverFactorGibbs)factor).updateEdgeMessage(factorPortNumber);	// Run updateEdgeMessage for each neighboring factor
 			}
 			setCurrentSample(_conjugateSampler.nextSample(ports, _inputJoint));
+			_updatePotentialDelta = Double.NaN;	// Conjugate samplers do not compute scores
 		}
 	}
 	
@@ -217,7 +246,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 		{
 			for (int i = 0; i < _numRealVars; i++)
 				{
-				potential += _inputArray[i].evalEnergy(_sampleValue[i]);
+				potential += inputEnergy(i, _sampleValue[i]);
 					if (!Doubles.isFinite(potential))
 					{
 						break computeScore;
@@ -239,8 +268,20 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 			sampleScore = potential * _beta;	// Incorporate current temperature
 	}
 		
+		_currentScore = sampleScore;
+		_currentScoreValid = true;
+		if (Double.isNaN(_updateStartScore) && Arrays.equals(_sampleValue, _updateStartValue))
+			_updateStartScore = sampleScore;
+		
 		return sampleScore;
 	}
+	
+	@Override
+	public double getUpdatePotentialDelta()
+	{
+		return _updatePotentialDelta;
+	}
+
 	@Override
 	public final void setNextSampleValue(Value sampleValue)
 	{
@@ -372,7 +413,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 
 					// No available sampler, so if bounded, sample uniformly from the bounds
 					if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-						setCurrentSample(i, SolverRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+						setCurrentSample(i, SolverRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 				}
 			}
 		}
@@ -406,7 +447,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 				{
 					// No available sampler, so if bounded, sample uniformly from the bounds
 					if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-						setCurrentSample(i, SolverRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+						setCurrentSample(i, SolverRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 				}
 			}
 		}
@@ -421,7 +462,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 
 				// If bounded, sample uniformly from the bounds, otherwise leave current sample value
 				if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-					setCurrentSample(i, SolverRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+					setCurrentSample(i, SolverRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 			}
 		}
 	}
@@ -495,7 +536,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 		{
 			double score = 0;
 			for (int i = 0; i < _numRealVars; i++)
-				score += _inputArray[i].evalEnergy(value[i]);
+				score += inputEnergy(i, value[i]);
 			return score;
 		}
 		else
@@ -516,7 +557,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 	@Override
 	public final void saveAllSamples()
 	{
-		_sampleArray = new ArrayList<double[]>();
+		_sampleArray = new ChunkedDoubleList();
 	}
 
     @Override
@@ -529,7 +570,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 	public final void saveCurrentSample()
 	{
 		if (_sampleArray != null)
-			_sampleArray.add(_sampleValue.clone());
+			_sampleArray.add(_sampleValue);
 	}
 
 	@Override
@@ -550,7 +591,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 		{
 			double potential = 0;
 			for (int i = 0; i < _numRealVars; i++)
-				potential += _inputArray[i].evalEnergy(_sampleValue[i]);
+				potential += inputEnergy(i, _sampleValue[i]);
 			return potential;
 		}
 		else
@@ -588,6 +629,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 		
 		_sampleValue = value;
 		_outputMsg.setValue(value);
+		_currentScoreValid = false;
 		
 		if (hasDeterministicDependents)
 		{
@@ -609,6 +651,7 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 		
 		_sampleValue[index] = value;
 		_outputMsg.setValue(index, value);
+		_currentScoreValid = false;
 		
 		if (hasDeterministicDependents)
 		{
@@ -641,15 +684,43 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 	{
 		if (_sampleArray == null)
 			throw new DimpleException("No samples saved. Must call saveAllSamples on variable or entire graph prior to solving");
-		int length = _sampleArray.size();
+		int length = getSampleCount();
 		double[][] retval = new double[length][];
 		for (int i = 0; i < length; i++)
-			retval[i] = _sampleArray.get(i);
+			retval[i] = _sampleArray.get(i * _numRealVars, new double[_numRealVars]);
 		return retval;
 	}
+	
+	/**
+	 * The number of samples saved since the solver was initialized, or zero if
+	 * samples are not being saved.
+	 * 
+	 * @see #saveAllSamples()
+	 * @since 0.06
+	 */
+	public final int getSampleCount()
+	{
+		return _sampleArray != null ? _sampleArray.size() / _numRealVars : 0;
+	}
+	
+	/**
+	 * Copies the saved sample with given {@code index} into {@code value}, whose length
+	 * must be the {@linkplain #getDimension() dimension} of the variable.
+	 * 
+	 * @return {@code value}
+	 * @see #getAllSamples()
+	 * @since 0.06
+	 */
+	public final double[] getSample(int index, double[] value)
+	{
+		if (_sampleArray == null)
+			throw new DimpleException("No samples saved. Must call saveAllSamples on variable or entire graph prior to solving");
+		return _sampleArray.get(index * _numRealVars, value);
+	}
 
-	// This is meant for internal use, not as a user accessible method
-	public final List<double[]> _getSampleArrayUnsafe()
+	// This is meant for internal use, not as a user accessible method.
+	// Holds the saved samples one after the other, with getDimension() values per sample.
+	public final ChunkedDoubleList _getSampleArrayUnsafe()
 	{
 		return _sampleArray;
 	}
@@ -895,6 +966,29 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 			saveAllSamples();
 	}
 	
+	@Override
+	public void startChain(ISolverVariableGibbs original)
+	{
+		final SRealJointVariable ovar = (SRealJointVariable)original;
+		_defaultSamplerName = ovar._defaultSamplerName;
+		if (ovar._samplerSpecificallySpecified)
+			setSampler(ovar._sampler.getClass().getSimpleName());
+		_initialSampleValue = ovar._initialSampleValue.clone();
+		_initialSampleValueSet = ovar._initialSampleValueSet;
+		if (ovar._sampleArray != null)
+			saveAllSamples();
+	}
+	
+	@Override
+	public void mergeChain(ISolverVariableGibbs chainVariable, boolean isBestChain)
+	{
+		final SRealJointVariable chain = (SRealJointVariable)chainVariable;
+		if (_sampleArray != null && chain._sampleArray != null)
+			_sampleArray.addAll(chain._sampleArray);
+		if (isBestChain)
+			_bestSampleValue = chain._bestSampleValue.clone();
+	}
+	
 	// TODO move to ISolverVariable
 	@Override
     public void moveNonEdgeSpecificState(ISolverNode other)
@@ -976,4 +1070,17 @@ public class SRealJointVariable extends SRealJointVariableBase implements ISolve
 		
 		return commonSamplers;
 	}
+
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Evaluates the energy of the input for the given element of the joint value without allocating.
+	 */
+	private double inputEnergy(int i, double value)
+	{
+		_inputArgument[0].setDouble(value);
+		return _inputArray[i].evalEnergy(_inputArgument);
+	}
 }
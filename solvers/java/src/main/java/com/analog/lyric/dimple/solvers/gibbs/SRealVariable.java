@@ -21,6 +21,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.analog.lyric.collect.ChunkedDoubleList;
+import com.analog.lyric.collect.PrimitiveIterator;
 import com.analog.lyric.collect.ReleasableIterator;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
@@ -72,17 +74,28 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 	private double _initialSampleValue = 0;
 	private boolean _initialSampleValueSet = false;
 	private FactorFunction _input;
+	private final RealValue[] _inputArgument = new RealValue[] { RealValue.create() };	// Reused to evaluate _input without boxing
 	private RealDomain _domain;
 	private String _defaultSamplerName = DEFAULT_REAL_SAMPLER_NAME;
 	private IMCMCSampler _sampler = null;
 	private IRealConjugateSampler _conjugateSampler = null;
 	private boolean _samplerSpecificallySpecified = false;
-	private ArrayList<Double> _sampleArray;
+	private ChunkedDoubleList _sampleArray;
 	private double _bestSampleValue;
 	private double _beta = 1;
 	private boolean _holdSampleValue = false;
 	private boolean _visited = false;
 	
+	/*
+	 * State used to compute the change in potential resulting from update(), using the scores
+	 * evaluated by the sampler. The start score is NaN until the score of the starting value is known.
+	 */
+	private double _updatePotentialDelta = 0;
+	private double _updateStartValue;
+	private double _updateStartScore = Double.NaN;
+	private double _currentScore;
+	private boolean _currentScoreValid = false;
+	
 	/**
 	 * List of neighbors for sample scoring. Instantiated during initialization.
 	 */
@@ -126,6 +139,8 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 	@Override
 	public final void update()
 	{
+		_updatePotentialDelta = 0;
+		
 		// Don't bother to re-sample deterministic dependent variables (those that are the output of a directional deterministic factor)
 		if (getModelObject().isDeterministicOutput()) return;
 
@@ -139,8 +154,18 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 		if (_conjugateSampler == null)
 		{
 			// Use MCMC sampler
+			_updateStartValue = _sampleValue;
+			_updateStartScore = Double.NaN;
+			_currentScoreValid = false;
 			RealValue nextSample = RealValue.create(_sampleValue);
 			_sampler.nextSample(nextSample, this);
+			
+			if (_sampleValue != _updateStartValue)
+			{
+				// NaN if the sampler did not score the starting value
+				final double score = _currentScoreValid ? _currentScore : getCurrentSampleScore();
+				_updatePotentialDelta = (score - _updateStartScore) / _beta;
+			}
 		}
 		else
 		{
@@ -158,7 +183,10 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 			}
 			double nextSampleValue = _conjugateSampler.nextSample(ports, _input);
 			if (nextSampleValue != _sampleValue)	// Would be exactly equal if not changed since last value tested
+			{
 				setCurrentSample(nextSampleValue);
+				_updatePotentialDelta = Double.NaN;	// Conjugate samplers do not compute scores
+			}
 		}
 	}
 	
@@ -199,7 +227,7 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 			// Sum up the potentials from the input and all connected factors
 			if (_input != null)
 			{
-				potential = _input.evalEnergy(new Object[]{_sampleValue});
+				potential = inputEnergy(_sampleValue);
 				if (!Doubles.isFinite(potential))
 				{
 					break computeScore;
@@ -220,9 +248,20 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 			sampleScore = potential * _beta;	// Incorporate current temperature
 		}
 		
+		_currentScore = sampleScore;
+		_currentScoreValid = true;
+		if (_sampleValue == _updateStartValue && Double.isNaN(_updateStartScore))
+			_updateStartScore = sampleScore;
+		
 		return sampleScore;
 	}
 	
+	@Override
+	public double getUpdatePotentialDelta()
+	{
+		return _updatePotentialDelta;
+	}
+	
 	@Override
 	public final void setNextSampleValue(Value sampleValue)
 	{
@@ -344,7 +383,7 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 		{
 			// No input or no available sampler, so if bounded, sample uniformly from the bounds
 			if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-				setCurrentSample(SolverRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+				setCurrentSample(SolverRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 		}
 	}
 
@@ -389,9 +428,9 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 		else if (_input == null)
 			return 0;
 		else if (_guessWasSet)
-			return _input.evalEnergy(_guessValue);
+			return inputEnergy(_guessValue);
 		else
-			return _input.evalEnergy(_sampleValue);
+			return inputEnergy(_sampleValue);
 	}
 	
 	@Override
@@ -408,7 +447,7 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 	@Override
 	public final void saveAllSamples()
 	{
-		_sampleArray = new ArrayList<Double>();
+		_sampleArray = new ChunkedDoubleList();
 	}
 
     @Override
@@ -439,7 +478,7 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 		else if (_input == null)
 			return 0;
 		else
-			return _input.evalEnergy(new Object[]{_sampleValue});
+			return inputEnergy(_sampleValue);
 	}
 	
 	@Override
@@ -473,6 +512,7 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 		
 		_sampleValue = value;
 		_outputMsg.setDouble(_sampleValue);
+		_currentScoreValid = false;
 		
 		// If this variable has deterministic dependents, then set their values
 		if (hasDeterministicDependents)
@@ -495,15 +535,38 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 	{
 		if (_sampleArray == null)
 			throw new DimpleException("No samples saved. Must call saveAllSamples on variable or entire graph prior to solving");
-		int length = _sampleArray.size();
-		double[] retval = new double[length];
-		for (int i = 0; i < length; i++)
-			retval[i] = _sampleArray.get(i);
-		return retval;
+		return _sampleArray.toArray();
+	}
+	
+	/**
+	 * The number of samples saved since the solver was initialized, or zero if
+	 * samples are not being saved.
+	 * 
+	 * @see #saveAllSamples()
+	 * @since 0.06
+	 */
+	public final int getSampleCount()
+	{
+		return _sampleArray != null ? _sampleArray.size() : 0;
+	}
+	
+	/**
+	 * Iterates over the saved samples without copying them.
+	 * <p>
+	 * The iterator will not see samples saved after it was created.
+	 * 
+	 * @see #getAllSamples()
+	 * @since 0.06
+	 */
+	public final PrimitiveIterator.OfDouble getSampleIterator()
+	{
+		if (_sampleArray == null)
+			throw new DimpleException("No samples saved. Must call saveAllSamples on variable or entire graph prior to solving");
+		return _sampleArray.iterator();
 	}
 	
 	// This is meant for internal use, not as a user accessible method
-	public final List<Double> _getSampleArrayUnsafe()
+	public final ChunkedDoubleList _getSampleArrayUnsafe()
 	{
 		return _sampleArray;
 	}
@@ -747,6 +810,29 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 			saveAllSamples();
 	}
 	
+	@Override
+	public void startChain(ISolverVariableGibbs original)
+	{
+		final SRealVariable ovar = (SRealVariable)original;
+		_defaultSamplerName = ovar._defaultSamplerName;
+		if (ovar._samplerSpecificallySpecified)
+			setSampler(ovar._sampler.getClass().getSimpleName());
+		_initialSampleValue = ovar._initialSampleValue;
+		_initialSampleValueSet = ovar._initialSampleValueSet;
+		if (ovar._sampleArray != null)
+			saveAllSamples();
+	}
+	
+	@Override
+	public void mergeChain(ISolverVariableGibbs chainVariable, boolean isBestChain)
+	{
+		final SRealVariable chain = (SRealVariable)chainVariable;
+		if (_sampleArray != null && chain._sampleArray != null)
+			_sampleArray.addAll(chain._sampleArray);
+		if (isBestChain)
+			_bestSampleValue = chain._bestSampleValue;
+	}
+	
 	// TODO move to ISolverVariable
 	@Override
     public void moveNonEdgeSpecificState(ISolverNode other)
@@ -821,4 +907,16 @@ public class SRealVariable extends SRealVariableBase implements ISolverVariableG
 		return commonSamplers;
 	}
 
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Evaluates the energy of the input for the given value without allocating.
+	 */
+	private double inputEnergy(double value)
+	{
+		_inputArgument[0].setDouble(value);
+		return _input.evalEnergy(_inputArgument);
+	}
 }
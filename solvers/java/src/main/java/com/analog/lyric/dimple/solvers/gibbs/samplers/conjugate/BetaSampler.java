@@ -67,7 +67,7 @@ public class BetaSampler implements IRealConjugateSampler
 	{
 		double alphaMinusOne = parameters.getAlphaMinusOne();
 		double betaMinusOne = parameters.getBetaMinusOne();
-		return SolverRandomGenerator.randBeta.nextDouble(alphaMinusOne + 1, betaMinusOne + 1);
+		return SolverRandomGenerator.randBeta().nextDouble(alphaMinusOne + 1, betaMinusOne + 1);
 	}
 	
 	@Override
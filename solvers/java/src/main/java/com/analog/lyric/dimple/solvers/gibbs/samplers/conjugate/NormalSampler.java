@@ -76,9 +76,9 @@ public class NormalSampler implements IRealConjugateSampler
 		double mean = parameters.getMean();
 		double precision = parameters.getPrecision();
 		if (precision > 0)
-			return mean + SolverRandomGenerator.rand.nextGaussian() / Math.sqrt(precision);
+			return mean + SolverRandomGenerator.rand().nextGaussian() / Math.sqrt(precision);
 		else
-			return mean + SolverRandomGenerator.rand.nextGaussian() * MAX_SIGMA;
+			return mean + SolverRandomGenerator.rand().nextGaussian() * MAX_SIGMA;
 	}
 
 	@Override
@@ -42,7 +42,7 @@ public class SuwaTodoSampler implements IDiscreteDirectSampler
 	@Override
 	public void nextSample(DiscreteValue sampleValue, double[] energy, double minEnergy, IDiscreteSamplerClient samplerClient)
 	{		
-		RandomGenerator rand = SolverRandomGenerator.rand;
+		RandomGenerator rand = SolverRandomGenerator.rand();
 		final int length = energy.length;
 		int sampleIndex;
 
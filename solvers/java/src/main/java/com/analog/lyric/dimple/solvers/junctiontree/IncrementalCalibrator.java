@@ -0,0 +1,347 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.junctiontree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+
+/**
+ * Keeps the messages of a calibrated, singly connected graph up to date when the inputs
+ * of some of its variables change, by recomputing only the messages that depend on them.
+ * <p>
+ * In a tree, changing the input of a variable only invalidates the messages directed away
+ * from it. {@link #invalidate(INode)} marks those messages as stale, stopping at messages that
+ * are already stale (everything downstream of a stale message is already stale), and
+ * {@link #update(INode)} recomputes only the stale messages on the paths leading into a node
+ * before its belief is read. Messages are recomputed using the solver objects of the graph,
+ * so this works with any solver whose messages are exact on trees.
+ * <p>
+ * @since 0.06
+ */
+@NotThreadSafe
+final class IncrementalCalibrator
+{
+	/*-------
+	 * State
+	 */
+
+	private final FactorGraph _graph;
+	private final INode[] _nodes;
+	private final Map<INode,Integer> _nodeToIndex;
+
+	/**
+	 * Directed edges leaving node {@code i} are numbered from {@code _edgeOffset[i]} to
+	 * {@code _edgeOffset[i+1] - 1} in port order.
+	 */
+	private final int[] _edgeOffset;
+
+	/**
+	 * The index of the node that sends the message for each directed edge.
+	 */
+	private final int[] _edgeSender;
+
+	/**
+	 * The edge carrying messages in the opposite direction of each directed edge.
+	 */
+	private final int[] _reverseEdge;
+
+	private final boolean[] _stale;
+	private int _staleCount = 0;
+
+	/**
+	 * Scratch space used for traversals. Each edge is visited at most once per traversal.
+	 */
+	private final int[] _stack;
+	private final int[] _order;
+
+	/*--------------
+	 * Construction
+	 */
+
+	private IncrementalCalibrator(FactorGraph graph, INode[] nodes, Map<INode,Integer> nodeToIndex,
+		int[] edgeOffset, int[] edgeSender, int[] reverseEdge)
+	{
+		final int nEdges = edgeSender.length;
+		_graph = graph;
+		_nodes = nodes;
+		_nodeToIndex = nodeToIndex;
+		_edgeOffset = edgeOffset;
+		_edgeSender = edgeSender;
+		_reverseEdge = reverseEdge;
+		_stale = new boolean[nEdges];
+		_stack = new int[nEdges];
+		_order = new int[nEdges];
+	}
+
+	/**
+	 * Builds the edge structure for the given graph, or returns null if the graph is not singly
+	 * connected.
+	 */
+	static IncrementalCalibrator create(FactorGraph graph)
+	{
+		final ArrayList<INode> nodeList = new ArrayList<INode>();
+		for (VariableBase variable : graph.getVariablesFlat())
+		{
+			nodeList.add(variable);
+		}
+		for (Factor factor : graph.getFactorsFlat())
+		{
+			nodeList.add(factor);
+		}
+
+		final int nNodes = nodeList.size();
+		final INode[] nodes = nodeList.toArray(new INode[nNodes]);
+		final Map<INode,Integer> nodeToIndex = new HashMap<INode,Integer>(nNodes * 2);
+		final int[] edgeOffset = new int[nNodes + 1];
+		for (int i = 0; i < nNodes; ++i)
+		{
+			nodeToIndex.put(nodes[i], i);
+			edgeOffset[i + 1] = edgeOffset[i] + nodes[i].getSiblingCount();
+		}
+
+		final int nEdges = edgeOffset[nNodes];
+		final int[] edgeSender = new int[nEdges];
+		final int[] reverseEdge = new int[nEdges];
+		for (int i = 0; i < nNodes; ++i)
+		{
+			final INode node = nodes[i];
+			for (int port = 0, end = node.getSiblingCount(); port < end; ++port)
+			{
+				final Integer sibling = nodeToIndex.get(node.getSibling(port));
+				if (sibling == null)
+				{
+					// Edge leaves the graph
+					return null;
+				}
+				final int edge = edgeOffset[i] + port;
+				edgeSender[edge] = i;
+				reverseEdge[edge] = edgeOffset[sibling] + node.getSiblingPortIndex(port);
+			}
+		}
+
+		if (!isForest(nNodes, edgeOffset, edgeSender, reverseEdge))
+		{
+			return null;
+		}
+
+		return new IncrementalCalibrator(graph, nodes, nodeToIndex, edgeOffset, edgeSender, reverseEdge);
+	}
+
+	/*-------------------------------
+	 * IncrementalCalibrator methods
+	 */
+
+	/**
+	 * The graph whose messages are maintained.
+	 */
+	FactorGraph getGraph()
+	{
+		return _graph;
+	}
+
+	/**
+	 * The number of messages that are currently out of date.
+	 */
+	int getStaleCount()
+	{
+		return _staleCount;
+	}
+
+	/**
+	 * Marks all messages as up to date. To be invoked after the graph has been fully solved.
+	 */
+	void markAllCurrent()
+	{
+		Arrays.fill(_stale, false);
+		_staleCount = 0;
+	}
+
+	/**
+	 * Marks all messages that depend on the input of {@code node} as out of date.
+	 */
+	void invalidate(INode node)
+	{
+		final Integer index = _nodeToIndex.get(node);
+		if (index == null)
+		{
+			return;
+		}
+
+		final int[] edgeOffset = _edgeOffset;
+		final int[] reverseEdge = _reverseEdge;
+		final boolean[] stale = _stale;
+		final int[] stack = _stack;
+		int top = 0;
+
+		for (int edge = edgeOffset[index], end = edgeOffset[index + 1]; edge < end; ++edge)
+		{
+			if (!stale[edge])
+			{
+				stale[edge] = true;
+				stack[top++] = edge;
+			}
+		}
+
+		int nMarked = top;
+		while (top > 0)
+		{
+			final int back = reverseEdge[stack[--top]];
+			final int receiver = _edgeSender[back];
+			for (int edge = edgeOffset[receiver], end = edgeOffset[receiver + 1]; edge < end; ++edge)
+			{
+				if (edge != back && !stale[edge])
+				{
+					stale[edge] = true;
+					stack[top++] = edge;
+					++nMarked;
+				}
+			}
+		}
+
+		_staleCount += nMarked;
+	}
+
+	/**
+	 * Recomputes any out of date messages leading into {@code node}, so that its belief is
+	 * up to date. Does nothing if {@code node} is not in the graph.
+	 */
+	void update(INode node)
+	{
+		if (_staleCount > 0)
+		{
+			final Integer index = _nodeToIndex.get(node);
+			if (index != null)
+			{
+				update(index);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes all out of date messages in the graph.
+	 */
+	void updateAll()
+	{
+		for (int i = 0, end = _nodes.length; i < end && _staleCount > 0; ++i)
+		{
+			update(i);
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void update(int index)
+	{
+		final int[] edgeOffset = _edgeOffset;
+		final int[] edgeSender = _edgeSender;
+		final int[] reverseEdge = _reverseEdge;
+		final boolean[] stale = _stale;
+		final int[] stack = _stack;
+		final int[] order = _order;
+		int top = 0;
+		int n = 0;
+
+		for (int edge = edgeOffset[index], end = edgeOffset[index + 1]; edge < end; ++edge)
+		{
+			final int incoming = reverseEdge[edge];
+			if (stale[incoming])
+			{
+				stack[top++] = incoming;
+			}
+		}
+
+		// Collect stale messages on which the incoming ones depend in pre-order. In a tree each
+		// edge can only be reached once, and a message's dependencies always follow it.
+		while (top > 0)
+		{
+			final int edge = stack[--top];
+			order[n++] = edge;
+			final int sender = edgeSender[edge];
+			for (int out = edgeOffset[sender], end = edgeOffset[sender + 1]; out < end; ++out)
+			{
+				// The message along edge does not depend on the one coming back from its receiver.
+				if (out != edge)
+				{
+					final int incoming = reverseEdge[out];
+					if (stale[incoming])
+					{
+						stack[top++] = incoming;
+					}
+				}
+			}
+		}
+
+		// Recompute in reverse order so that dependencies are computed first.
+		for (int i = n; --i >= 0;)
+		{
+			final int edge = order[i];
+			final int sender = edgeSender[edge];
+			_nodes[sender].getSolver().updateEdge(edge - edgeOffset[sender]);
+			stale[edge] = false;
+		}
+
+		_staleCount -= n;
+	}
+
+	/**
+	 * True if the graph described by the edge arrays has no cycles.
+	 */
+	private static boolean isForest(int nNodes, int[] edgeOffset, int[] edgeSender, int[] reverseEdge)
+	{
+		// A forest has exactly one less undirected edge than nodes in each connected component.
+		final int nUndirectedEdges = edgeOffset[nNodes] / 2;
+		final boolean[] visited = new boolean[nNodes];
+		final int[] queue = new int[nNodes];
+		int nComponents = 0;
+
+		for (int start = 0; start < nNodes; ++start)
+		{
+			if (!visited[start])
+			{
+				++nComponents;
+				visited[start] = true;
+				queue[0] = start;
+				for (int head = 0, tail = 1; head < tail; ++head)
+				{
+					final int node = queue[head];
+					for (int edge = edgeOffset[node], end = edgeOffset[node + 1]; edge < end; ++edge)
+					{
+						final int sibling = edgeSender[reverseEdge[edge]];
+						if (!visited[sibling])
+						{
+							visited[sibling] = true;
+							queue[tail++] = sibling;
+						}
+					}
+				}
+			}
+		}
+
+		return nUndirectedEdges == nNodes - nComponents;
+	}
+}
@@ -227,17 +227,15 @@ public class JunctionTreeSolverFactor extends SFactorBase
 	
 	private ISolverFactor getDelegate()
 	{
-		final ISolverFactor delegate = _delegate;
-		if (delegate != null)
-		{
-			return delegate;
-		}
-		else
+		ISolverFactor delegate = _delegate;
+		if (delegate == null)
 		{
 			final Factor sourceFactor = getFactor();
 			final Factor targetFactor = _root.getTransformMap().sourceToTargetFactor(sourceFactor);
-			return _delegate = targetFactor.getSolver();
+			delegate = _delegate = targetFactor.getSolver();
 		}
+		_root.updateIncrementally(delegate.getModelObject());
+		return delegate;
 	}
 
 	private JointDomainReindexer getDelegateReindexer()
@@ -16,9 +16,12 @@
 
 package com.analog.lyric.dimple.solvers.junctiontree;
 
+import java.util.LinkedHashSet;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.INode;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.repeated.BlastFromThePastFactor;
 import com.analog.lyric.dimple.model.transform.JunctionTreeTransform;
@@ -54,6 +57,26 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	
 	private JunctionTreeTransformMap _transformMap = null;
 	
+	private boolean _useIncrementalUpdates = false;
+	
+	/**
+	 * Maintains the messages of the transformed graph between incremental solves. Created by the
+	 * first full solve when {@link #_useIncrementalUpdates} is true and reused until the
+	 * transformed graph changes.
+	 */
+	private IncrementalCalibrator _calibrator = null;
+	
+	/**
+	 * True if the messages in the transformed graph were computed by a full solve followed by any
+	 * number of incremental solves, and {@link #_calibrator} can be used to keep them up to date.
+	 */
+	private boolean _calibrated = false;
+	
+	/**
+	 * Source variables whose input or fixed value has changed since the last solve.
+	 */
+	private final Set<VariableBase> _changedVariables = new LinkedHashSet<VariableBase>();
+	
 	/*--------------
 	 * Construction
 	 */
@@ -105,6 +128,11 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		{
 			return Double.NaN;
 		}
+		
+		if (_calibrated)
+		{
+			_calibrator.updateAll();
+		}
 
 		double energy = 0;
 		
@@ -134,6 +162,11 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		{
 			return Double.NaN;
 		}
+		
+		if (_calibrated)
+		{
+			_calibrator.updateAll();
+		}
 
 		transformMap.updateGuesses();
 		
@@ -234,25 +267,12 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	@Override
 	public void initialize()
 	{
+		_calibrated = false;
+		
 		if (isTransformValid())
 		{
 			// Copy inputs/fixed values to transformed model in case they have changed.
-			for (Entry<VariableBase,VariableBase> entry : _transformMap.sourceToTargetVariables().entrySet())
-			{
-				final VariableBase sourceVar = entry.getKey();
-				if (sourceVar != null)
-				{
-					final VariableBase targetVar = entry.getValue();
-					if (sourceVar.hasFixedValue())
-					{
-						targetVar.setFixedValueObject(sourceVar.getFixedValueObject());
-					}
-					else
-					{
-						targetVar.setInputObject(sourceVar.getInputObject());
-					}
-				}
-			}
+			copyInputs();
 		}
 		else
 		{
@@ -266,25 +286,63 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	@Override
 	public void iterate()
 	{
+		_calibrated = false;
 		updateDelegate().iterate();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When {@link #useIncrementalUpdates()} is true and the graph has already been solved, this
+	 * only propagates the effect of inputs and fixed values that have changed since the previous
+	 * solve.
+	 */
 	@Override
 	public void solve()
 	{
+		if (_calibrated && isTransformValid())
+		{
+			solveIncrementally();
+			return;
+		}
+		
 		getModelObject().initialize();
-		updateDelegate().solve();
+		final ISolverFactorGraph delegate = updateDelegate();
+		if (_useIncrementalUpdates)
+		{
+			// Incremental solves only copy changed inputs, so start with the same inputs that
+			// initialize() copies to an existing transformed model.
+			copyInputs();
+		}
+		delegate.solve();
+		_changedVariables.clear();
+		
+		if (_useIncrementalUpdates)
+		{
+			final FactorGraph target = _transformMap.target();
+			if (_calibrator == null || _calibrator.getGraph() != target)
+			{
+				_calibrator = IncrementalCalibrator.create(target);
+			}
+			if (_calibrator != null)
+			{
+				_calibrator.markAllCurrent();
+				_calibrated = true;
+			}
+		}
 	}
 	
 	@Override
 	public void solveOneStep()
 	{
+		_calibrated = false;
 		updateDelegate().solveOneStep();
 	}
 	
 	@Override
 	public void startSolver()
 	{
+		_calibrated = false;
 		updateDelegate().startSolver();
 	}
 	
@@ -337,6 +395,43 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		return this;
 	}
 	
+	/**
+	 * If true, then after the first {@link #solve()}, subsequent solves will only recompute the
+	 * messages in the transformed graph that are affected by inputs or fixed values that have changed
+	 * since the previous solve, and messages will only be recomputed when a belief that depends on
+	 * them is requested. This can greatly reduce the cost of repeated queries that change the evidence
+	 * on a small number of variables.
+	 * <p>
+	 * Changes to the structure of the graph, or to the fixed value of a variable that was conditioned
+	 * out of the transformed graph (see {@link #useConditioning()}) still require a full solve, which
+	 * will be done automatically.
+	 * <p>
+	 * False by default.
+	 * @see #useIncrementalUpdates(boolean)
+	 * @since 0.06
+	 */
+	public boolean useIncrementalUpdates()
+	{
+		return _useIncrementalUpdates;
+	}
+	
+	/**
+	 * Sets {@link #useIncrementalUpdates()} to specified value.
+	 * @return this
+	 * @since 0.06
+	 */
+	public JunctionTreeSolverGraphBase<Delegate> useIncrementalUpdates(boolean yes)
+	{
+		_useIncrementalUpdates = yes;
+		if (!yes)
+		{
+			_calibrated = false;
+			_calibrator = null;
+			_changedVariables.clear();
+		}
+		return this;
+	}
+	
 	/**
 	 * The cost functions used by {@link VariableEliminator} to determine the variable
 	 * elimination ordering. If empty (the default), then all of the standard {@link VariableCost}
@@ -417,6 +512,78 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		return this;
 	}
 
+	/**
+	 * Specifies a wall-clock time budget in milliseconds for determining the junction tree
+	 * transformation. Zero by default, which means no limit.
+	 * <p>
+	 * @see JunctionTreeTransform#maxTransformationMillis()
+	 * @see #maxTransformationMillis(long)
+	 * @since 0.06
+	 */
+	public long maxTransformationMillis()
+	{
+		return _transformer.maxTransformationMillis();
+	}
+	
+	/**
+	 * Sets {@link #maxTransformationMillis()} to the specified value.
+	 * @return this
+	 * @since 0.06
+	 */
+	public JunctionTreeSolverGraphBase<Delegate> maxTransformationMillis(long millis)
+	{
+		_transformer.maxTransformationMillis(millis);
+		return this;
+	}
+	
+	/**
+	 * Specifies the maximum number of threads to use when determining the junction tree
+	 * transformation. One by default.
+	 * <p>
+	 * @see JunctionTreeTransform#transformationThreads()
+	 * @see #transformationThreads(int)
+	 * @since 0.06
+	 */
+	public int transformationThreads()
+	{
+		return _transformer.transformationThreads();
+	}
+	
+	/**
+	 * Sets {@link #transformationThreads()} to the specified value.
+	 * @return this
+	 * @since 0.06
+	 */
+	public JunctionTreeSolverGraphBase<Delegate> transformationThreads(int nThreads)
+	{
+		_transformer.transformationThreads(nThreads);
+		return this;
+	}
+
+	/**
+	 * Specifies the maximum total number of factor table entries across the cliques of the
+	 * junction tree. Zero by default, which means no limit.
+	 * <p>
+	 * @see JunctionTreeTransform#maxTotalCliqueCardinality()
+	 * @see #maxTotalCliqueCardinality(long)
+	 * @since 0.06
+	 */
+	public long maxTotalCliqueCardinality()
+	{
+		return _transformer.maxTotalCliqueCardinality();
+	}
+
+	/**
+	 * Sets {@link #maxTotalCliqueCardinality()} to the specified value.
+	 * @return this
+	 * @since 0.06
+	 */
+	public JunctionTreeSolverGraphBase<Delegate> maxTotalCliqueCardinality(long cardinality)
+	{
+		_transformer.maxTotalCliqueCardinality(cardinality);
+		return this;
+	}
+
 	/*-----------------
 	 * Package methods
 	 */
@@ -425,11 +592,41 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	{
 		if (_transformMap != null)
 		{
-			return _transformMap.sourceToTargetVariable(var.getModelObject()).getSolver();
+			final VariableBase targetVar = _transformMap.sourceToTargetVariable(var.getModelObject());
+			updateIncrementally(targetVar);
+			return targetVar.getSolver();
 		}
 		return null;
 	}
 	
+	/**
+	 * Invoked when the input or fixed value of a source variable has been changed.
+	 * <p>
+	 * @return true if the change has been recorded and will be copied to the transformed graph
+	 * on the next {@link #solve()}, in which case the caller need not forward it to the delegate.
+	 */
+	boolean inputChanged(JunctionTreeSolverVariable var)
+	{
+		if (_useIncrementalUpdates)
+		{
+			_changedVariables.add(var.getModelObject());
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Recomputes any out of date messages leading into {@code targetNode} in the transformed graph
+	 * when using {@link #useIncrementalUpdates()}.
+	 */
+	void updateIncrementally(INode targetNode)
+	{
+		if (_calibrated)
+		{
+			_calibrator.update(targetNode);
+		}
+	}
+	
 	/*-----------------
 	 * Private methods
 	 */
@@ -439,10 +636,62 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		return _transformMap != null && _transformMap.isValid();
 	}
 	
+	/**
+	 * Copies the inputs or fixed values of all source variables to the transformed model.
+	 */
+	private void copyInputs()
+	{
+		if (_transformMap.isIdentity())
+		{
+			return;
+		}
+		
+		for (Entry<VariableBase,VariableBase> entry : _transformMap.sourceToTargetVariables().entrySet())
+		{
+			final VariableBase sourceVar = entry.getKey();
+			if (sourceVar != null)
+			{
+				copyInputOrFixedValue(sourceVar, entry.getValue());
+			}
+		}
+	}
+	
+	private static void copyInputOrFixedValue(VariableBase sourceVar, VariableBase targetVar)
+	{
+		if (sourceVar.hasFixedValue())
+		{
+			targetVar.setFixedValueObject(sourceVar.getFixedValueObject());
+		}
+		else
+		{
+			targetVar.setInputObject(sourceVar.getInputObject());
+		}
+	}
+	
+	/**
+	 * Copies changed inputs to the transformed graph and marks the messages that depend on them
+	 * as out of date. They will be recomputed when needed.
+	 */
+	private void solveIncrementally()
+	{
+		final JunctionTreeTransformMap transformMap = _transformMap;
+		for (VariableBase sourceVar : _changedVariables)
+		{
+			final VariableBase targetVar = transformMap.sourceToTargetVariable(sourceVar);
+			if (targetVar != null)
+			{
+				copyInputOrFixedValue(sourceVar, targetVar);
+				_calibrator.invalidate(targetVar);
+			}
+		}
+		_changedVariables.clear();
+	}
+	
 	private ISolverFactorGraph updateDelegate()
 	{
 		if (!isTransformValid())
 		{
+			_calibrated = false;
 			_transformMap = _transformer.transform(getModelObject());
 			_transformMap.target().setSolverFactory(_solverFactory);
 		}
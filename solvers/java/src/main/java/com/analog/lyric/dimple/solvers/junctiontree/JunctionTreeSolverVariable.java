@@ -57,6 +57,19 @@ public class JunctionTreeSolverVariable extends ProxySolverVariable
 		return _root;
 	}
 
+	/*-------------------------
+	 * ISolverVariable methods
+	 */
+	
+	@Override
+	public void setInputOrFixedValue(Object input, Object fixedValue, boolean hasFixedValue)
+	{
+		if (!_root.inputChanged(this))
+		{
+			super.setInputOrFixedValue(input, fixedValue, hasFixedValue);
+		}
+	}
+	
 	/*-------------------------
 	 * ProxySolverNode methods
 	 */
@@ -0,0 +1,428 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.minsum;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.analog.lyric.collect.IntBinaryHeap;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+
+/**
+ * Min-sum table engine that visits the sparse table entries in order of increasing energy
+ * and skips entries that cannot improve the output message (branch and bound).
+ * <p>
+ * The entries are sorted by energy once, into a row-major copy of the table indices. When
+ * computing the message for an output port, the minimum of each input message gives a lower bound
+ * on the contribution of that port, so an entry is abandoned as soon as its partial energy plus the
+ * bounds of the remaining ports is no better than the current value of its output index, and the whole
+ * scan stops once the energy of the next entry plus all of the bounds is no better than the worst
+ * output value. Tables whose low energy entries dominate, as in Viterbi-style decoding, only need
+ * to visit a small fraction of their entries.
+ * <p>
+ * When the factor's k is smaller than the domain of an input, only entries whose index for that input
+ * is one of the k best of its input message are considered, which gives the same messages as
+ * {@link com.analog.lyric.dimple.solvers.core.kbest.KBestFactorTableEngine} without enumerating the
+ * combinations of the truncated domains.
+ * <p>
+ * Up to rounding of the bounds, the computed messages are the same as {@link TableFactorEngine#updateEdge(int)}.
+ * {@link #update()} computes each edge separately.
+ * <p>
+ * The sorted copy is rebuilt when the factor table's index or energy arrays are replaced, but is
+ * not updated if the table's energies are modified in place.
+ * <p>
+ * @see STableFactor#usePrunedTableFactorEngine(boolean)
+ * @since 0.06
+ */
+public class PrunedTableFactorEngine extends TableFactorEngine
+{
+	/*-------
+	 * State
+	 */
+
+	/*
+	 * The table arrays from which the sorted copy was computed. Used to detect changes
+	 * to the factor table.
+	 */
+	private int[][] _sourceIndices = null;
+	private double[] _sourceEnergies = null;
+
+	/**
+	 * Sparse table energies in increasing order.
+	 */
+	private double[] _sortedEnergies = new double[0];
+
+	/**
+	 * Row-major table indices in the order given by {@link #_sortedEnergies}, so that the index
+	 * of port {@code p} for sorted entry {@code e} is {@code _sortedIndices[e * nPorts + p]}.
+	 */
+	private int[] _sortedIndices = new int[0];
+
+	/**
+	 * The number of distinct values of each port that appear in the table. Output values that do not appear
+	 * can never be set, so this is the number of values that must be set before the scan can stop early.
+	 */
+	private int[] _valuesInTable = new int[0];
+
+	/**
+	 * Maximum number of values kept from each input message, or {@link Integer#MAX_VALUE} for no truncation.
+	 */
+	private int _k = Integer.MAX_VALUE;
+
+	/*
+	 * Per-update scratch space.
+	 */
+	private double[] _remainingBounds = new double[1];
+	private boolean[][] _allowed = new boolean[0][];
+	private final IntBinaryHeap _kbest = new IntBinaryHeap();
+
+	/*--------------
+	 * Construction
+	 */
+
+	public PrunedTableFactorEngine(STableFactor tableFactor)
+	{
+		super(tableFactor);
+	}
+
+	/*---------------------------
+	 * TableFactorEngine methods
+	 */
+
+	@Override
+	public void updateEdge(int outPortNum)
+	{
+		final int numPorts = _factor.getSiblingCount();
+		ensureSorted(numPorts);
+
+		final double[] energies = _sortedEnergies;
+		final int[] indices = _sortedIndices;
+		final int nEntries = energies.length;
+		final double[][] inPortMsgs = _tableFactor.getInPortMsgs();
+		final double[] outputMsgs = _tableFactor.getOutPortMsgs()[outPortNum];
+		final int outputMsgLength = outputMsgs.length;
+
+		saveForDamping(outPortNum, outputMsgs);
+
+		// The minimum of each input message is a lower bound on the contribution of that port.
+		// Compute the sum of the bounds of the ports after each port.
+		final double[] remainingBounds = _remainingBounds;
+		final boolean[][] allowed = selectAllowed(outPortNum, numPorts);
+		remainingBounds[numPorts] = 0;
+		for (int port = numPorts; --port>=0;)
+		{
+			double min = 0;
+			if (port != outPortNum)
+			{
+				min = minimum(inPortMsgs[port], allowed[port]);
+			}
+			remainingBounds[port] = remainingBounds[port + 1] + min;
+		}
+		final double totalBound = remainingBounds[0];
+
+		Arrays.fill(outputMsgs, Double.POSITIVE_INFINITY);
+
+		// The largest output value, which is only tracked once every output that appears in the table
+		// has been set.
+		int nUnset = _valuesInTable[outPortNum];
+		double worst = Double.POSITIVE_INFINITY;
+
+		for (int entry = 0, offset = 0; entry < nEntries; ++entry, offset += numPorts)
+		{
+			final double energy = energies[entry];
+			if (energy + totalBound >= worst)
+			{
+				// Entries are in order of increasing energy, so none of the rest can do better.
+				break;
+			}
+
+			final int outputIndex = indices[offset + outPortNum];
+			final double best = outputMsgs[outputIndex];
+			if (energy + totalBound >= best)
+			{
+				continue;
+			}
+
+			double L = energy;
+			for (int inPortNum = 0; inPortNum < numPorts; ++inPortNum)
+			{
+				if (inPortNum != outPortNum)
+				{
+					final int index = indices[offset + inPortNum];
+					if (allowed[inPortNum] != null && !allowed[inPortNum][index])
+					{
+						L = Double.POSITIVE_INFINITY;
+						break;
+					}
+					L += inPortMsgs[inPortNum][index];
+					if (L + remainingBounds[inPortNum + 1] >= best)
+					{
+						L = Double.POSITIVE_INFINITY;
+						break;
+					}
+				}
+			}
+
+			if (L < best)
+			{
+				outputMsgs[outputIndex] = L;
+				if (best == Double.POSITIVE_INFINITY)
+				{
+					if (--nUnset == 0)
+					{
+						worst = maxFinite(outputMsgs);
+					}
+				}
+				else if (best == worst)
+				{
+					worst = maxFinite(outputMsgs);
+				}
+			}
+		}
+
+		clearAllowed(numPorts);
+
+		// Normalize the outputs
+		double minPotential = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < outputMsgLength; i++)
+		{
+			double msg = outputMsgs[i];
+			if (msg < minPotential)
+				minPotential = msg;
+		}
+
+		// Damping
+		if (_tableFactor._dampingInUse)
+		{
+			double damping = _tableFactor._dampingParams[outPortNum];
+			if (damping != 0)
+			{
+				double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
+				for (int i = 0; i < outputMsgLength; i++)
+					outputMsgs[i] = (1-damping)*outputMsgs[i] + damping*saved[i];
+			}
+		}
+
+		// Normalize min value
+		for (int i = 0; i < outputMsgLength; i++)
+			outputMsgs[i] -= minPotential;
+	}
+
+	@Override
+	public void update()
+	{
+		for (int port = 0, numPorts = _factor.getSiblingCount(); port < numPorts; ++port)
+		{
+			updateEdge(port);
+		}
+	}
+
+	/*---------------------------------
+	 * PrunedTableFactorEngine methods
+	 */
+
+	/**
+	 * Maximum number of values of each input message to consider when computing output messages.
+	 * Only input values that are among the {@code k} smallest in their message will be used.
+	 * Use {@link Integer#MAX_VALUE} to use all values, which is the default.
+	 */
+	public void setK(int k)
+	{
+		_k = k;
+	}
+
+	public int getK()
+	{
+		return _k;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Rebuilds the sorted copy of the factor table if it has changed.
+	 */
+	private void ensureSorted(int numPorts)
+	{
+		final IFactorTable table = _tableFactor.getFactorTable();
+		final int[][] sourceIndices = table.getIndicesSparseUnsafe();
+		final double[] sourceEnergies = table.getEnergiesSparseUnsafe();
+
+		if (sourceIndices != _sourceIndices || sourceEnergies != _sourceEnergies)
+		{
+			final int nEntries = sourceEnergies.length;
+
+			// Sort rows by energy, keeping the original row order for equal energies. Sorting
+			// boxed indices is only done when the table changes.
+			final Integer[] order = new Integer[nEntries];
+			for (int row = 0; row < nEntries; ++row)
+				order[row] = row;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer row1, Integer row2)
+				{
+					return Double.compare(sourceEnergies[row1], sourceEnergies[row2]);
+				}
+			});
+
+			final double[] energies = new double[nEntries];
+			final int[] indices = new int[nEntries * numPorts];
+			for (int entry = 0; entry < nEntries; ++entry)
+			{
+				final int row = order[entry];
+				energies[entry] = sourceEnergies[row];
+				System.arraycopy(sourceIndices[row], 0, indices, entry * numPorts, numPorts);
+			}
+
+			final double[][] inPortMsgs = _tableFactor.getInPortMsgs();
+			final int[] valuesInTable = new int[numPorts];
+			for (int port = 0; port < numPorts; ++port)
+			{
+				final boolean[] seen = new boolean[inPortMsgs[port].length];
+				for (int offset = port, end = indices.length; offset < end; offset += numPorts)
+				{
+					if (!seen[indices[offset]])
+					{
+						seen[indices[offset]] = true;
+						++valuesInTable[port];
+					}
+				}
+			}
+
+			_sortedEnergies = energies;
+			_sortedIndices = indices;
+			_valuesInTable = valuesInTable;
+			_sourceIndices = sourceIndices;
+			_sourceEnergies = sourceEnergies;
+		}
+
+		if (_allowed.length != numPorts)
+		{
+			_remainingBounds = new double[numPorts + 1];
+			_allowed = new boolean[numPorts][];
+		}
+	}
+
+	/**
+	 * Marks the k best values of each input message whose length exceeds k. Entries of the returned
+	 * array are null for ports that are not truncated.
+	 */
+	private boolean[][] selectAllowed(int outPortNum, int numPorts)
+	{
+		final boolean[][] allowed = _allowed;
+		final int k = _k;
+		if (k == Integer.MAX_VALUE)
+		{
+			Arrays.fill(allowed, null);
+			return allowed;
+		}
+
+		final double[][] inPortMsgs = _tableFactor.getInPortMsgs();
+		final IntBinaryHeap kbest = _kbest;
+		for (int port = 0; port < numPorts; ++port)
+		{
+			final double[] inputMsg = inPortMsgs[port];
+			final int length = inputMsg.length;
+			if (port != outPortNum && k < length)
+			{
+				boolean[] mask = allowed[port];
+				if (mask == null || mask.length != length)
+				{
+					mask = allowed[port] = new boolean[length];
+				}
+
+				// Keep the k smallest values using a heap of the largest values seen so far.
+				kbest.clear();
+				kbest.ensureKeyCapacity(length);
+				for (int i = 0; i < length; ++i)
+				{
+					final double value = inputMsg[i];
+					if (kbest.size() < k)
+					{
+						kbest.offer(i, -value);
+					}
+					else if (value < -kbest.peekPriority())
+					{
+						kbest.poll();
+						kbest.offer(i, -value);
+					}
+				}
+				for (int i; (i = kbest.poll()) >= 0;)
+				{
+					mask[i] = true;
+				}
+			}
+			else
+			{
+				allowed[port] = null;
+			}
+		}
+
+		return allowed;
+	}
+
+	private void clearAllowed(int numPorts)
+	{
+		final boolean[][] allowed = _allowed;
+		for (int port = 0; port < numPorts; ++port)
+		{
+			if (allowed[port] != null)
+			{
+				Arrays.fill(allowed[port], false);
+			}
+		}
+	}
+
+	private void saveForDamping(int outPortNum, double[] outputMsgs)
+	{
+		if (_tableFactor._dampingInUse)
+		{
+			double damping = _tableFactor._dampingParams[outPortNum];
+			if (damping != 0)
+			{
+				double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
+				System.arraycopy(outputMsgs, 0, saved, 0, outputMsgs.length);
+			}
+		}
+	}
+
+	private static double minimum(double[] values, boolean[] allowed)
+	{
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 0, end = values.length; i < end; ++i)
+		{
+			if ((allowed == null || allowed[i]) && values[i] < min)
+				min = values[i];
+		}
+		return min;
+	}
+
+	/**
+	 * The largest value that is not infinite. Infinite values correspond to outputs that cannot be set.
+	 */
+	private static double maxFinite(double[] values)
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		for (double value : values)
+		{
+			if (value > max && value != Double.POSITIVE_INFINITY)
+				max = value;
+		}
+		return max;
+	}
+}
@@ -34,6 +34,7 @@ import com.analog.lyric.util.misc.IMapList;
 public class SFactorGraph extends SFactorGraphBase
 {
 	protected double _damping = 0;
+	private boolean _usePrunedTableFactorEngine = false;
 
 	public SFactorGraph(com.analog.lyric.dimple.model.core.FactorGraph factorGraph)
 	{
@@ -69,6 +70,8 @@ public class SFactorGraph extends SFactorGraphBase
 			STableFactor tf = new STableFactor(factor);
 			if (_damping != 0)
 				setDampingForTableFactor(tf);
+			if (_usePrunedTableFactorEngine)
+				tf.usePrunedTableFactorEngine(true);
 			return tf;
 		}
 	}
@@ -103,6 +106,35 @@ public class SFactorGraph extends SFactorGraphBase
 	{
 		return _damping;
 	}
+	
+	/**
+	 * Specifies whether table factors in this graph should compute their messages using a
+	 * {@link PrunedTableFactorEngine}, which visits table entries in order of increasing energy
+	 * and skips those that cannot improve the output. Applies to existing table factors as well
+	 * as those created later.
+	 * 
+	 * @since 0.06
+	 */
+	public void usePrunedTableFactorEngine(boolean usePruned)
+	{
+		_usePrunedTableFactorEngine = usePruned;
+		for (Factor f : _factorGraph.getNonGraphFactors())
+		{
+			if (f.getSolver() instanceof STableFactor)
+			{
+				((STableFactor)f.getSolver()).usePrunedTableFactorEngine(usePruned);
+			}
+		}
+	}
+	
+	/**
+	 * @see #usePrunedTableFactorEngine(boolean)
+	 * @since 0.06
+	 */
+	public boolean usePrunedTableFactorEngine()
+	{
+		return _usePrunedTableFactorEngine;
+	}
 
 	/*
 	 * This method applies the global damping parameter to all of the table function's ports
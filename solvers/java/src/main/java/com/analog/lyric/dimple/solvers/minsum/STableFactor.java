@@ -42,6 +42,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
     protected KBestFactorEngine _kbestFactorEngine;
     protected boolean _kIsSmallerThanDomain;
     protected boolean _dampingInUse = false;
+    private boolean _usePrunedEngine = false;
 
     /*--------------
      * Construction
@@ -80,7 +81,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 	@Override
 	public void update()
 	{
-		if (_kIsSmallerThanDomain)
+		if (_kIsSmallerThanDomain && !_usePrunedEngine)
 			_kbestFactorEngine.update();
 		else
 			_tableFactorEngine.update();
@@ -89,7 +90,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 	@Override
 	public void updateEdge(int outPortNum)
 	{
-		if (_kIsSmallerThanDomain)
+		if (_kIsSmallerThanDomain && !_usePrunedEngine)
 			_kbestFactorEngine.updateEdge(outPortNum);
 		else
 			_tableFactorEngine.updateEdge(outPortNum);
@@ -101,6 +102,8 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		
 		_k = k;
 		_kbestFactorEngine.setK(k);
+		if (_tableFactorEngine instanceof PrunedTableFactorEngine)
+			((PrunedTableFactorEngine)_tableFactorEngine).setK(k);
 		_kIsSmallerThanDomain = false;
 		for (int i = 0; i < _inputMsgs.length; i++)
 		{
@@ -248,5 +251,45 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		return _dampingParams[index];
 	}
 	
+	/**
+	 * Selects the engine used to compute outgoing messages. If {@code usePruned} is true,
+	 * a {@link PrunedTableFactorEngine} will be used, which skips table entries that cannot
+	 * improve the output and also handles k-best truncation of the input messages,
+	 * otherwise the original {@link TableFactorEngine}.
+	 * <p>
+	 * The pruned engine is only used if the factor's table exists; otherwise k-best
+	 * truncation still uses {@link KBestFactorEngine}.
+	 * 
+	 * @since 0.06
+	 */
+	public void usePrunedTableFactorEngine(boolean usePruned)
+	{
+		usePruned &= _kbestFactorEngine instanceof KBestFactorTableEngine;
+		if (usePruned != _usePrunedEngine)
+		{
+			_usePrunedEngine = usePruned;
+			if (usePruned)
+			{
+				PrunedTableFactorEngine engine = new PrunedTableFactorEngine(this);
+				engine.setK(_k);
+				_tableFactorEngine = engine;
+			}
+			else
+			{
+				_tableFactorEngine = new TableFactorEngine(this);
+			}
+		}
+	}
+	
+	/**
+	 * True if outgoing messages are computed using a {@link PrunedTableFactorEngine}.
+	 * 
+	 * @since 0.06
+	 */
+	public boolean usePrunedTableFactorEngine()
+	{
+		return _usePrunedEngine;
+	}
+	
 }
 
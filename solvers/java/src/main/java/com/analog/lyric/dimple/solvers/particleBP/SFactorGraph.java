@@ -20,6 +20,7 @@ import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariableBase;
 import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.solvers.core.ConvergenceMonitor;
 import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
 import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
@@ -102,6 +103,7 @@ public class SFactorGraph extends SFactorGraphBase
 	public void iterate(int numIters) 
 	{
 		VariableList vars = _factorGraph.getVariables();
+		ConvergenceMonitor monitor = startConvergenceMonitor();
 		
 		int iterationsBeforeResampling = 1;
 		for (int iterNum = 0; iterNum < numIters; iterNum++)
@@ -124,6 +126,9 @@ public class SFactorGraph extends SFactorGraphBase
 				_temperature *= _temperingDecayConstant;
 				setTemperature(_temperature);
 			}
+			
+			if (monitor.iterationCompleted())
+				return;
 
 			// Allow interruption (if the solver is run as a thread)
 			// Currently interruption is allowed only between iterations, not within a single iteration
@@ -17,6 +17,13 @@
 package com.analog.lyric.dimple.solvers.particleBP;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.factors.Factor;
@@ -24,6 +31,7 @@ import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Real;
 import com.analog.lyric.dimple.model.variables.VariableBase;
 import com.analog.lyric.dimple.solvers.core.SFactorBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 
 
@@ -41,6 +49,46 @@ public class SRealFactor extends SFactorBase
 	protected boolean _moreCombinations;
 	protected double _beta = 1;
 
+	/**
+	 * Default value of {@link #getMaxCachedCombinations()}. Caching takes 16 bytes per combination,
+	 * so this is 2 MB per factor.
+	 */
+	public static final int DEFAULT_MAX_CACHED_COMBINATIONS = 1 << 17;
+	
+	/**
+	 * Default value of {@link #getMinConcurrentCombinations()}.
+	 */
+	public static final int DEFAULT_MIN_CONCURRENT_COMBINATIONS = 1 << 14;
+	
+	private int _maxCachedCombinations = DEFAULT_MAX_CACHED_COMBINATIONS;
+	private int _minConcurrentCombinations = DEFAULT_MIN_CONCURRENT_COMBINATIONS;
+	
+	/**
+	 * Maximum number of rows passed to {@link FactorFunction#evalEnergies} at once.
+	 */
+	private static final int MAX_BATCH_SIZE = 1024;
+	
+	/*
+	 * Energy of the factor function for every combination of values of the connected variables,
+	 * with the first port varying fastest, and the corresponding weights exp(-beta * energy).
+	 * The energies remain valid until one of the variables resamples its particles, which is detected
+	 * using the resampling version of its message, so they are usually computed once per resampling
+	 * instead of once per combination per output edge. Null if the factor has too many combinations.
+	 */
+	private double[] _energies;
+	private double[] _weights;
+	private double _weightsBeta;
+	private int[] _energyVersions;
+	private ParticleBPSolverVariableToFactorMessage[] _particleMessages;
+	private boolean _allReal;
+	
+	/*
+	 * Scratch space for evaluating the factor function in batches.
+	 */
+	private double[][] _batchArguments = new double[0][];
+	private double[] _batchEnergies = new double[0];
+	private double[] _batchWeights = new double[0];
+
 
 	
 	public SRealFactor(Factor factor)
@@ -52,6 +100,13 @@ public class SRealFactor extends SFactorBase
 
 	public double getMarginalPotential(double value, int outPortIndex)
 	{
+		refreshParticleDomains();
+		
+		if (_allReal)
+		{
+			return getMarginalPotentialBatch(value, outPortIndex);
+		}
+		
 		FactorFunction factorFunction = _realFactor.getFactorFunction();
 
         double marginal = 0;
@@ -59,8 +114,7 @@ public class SRealFactor extends SFactorBase
 		_variableValues[outPortIndex] = value;	// Use the specified value for the output port
         while (true)
         {
-        	double prob = 1;
-			try {prob = factorFunction.eval(_variableValues);} catch (Exception e) {e.printStackTrace(); System.exit(1);}
+        	double prob = factorFunction.eval(_variableValues);
 			if (_beta != 1) prob = Math.pow(prob, _beta);
 
         	for (int inPortNum = 0; inPortNum < _numPorts; inPortNum++)
@@ -81,66 +135,23 @@ public class SRealFactor extends SFactorBase
 	@Override
 	public void updateEdge(int outPortNum)
 	{
-		FactorFunction factorFunction = _realFactor.getFactorFunction();
-
-        double[] outputMsgs = _outMsgArray[outPortNum];
-    	int outputMsgLength = outputMsgs.length;
-        for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] = 0;
-        
-        initializeVariableCombinations();
-        while (true)
-        {
-        	double prob = 1;
-			try {prob = factorFunction.eval(_variableValues);} catch (Exception e) {e.printStackTrace(); System.exit(1);}
-			if (_beta != 1) prob = Math.pow(prob, _beta);
-
-        	for (int inPortNum = 0; inPortNum < _numPorts; inPortNum++)
-        		if (inPortNum != outPortNum)
-        			prob *= _inPortMsgs[inPortNum][_variableIndices[inPortNum]];
-
-        	outputMsgs[_variableIndices[outPortNum]] += prob;
-        	
-        	nextVariableCombination();
-        	if (!_moreCombinations) break;
-        }
-        
-        double sum = 0;
-    	for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
-    	for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] /= sum;
+		if (updateCachedWeights())
+			computeOutputMessage(outPortNum);
+		else
+			computeOutputMessageUncached(outPortNum);
 	}
 	
 	
 	@Override
 	public void update()
 	{
-		FactorFunction factorFunction = _realFactor.getFactorFunction();
-
+		final boolean cached = updateCachedWeights();
 		for (int outPortNum = 0; outPortNum < _numPorts; outPortNum++)
 		{
-			double[] outputMsgs = _outMsgArray[outPortNum];
-			int outputMsgLength = outputMsgs.length;
-			for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] = 0;
-
-			initializeVariableCombinations();
-			while (true)
-			{
-				double prob = 1;
-				try {prob = factorFunction.eval(_variableValues);} catch (Exception e) {e.printStackTrace(); System.exit(1);}
-				if (_beta != 1) prob = Math.pow(prob, _beta);
-
-				for (int inPortNum = 0; inPortNum < _numPorts; inPortNum++)
-					if (inPortNum != outPortNum)
-						prob *= _inPortMsgs[inPortNum][_variableIndices[inPortNum]];
-
-				outputMsgs[_variableIndices[outPortNum]] += prob;
-
-				nextVariableCombination();
-				if (!_moreCombinations) break;
-			}
-
-			double sum = 0;
-			for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
-			for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] /= sum;
+			if (cached)
+				computeOutputMessage(outPortNum);
+			else
+				computeOutputMessageUncached(outPortNum);
 		}
 	}
 	
@@ -224,6 +235,50 @@ public class SRealFactor extends SFactorBase
     {
     	_beta = beta;
     }
+    
+	/**
+	 * Factor weights are cached for all combinations of particle values if there are no more
+	 * than this many combinations. Otherwise the factor function is evaluated for each combination
+	 * every time an output message is computed.
+	 * 
+	 * @since 0.06
+	 */
+	public int getMaxCachedCombinations()
+	{
+		return _maxCachedCombinations;
+	}
+	
+	/**
+	 * Sets the value of {@link #getMaxCachedCombinations()}. Zero disables caching.
+	 * 
+	 * @since 0.06
+	 */
+	public void setMaxCachedCombinations(int maxCombinations)
+	{
+		_maxCachedCombinations = maxCombinations;
+	}
+	
+	/**
+	 * Output messages computed from cached weights are divided among the threads of the
+	 * {@link ThreadPool} if there are at least this many combinations, unless the update is
+	 * itself running on the pool.
+	 * 
+	 * @since 0.06
+	 */
+	public int getMinConcurrentCombinations()
+	{
+		return _minConcurrentCombinations;
+	}
+	
+	/**
+	 * Sets the value of {@link #getMinConcurrentCombinations()}.
+	 * 
+	 * @since 0.06
+	 */
+	public void setMinConcurrentCombinations(int minCombinations)
+	{
+		_minConcurrentCombinations = minCombinations;
+	}
 
     @Override
 	public void initialize()
@@ -244,6 +299,11 @@ public class SRealFactor extends SFactorBase
 		_variableIndices = new int[_numPorts];
 		_variableDomainLengths = new int[_numPorts];
 		_realVariable = new boolean[_numPorts];
+		_particleMessages = new ParticleBPSolverVariableToFactorMessage[_numPorts];
+		_energyVersions = new int[_numPorts];
+		_energies = null;
+		_weights = null;
+		_allReal = true;
 
 		for (int iPort = 0; iPort < _numPorts; iPort++)
 	    {
@@ -255,12 +315,14 @@ public class SRealFactor extends SFactorBase
 	    	{
 	    		ParticleBPSolverVariableToFactorMessage tmp = (ParticleBPSolverVariableToFactorMessage)messages[1];
 	    		_realVariable[iPort] = true;
+	    		_particleMessages[iPort] = tmp;
 	    		_variableDomains[iPort] = tmp.particleValues;
 	    		_inPortMsgs[iPort] = tmp.messageValues;
 	    	}
 	    	else
 	    	{
-	    		_realVariable[iPort] = true;
+	    		_realVariable[iPort] = false;
+	    		_allReal = false;
 	    		_variableDomains[iPort] = ((Discrete)var).getDiscreteDomain().getElements();
 	    		_inPortMsgs[iPort] = (double[])messages[1];
 	    	}
@@ -300,4 +362,359 @@ public class SRealFactor extends SFactorBase
 	}
 
 
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Picks up the current particle values of the connected real variables, whose arrays
+	 * are replaced when the variables recreate their messages.
+	 */
+	private void refreshParticleDomains()
+	{
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+		{
+			final ParticleBPSolverVariableToFactorMessage message = _particleMessages[iPort];
+			if (message != null)
+			{
+				_variableDomains[iPort] = message.particleValues;
+				_variableDomainLengths[iPort] = message.particleValues.length;
+			}
+		}
+	}
+	
+	/**
+	 * Recomputes the cached weights if any of the connected variables has resampled its particles
+	 * or the temperature has changed. Returns false if there are too many combinations to cache.
+	 */
+	private boolean updateCachedWeights()
+	{
+		refreshParticleDomains();
+		
+		final int numPorts = _numPorts;
+		long size = 1;
+		for (int iPort = 0; iPort < numPorts; iPort++)
+			size *= _variableDomainLengths[iPort];
+		if (size > _maxCachedCombinations)
+		{
+			_energies = null;
+			_weights = null;
+			return false;
+		}
+		
+		boolean valid = _energies != null && _energies.length == size;
+		for (int iPort = 0; iPort < numPorts; iPort++)
+		{
+			final ParticleBPSolverVariableToFactorMessage message = _particleMessages[iPort];
+			if (message != null && message.resamplingVersion != _energyVersions[iPort])
+			{
+				_energyVersions[iPort] = message.resamplingVersion;
+				valid = false;
+			}
+		}
+		
+		if (!valid)
+		{
+			if (_energies == null || _energies.length != size)
+			{
+				_energies = new double[(int)size];
+				_weights = new double[(int)size];
+			}
+			computeEnergies(_energies);
+		}
+		
+		if (!valid || _weightsBeta != _beta)
+		{
+			final double beta = _beta;
+			final double[] energies = _energies, weights = _weights;
+			for (int i = 0, end = energies.length; i < end; i++)
+				weights[i] = Math.exp(-beta * energies[i]);
+			_weightsBeta = beta;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Evaluates the factor function's energy for every combination of values, with the first port
+	 * varying fastest.
+	 */
+	private void computeEnergies(double[] energies)
+	{
+		final FactorFunction factorFunction = _realFactor.getFactorFunction();
+		final int size = energies.length;
+		
+		if (_allReal)
+		{
+			final int numPorts = _numPorts;
+			final double[][] arguments = batchArguments(Math.min(size, MAX_BATCH_SIZE));
+			final int[] indices = _variableIndices;
+			Arrays.fill(indices, 0);
+			
+			for (int start = 0; start < size; start += MAX_BATCH_SIZE)
+			{
+				final int n = Math.min(MAX_BATCH_SIZE, size - start);
+				for (int row = 0; row < n; row++)
+				{
+					for (int iPort = 0; iPort < numPorts; iPort++)
+						arguments[iPort][row] = (Double)_variableDomains[iPort][indices[iPort]];
+					nextIndices(indices, -1);
+				}
+				factorFunction.evalEnergies(arguments, n, _batchEnergies);
+				System.arraycopy(_batchEnergies, 0, energies, start, n);
+			}
+		}
+		else
+		{
+			initializeVariableCombinations();
+			for (int i = 0; i < size; i++)
+			{
+				energies[i] = factorFunction.evalEnergy(_variableValues);
+				nextVariableCombination();
+			}
+		}
+	}
+	
+	/**
+	 * Computes the output message for the given port from the cached weights.
+	 */
+	private void computeOutputMessage(int outPortNum)
+	{
+		final double[] outputMsgs = _outMsgArray[outPortNum];
+		final int outputMsgLength = outputMsgs.length;
+		Arrays.fill(outputMsgs, 0);
+		
+		final int nRows = _weights.length / _variableDomainLengths[0];
+		int nTasks = 1;
+		if (_weights.length >= _minConcurrentCombinations && !ThreadPool.isPoolThread())
+		{
+			ThreadPool.getThreadPool();	// Sets the default number of threads if not yet set
+			nTasks = Math.min(ThreadPool.getNumThreads(), nRows);
+		}
+		
+		if (nTasks > 1)
+		{
+			accumulateConcurrently(outPortNum, nRows, nTasks, outputMsgs);
+		}
+		else
+		{
+			accumulate(outPortNum, 0, nRows, outputMsgs, _variableIndices);
+		}
+		
+		double sum = 0;
+		for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
+		for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] /= sum;
+	}
+	
+	/**
+	 * Adds the weights of all combinations in the given range of rows, multiplied by the input
+	 * messages of all ports except {@code outPortNum}, to {@code output}. Each row contains all
+	 * of the values of the first port for a fixed combination of values of the remaining ports.
+	 * <p>
+	 * Only reads the state of this object, so it may be invoked concurrently with distinct
+	 * {@code output} and {@code indices} arrays.
+	 */
+	private void accumulate(int outPortNum, int startRow, int endRow, double[] output, int[] indices)
+	{
+		final int numPorts = _numPorts;
+		final int[] lengths = _variableDomainLengths;
+		final double[][] inputs = _inPortMsgs;
+		final double[] weights = _weights;
+		final double[] firstInput = inputs[0];
+		final int rowLength = lengths[0];
+		
+		indices[0] = 0;
+		for (int iPort = 1, row = startRow; iPort < numPorts; iPort++)
+		{
+			indices[iPort] = row % lengths[iPort];
+			row /= lengths[iPort];
+		}
+		
+		for (int row = startRow, offset = startRow * rowLength; row < endRow; row++, offset += rowLength)
+		{
+			// Product of the input messages for all ports after the first except the output port
+			double rest = 1;
+			for (int iPort = 1; iPort < numPorts; iPort++)
+				if (iPort != outPortNum)
+					rest *= inputs[iPort][indices[iPort]];
+			
+			if (rest != 0)
+			{
+				if (outPortNum == 0)
+				{
+					for (int i = 0; i < rowLength; i++)
+						output[i] += weights[offset + i] * rest;
+				}
+				else
+				{
+					double sum = 0;
+					for (int i = 0; i < rowLength; i++)
+						sum += weights[offset + i] * firstInput[i];
+					output[indices[outPortNum]] += sum * rest;
+				}
+			}
+			
+			nextIndices(indices, 0);
+		}
+	}
+	
+	/**
+	 * Divides the rows among {@code nTasks} tasks run on the {@link ThreadPool}, each accumulating
+	 * into its own array, and then adds up the results in a fixed order.
+	 */
+	private void accumulateConcurrently(final int outPortNum, int nRows, int nTasks, double[] output)
+	{
+		final int outputLength = output.length;
+		final ArrayList<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(nTasks);
+		for (int task = 0; task < nTasks; task++)
+		{
+			final int startRow = (int)((long)nRows * task / nTasks);
+			final int endRow = (int)((long)nRows * (task + 1) / nTasks);
+			tasks.add(new Callable<double[]>() {
+				@Override
+				public double[] call()
+				{
+					final double[] partial = new double[outputLength];
+					accumulate(outPortNum, startRow, endRow, partial, new int[_numPorts]);
+					return partial;
+				}
+			});
+		}
+		
+		try
+		{
+			final List<Future<double[]>> results = ThreadPool.getThreadPool().invokeAll(tasks);
+			for (Future<double[]> result : results)
+			{
+				final double[] partial = result.get();
+				for (int i = 0; i < outputLength; i++)
+					output[i] += partial[i];
+			}
+		}
+		catch (InterruptedException e)
+		{
+			throw new DimpleException(e);
+		}
+		catch (ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new DimpleException(e);
+		}
+	}
+	
+	/**
+	 * Computes the output message for the given port by evaluating the factor function for each
+	 * combination of values. Used when there are too many combinations to cache.
+	 */
+	private void computeOutputMessageUncached(int outPortNum)
+	{
+		FactorFunction factorFunction = _realFactor.getFactorFunction();
+
+        double[] outputMsgs = _outMsgArray[outPortNum];
+    	int outputMsgLength = outputMsgs.length;
+        for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] = 0;
+        
+        initializeVariableCombinations();
+        while (true)
+        {
+        	double prob = Math.exp(-_beta * factorFunction.evalEnergy(_variableValues));
+
+        	for (int inPortNum = 0; inPortNum < _numPorts; inPortNum++)
+        		if (inPortNum != outPortNum)
+        			prob *= _inPortMsgs[inPortNum][_variableIndices[inPortNum]];
+
+        	outputMsgs[_variableIndices[outPortNum]] += prob;
+        	
+        	nextVariableCombination();
+        	if (!_moreCombinations) break;
+        }
+        
+        double sum = 0;
+    	for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
+    	for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] /= sum;
+	}
+	
+	/**
+	 * Version of {@link #getMarginalPotential(double, int)} for factors whose variables are
+	 * all real, which evaluates the factor function in batches of rows.
+	 */
+	private double getMarginalPotentialBatch(double value, int outPortIndex)
+	{
+		final FactorFunction factorFunction = _realFactor.getFactorFunction();
+		final int numPorts = _numPorts;
+		final double beta = _beta;
+		
+		long size = 1;
+		for (int iPort = 0; iPort < numPorts; iPort++)
+			if (iPort != outPortIndex)
+				size *= _variableDomainLengths[iPort];
+		
+		final double[][] arguments = batchArguments((int)Math.min(size, MAX_BATCH_SIZE));
+		final double[] energies = _batchEnergies;
+		final double[] weights = _batchWeights;
+		final int[] indices = _variableIndices;
+		Arrays.fill(indices, 0);
+		Arrays.fill(arguments[outPortIndex], value);
+		
+		double marginal = 0;
+		for (long start = 0; start < size; start += MAX_BATCH_SIZE)
+		{
+			final int n = (int)Math.min(MAX_BATCH_SIZE, size - start);
+			for (int row = 0; row < n; row++)
+			{
+				double weight = 1;
+				for (int iPort = 0; iPort < numPorts; iPort++)
+				{
+					if (iPort != outPortIndex)
+					{
+						final int index = indices[iPort];
+						arguments[iPort][row] = (Double)_variableDomains[iPort][index];
+						weight *= _inPortMsgs[iPort][index];
+					}
+				}
+				weights[row] = weight;
+				nextIndices(indices, outPortIndex);
+			}
+			
+			factorFunction.evalEnergies(arguments, n, energies);
+			for (int row = 0; row < n; row++)
+				marginal += Math.exp(-beta * energies[row]) * weights[row];
+		}
+		
+	    return -Math.log(marginal);
+	}
+	
+	/**
+	 * Advances {@code indices} to the next combination of values, with the first port varying
+	 * fastest, skipping {@code skipPort} if non-negative.
+	 */
+	private void nextIndices(int[] indices, int skipPort)
+	{
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+		{
+			if (iPort != skipPort)
+			{
+				if (++indices[iPort] < _variableDomainLengths[iPort])
+					break;
+				indices[iPort] = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the scratch argument columns, making sure they can hold at least {@code nRows} rows.
+	 */
+	private double[][] batchArguments(int nRows)
+	{
+		if (_batchArguments.length != _numPorts || _batchEnergies.length < nRows)
+		{
+			final int length = Math.max(nRows, _batchEnergies.length);
+			_batchArguments = new double[_numPorts][length];
+			_batchEnergies = new double[length];
+			_batchWeights = new double[length];
+		}
+		return _batchArguments;
+	}
 }
@@ -52,6 +52,26 @@ public class SRealVariable extends SRealVariableBase
 	double [] _logWeight;
 	protected double _beta = 1;
 
+	/*
+	 * Reusable arguments and results for evaluating the input without boxing.
+	 */
+	private final double[][] _particleArgument = new double[1][];
+	private double[] _inputEnergies = new double[0];
+	private final RealValue[] _inputValue = new RealValue[] { RealValue.create() };
+
+	/*
+	 * Reusable scratch space for computing messages and resampling.
+	 */
+	private double[] _alphas = new double[0];
+	private SRealFactor[] _siblingSolvers = new SRealFactor[0];
+	private int[] _siblingPorts = new int[0];
+
+	/**
+	 * Energies above this value give a prior probability exp(-energy) that underflows to zero,
+	 * whose log is replaced by {@code minLog}.
+	 */
+	private static final double MAX_PRIOR_ENERGY = 745.1332191019412;
+
 
 
 	public SRealVariable(VariableBase var)
@@ -76,12 +96,10 @@ public class SRealVariable extends SRealVariableBase
 
 		double[] outMsgs = _outMsgArray[outPortNum].messageValues;
 
+		final double[] inputEnergies = _input != null ? computeInputEnergies() : null;
 		for (int m = 0; m < M; m++)
 		{
-			double prior = 1;
-			if (_input != null)
-				try {prior = _input.eval(new Object[]{_particleValues[m]});} catch (Exception e) {e.printStackTrace(); System.exit(1);}
-				double out = (prior == 0) ? minLog : Math.log(prior) * _beta;
+				double out = inputEnergies != null ? logPrior(inputEnergies[m], minLog) : 0;
 
 				for (int d = 0; d < D; d++)
 				{
@@ -123,13 +141,13 @@ public class SRealVariable extends SRealVariableBase
 
 
 		//Compute alphas
-		double[] alphas = new double[M];
+		if (_alphas.length < M)
+			_alphas = new double[M];
+		final double[] alphas = _alphas;
+		final double[] inputEnergies = _input != null ? computeInputEnergies() : null;
 		for (int m = 0; m < M; m++)
 		{
-			double prior = 1;
-			if (_input != null)
-				try {prior = _input.eval(new Object[]{_particleValues[m]});} catch (Exception e) {e.printStackTrace(); System.exit(1);}
-				double alpha = (prior == 0) ? minLog : Math.log(prior) * _beta;
+				double alpha = inputEnergies != null ? logPrior(inputEnergies[m], minLog) : 0;
 
 				for (int d = 0; d < D; d++)
 				{
@@ -189,6 +207,20 @@ public class SRealVariable extends SRealVariableBase
 		double _upperBound = _domain.getUpperBound();
 		int M = _numParticles;
 
+		// Look up the factors and their ports for this variable once
+		if (_siblingSolvers.length != numPorts)
+		{
+			_siblingSolvers = new SRealFactor[numPorts];
+			_siblingPorts = new int[numPorts];
+		}
+		final SRealFactor[] factors = _siblingSolvers;
+		final int[] factorPorts = _siblingPorts;
+		for (int portIndex = 0; portIndex < numPorts; portIndex++)
+		{
+			factors[portIndex] = (SRealFactor)_var.getSibling(portIndex).getSolver();
+			factorPorts[portIndex] = _var.getSiblingPortIndex(portIndex);
+		}
+
 
 		// For each sample value
 		for (int m = 0; m < M; m++)
@@ -200,29 +232,10 @@ public class SRealVariable extends SRealVariableBase
 
 			// Start with the potential for the current particle value
 			if (_input != null)
-				try {
-					potential = -Math.log(_input.eval(new Object[]{sampleValue})) * _beta;
-				}
-				catch (Exception e)
-				{
-					e.printStackTrace(); System.exit(1);
-				}
+				potential = inputEnergy(sampleValue) * _beta;
 
 			for (int portIndex = 0; portIndex < numPorts; portIndex++)
-			{
-				FactorBase factorNode = _var.getSibling(portIndex);
-				int factorPortNumber = 0;
-				try {
-					factorPortNumber = factorNode.getPortNum(_var);
-					}
-				catch (Exception e)
-				{
-					e.printStackTrace(); System.exit(1);
-				}
-				
-				SRealFactor factor = (SRealFactor)(factorNode.getSolver());
-				potential += factor.getMarginalPotential(sampleValue, factorPortNumber);
-			}
+				potential += factors[portIndex].getMarginalPotential(sampleValue, factorPorts[portIndex]);
 
 
 			// Now repeat resampling this sample
@@ -238,21 +251,15 @@ public class SRealVariable extends SRealVariableBase
 				// Sum up the potentials from the input and all connected factors
 				potentialProposed = 0;
 				if (_input != null)
-					try {potentialProposed = -Math.log(_input.eval(new Object[]{proposalValue})) * _beta;} catch (Exception e) {e.printStackTrace(); System.exit(1);}
+					potentialProposed = inputEnergy(proposalValue) * _beta;
 
 					for (int portIndex = 0; portIndex < numPorts; portIndex++)
-					{
-						FactorBase factorNode = _var.getSibling(portIndex);
-						int factorPortNumber = 0;
-						try {factorPortNumber = factorNode.getPortNum(_var);} catch (Exception e) {e.printStackTrace(); System.exit(1);}
-						SRealFactor factor = (SRealFactor)(factorNode.getSolver());
-						potentialProposed += factor.getMarginalPotential(proposalValue, factorPortNumber);
-					}
+						potentialProposed += factors[portIndex].getMarginalPotential(proposalValue, factorPorts[portIndex]);
 
 
 					// Accept or reject
 					double rejectionThreshold = Math.exp(potential - potentialProposed + proposal.hastingsTerm);
-					if (SolverRandomGenerator.rand.nextDouble() < rejectionThreshold)
+					if (SolverRandomGenerator.rand().nextDouble() < rejectionThreshold)
 					{
 						sampleValue = proposalValue;
 						potential = potentialProposed;
@@ -265,13 +272,7 @@ public class SRealVariable extends SRealVariableBase
 
 			// Update the incoming messages for the new particle value
 			for (int d = 0; d < numPorts; d++)
-			{
-				FactorBase factorNode = _var.getSibling(d);
-				int factorPortNumber = 0;
-				try {factorPortNumber = factorNode.getPortNum(_var);} catch (Exception e) {e.printStackTrace(); System.exit(1);}
-				SRealFactor factor = (SRealFactor)(factorNode.getSolver());
-				_inPortMsgs[d][m] = Math.exp(factor.getMarginalPotential(sampleValue, factorPortNumber));
-			}
+				_inPortMsgs[d][m] = Math.exp(factors[d].getMarginalPotential(sampleValue, factorPorts[d]));
 
 
 		}
@@ -296,12 +297,10 @@ public class SRealVariable extends SRealVariableBase
 
 		double[] outBelief = new double[M];
 
+		final double[] inputEnergies = _input != null ? computeInputEnergies() : null;
 		for (int m = 0; m < M; m++)
 		{
-			double prior = 1;
-			if (_input != null)
-				prior = _input.eval(new Object[]{_particleValues[m]});
-			double out = (prior == 0) ? minLog : Math.log(prior) * _beta;
+			double out = inputEnergies != null ? logPrior(inputEnergies[m], minLog) : 0;
 
 			for (int d = 0; d < D; d++)
 			{
@@ -343,13 +342,16 @@ public class SRealVariable extends SRealVariableBase
 
 		double[] outBelief = new double[M];
 
+		double[] inputEnergies = null;
+		if (_input != null)
+		{
+			inputEnergies = new double[M];
+			_input.evalEnergies(new double[][] { valueSet }, M, inputEnergies);
+		}
 		for (int m = 0; m < M; m++)
 		{
 			double value = valueSet[m];
-			double prior = 1;
-			if (_input != null)
-				prior = _input.eval(new Object[]{value});
-			double out = (prior == 0) ? minLog : Math.log(prior) * _beta;
+			double out = inputEnergies != null ? logPrior(inputEnergies[m], minLog) : 0;
 
 			for (int d = 0; d < D; d++)
 			{
@@ -554,6 +556,7 @@ public class SRealVariable extends SRealVariableBase
 		ParticleBPSolverVariableToFactorMessage m = (ParticleBPSolverVariableToFactorMessage)message;
 		
 		m.particleValues = _particleValues;
+		m.resamplingVersion++;	// Particles have moved
 		
 		return m;
 	}
@@ -586,4 +589,43 @@ public class SRealVariable extends SRealVariableBase
 		
 	}
 
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Evaluates the energy of the input for all of the current particle values in a single batch.
+	 * The returned array is reused by subsequent calls.
+	 */
+	private double[] computeInputEnergies()
+	{
+		final int M = _numParticles;
+		double[] values = _particleArgument[0];
+		if (values == null || values.length < M)
+		{
+			values = _particleArgument[0] = new double[M];
+			_inputEnergies = new double[M];
+		}
+		for (int m = 0; m < M; m++)
+			values[m] = _particleValues[m];
+		_input.evalEnergies(_particleArgument, M, _inputEnergies);
+		return _inputEnergies;
+	}
+	
+	/**
+	 * Log of the prior probability for an input {@code energy}, scaled by beta.
+	 */
+	private double logPrior(double energy, double minLog)
+	{
+		return energy > MAX_PRIOR_ENERGY ? minLog : -energy * _beta;
+	}
+	
+	/**
+	 * Evaluates the energy of the input for a single value without allocating.
+	 */
+	private double inputEnergy(double value)
+	{
+		_inputValue[0].setDouble(value);
+		return _input.evalEnergy(_inputValue);
+	}
 }
@@ -0,0 +1,375 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+
+/**
+ * Sum-product table engine that works on a flattened copy of the factor table's
+ * sparse indices.
+ * <p>
+ * The indices are stored column-major in a single {@code int[]}, so that the index of
+ * port {@code p} for sparse row {@code r} is {@code indices[p * nRows + r]}. When the
+ * table contains every joint entry, the index buffer is not needed at all and indices are
+ * produced by an odometer walking the table in joint index order.
+ * <p>
+ * {@link #update()} computes the outgoing messages for all ports in a single pass over the
+ * table using prefix/suffix products of the incoming messages, so a factor of degree d costs
+ * O(d * nnz) rather than the O(d<sup>2</sup> * nnz) of {@link TableFactorEngine#update()}.
+ * No memory is allocated once the flattened representation has been built.
+ *
+ * @since 0.06
+ */
+public class FlatTableFactorEngine extends TableFactorEngine
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * The table indices from which {@link #_indices} was computed. Used to detect changes
+	 * to the factor table.
+	 */
+	private int[][] _sourceIndices = null;
+
+	/**
+	 * Column-major flattened sparse indices, or null if table is fully dense.
+	 */
+	private int[] _indices = null;
+
+	/**
+	 * For dense tables, the ports in order of increasing joint index stride.
+	 */
+	private int[] _densePortOrder = null;
+
+	/**
+	 * For dense tables, domain sizes of ports in the order given by {@link #_densePortOrder}.
+	 */
+	private int[] _denseLimits = null;
+
+	/*
+	 * Per-row scratch space.
+	 */
+	private int[] _rowIndices = new int[0];
+	private double[] _prefix = new double[1];
+	private double[] _rowProducts = new double[0];
+
+	/*--------------
+	 * Construction
+	 */
+
+	public FlatTableFactorEngine(STableFactor tableFactor)
+	{
+		super(tableFactor);
+	}
+
+	/*---------------------------
+	 * TableFactorEngine methods
+	 */
+
+	@Override
+	public void updateEdge(int outPortNum)
+	{
+		final IFactorTable table = _tableFactor.getFactorTable();
+		final double[] values = table.getWeightsSparseUnsafe();
+		final int numPorts = _factor.getSiblingCount();
+		final int nRows = values.length;
+
+		final int[] indices = ensureFlattened(table, numPorts);
+
+		final double[] outputMsgs = _tableFactor.getOutPortMsgs()[outPortNum];
+		final int outputOffset = _tableFactor.getOutPortMsgOffsets()[outPortNum];
+		final int outputLength = _tableFactor.getMsgLength(outPortNum);
+		final double[][] inputMsgs = _tableFactor.getInPortMsgs();
+		final int[] inputOffsets = _tableFactor.getInPortMsgOffsets();
+
+		saveForDamping(outPortNum, outputMsgs, outputOffset, outputLength);
+		Arrays.fill(outputMsgs, outputOffset, outputOffset + outputLength, 0);
+
+		if (indices != null)
+		{
+			// Multiply in the input messages a column at a time into the row product scratch, so that
+			// each column of the index buffer is read sequentially.
+			final double[] products = ensureRowProducts(nRows);
+			System.arraycopy(values, 0, products, 0, nRows);
+
+			for (int inPortNum = 0; inPortNum < numPorts; ++inPortNum)
+			{
+				if (inPortNum != outPortNum)
+				{
+					final double[] inputMsg = inputMsgs[inPortNum];
+					final int inputOffset = inputOffsets[inPortNum];
+					for (int row = 0, offset = inPortNum * nRows; row < nRows; ++row, ++offset)
+						products[row] *= inputMsg[inputOffset + indices[offset]];
+				}
+			}
+
+			for (int row = 0, offset = outPortNum * nRows; row < nRows; ++row, ++offset)
+				outputMsgs[outputOffset + indices[offset]] += products[row];
+		}
+		else
+		{
+			final int[] rowIndices = resetOdometer(numPorts);
+			for (int row = 0; row < nRows; ++row)
+			{
+				double prob = values[row];
+				for (int inPortNum = 0; inPortNum < outPortNum; ++inPortNum)
+					prob *= inputMsgs[inPortNum][inputOffsets[inPortNum] + rowIndices[inPortNum]];
+				for (int inPortNum = outPortNum + 1; inPortNum < numPorts; ++inPortNum)
+					prob *= inputMsgs[inPortNum][inputOffsets[inPortNum] + rowIndices[inPortNum]];
+				outputMsgs[outputOffset + rowIndices[outPortNum]] += prob;
+				advanceOdometer(rowIndices);
+			}
+		}
+
+		normalizeAndDamp(outPortNum, outputMsgs, outputOffset, outputLength, "UpdateEdge");
+	}
+
+	@Override
+	public void update()
+	{
+		final IFactorTable table = _tableFactor.getFactorTable();
+		final double[] values = table.getWeightsSparseUnsafe();
+		final int numPorts = _factor.getSiblingCount();
+		final int nRows = values.length;
+
+		final int[] indices = ensureFlattened(table, numPorts);
+
+		final double[][] outMsgs = _tableFactor.getOutPortMsgs();
+		final double[][] inMsgs = _tableFactor.getInPortMsgs();
+		final int[] outOffsets = _tableFactor.getOutPortMsgOffsets();
+		final int[] inOffsets = _tableFactor.getInPortMsgOffsets();
+
+		for (int outPortNum = 0; outPortNum < numPorts; ++outPortNum)
+		{
+			final double[] outputMsgs = outMsgs[outPortNum];
+			final int outputOffset = outOffsets[outPortNum];
+			final int outputLength = _tableFactor.getMsgLength(outPortNum);
+			saveForDamping(outPortNum, outputMsgs, outputOffset, outputLength);
+			Arrays.fill(outputMsgs, outputOffset, outputOffset + outputLength, 0);
+		}
+
+		final int[] rowIndices = indices != null ? _rowIndices : resetOdometer(numPorts);
+		final double[] prefix = _prefix;
+
+		for (int row = 0; row < nRows; ++row)
+		{
+			if (indices != null)
+			{
+				for (int port = 0, offset = row; port < numPorts; ++port, offset += nRows)
+					rowIndices[port] = indices[offset];
+			}
+
+			// prefix[p] is the weight times the product of the input messages for ports [0, p).
+			double product = prefix[0] = values[row];
+			for (int port = 0; port < numPorts; ++port)
+				product = prefix[port + 1] = product * inMsgs[port][inOffsets[port] + rowIndices[port]];
+
+			// Walk back down accumulating the suffix product for ports (p, numPorts).
+			double suffix = 1;
+			for (int port = numPorts; --port >= 0; )
+			{
+				final int index = rowIndices[port];
+				outMsgs[port][outOffsets[port] + index] += prefix[port] * suffix;
+				suffix *= inMsgs[port][inOffsets[port] + index];
+			}
+
+			if (indices == null)
+				advanceOdometer(rowIndices);
+		}
+
+		for (int outPortNum = 0; outPortNum < numPorts; ++outPortNum)
+			normalizeAndDamp(outPortNum, outMsgs[outPortNum], outOffsets[outPortNum], _tableFactor.getMsgLength(outPortNum), "Update");
+	}
+
+	/*------------------
+	 * Internal methods
+	 */
+
+	/**
+	 * Rebuilds the flattened representation of {@code table} if the table's indices have changed
+	 * since it was last computed.
+	 * <p>
+	 * @return the column-major flattened indices or null if the table is dense, in which case
+	 * indices are produced by {@link #resetOdometer} and {@link #advanceOdometer}.
+	 */
+	final int[] ensureFlattened(IFactorTable table, int numPorts)
+	{
+		final int[][] sourceIndices = table.getIndicesSparseUnsafe();
+		if (sourceIndices == _sourceIndices)
+			return _indices;
+
+		final int nRows = sourceIndices.length;
+
+		_sourceIndices = sourceIndices;
+		_rowIndices = new int[numPorts];
+		_prefix = new double[numPorts + 1];
+
+		final JointDomainIndexer indexer = table.getDomainIndexer();
+
+		if (nRows == indexer.getCardinality() && table.supportsJointIndexing())
+		{
+			// Sparse rows are sorted by joint index, so if every joint entry is present, the row
+			// number is the joint index and the indices can be computed on the fly.
+			_indices = null;
+
+			final Integer[] order = new Integer[numPorts];
+			for (int port = 0; port < numPorts; ++port)
+				order[port] = port;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer port1, Integer port2)
+				{
+					final int stride1 = indexer.getStride(port1), stride2 = indexer.getStride(port2);
+					return stride1 < stride2 ? -1 : stride1 > stride2 ? 1 : 0;
+				}
+			});
+
+			_densePortOrder = new int[numPorts];
+			_denseLimits = new int[numPorts];
+			for (int i = 0; i < numPorts; ++i)
+			{
+				_densePortOrder[i] = order[i];
+				_denseLimits[i] = indexer.getDomainSize(order[i]);
+			}
+		}
+		else
+		{
+			_densePortOrder = null;
+			_denseLimits = null;
+
+			final int[] indices = _indices = new int[numPorts * nRows];
+			for (int row = 0; row < nRows; ++row)
+			{
+				final int[] tableRow = sourceIndices[row];
+				for (int port = 0, offset = row; port < numPorts; ++port, offset += nRows)
+					indices[offset] = tableRow[port];
+			}
+		}
+		
+		return _indices;
+	}
+
+	/**
+	 * Returns per-row index scratch array, which must be at least {@code numPorts} long, with
+	 * all indices set to zero.
+	 */
+	final int[] resetOdometer(int numPorts)
+	{
+		final int[] rowIndices = _rowIndices;
+		Arrays.fill(rowIndices, 0, numPorts, 0);
+		return rowIndices;
+	}
+
+	/**
+	 * Advances {@code rowIndices} to the indices of the next joint index of a dense table.
+	 */
+	final void advanceOdometer(int[] rowIndices)
+	{
+		final int[] order = _densePortOrder;
+		final int[] limits = _denseLimits;
+		for (int i = 0, n = order.length; i < n; ++i)
+		{
+			final int port = order[i];
+			if (++rowIndices[port] < limits[i])
+				return;
+			rowIndices[port] = 0;
+		}
+	}
+
+	final void saveForDamping(int outPortNum, double[] outputMsgs, int offset, int length)
+	{
+		if (_tableFactor._dampingInUse)
+		{
+			double damping = _tableFactor._dampingParams[outPortNum];
+			if (damping != 0)
+				System.arraycopy(outputMsgs, offset, _tableFactor._savedOutMsgArray[outPortNum], 0, length);
+		}
+	}
+
+	/**
+	 * Returns scratch array of at least {@code numPorts} elements for holding per-row indices.
+	 */
+	final int[] rowIndices()
+	{
+		return _rowIndices;
+	}
+
+	/**
+	 * Returns scratch array of at least {@code numPorts + 1} elements for holding prefix products.
+	 */
+	final double[] prefix()
+	{
+		return _prefix;
+	}
+
+	final void applyDamping(int outPortNum, double[] outputMsgs, int offset, int length)
+	{
+		if (_tableFactor._dampingInUse)
+		{
+			double damping = _tableFactor._dampingParams[outPortNum];
+			if (damping != 0)
+			{
+				double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
+				for (int i = 0; i < length; i++)
+					outputMsgs[offset + i] = (1-damping)*outputMsgs[offset + i] + damping*saved[i];
+			}
+		}
+	}
+
+	final DimpleException allZeroException(int outPortNum, String operation)
+	{
+		return new DimpleException(operation + " failed in SumProduct Solver.  All probabilities were zero when calculating message for port "
+			+ outPortNum + " on factor " + _factor.getLabel());
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Returns scratch array of at least {@code nRows} elements for holding per-row products.
+	 */
+	private double[] ensureRowProducts(int nRows)
+	{
+		if (_rowProducts.length < nRows)
+			_rowProducts = new double[nRows];
+		return _rowProducts;
+	}
+
+	private void normalizeAndDamp(int outPortNum, double[] outputMsgs, int offset, int length, String operation)
+	{
+		final int end = offset + length;
+
+		double sum = 0;
+		for (int i = offset; i < end; i++)
+			sum += outputMsgs[i];
+		if (sum == 0)
+			throw allZeroException(outPortNum, operation);
+
+		final double scale = 1 / sum;
+		for (int i = offset; i < end; i++)
+			outputMsgs[i] *= scale;
+
+		applyDamping(outPortNum, outputMsgs, offset, length);
+	}
+}
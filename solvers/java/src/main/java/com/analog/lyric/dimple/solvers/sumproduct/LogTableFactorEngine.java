@@ -0,0 +1,271 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct;
+
+import java.util.Arrays;
+
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+
+/**
+ * Sum-product table engine that computes outgoing messages in the log domain.
+ * <p>
+ * Each row of the table contributes the sum of the row's log weight (i.e. negated energy) and the
+ * logs of the incoming messages, and contributions are combined for each output value using
+ * log-sum-exp, so that products of many small messages cannot underflow to zero. The result is
+ * converted back to a normalized probability message by a single scaling pass.
+ * <p>
+ * Uses the same flattened table representation and single-pass prefix/suffix scheme as
+ * {@link FlatTableFactorEngine}.
+ * <p>
+ * @see SumProductOptions#LOG_DOMAIN
+ * @since 0.06
+ */
+public class LogTableFactorEngine extends FlatTableFactorEngine
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Logs of the incoming messages, indexed by port.
+	 */
+	private double[][] _logInputs = new double[0][];
+
+	/**
+	 * Maximum log contribution for each output value, indexed by port.
+	 */
+	private double[][] _maxLogs = new double[0][];
+
+	/*--------------
+	 * Construction
+	 */
+
+	public LogTableFactorEngine(STableFactor tableFactor)
+	{
+		super(tableFactor);
+	}
+
+	/*---------------------------
+	 * TableFactorEngine methods
+	 */
+
+	@Override
+	public void updateEdge(int outPortNum)
+	{
+		final IFactorTable table = _tableFactor.getFactorTable();
+		final double[] energies = table.getEnergiesSparseUnsafe();
+		final int numPorts = _factor.getSiblingCount();
+		final int nRows = energies.length;
+
+		final int[] indices = ensureFlattened(table, numPorts);
+		final double[][] logInputs = computeLogInputs(numPorts);
+
+		final double[] outputMsgs = _tableFactor.getOutPortMsgs()[outPortNum];
+		final int outputOffset = _tableFactor.getOutPortMsgOffsets()[outPortNum];
+		final double[] maxLogs = _maxLogs[outPortNum];
+		final int outputLength = maxLogs.length;
+
+		saveForDamping(outPortNum, outputMsgs, outputOffset, outputLength);
+		Arrays.fill(outputMsgs, outputOffset, outputOffset + outputLength, 0);
+		Arrays.fill(maxLogs, Double.NEGATIVE_INFINITY);
+
+		// First pass finds the largest contribution to each output value, second pass sums
+		// the contributions relative to that value.
+		for (int pass = 0; pass < 2; ++pass)
+		{
+			final int[] rowIndices = indices != null ? rowIndices() : resetOdometer(numPorts);
+
+			for (int row = 0; row < nRows; ++row)
+			{
+				if (indices != null)
+				{
+					for (int port = 0, offset = row; port < numPorts; ++port, offset += nRows)
+						rowIndices[port] = indices[offset];
+				}
+
+				double logProb = -energies[row];
+				for (int inPortNum = 0; inPortNum < outPortNum; ++inPortNum)
+					logProb += logInputs[inPortNum][rowIndices[inPortNum]];
+				for (int inPortNum = outPortNum + 1; inPortNum < numPorts; ++inPortNum)
+					logProb += logInputs[inPortNum][rowIndices[inPortNum]];
+
+				final int outputIndex = rowIndices[outPortNum];
+				if (pass == 0)
+				{
+					if (logProb > maxLogs[outputIndex])
+						maxLogs[outputIndex] = logProb;
+				}
+				else if (logProb != Double.NEGATIVE_INFINITY)
+				{
+					outputMsgs[outputOffset + outputIndex] += Math.exp(logProb - maxLogs[outputIndex]);
+				}
+
+				if (indices == null)
+					advanceOdometer(rowIndices);
+			}
+		}
+
+		normalizeLogSums(outPortNum, outputMsgs, outputOffset, maxLogs, "UpdateEdge");
+		applyDamping(outPortNum, outputMsgs, outputOffset, outputLength);
+	}
+
+	@Override
+	public void update()
+	{
+		final IFactorTable table = _tableFactor.getFactorTable();
+		final double[] energies = table.getEnergiesSparseUnsafe();
+		final int numPorts = _factor.getSiblingCount();
+		final int nRows = energies.length;
+
+		final int[] indices = ensureFlattened(table, numPorts);
+		final double[][] logInputs = computeLogInputs(numPorts);
+
+		final double[][] outMsgs = _tableFactor.getOutPortMsgs();
+		final int[] outOffsets = _tableFactor.getOutPortMsgOffsets();
+		final double[][] maxLogs = _maxLogs;
+
+		for (int outPortNum = 0; outPortNum < numPorts; ++outPortNum)
+		{
+			final double[] outputMsgs = outMsgs[outPortNum];
+			final int outputOffset = outOffsets[outPortNum];
+			final int outputLength = maxLogs[outPortNum].length;
+			saveForDamping(outPortNum, outputMsgs, outputOffset, outputLength);
+			Arrays.fill(outputMsgs, outputOffset, outputOffset + outputLength, 0);
+			Arrays.fill(maxLogs[outPortNum], Double.NEGATIVE_INFINITY);
+		}
+
+		final double[] prefix = prefix();
+
+		for (int pass = 0; pass < 2; ++pass)
+		{
+			final int[] rowIndices = indices != null ? rowIndices() : resetOdometer(numPorts);
+
+			for (int row = 0; row < nRows; ++row)
+			{
+				if (indices != null)
+				{
+					for (int port = 0, offset = row; port < numPorts; ++port, offset += nRows)
+						rowIndices[port] = indices[offset];
+				}
+
+				// prefix[p] is the log weight plus the log input messages for ports [0, p).
+				double sum = prefix[0] = -energies[row];
+				for (int port = 0; port < numPorts; ++port)
+					sum = prefix[port + 1] = sum + logInputs[port][rowIndices[port]];
+
+				double suffix = 0;
+				for (int port = numPorts; --port >= 0; )
+				{
+					final int index = rowIndices[port];
+					final double logProb = prefix[port] + suffix;
+					final double[] portMaxLogs = maxLogs[port];
+					if (pass == 0)
+					{
+						if (logProb > portMaxLogs[index])
+							portMaxLogs[index] = logProb;
+					}
+					else if (logProb != Double.NEGATIVE_INFINITY)
+					{
+						outMsgs[port][outOffsets[port] + index] += Math.exp(logProb - portMaxLogs[index]);
+					}
+					suffix += logInputs[port][index];
+				}
+
+				if (indices == null)
+					advanceOdometer(rowIndices);
+			}
+		}
+
+		for (int outPortNum = 0; outPortNum < numPorts; ++outPortNum)
+		{
+			final double[] outputMsgs = outMsgs[outPortNum];
+			final int outputOffset = outOffsets[outPortNum];
+			normalizeLogSums(outPortNum, outputMsgs, outputOffset, maxLogs[outPortNum], "Update");
+			applyDamping(outPortNum, outputMsgs, outputOffset, maxLogs[outPortNum].length);
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Computes logs of the factor's incoming messages into {@link #_logInputs} and makes sure
+	 * that {@link #_maxLogs} has the right shape.
+	 */
+	private double[][] computeLogInputs(int numPorts)
+	{
+		final double[][] inputMsgs = _tableFactor.getInPortMsgs();
+		final int[] inputOffsets = _tableFactor.getInPortMsgOffsets();
+
+		if (_logInputs.length != numPorts)
+		{
+			_logInputs = new double[numPorts][];
+			_maxLogs = new double[numPorts][];
+		}
+
+		final double[][] logInputs = _logInputs;
+		for (int port = 0; port < numPorts; ++port)
+		{
+			final double[] inputMsg = inputMsgs[port];
+			final int inputOffset = inputOffsets[port];
+			final int size = _tableFactor.getMsgLength(port);
+
+			double[] logInput = logInputs[port];
+			if (logInput == null || logInput.length != size)
+			{
+				logInput = logInputs[port] = new double[size];
+				_maxLogs[port] = new double[size];
+			}
+
+			for (int i = 0; i < size; ++i)
+				logInput[i] = Math.log(inputMsg[inputOffset + i]);
+		}
+
+		return logInputs;
+	}
+
+	/**
+	 * Converts the message starting at {@code offset} in {@code outputMsgs}, which holds for each output
+	 * value the sum of exp(contribution - maxLog), into a normalized probability message.
+	 */
+	private void normalizeLogSums(int outPortNum, double[] outputMsgs, int offset, double[] maxLogs, String operation)
+	{
+		final int size = maxLogs.length;
+
+		double maxLog = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; ++i)
+			if (maxLogs[i] > maxLog)
+				maxLog = maxLogs[i];
+
+		if (maxLog == Double.NEGATIVE_INFINITY)
+			throw allZeroException(outPortNum, operation);
+
+		double sum = 0;
+		for (int i = 0; i < size; ++i)
+		{
+			final double logMax = maxLogs[i];
+			final double value = logMax == Double.NEGATIVE_INFINITY ? 0 : outputMsgs[offset + i] * Math.exp(logMax - maxLog);
+			outputMsgs[offset + i] = value;
+			sum += value;
+		}
+
+		final double scale = 1 / sum;
+		for (int i = 0; i < size; ++i)
+			outputMsgs[offset + i] *= scale;
+	}
+}
@@ -38,6 +38,13 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
     double [] _dampingParams = new double[0];
     private boolean _calculateDerivative = false;
 	protected boolean _dampingInUse = false;
+	private boolean _useLogDomain = false;
+	
+	/*
+	 * Scratch space for update()
+	 */
+	private double[] _alphas = new double[0];
+	private int[] _zeroCounts = new int[0];
 
 	public SDiscreteVariable(VariableBase var)
     {
@@ -57,6 +64,25 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 		_calculateDerivative = val;
 	}
 
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		_useLogDomain = options().lookup(SumProductOptions.LOG_DOMAIN);
+	}
+	
+	/**
+	 * True if zero-valued inputs and incoming messages are treated exactly rather than being clamped
+	 * to a small value. This is determined by the value of {@link SumProductOptions#LOG_DOMAIN} when the
+	 * variable was last initialized.
+	 * 
+	 * @since 0.06
+	 */
+	public boolean useLogDomain()
+	{
+		return _useLogDomain;
+	}
+
 
 	
 	
@@ -89,7 +115,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 		_savedOutMsgArray = new double[_dampingParams.length][];
 		for (int i = 0; i < _inputMessages.length; i++)
 		{
-			int length = _inputMessages[i].length;
+			int length = _input.length;
 			_savedOutMsgArray[i] = new double[length];
 		}
 
@@ -107,13 +133,14 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 	public void updateEdge(int outPortNum)
     {
     	
-        final double minLog = -100;
+        final double minLog = minLog();
         double[] priors = _input;
         int M = priors.length;
         int D = _var.getSiblingCount();
         double maxLog = Double.NEGATIVE_INFINITY;
 
         double[] outMsgs = _outputMessages[outPortNum];
+        final int outOffset = _outputMsgOffsets[outPortNum];
 
         if (_dampingInUse)
         {
@@ -121,8 +148,8 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
         	if (damping != 0)
         	{
         		double[] saved = _savedOutMsgArray[outPortNum];
-        		for (int i = 0; i < outMsgs.length; i++)
-        			saved[i] = outMsgs[i];
+        		for (int i = 0; i < M; i++)
+        			saved[i] = outMsgs[outOffset + i];
         	}
         }
 
@@ -136,26 +163,30 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 	        {
 	        	if (d != outPortNum)		// For all ports except the output port
 	        	{
-	        		double tmp = _inputMessages[d][m];
+	        		double tmp = _inputMessages[d][_inputMsgOffsets[d] + m];
 	        		out += (tmp == 0) ? minLog : Math.log(tmp);
 	        	}
 	        }
         	if (out > maxLog) maxLog = out;
-        	outMsgs[m] = out;
+        	outMsgs[outOffset + m] = out;
         }
         
+        if (maxLog == Double.NEGATIVE_INFINITY)
+        	throw allZeroException(outPortNum, "UpdateEdge");
+        
         //create sum
         double sum = 0;
         for (int m = 0; m < M; m++)
         {
-        	double out = Math.exp(outMsgs[m] - maxLog);
-        	outMsgs[m] = out;
+        	double out = Math.exp(outMsgs[outOffset + m] - maxLog);
+        	outMsgs[outOffset + m] = out;
         	sum += out;
         }
         
-        //calculate message by dividing by sum
+        //calculate message by multiplying by reciprocal of sum
+        final double scale = 1 / sum;
         for (int m = 0; m < M; m++)
-        	outMsgs[m] /= sum;
+        	outMsgs[outOffset + m] *= scale;
 
         if (_dampingInUse)
         {
@@ -164,7 +195,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
         	{
         		double[] saved = _savedOutMsgArray[outPortNum];
         		for (int m = 0; m < M; m++)
-        			outMsgs[m] = outMsgs[m]*(1-damping) + saved[m]*damping;
+        			outMsgs[outOffset + m] = outMsgs[outOffset + m]*(1-damping) + saved[m]*damping;
         	}
         }
 	    
@@ -177,27 +208,44 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
     @Override
 	public void update()
     {
-        final double minLog = -100;
+        final double minLog = minLog();
         double[] priors = _input;
         int M = priors.length;
         int D = _var.getSiblingCount();
         
+        if (_alphas.length < M)
+        {
+        	_alphas = new double[M];
+        	_zeroCounts = new int[M];
+        }
         
-        //Compute alphas
-        double[] alphas = new double[M];
+        //Compute alphas. Zero values, which only occur in the log domain mode, are not included
+        //in the alphas but are counted, so that they can be excluded exactly for each edge.
+        final double[] alphas = _alphas;
+        final int[] zeroCounts = _zeroCounts;
         for (int m = 0; m < M; m++)
         {
         	double prior = priors[m];
-        	double alpha = (prior == 0) ? minLog : Math.log(prior);
+        	double alpha = 0;
+        	int zeroCount = 0;
+        	
+        	if (prior == 0 && minLog == Double.NEGATIVE_INFINITY)
+        		++zeroCount;
+        	else
+        		alpha = (prior == 0) ? minLog : Math.log(prior);
 
         	for (int d = 0; d < D; d++)
 	        {
-	        	double tmp = _inputMessages[d][m];
+	        	double tmp = _inputMessages[d][_inputMsgOffsets[d] + m];
         		double logtmp = (tmp == 0) ? minLog : Math.log(tmp);
         		_logInPortMsgs[d][m] = logtmp;
-        		alpha += logtmp;
+        		if (logtmp == Double.NEGATIVE_INFINITY)
+        			++zeroCount;
+        		else
+        			alpha += logtmp;
 	        }
 	        alphas[m] = alpha;
+	        zeroCounts[m] = zeroCount;
         }
         
         
@@ -205,7 +253,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 	    for (int out_d = 0; out_d < D; out_d++ )
 	    {
             double[] outMsgs = _outputMessages[out_d];
-            
+            final int outOffset = _outputMsgOffsets[out_d];
 
             if (_dampingInUse)
             {
@@ -213,8 +261,8 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
             	if (damping != 0)
             	{
             		double[] saved = _savedOutMsgArray[out_d];
-            		for (int i = 0; i < outMsgs.length; i++)
-            			saved[i] = outMsgs[i];
+            		for (int i = 0; i < M; i++)
+            			saved[i] = outMsgs[outOffset + i];
             	}
             }
             
@@ -226,24 +274,33 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
             double[] logInPortMsgsD = _logInPortMsgs[out_d];
             for (int m = 0; m < M; m++)
             {
-            	double out = alphas[m] - logInPortMsgsD[m];
+            	double logIn = logInPortMsgsD[m];
+            	double out;
+            	if (logIn == Double.NEGATIVE_INFINITY)
+            		out = zeroCounts[m] > 1 ? Double.NEGATIVE_INFINITY : alphas[m];
+            	else
+            		out = zeroCounts[m] > 0 ? Double.NEGATIVE_INFINITY : alphas[m] - logIn;
                 if (out > maxLog) maxLog = out;
-                outMsgs[m] = out;
+                outMsgs[outOffset + m] = out;
             }
             
+            if (maxLog == Double.NEGATIVE_INFINITY)
+            	throw allZeroException(out_d, "Update");
+            
             //create sum
             double sum = 0;
             for (int m = 0; m < M; m++)
             {
-                double out = Math.exp(outMsgs[m] - maxLog);
-                outMsgs[m] = out;
+                double out = Math.exp(outMsgs[outOffset + m] - maxLog);
+                outMsgs[outOffset + m] = out;
                 sum += out;
             }
             
-            //calculate message by dividing by sum
+            //calculate message by multiplying by reciprocal of sum
+            final double scale = 1 / sum;
             for (int m = 0; m < M; m++)
             {
-            	outMsgs[m] /= sum;
+            	outMsgs[outOffset + m] *= scale;
             }
             
             
@@ -254,7 +311,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
             	{
             		double[] saved = _savedOutMsgArray[out_d];
             		for (int m = 0; m < M; m++)
-            			outMsgs[m] = outMsgs[m]*(1-damping) + saved[m]*damping;
+            			outMsgs[outOffset + m] = outMsgs[outOffset + m]*(1-damping) + saved[m]*damping;
             	}
             }
             
@@ -271,7 +328,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 	public double[] getBelief()
     {
 
-        final double minLog = -100;
+        final double minLog = minLog();
         double[] priors = _input;
         int M = priors.length;
         int D = _var.getSiblingCount();
@@ -287,13 +344,17 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
         	
 	        for (int d = 0; d < D; d++)
 	        {
-	        	double tmp = _inputMessages[d][m];
+	        	double tmp = _inputMessages[d][_inputMsgOffsets[d] + m];
 	        	out += (tmp == 0) ? minLog : Math.log(tmp);
 	        }
         	if (out > maxLog) maxLog = out;
         	outBelief[m] = out;
         }
         
+        if (maxLog == Double.NEGATIVE_INFINITY)
+        	throw new DimpleException("Belief computation failed in SumProduct Solver.  All probabilities were zero for variable "
+        		+ _var.getLabel());
+        
         //create sum
         double sum = 0;
         for (int m = 0; m < M; m++)
@@ -338,7 +399,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 		{
 			for (int j=  0; j < retval.length; j++)
 			{
-				retval[j] *= _inputMessages[i][j];
+				retval[j] *= _inputMessages[i][_inputMsgOffsets[i] + j];
 			}
 		}
 		
@@ -395,7 +456,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 		for (int i = 0; i < _inputMessages.length; i++)
 		{
 			STableFactor sft = (STableFactor)getVariable().getConnectedNodesFlat().getByIndex(i).getSolver();
-			double inputMsg = _inputMessages[i][domain];
+			double inputMsg = _inputMessages[i][_inputMsgOffsets[i] + domain];
 			double tmp = f / inputMsg;
 			double der = sft.getMessageDerivative(weightIndex,getVariable())[domain];
 			tmp = tmp * der;
@@ -474,7 +535,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 		{
 			if (i != outPortNum)
 			{
-				f *= _inputMessages[i][d];
+				f *= _inputMessages[i][_inputMsgOffsets[i] + d];
 			}
 		}
 		return f;
@@ -538,7 +599,7 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 		{
 			if (i != outPortNum)
 			{
-				double thisMsg = _inputMessages[i][d];
+				double thisMsg = _inputMessages[i][_inputMsgOffsets[i] + d];
 				STableFactor stf = (STableFactor)getVariable().getConnectedNodesFlat().getByIndex(i).getSolver();
 				double [] dfactor = stf.getMessageDerivative(wn,getVariable());
 				
@@ -574,12 +635,12 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 		int portNum = _var.getPortNum(factor.getModelObject());
 		int newArraySize = _inputMessages.length;
 		_logInPortMsgs = Arrays.copyOf(_logInPortMsgs, newArraySize);
-		_logInPortMsgs[portNum] = new double[_inputMessages[portNum].length];
+		_logInPortMsgs[portNum] = new double[_input.length];
 		
 		if (_dampingInUse)
 		{
 			_savedOutMsgArray = Arrays.copyOf(_savedOutMsgArray,newArraySize);
-			_savedOutMsgArray[portNum] = new double[_inputMessages[portNum].length];
+			_savedOutMsgArray[portNum] = new double[_input.length];
 		}
 
 		_dampingParams = Arrays.copyOf(_dampingParams, newArraySize);
@@ -589,6 +650,16 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 	
 
 	
+	@Override
+	public void resetEdgeMessages(int portNum)
+	{
+		final int length = _input.length;
+		final double val = 1.0/length;
+		final int inputOffset = _inputMsgOffsets[portNum], outputOffset = _outputMsgOffsets[portNum];
+		Arrays.fill(_inputMessages[portNum], inputOffset, inputOffset + length, val);
+		Arrays.fill(_outputMessages[portNum], outputOffset, outputOffset + length, val);
+	}
+	
 	@Override
 	public Object resetInputMessage(Object message)
 	{
@@ -616,7 +687,22 @@ public class SDiscreteVariable extends SDiscreteVariableDoubleArray
 			_savedOutMsgArray[portNum] = sother._savedOutMsgArray[otherPortNum];
 		}
 	}
-
-
 	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Log value used in place of log(0). In the log domain mode, zeros are represented exactly.
+	 */
+	private double minLog()
+	{
+		return _useLogDomain ? Double.NEGATIVE_INFINITY : -100;
+	}
+	
+	private DimpleException allZeroException(int outPortNum, String operation)
+	{
+		return new DimpleException(operation + " failed in SumProduct Solver.  All probabilities were zero when calculating message for port "
+			+ outPortNum + " on variable " + _var.getLabel());
+	}
 }
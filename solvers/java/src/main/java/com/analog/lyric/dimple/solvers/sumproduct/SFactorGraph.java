@@ -45,6 +45,7 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Real;
 import com.analog.lyric.dimple.model.variables.RealJoint;
 import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.solvers.core.MessageStore;
 import com.analog.lyric.dimple.solvers.core.ParameterEstimator;
 import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
 import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
@@ -75,10 +76,15 @@ import com.analog.lyric.util.misc.IMapList;
 public class SFactorGraph extends SFactorGraphBase
 {
 	private double _damping = 0;
+	private boolean _useFlatTableFactorEngine = false;
 	private IFactorTable _currentFactorTable = null;
 	private int _sampledFactorSamplesPerUpdate = SampledFactor.DEFAULT_SAMPLES_PER_UPDATE;
 	private int _sampledFactorBurnInScansPerUpdate = SampledFactor.DEFAULT_BURN_IN_SCANS_PER_UPDATE;
 	private int _sampledFactorScansPerSample = SampledFactor.DEFAULT_SCANS_PER_SAMPLE;
+	private double _sampledFactorOutputErrorTarget = SampledFactor.DEFAULT_OUTPUT_ERROR_TARGET;
+	private boolean _sampledFactorWarmStart = false;
+	private MessageStore _messageStore = null;
+	private long _messageStoreVersionId = -1;
 	private static Random _rand = new Random();
 
 
@@ -134,6 +140,8 @@ public class SFactorGraph extends SFactorGraphBase
 				STableFactor tf = new STableFactor(factor);
 				if (_damping != 0)
 					setDampingForTableFactor(tf);
+				if (_useFlatTableFactorEngine)
+					tf.useFlatTableFactorEngine(true);
 				return tf;
 			}
 		}
@@ -191,6 +199,10 @@ public class SFactorGraph extends SFactorGraphBase
 				// For non-discrete factor that doesn't have a custom factor, create a sampled factor
 				SampledFactor sf = new SampledFactor(factor);
 				sf.setSamplesPerUpdate(_sampledFactorSamplesPerUpdate);
+				sf.setBurnInScansPerUpdate(_sampledFactorBurnInScansPerUpdate);
+				sf.setScansPerSample(_sampledFactorScansPerSample);
+				sf.setOutputErrorTarget(_sampledFactorOutputErrorTarget);
+				sf.setWarmStart(_sampledFactorWarmStart);
 				return sf;
 			}
 		}
@@ -265,6 +277,34 @@ public class SFactorGraph extends SFactorGraphBase
 	{
 		return _damping;
 	}
+	
+	/**
+	 * Specifies whether table factors in this graph should compute their messages using a
+	 * {@link FlatTableFactorEngine}, which computes all outgoing messages of a factor in a single
+	 * pass over its table. Applies to existing table factors as well as those created later.
+	 * 
+	 * @since 0.06
+	 */
+	public void useFlatTableFactorEngine(boolean useFlat)
+	{
+		_useFlatTableFactorEngine = useFlat;
+		for (Factor f : _factorGraph.getNonGraphFactors())
+		{
+			if (f.getSolver() instanceof STableFactor)
+			{
+				((STableFactor)f.getSolver()).useFlatTableFactorEngine(useFlat);
+			}
+		}
+	}
+	
+	/**
+	 * @see #useFlatTableFactorEngine(boolean)
+	 * @since 0.06
+	 */
+	public boolean useFlatTableFactorEngine()
+	{
+		return _useFlatTableFactorEngine;
+	}
 
 	/*
 	 * This method applies the global damping parameter to all of the table factor's ports
@@ -311,7 +351,7 @@ public class SFactorGraph extends SFactorGraphBase
 		{
 			ISolverFactor s = f.getSolver();
 			if (s instanceof SampledFactor)
-				((SampledFactor)s).setSamplesPerUpdate(burnInSamples);
+				((SampledFactor)s).setBurnInScansPerUpdate(burnInSamples);
 		}
 	}
 	public int getSampledFactorBurnInScansPerUpdate()
@@ -326,7 +366,7 @@ public class SFactorGraph extends SFactorGraphBase
 		{
 			ISolverFactor s = f.getSolver();
 			if (s instanceof SampledFactor)
-				((SampledFactor)s).setSamplesPerUpdate(scansPerSample);
+				((SampledFactor)s).setScansPerSample(scansPerSample);
 		}
 	}
 	public int getSampledFactorScansPerSample()
@@ -334,6 +374,44 @@ public class SFactorGraph extends SFactorGraphBase
 		return _sampledFactorScansPerSample;
 	}
 
+	/**
+	 * @see SampledFactor#setOutputErrorTarget(double)
+	 * @since 0.06
+	 */
+	public void setSampledFactorOutputErrorTarget(double errorTarget)
+	{
+		_sampledFactorOutputErrorTarget = errorTarget;
+		for (Factor f : _factorGraph.getNonGraphFactors())
+		{
+			ISolverFactor s = f.getSolver();
+			if (s instanceof SampledFactor)
+				((SampledFactor)s).setOutputErrorTarget(errorTarget);
+		}
+	}
+	public double getSampledFactorOutputErrorTarget()
+	{
+		return _sampledFactorOutputErrorTarget;
+	}
+
+	/**
+	 * @see SampledFactor#setWarmStart(boolean)
+	 * @since 0.06
+	 */
+	public void setSampledFactorWarmStart(boolean warmStart)
+	{
+		_sampledFactorWarmStart = warmStart;
+		for (Factor f : _factorGraph.getNonGraphFactors())
+		{
+			ISolverFactor s = f.getSolver();
+			if (s instanceof SampledFactor)
+				((SampledFactor)s).setWarmStart(warmStart);
+		}
+	}
+	public boolean getSampledFactorWarmStart()
+	{
+		return _sampledFactorWarmStart;
+	}
+
 	
 
 	
@@ -472,9 +550,18 @@ public class SFactorGraph extends SFactorGraphBase
 	}
 
 
+	@Override
+	public MessageStore getMessageStore()
+	{
+		return _messageStore;
+	}
+	
 	@Override
 	public void initialize()
 	{
+		if (!getModelObject().hasParentGraph())
+			updateMessageStore();
+		
 		super.initialize();
 		for (Factor f : getModelObject().getFactors())
 		{
@@ -488,6 +575,63 @@ public class SFactorGraph extends SFactorGraphBase
 		
 	}
 	
-
-
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Packs or unpacks the graph's messages according to the value of {@link SumProductOptions#PACKED_MESSAGES}.
+	 */
+	private void updateMessageStore()
+	{
+		final FactorGraph fg = getModelObject();
+		
+		if (options().lookup(SumProductOptions.PACKED_MESSAGES))
+		{
+			if (_messageStore == null || _messageStoreVersionId != fg.getTopologyVersionId())
+			{
+				// Lay out the edges of each variable next to each other.
+				int capacity = 0;
+				for (VariableBase var : fg.getVariablesFlat())
+					for (int port = 0, end = var.getSiblingCount(); port < end; ++port)
+						if (isPackable(var, port))
+							capacity += 2 * var.asDiscreteVariable().getDiscreteDomain().size();
+				
+				final MessageStore store = new MessageStore(capacity);
+				for (VariableBase var : fg.getVariablesFlat())
+				{
+					for (int port = 0, end = var.getSiblingCount(); port < end; ++port)
+					{
+						if (isPackable(var, port))
+						{
+							store.pack((SDiscreteVariable)var.getSolver(), port,
+								(STableFactor)var.getSibling(port).getSolver(), var.getSiblingPortIndex(port));
+						}
+					}
+				}
+				
+				_messageStore = store;
+				_messageStoreVersionId = fg.getTopologyVersionId();
+			}
+		}
+		else if (_messageStore != null)
+		{
+			for (Factor factor : fg.getNonGraphFactorsFlat())
+				if (factor.getSolver() instanceof STableFactor)
+					((STableFactor)factor.getSolver()).unpackMessages();
+			
+			_messageStore = null;
+			_messageStoreVersionId = -1;
+		}
+	}
+	
+	private static boolean isPackable(VariableBase var, int port)
+	{
+		if (var.getSolver() instanceof SDiscreteVariable)
+		{
+			final ISolverFactor sfactor = var.getSibling(port).getSolver();
+			return sfactor instanceof STableFactor && !((STableFactor)sfactor)._kIsSmallerThanDomain;
+		}
+		return false;
+	}
 }
@@ -35,12 +35,16 @@ public class SRealJointVariable extends SRealJointVariableBase
 	private MultivariateNormalParameters _input;
 	private MultivariateNormalParameters [] _outputMsgs = new MultivariateNormalParameters[0];
 	private MultivariateNormalParameters [] _inputMsgs = new MultivariateNormalParameters[0];
+	private final double[] _vectorWorkspace;
+	private final double[][] _matrixWorkspace;
 
 	public SRealJointVariable(VariableBase var) 
 	{
 		super(var);
 		
 		_numVars = ((RealJointDomain)_var.getDomain()).getNumVars();
+		_vectorWorkspace = new double[_numVars];
+		_matrixWorkspace = new double[_numVars][_numVars];
 	}
 	
 	@Override
@@ -125,17 +129,21 @@ public class SRealJointVariable extends SRealJointVariableBase
 			return;
 		}
 
-		double[] vector;
-		double[][] matrix;
+		// Accumulate into the workspace, which setInformation copies into the output message
+		final double[] vector = _vectorWorkspace;
+		final double[][] matrix = _matrixWorkspace;
 		if (_input == null)
 		{
-			vector = new double[_numVars];
-			matrix = new double[_numVars][_numVars];
+			Arrays.fill(vector, 0);
+			for (int j = 0; j < _numVars; j++)
+				Arrays.fill(matrix[j], 0);
 		}
 		else
 		{
-			vector = _input.getInformationVector();
-			matrix = _input.getInformationMatrix();
+			System.arraycopy(_input._getInformationVectorUnsafe(), 0, vector, 0, _numVars);
+			final double[][] inputMatrix = _input._getInformationMatrixUnsafe();
+			for (int j = 0; j < _numVars; j++)
+				System.arraycopy(inputMatrix[j], 0, matrix[j], 0, _numVars);
 		}
 		
 		for (int i = 0; i < _outputMsgs.length; i++ )
@@ -144,12 +152,12 @@ public class SRealJointVariable extends SRealJointVariableBase
 			{				
 				MultivariateNormalParameters inMsg = _inputMsgs[i];
 				
-				double [] inMsgVector = inMsg.getInformationVector();
+				double [] inMsgVector = inMsg._getInformationVectorUnsafe();
 				
 				for (int j = 0; j < vector.length; j++)
 					vector[j] += inMsgVector[j];
 				
-				double [][] inMsgMatrix = inMsg.getInformationMatrix();
+				double [][] inMsgMatrix = inMsg._getInformationMatrixUnsafe();
 				
 				for (int j = 0; j < inMsgMatrix.length; j++)
 					for (int k = 0; k < inMsgMatrix[j].length; k++)
@@ -27,6 +27,7 @@ import com.analog.lyric.dimple.factorfunctions.core.FactorTableRepresentation;
 import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.solvers.core.MessageStore;
 import com.analog.lyric.dimple.solvers.core.STableFactorDoubleArray;
 import com.analog.lyric.dimple.solvers.core.kbest.IKBestFactor;
 import com.analog.lyric.dimple.solvers.core.kbest.KBestFactorEngine;
@@ -49,6 +50,8 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 	protected boolean _kIsSmallerThanDomain = false;
 	protected boolean _updateDerivative = false;
 	protected boolean _dampingInUse = false;
+	private boolean _useFlatEngine = false;
+	private boolean _useLogDomain = false;
 	
 	/*--------------
 	 * Construction
@@ -77,6 +80,19 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 	 * ISolverNode methods
 	 */
 	
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		
+		final boolean useLogDomain = options().lookup(SumProductOptions.LOG_DOMAIN);
+		if (useLogDomain != _useLogDomain)
+		{
+			_useLogDomain = useLogDomain;
+			_tableFactorEngine = createTableFactorEngine();
+		}
+	}
+	
 	@Override
 	public void moveMessages(ISolverNode other, int portNum, int otherPort)
 	{
@@ -134,7 +150,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 	    	_savedOutMsgArray = new double[numPorts][];
 	    
     		for (int port = 0; port < numPorts; port++)
-    				_savedOutMsgArray[port] = new double[_inputMsgs[port].length];
+    				_savedOutMsgArray[port] = new double[getMsgLength(port)];
 	    }
 	    
 		setK(Integer.MAX_VALUE);
@@ -183,7 +199,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
     	_savedOutMsgArray = new double[_dampingParams.length][];
 	    
 		for (int port = 0; port < _inputMsgs.length; port++)
-				_savedOutMsgArray[port] = new double[_inputMsgs[port].length];
+				_savedOutMsgArray[port] = new double[getMsgLength(port)];
 
 	}
 	
@@ -192,6 +208,46 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		return _dampingParams[index];
 	}
 	
+	/**
+	 * Selects the engine used to compute outgoing messages. If {@code useFlat} is true,
+	 * a {@link FlatTableFactorEngine} will be used, otherwise the original {@link TableFactorEngine}.
+	 * 
+	 * @since 0.06
+	 */
+	public void useFlatTableFactorEngine(boolean useFlat)
+	{
+		if (useFlat != _useFlatEngine)
+		{
+			_useFlatEngine = useFlat;
+			_tableFactorEngine = createTableFactorEngine();
+		}
+	}
+	
+	/**
+	 * True if outgoing messages are computed using a {@link FlatTableFactorEngine}.
+	 * <p>
+	 * Note that when {@link SumProductOptions#LOG_DOMAIN} is enabled, the {@link LogTableFactorEngine}
+	 * will be used regardless of this setting.
+	 * 
+	 * @since 0.06
+	 */
+	public boolean useFlatTableFactorEngine()
+	{
+		return _useFlatEngine;
+	}
+	
+	/**
+	 * True if outgoing messages are computed in the log domain using a {@link LogTableFactorEngine}.
+	 * This is determined by the value of {@link SumProductOptions#LOG_DOMAIN} when the factor was last
+	 * initialized.
+	 * 
+	 * @since 0.06
+	 */
+	public boolean useLogDomain()
+	{
+		return _useLogDomain;
+	}
+	
 	public int getK()
 	{
 		return _k;
@@ -205,12 +261,18 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		_kIsSmallerThanDomain = false;
 		for (int i = 0; i < _inputMsgs.length; i++)
 		{
-			if (_inputMsgs[i] != null && _k < _inputMsgs[i].length)
+			if (_inputMsgs[i] != null && _k < getMsgLength(i))
 			{
 				_kIsSmallerThanDomain = true;
 				break;
 			}
 		}
+		
+		if (_kIsSmallerThanDomain)
+		{
+			// The k-best engine does not support messages packed into a MessageStore.
+			unpackMessages();
+		}
 	}
 
 
@@ -236,7 +298,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 			final int[] indices = table[i];
 			for (int j = 0; j < indices.length; j++)
 			{
-				retval[i] *= _inputMsgs[j][indices[j]];
+				retval[i] *= _inputMsgs[j][_inputMsgOffsets[j] + indices[j]];
 			}
 		}
 		
@@ -382,7 +444,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		//calculate product of messages and phi
 		double prod = weights[index];
 		for (int i = 0; i < _inputMsgs.length; i++)
-			prod *= _inputMsgs[i][indices[index][i]];
+			prod *= _inputMsgs[i][_inputMsgOffsets[i] + indices[index][i]];
 
 		double sum = 0;
 		
@@ -398,7 +460,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 			SDiscreteVariable var = (SDiscreteVariable)getFactor().getConnectedNodesFlat().getByIndex(i).getSolver();
 			
 			//divide out contribution
-			sum += prod / _inputMsgs[i][indices[index][i]] * var.getMessageDerivative(weightIndex,getFactor())[indices[index][i]];
+			sum += prod / _inputMsgs[i][_inputMsgOffsets[i] + indices[index][i]] * var.getMessageDerivative(weightIndex,getFactor())[indices[index][i]];
 		}
 		return sum;
 	}
@@ -430,7 +492,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		_outPortDerivativeMsgs = new double[weights][_inputMsgs.length][];
 		for (int i = 0; i < weights; i++)
 			for (int j = 0; j < _inputMsgs.length; j++)
-				_outPortDerivativeMsgs[i][j] = new double[_inputMsgs[j].length];
+				_outPortDerivativeMsgs[i][j] = new double[getMsgLength(j)];
 	}
 	
 	public double [] getMessageDerivative(int wn, VariableBase var)
@@ -452,7 +514,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 			{
 				if (outPortNum != j)
 				{
-					prod *= _inputMsgs[j][indices[tableIndex][j]];
+					prod *= _inputMsgs[j][_inputMsgOffsets[j] + indices[tableIndex][j]];
 				}
 			}
 			
@@ -502,7 +564,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 						SDiscreteVariable sv = (SDiscreteVariable)getFactor().getConnectedNodesFlat().getByIndex(j).getSolver();
 						double [] dvar = sv.getMessageDerivative(wn,getFactor());
 								
-						sum += (prod / _inputMsgs[j][indices[i][j]]) * dvar[indices[i][j]];
+						sum += (prod / _inputMsgs[j][_inputMsgOffsets[j] + indices[i][j]]) * dvar[indices[i][j]];
 					}
 				}
 								
@@ -515,7 +577,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 	public double calculatedg(int outPortNum, int wn, boolean factorUsesTable)
 	{
 		double sum = 0;
-		for (int i = 0; i < _inputMsgs[outPortNum].length; i++)
+		for (int i = 0, end = getMsgLength(outPortNum); i < end; i++)
 			sum += calculatedf(outPortNum,i,wn,factorUsesTable);
 		
 		return sum;
@@ -531,7 +593,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		
 		//calculate g
 		double g = 0;
-		for (int i = 0; i < _inputMsgs[outPortNum].length; i++)
+		for (int i = 0, end = getMsgLength(outPortNum); i < end; i++)
 			g += calculateMessageForDomainValue(i,outPortNum);
 		
 		double derivative = 0;
@@ -553,7 +615,7 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 	
 	public void updateDerivativeForWeight(int outPortNum, int wn,boolean factorUsesTable)
 	{
-		int D = _inputMsgs[outPortNum].length;
+		int D = getMsgLength(outPortNum);
 		
 		for (int d = 0; d < D; d++)
 		{
@@ -602,4 +664,48 @@ public class STableFactor extends STableFactorDoubleArray implements IKBestFacto
 		return _outputMsgs;
 	}
 	
+	/**
+	 * The length of the messages for the given port, i.e. the size of the domain of the
+	 * variable connected to it.
+	 * 
+	 * @since 0.06
+	 */
+	public int getMsgLength(int port)
+	{
+		return _factor.getSibling(port).asDiscreteVariable().getDiscreteDomain().size();
+	}
+	
+	/*-----------------
+	 * Package methods
+	 */
+	
+	/**
+	 * Gives any of this factor's edges whose messages have been packed into a {@link MessageStore}
+	 * their own message arrays again.
+	 */
+	void unpackMessages()
+	{
+		for (int port = 0, end = _inputMsgs.length; port < end; ++port)
+		{
+			if (_inputMsgOffsets[port] != 0 || _inputMsgs[port].length != getMsgLength(port))
+			{
+				final VariableBase var = _factor.getSibling(port);
+				MessageStore.unpack((SDiscreteVariable)var.getSolver(), _factor.getSiblingPortIndex(port), this, port);
+			}
+		}
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private TableFactorEngine createTableFactorEngine()
+	{
+		if (_useLogDomain)
+			return new LogTableFactorEngine(this);
+		else if (_useFlatEngine)
+			return new FlatTableFactorEngine(this);
+		else
+			return new TableFactorEngine(this);
+	}
 }
@@ -0,0 +1,71 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct;
+
+import com.analog.lyric.options.BooleanOptionKey;
+
+/**
+ * Option keys for the sum-product solver.
+ * <p>
+ * Options are usually set on the solver graph and are inherited by the solver nodes it contains,
+ * for example:
+ * <pre>
+ *     SFactorGraph sfg = fg.setSolverFactory(new Solver());
+ *     sfg.options().set(SumProductOptions.LOG_DOMAIN, true);
+ * </pre>
+ * Options are read when the graph is initialized.
+ *
+ * @since 0.06
+ */
+public class SumProductOptions
+{
+	/**
+	 * If true, products of messages are computed in the log domain so that they cannot underflow.
+	 * <p>
+	 * Table factors use {@link LogTableFactorEngine} to compute their outgoing messages using
+	 * log-sum-exp, as does the custom multiplexer factor, and discrete variables treat zero-valued
+	 * inputs and messages exactly instead of clamping them to a small nonzero value.
+	 * <p>
+	 * Messages passed between nodes are still normalized probabilities, so a message value that is
+	 * smaller than the smallest double relative to the largest value of the same message is zero. The
+	 * custom finite field factors combine messages using linear transforms and are not affected by
+	 * this option, nor are the continuous custom factors.
+	 * <p>
+	 * Default is false.
+	 */
+	public static final BooleanOptionKey LOG_DOMAIN =
+		new BooleanOptionKey(SumProductOptions.class, "LOG_DOMAIN", false);
+
+	/**
+	 * If true, the messages on every edge between a discrete variable and a table factor are packed
+	 * together into a single {@link com.analog.lyric.dimple.solvers.core.MessageStore MessageStore} array
+	 * instead of each edge having its own message arrays.
+	 * <p>
+	 * The messages are packed when the root graph is initialized and are packed again if the structure
+	 * of the graph has changed since then. Edges of other kinds of factors, and of table factors that
+	 * are using a k-best engine, are not packed. When packed, messages returned by
+	 * {@code getInputMsg} and {@code getOutputMsg} are copies.
+	 * <p>
+	 * Default is false.
+	 */
+	public static final BooleanOptionKey PACKED_MESSAGES =
+		new BooleanOptionKey(SumProductOptions.class, "PACKED_MESSAGES", false);
+
+	private SumProductOptions()
+	{
+	}
+}
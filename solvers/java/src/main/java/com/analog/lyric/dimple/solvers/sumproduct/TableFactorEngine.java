@@ -44,6 +44,9 @@ public class TableFactorEngine
 	    
         double[] outputMsgs = _tableFactor.getOutPortMsgs()[outPortNum];
         double [][] inputMsgs = _tableFactor.getInPortMsgs();
+        int outputOffset = _tableFactor.getOutPortMsgOffsets()[outPortNum];
+        int [] inputOffsets = _tableFactor.getInPortMsgOffsets();
+    	int outputMsgLength = _tableFactor.getMsgLength(outPortNum);
         
         if (_tableFactor._dampingInUse)
         {
@@ -51,13 +54,12 @@ public class TableFactorEngine
         	if (damping != 0)
         	{
         		double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
-        		for (int i = 0; i < outputMsgs.length; i++)
-        			saved[i] = outputMsgs[i];
+        		for (int i = 0; i < outputMsgLength; i++)
+        			saved[i] = outputMsgs[outputOffset + i];
         	}
         }
         
-    	int outputMsgLength = outputMsgs.length;
-    	Arrays.fill(outputMsgs, 0);
+    	Arrays.fill(outputMsgs, outputOffset, outputOffset + outputMsgLength, 0);
         
         for (int tableIndex = 0; tableIndex < tableLength; tableIndex++)
         {
@@ -66,15 +68,15 @@ public class TableFactorEngine
     		int outputIndex = tableRow[outPortNum];
         	
 			for (int inPortNum = 0; inPortNum < outPortNum; ++inPortNum)
-				prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
+				prob *= inputMsgs[inPortNum][inputOffsets[inPortNum] + tableRow[inPortNum]];
 			for (int inPortNum = outPortNum + 1; inPortNum < numPorts; inPortNum++)
-				prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
+				prob *= inputMsgs[inPortNum][inputOffsets[inPortNum] + tableRow[inPortNum]];
         	
-        	outputMsgs[outputIndex] += prob;
+        	outputMsgs[outputOffset + outputIndex] += prob;
         }
         
     	double sum = 0;
-    	for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
+    	for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[outputOffset + i];
 		if (sum == 0)
 		{
 			throw new DimpleException("UpdateEdge failed in SumProduct Solver.  All probabilities were zero when calculating message for port "
@@ -82,7 +84,7 @@ public class TableFactorEngine
 		}
 
 		for (int i = 0; i < outputMsgLength; i++)
-			outputMsgs[i] /= sum;
+			outputMsgs[outputOffset + i] /= sum;
     	
 		if (_tableFactor._dampingInUse)
 		{
@@ -91,7 +93,7 @@ public class TableFactorEngine
 			{
 				double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
 				for (int i = 0; i < outputMsgLength; i++)
-					outputMsgs[i] = (1-damping)*outputMsgs[i] + damping*saved[i];
+					outputMsgs[outputOffset + i] = (1-damping)*outputMsgs[outputOffset + i] + damping*saved[i];
 			}
 		}
     	
@@ -110,10 +112,14 @@ public class TableFactorEngine
 	    
 	    double [][] outMsgs = _tableFactor.getOutPortMsgs();
 	    double [][] inMsgs = _tableFactor.getInPortMsgs();
+	    int [] outOffsets = _tableFactor.getOutPortMsgOffsets();
+	    int [] inOffsets = _tableFactor.getInPortMsgOffsets();
 	    
 	    for (int outPortNum = 0; outPortNum < numPorts; outPortNum++)
 	    {
 	    	double[] outputMsgs = outMsgs[outPortNum];
+	    	int outputOffset = outOffsets[outPortNum];
+	    	int outputMsgLength = _tableFactor.getMsgLength(outPortNum);
 	    		    	
 	    	if (_tableFactor._dampingInUse)
 	    	{
@@ -121,13 +127,12 @@ public class TableFactorEngine
 	    		if (damping != 0)
 	    		{
 	    			double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
-	    			for (int i = 0; i < outputMsgs.length; i++)
-	    				saved[i] = outputMsgs[i];
+	    			for (int i = 0; i < outputMsgLength; i++)
+	    				saved[i] = outputMsgs[outputOffset + i];
 	    		}
 	    	}
 	    	
-	    	int outputMsgLength = outputMsgs.length;
-	    	Arrays.fill(outputMsgs, 0);
+	    	Arrays.fill(outputMsgs, outputOffset, outputOffset + outputMsgLength, 0);
 
 	    	for (int tableIndex = 0; tableIndex < tableLength; tableIndex++)
 	    	{
@@ -136,14 +141,14 @@ public class TableFactorEngine
 	    		int outputIndex = tableRow[outPortNum];
 
 				for (int inPortNum = 0; inPortNum < outPortNum; ++inPortNum)
-					prob *= inMsgs[inPortNum][tableRow[inPortNum]];
+					prob *= inMsgs[inPortNum][inOffsets[inPortNum] + tableRow[inPortNum]];
 				for (int inPortNum = outPortNum + 1; inPortNum < numPorts; inPortNum++)
-					prob *= inMsgs[inPortNum][tableRow[inPortNum]];
-	    		outputMsgs[outputIndex] += prob;
+					prob *= inMsgs[inPortNum][inOffsets[inPortNum] + tableRow[inPortNum]];
+	    		outputMsgs[outputOffset + outputIndex] += prob;
 	    	}
 
 	    	double sum = 0;
-	    	for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
+	    	for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[outputOffset + i];
     		if (sum == 0)
     		{
     			throw new DimpleException("Update failed in SumProduct Solver.  All probabilities were zero when calculating message for port "
@@ -151,7 +156,7 @@ public class TableFactorEngine
     		}
 
 	    	for (int i = 0; i < outputMsgLength; i++)
-	    		outputMsgs[i] /= sum;
+	    		outputMsgs[outputOffset + i] /= sum;
 	    	
 	    	if (_tableFactor._dampingInUse)
 	    	{
@@ -160,7 +165,7 @@ public class TableFactorEngine
 	    		{
 	    			double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
 	    		for (int i = 0; i < outputMsgLength; i++)
-	    			outputMsgs[i] = (1-damping)*outputMsgs[i] + damping*saved[i];
+	    			outputMsgs[outputOffset + i] = (1-damping)*outputMsgs[outputOffset + i] + damping*saved[i];
 	    		}
 	    	}
 	    	
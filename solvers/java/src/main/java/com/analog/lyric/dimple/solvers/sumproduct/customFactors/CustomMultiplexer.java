@@ -25,6 +25,7 @@ import com.analog.lyric.dimple.model.domains.DiscreteDomain;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariableBase;
 import com.analog.lyric.dimple.solvers.core.STableFactorDoubleArray;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
 
 /*
  * The Multiplexer factor is a directed factor
@@ -35,6 +36,9 @@ import com.analog.lyric.dimple.solvers.core.STableFactorDoubleArray;
  * 
  *  The following custom factor provides optimized inference for the
  *  Multiplexer factor function
+ *
+ *  When SumProductOptions.LOG_DOMAIN is enabled, the products of incoming
+ *  messages are combined using log-sum-exp so that they cannot underflow.
  */
 public class CustomMultiplexer extends STableFactorDoubleArray
 {
@@ -47,6 +51,8 @@ public class CustomMultiplexer extends STableFactorDoubleArray
 	
 	//Create a mapping between a z index and the y
 	private int [][] _zIndices2yIndex;
+	
+	private boolean _useLogDomain = false;
 
 	@SuppressWarnings("unchecked")
 	public CustomMultiplexer(Factor factor)
@@ -118,10 +124,37 @@ public class CustomMultiplexer extends STableFactorDoubleArray
 		
 	}
 
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		_useLogDomain = options().lookup(SumProductOptions.LOG_DOMAIN);
+	}
+	
+	/**
+	 * True if outgoing messages are computed in the log domain. This is determined by the value of
+	 * {@link SumProductOptions#LOG_DOMAIN} when the factor was last initialized.
+	 * 
+	 * @since 0.06
+	 */
+	public boolean useLogDomain()
+	{
+		return _useLogDomain;
+	}
+
 	@Override
 	public void updateEdge(int outPortNum)
 	{
-		if (outPortNum == 0)
+		if (_useLogDomain)
+		{
+			if (outPortNum == 0)
+				updateToYLog();
+			else if (outPortNum == 1)
+				updateToALog();
+			else
+				updateToZLog(outPortNum-2);
+		}
+		else if (outPortNum == 0)
 			updateToY();
 		else if (outPortNum == 1)
 			updateToA();
@@ -236,5 +269,123 @@ public class CustomMultiplexer extends STableFactorDoubleArray
 		
 	}
 	
-
+	/*
+	 * Log domain versions of the updates. Each output value is accumulated as the log of its
+	 * sum of products and then converted back to a normalized message.
+	 */
+	
+	private void updateToALog()
+	{
+		double [] outMsg = _outputMsgs[1];
+		double [] yInputMsg = _inputMsgs[0];
+		
+		for (int i = 0; i < _aDomainSize; i++)
+		{
+			double [] zInputMsg = _inputMsgs[i+2];
+			double logSum = Double.NEGATIVE_INFINITY;
+			
+			for (int j = 0; j < _zIndices2yIndex[i].length; j++)
+			{
+				int yIndex = _zIndices2yIndex[i][j];
+				if (yIndex >= 0)
+					logSum = logAdd(logSum, Math.log(yInputMsg[yIndex]) + Math.log(zInputMsg[j]));
+			}
+			
+			outMsg[i] = logSum;
+		}
+		
+		normalizeLogs(1, outMsg);
+	}
+	
+	private void updateToYLog()
+	{
+		double [] outMsg = _outputMsgs[0];
+		double [] aInputMsg = _inputMsgs[1];
+		
+		for (int i = 0; i < _yDomainSize; i++)
+		{
+			double logSum = Double.NEGATIVE_INFINITY;
+			
+			for (int [] tmp : _yIndex2zIndices[i])
+			{
+				int a = tmp[0];
+				int z = tmp[1];
+				logSum = logAdd(logSum, Math.log(aInputMsg[a]) + Math.log(_inputMsgs[a+2][z]));
+			}
+			
+			outMsg[i] = logSum;
+		}
+		
+		normalizeLogs(0, outMsg);
+	}
+	
+	private void updateToZLog(int index)
+	{
+		double [] zBelief = _outputMsgs[index+2];
+		double [] yInputMsg = _inputMsgs[0];
+		double [] aInputMsg = _inputMsgs[1];
+		
+		double logOffset = Double.NEGATIVE_INFINITY;
+		
+		for (int j = 0; j < _aDomainSize; j++)
+		{
+			if (j != index)
+			{
+				double logA = Math.log(aInputMsg[j]);
+				for (int k = 0; k < _zIndices2yIndex[j].length; k++)
+				{
+					int yIndex = _zIndices2yIndex[j][k];
+					if (yIndex >= 0)
+						logOffset = logAdd(logOffset, logA + Math.log(yInputMsg[yIndex]) + Math.log(_inputMsgs[j+2][k]));
+				}
+			}
+		}
+		
+		double logA = Math.log(aInputMsg[index]);
+		for (int i = 0; i < _zIndices2yIndex[index].length; i++)
+		{
+			int yIndex = _zIndices2yIndex[index][i];
+			double logSelected = yIndex >= 0 ? logA + Math.log(yInputMsg[yIndex]) : Double.NEGATIVE_INFINITY;
+			zBelief[i] = logAdd(logSelected, logOffset);
+		}
+		
+		normalizeLogs(index+2, zBelief);
+	}
+	
+	/**
+	 * Returns log(exp(log1) + exp(log2)).
+	 */
+	private static double logAdd(double log1, double log2)
+	{
+		if (log1 < log2)
+		{
+			double tmp = log1;
+			log1 = log2;
+			log2 = tmp;
+		}
+		return log2 == Double.NEGATIVE_INFINITY ? log1 : log1 + Math.log1p(Math.exp(log2 - log1));
+	}
+	
+	/**
+	 * Converts {@code msg} in place from unnormalized log values to a normalized message.
+	 */
+	private void normalizeLogs(int outPortNum, double [] msg)
+	{
+		double maxLog = Double.NEGATIVE_INFINITY;
+		for (double log : msg)
+			if (log > maxLog)
+				maxLog = log;
+		
+		if (maxLog == Double.NEGATIVE_INFINITY)
+			throw new DimpleException("Update failed in SumProduct Solver.  All probabilities were zero when calculating message for port "
+				+ outPortNum + " on factor " + _factor.getLabel());
+		
+		double sum = 0;
+		for (int i = 0; i < msg.length; i++)
+			sum += msg[i] = Math.exp(msg[i] - maxLog);
+		
+		double scale = 1 / sum;
+		for (int i = 0; i < msg.length; i++)
+			msg[i] *= scale;
+	}
 }
@@ -23,6 +23,8 @@ import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNo
 
 public class CustomMultivariateGaussianNegate extends MultivariateGaussianFactorBase
 {
+	private double[] _meanWorkspace;
+	
 	public CustomMultivariateGaussianNegate(Factor factor)
 	{
 		super(factor);
@@ -36,10 +38,13 @@ public class CustomMultivariateGaussianNegate extends MultivariateGaussianFactor
 		MultivariateNormalParameters inputMsg = _inputMsgs[inPortNum];
 		MultivariateNormalParameters outMsg = _outputMsgs[outPortNum];
 
-		double[] mean = inputMsg.getMean();
+		double[] inputMean = inputMsg._getMeanUnsafe();
+		double[] mean = _meanWorkspace;
+		if (mean == null || mean.length != inputMean.length)
+			_meanWorkspace = mean = new double[inputMean.length];
 		for (int i = 0; i < mean.length; i++)
-			mean[i] = -mean[i];		// Negate the mean vector
-		outMsg.setMeanAndCovariance(mean, inputMsg.getCovariance());
+			mean[i] = -inputMean[i];		// Negate the mean vector
+		outMsg.setMeanAndCovariance(mean, inputMsg._getCovarianceUnsafe());
 	}
 	
 	
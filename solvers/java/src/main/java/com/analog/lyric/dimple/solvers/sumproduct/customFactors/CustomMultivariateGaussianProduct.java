@@ -26,6 +26,7 @@ import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNo
 public class CustomMultivariateGaussianProduct extends MultivariateGaussianFactorBase
 {
 	private double [][] _constant;
+	private MutlivariateGaussianMatrixProduct _matMult;	// Decomposition of the constant is computed once
 	
 	public CustomMultivariateGaussianProduct(Factor factor)
 	{
@@ -58,14 +59,13 @@ public class CustomMultivariateGaussianProduct extends MultivariateGaussianFacto
 			throw new DimpleException("Variables must be reals");
 		
 		_constant = constant;
+		_matMult = new MutlivariateGaussianMatrixProduct(_constant);
 		
 	}
 
 	@Override
 	public void updateEdge(int outPortNum)
 	{
-		MutlivariateGaussianMatrixProduct matMult = new MutlivariateGaussianMatrixProduct(_constant);
-		
 		char direction;
 		if (outPortNum == 0)
 			direction = 'F';
@@ -75,7 +75,7 @@ public class CustomMultivariateGaussianProduct extends MultivariateGaussianFacto
 		MultivariateNormalParameters outMsg = _outputMsgs[outPortNum];
 		MultivariateNormalParameters inMsg = _inputMsgs[1-outPortNum];
 		
-		matMult.ComputeMsg(inMsg, outMsg, direction);
+		_matMult.ComputeMsg(inMsg, outMsg, direction);
 	}
 	
 	
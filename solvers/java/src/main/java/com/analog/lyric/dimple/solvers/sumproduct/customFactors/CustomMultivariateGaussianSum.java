@@ -16,6 +16,8 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.customFactors;
 
+import java.util.Arrays;
+
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Real;
@@ -27,6 +29,8 @@ public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBas
 	protected int _sumIndex;
 	private int _sumPort;
 	private double[] _constantSum;
+	private double[] _meanWorkspace;
+	private double[][] _covarianceWorkspace;
 
 	
 	public CustomMultivariateGaussianSum(Factor factor)
@@ -40,12 +44,13 @@ public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBas
 	{
 		MultivariateNormalParameters outMsg = _outputMsgs[outPortNum];
 		
-		int size = outMsg.getMean().length;
+		int size = outMsg.getVectorLength();
 		
-		double [] mean = new double[size];
-		double [][] covariance = new double[size][];
-		for (int i = 0; i < covariance.length; i++)
-			covariance[i] = new double[size];
+		// Accumulate into the workspace, which setMeanAndCovariance copies into the output message
+		double [] mean = _meanWorkspace;
+		double [][] covariance = _covarianceWorkspace;
+		for (int i = 0; i < size; i++)
+			Arrays.fill(covariance[i], 0);
 		
 		
 		// Initialize mean with sum of constants
@@ -63,7 +68,7 @@ public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBas
 			{
 				MultivariateNormalParameters inMsg = _inputMsgs[i];
 				
-				double [] inMsgMean = inMsg.getMean();
+				double [] inMsgMean = inMsg._getMeanUnsafe();
 				
 				for (int j = 0; j < mean.length; j++)
 				{
@@ -73,7 +78,7 @@ public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBas
 						mean[j] += inMsgMean[j];
 				}
 				
-				double [][] inMsgCovariance = inMsg.getCovariance();
+				double [][] inMsgCovariance = inMsg._getCovarianceUnsafe();
 				
 				for (int j = 0; j < inMsgCovariance.length; j++)
 					for (int k = 0; k < inMsgCovariance[j].length; k++)
@@ -95,6 +100,8 @@ public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBas
 		_sumPort = factorFunction.isConstantIndex(_sumIndex) ? -1 : _sumIndex;	// If sum isn't a variable, then set port to invalid value
 		int dimension = _inputMsgs[0].getVectorLength();
 		_constantSum = new double[dimension];	// Assume all zero
+		_meanWorkspace = new double[dimension];
+		_covarianceWorkspace = new double[dimension][dimension];
 		if (factorFunction.hasConstants())
 		{
 			Object[] constantValues = factorFunction.getConstants();
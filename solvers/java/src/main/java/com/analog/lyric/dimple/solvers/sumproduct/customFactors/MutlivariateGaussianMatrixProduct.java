@@ -29,6 +29,14 @@ public class MutlivariateGaussianMatrixProduct
 
 	private double eps = 0.0000001; //minimum value for small eigenvalues or 1/(max value)
 
+	//Workspaces for the information form messages, reused by every call to ComputeMsg
+	private final double [/*N*/][/*M*/] _tmpNM;
+	private final double [/*M*/][/*N*/] _tmpMN;
+	private final double [/*M*/][/*M*/] _outMM;
+	private final double [/*N*/][/*N*/] _outNN;
+	private final double [/*M*/] _outM;
+	private final double [/*N*/] _outN;
+
 
 	//Initializer
 	public  MutlivariateGaussianMatrixProduct(double[][] A) 
@@ -89,6 +97,12 @@ public class MutlivariateGaussianMatrixProduct
 		
 		A_pinv = V.times(Sinv.times(U.transpose())).getArray();
 		
+		_tmpNM = new double[N][M];
+		_tmpMN = new double[M][N];
+		_outMM = new double[M][M];
+		_outNN = new double[N][N];
+		_outM = new double[M];
+		_outN = new double[N];
 	}
 
 	
@@ -102,8 +116,8 @@ public class MutlivariateGaussianMatrixProduct
 
 		//TODO: this is really hacky!  the conversion to and from the inverse makes sure the matrix doesn't
 		//grow too large.
-		inMsg.getCovariance();
-		inMsg.getInformationMatrix();
+		inMsg._getCovarianceUnsafe();
+		inMsg._getInformationMatrixUnsafe();
 		
 
 		if(direction == 'F') //Forward matrix multiply
@@ -152,7 +166,7 @@ public class MutlivariateGaussianMatrixProduct
 				//Compute A^-T * W * A^-1
 				//inMsg.getMeans();
 				//printMatrix(inMsg.getInformationMatrix());
-				double [][] tmpMat = MatrixMult(Transpose(A_pinv), MatrixMult(inMsg.getInformationMatrix(), A_pinv));
+				double [][] tmpMat = MatrixMultTransposed(A_pinv, MatrixMult(inMsg._getInformationMatrixUnsafe(), A_pinv, _tmpNM), _outMM);
 				//Incorporate left nullspace term: C*C^T/eps
 //				if(LeftNullTerm  != null)
 //					for(m=0;m<M;m++)
@@ -162,8 +176,8 @@ public class MutlivariateGaussianMatrixProduct
 				for (int i = 0; i < tmpMat.length; i++)
 					tmpMat[i][i] += eps;
 
-				double [] tmpVector = new double[M];
-				double [] inMsgVector = inMsg.getInformationVector();
+				double [] tmpVector = _outM;
+				double [] inMsgVector = inMsg._getInformationVectorUnsafe();
 				
 				//Compute information vector output: h_y = A^-T * h_x
 				for(m=0;m<M;m++)
@@ -217,7 +231,7 @@ public class MutlivariateGaussianMatrixProduct
 			}else{ //We were given an information form inMsg
 				//outMsg.Type = 1; //We give the same output form (information)
 				//Compute A^T*W*A
-				double [][] tmpMat = MatrixMult(Transpose(A_clean), MatrixMult(inMsg.getInformationMatrix(), A_clean));
+				double [][] tmpMat = MatrixMultTransposed(A_clean, MatrixMult(inMsg._getInformationMatrixUnsafe(), A_clean, _tmpMN), _outNN);
 				//Incorporate nullspace term: B^T*B*eps
 //				if(NullTerm != null)
 //					for(m=0;m<M;m++)
@@ -227,8 +241,8 @@ public class MutlivariateGaussianMatrixProduct
 				for (int i = 0; i < tmpMat.length; i++)
 					tmpMat[i][i] += eps;
 
-				double [] tmpVector = new double[N];
-				double [] inMsgVector = inMsg.getInformationVector();
+				double [] tmpVector = _outN;
+				double [] inMsgVector = inMsg._getInformationVectorUnsafe();
 				
 				//Compute information vector: h_x = A^T * h_y
 				for(m=0;m<N;m++)
@@ -287,6 +301,41 @@ public class MutlivariateGaussianMatrixProduct
 		return C;
 	}
 
+	//Computes Matrix A * Matrix B into C without allocating
+	private static double[][] MatrixMult(double[][] A, double[][] B, double[][] C)
+	{
+		for (int m = 0; m < A.length; m++)
+		{
+			final double[] Am = A[m];
+			final double[] Cm = C[m];
+			for (int n = 0; n < Cm.length; n++)
+			{
+				double sum = 0;
+				for (int mm = 0; mm < B.length; mm++)
+					sum += Am[mm] * B[mm][n];
+				Cm[n] = sum;
+			}
+		}
+		return C;
+	}
+
+	//Computes Transpose(A) * Matrix B into C without allocating
+	private static double[][] MatrixMultTransposed(double[][] A, double[][] B, double[][] C)
+	{
+		for (int m = 0; m < C.length; m++)
+		{
+			final double[] Cm = C[m];
+			for (int n = 0; n < Cm.length; n++)
+			{
+				double sum = 0;
+				for (int mm = 0; mm < B.length; mm++)
+					sum += A[mm][m] * B[mm][n];
+				Cm[n] = sum;
+			}
+		}
+		return C;
+	}
+
 	public double[][] Transpose(double[][] A)
 	{
 		int m,n;
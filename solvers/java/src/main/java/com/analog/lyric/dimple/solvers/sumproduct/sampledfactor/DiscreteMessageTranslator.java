@@ -26,6 +26,13 @@ public class DiscreteMessageTranslator extends MessageTranslatorBase
 {
 	private double[] _inputMessage;
 	private double[] _outputMessage;
+	private double[] _recordedInputMessage;
+	
+	/*
+	 * Values whose input is less than this fraction of the largest input are sampled too rarely
+	 * for their belief divided by their input to be a usable estimate of the output message.
+	 */
+	private static final double MIN_RELATIVE_INPUT = 1e-3;
 	
 
 	public DiscreteMessageTranslator(Port port, VariableBase variable)
@@ -100,5 +107,73 @@ public class DiscreteMessageTranslator extends MessageTranslatorBase
 		_inputMessage = ((DiscreteMessageTranslator)other)._inputMessage;
 		_outputMessage = ((DiscreteMessageTranslator)other)._outputMessage;
 	}
+	
+	@Override
+	public final void recordInputMessage()
+	{
+		final double[] input = _inputMessage;
+		if (_recordedInputMessage == null || _recordedInputMessage.length != input.length)
+			_recordedInputMessage = new double[input.length];
+		System.arraycopy(input, 0, _recordedInputMessage, 0, input.length);
+	}
+	
+	/**
+	 * Returns the largest absolute difference between the probabilities of any value
+	 * in the current and recorded input messages.
+	 */
+	@Override
+	public final double getInputMessageChange()
+	{
+		final double[] input = _inputMessage;
+		final double[] recorded = _recordedInputMessage;
+		if (recorded == null || recorded.length != input.length)
+			return Double.POSITIVE_INFINITY;
+		
+		double change = 0;
+		for (int i = 0; i < input.length; i++)
+			change = Math.max(change, Math.abs(input[i] - recorded[i]));
+		return change;
+	}
+	
+	/**
+	 * Returns the largest standard error of the estimated probability of any value.
+	 */
+	@Override
+	public final double getOutputMessageError(int numSamples)
+	{
+		final double[] belief = (double[])_variable.getBeliefObject();
+		double maxVariance = 0;
+		for (double p : belief)
+			maxVariance = Math.max(maxVariance, p * (1 - p));
+		return Math.sqrt(maxVariance / numSamples);
+	}
+	
+	@Override
+	public final boolean setOutputMessageFromVariableBeliefExcludingInput()
+	{
+		final double[] belief = (double[])_variable.getBeliefObject();
+		final double[] input = _inputMessage;
+		
+		double maxInput = 0;
+		for (int i = 0; i < input.length; i++)
+			maxInput = Math.max(maxInput, input[i]);
+		
+		// Values excluded by the input message, or nearly so, were not sampled often enough to
+		// estimate their output
+		final double minInput = maxInput * MIN_RELATIVE_INPUT;
+		double sum = 0;
+		for (int i = 0; i < belief.length; i++)
+		{
+			if (!(input[i] > minInput))
+				return false;
+			sum += belief[i] / input[i];
+		}
+		if (!(sum > 0) || Double.isInfinite(sum))
+			return false;
+		
+		for (int i = 0; i < belief.length; i++)
+			_outputMessage[i] = belief[i] / input[i] / sum;
+		return true;
+	}
 
 }
@@ -54,4 +54,51 @@ public abstract class MessageTranslatorBase
 	public abstract Object getInputMessage();
 	public abstract Object getOutputMessage();
 	public abstract void moveMessages(MessageTranslatorBase other);
+	
+	// Overridable methods, used by SampledFactor to reuse its message graph across updates
+	
+	/**
+	 * Saves the current input message, from which {@link #getInputMessageChange()} measures
+	 * changes. Does nothing by default.
+	 * @since 0.06
+	 */
+	public void recordInputMessage()
+	{
+	}
+	
+	/**
+	 * Measures how much the input message has changed since the last call to
+	 * {@link #recordInputMessage()}, such that changes of less than about 0.01 have a negligible
+	 * effect on the distribution being sampled. Returns infinity if the change is not known,
+	 * which is the default.
+	 * @since 0.06
+	 */
+	public double getInputMessageChange()
+	{
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Estimates the standard error of the output message computed from the given number of samples,
+	 * relative to the spread of the distribution. The default assumes independent samples, for which
+	 * the error of an estimated mean is one over the square root of the number of samples.
+	 * @since 0.06
+	 */
+	public double getOutputMessageError(int numSamples)
+	{
+		return 1 / Math.sqrt(numSamples);
+	}
+	
+	/**
+	 * Sets the output message from the belief of the variable in the case where its input was
+	 * set from the input message instead of uniform, by dividing the input message out of the
+	 * belief. This allows the output messages of all edges to be computed from a single set of
+	 * samples. Returns false if this cannot be done, in which case the output message is not
+	 * modified. Returns false by default.
+	 * @since 0.06
+	 */
+	public boolean setOutputMessageFromVariableBeliefExcludingInput()
+	{
+		return false;
+	}
 }
@@ -16,8 +16,7 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
-import java.util.List;
-
+import com.analog.lyric.collect.ChunkedDoubleList;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.MultivariateNormal;
 import com.analog.lyric.dimple.model.core.Port;
@@ -79,15 +78,16 @@ public class MultivariateNormalMessageTranslator extends MessageTranslatorBase
 	public final void setOutputMessageFromVariableBelief()
 	{
 		// Get the raw sample array to avoid making a copy; this is unsafe, so be careful not to modify it
-		List<double[]> sampleValues = _solverVariable._getSampleArrayUnsafe();
-		int numSamples = sampleValues.size();
-		int dimension = sampleValues.get(0).length;
+		ChunkedDoubleList sampleValues = _solverVariable._getSampleArrayUnsafe();
+		int dimension = _solverVariable.getDimension();
+		int numSamples = sampleValues.size() / dimension;
 
 		// For all sample values, compute the mean
 		double[] mean = new double[dimension];
+		double[] tmp = new double[dimension];
 		for (int sample = 0; sample < numSamples; sample++)
 		{
-			double[] tmp = sampleValues.get(sample);
+			sampleValues.get(sample * dimension, tmp);
 			for (int i = 0; i < dimension; i++)
 				mean[i] += tmp[i];
 		}
@@ -99,7 +99,7 @@ public class MultivariateNormalMessageTranslator extends MessageTranslatorBase
 		double[][] covariance = new double[dimension][dimension];
 		for (int sample = 0; sample < numSamples; sample++)
 		{
-			double[] tmp = sampleValues.get(sample);
+			sampleValues.get(sample * dimension, tmp);
 			for (int i = 0; i < dimension; i++)
 				diff[i] = tmp[i] - mean[i];
 			for (int row = 0; row < dimension; row++)
@@ -16,8 +16,8 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
-import java.util.List;
-
+import com.analog.lyric.collect.ChunkedDoubleList;
+import com.analog.lyric.collect.PrimitiveIterator;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.Normal;
 import com.analog.lyric.dimple.model.core.Port;
@@ -32,6 +32,13 @@ public class NormalMessageTranslator extends MessageTranslatorBase
 	private NormalParameters _outputMessage;
 	private Normal _variableInput;
 	private com.analog.lyric.dimple.solvers.gibbs.SRealVariable _solverVariable;
+	private final NormalParameters _recordedInputMessage = new NormalParameters();
+	private boolean _inputMessageRecorded = false;
+	
+	// Mean and variance of the samples, computed by computeSampleStatistics
+	private double _sampleMean;
+	private double _sampleVariance;
+	private int _numSamples;
 
 	public NormalMessageTranslator(Port port, VariableBase variable)
 	{
@@ -78,29 +85,65 @@ public class NormalMessageTranslator extends MessageTranslatorBase
 	@Override
 	public final void setOutputMessageFromVariableBelief()
 	{
-		// Get the raw sample array to avoid making a copy; this is unsafe, so be careful not to modify it
-		List<Double> sampleValues = _solverVariable._getSampleArrayUnsafe();
-		int numSamples = sampleValues.size();
-
-		// For all sample values, compute the output message
-		double sum = 0;
-		double sumsq = 0;
-		for (int i = 0; i < numSamples; i++)
+		if (!computeSampleStatistics())
 		{
-			double tmp = sampleValues.get(i);
-			if (Double.isInfinite(tmp) || Double.isNaN(tmp))
-			{
-				_outputMessage.setNull();				
-				return;
-			}
-			sum += tmp;
-			sumsq += tmp*tmp;
+			_outputMessage.setNull();
+			return;
 		}
-		double mean = sum / numSamples;
-		double variance = (sumsq - sum*mean) / (numSamples - 1);
 		
-		_outputMessage.setMean(mean);
-		_outputMessage.setVariance(variance);
+		_outputMessage.setMean(_sampleMean);
+		_outputMessage.setVariance(_sampleVariance);
+	}
+	
+	@Override
+	public final boolean setOutputMessageFromVariableBeliefExcludingInput()
+	{
+		if (!computeSampleStatistics())
+			return false;
+		
+		// Dividing Gaussians subtracts precisions; sampling error may leave no precision for the output
+		final double beliefPrecision = 1 / _sampleVariance;
+		final double inputPrecision = _inputMessage.getPrecision();
+		final double outputPrecision = beliefPrecision - inputPrecision;
+		if (!(outputPrecision > 0) || Double.isInfinite(outputPrecision))
+			return false;
+		
+		// The relative standard error of the sample precision is about sqrt(2/n); if the output precision
+		// is within three standard errors of zero, it is mostly noise.
+		if (outputPrecision < 3 * beliefPrecision * Math.sqrt(2.0 / _numSamples))
+			return false;
+		
+		_outputMessage.setMean((beliefPrecision * _sampleMean - inputPrecision * _inputMessage.getMean()) / outputPrecision);
+		_outputMessage.setPrecision(outputPrecision);
+		return true;
+	}
+	
+	@Override
+	public final void recordInputMessage()
+	{
+		_recordedInputMessage.set(_inputMessage);
+		_inputMessageRecorded = true;
+	}
+	
+	/**
+	 * Returns the larger of the change in mean in units of the standard deviation, and the
+	 * relative change in precision.
+	 */
+	@Override
+	public final double getInputMessageChange()
+	{
+		if (!_inputMessageRecorded)
+			return Double.POSITIVE_INFINITY;
+		
+		final double precision = _inputMessage.getPrecision();
+		final double recordedPrecision = _recordedInputMessage.getPrecision();
+		final double maxPrecision = Math.max(precision, recordedPrecision);
+		if (maxPrecision == 0)
+			return 0;	// Both uniform
+		
+		final double meanChange = Math.abs(_inputMessage.getMean() - _recordedInputMessage.getMean()) * Math.sqrt(maxPrecision);
+		final double precisionChange = Math.abs(precision - recordedPrecision) / maxPrecision;
+		return Math.max(meanChange, precisionChange);
 	}
 	
 	
@@ -143,4 +186,33 @@ public class NormalMessageTranslator extends MessageTranslatorBase
 		_inputMessage = ((NormalMessageTranslator)other)._inputMessage;
 		_outputMessage = ((NormalMessageTranslator)other)._outputMessage;
 	}
+	
+	/**
+	 * Computes the mean and variance of the saved samples. Returns false if any sample is not finite.
+	 */
+	private boolean computeSampleStatistics()
+	{
+		// Get the raw sample array to avoid making a copy; this is unsafe, so be careful not to modify it
+		ChunkedDoubleList sampleValues = _solverVariable._getSampleArrayUnsafe();
+		int numSamples = sampleValues.size();
+
+		// For all sample values, compute the output message
+		double sum = 0;
+		double sumsq = 0;
+		PrimitiveIterator.OfDouble iter = sampleValues.iterator();
+		for (int i = 0; i < numSamples; i++)
+		{
+			double tmp = iter.nextDouble();
+			if (Double.isInfinite(tmp) || Double.isNaN(tmp))
+				return false;
+			sum += tmp;
+			sumsq += tmp*tmp;
+		}
+		double mean = sum / numSamples;
+		
+		_sampleMean = mean;
+		_sampleVariance = (sumsq - sum*mean) / (numSamples - 1);
+		_numSamples = numSamples;
+		return true;
+	}
 }
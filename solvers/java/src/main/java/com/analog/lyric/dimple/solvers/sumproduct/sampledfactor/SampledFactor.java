@@ -18,8 +18,11 @@ package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.VariableBase;
 import com.analog.lyric.dimple.solvers.core.SFactorBase;
+import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverVariableGibbs;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
 
@@ -56,6 +59,10 @@ public class SampledFactor extends SFactorBase
 	private int _samplesPerUpdate = DEFAULT_SAMPLES_PER_UPDATE;
 	private int _burnInScansPerUpdate = DEFAULT_BURN_IN_SCANS_PER_UPDATE;
 	private int _scansPerSample = DEFAULT_SCANS_PER_SAMPLE;
+	private int _minSamplesPerUpdate = DEFAULT_MIN_SAMPLES_PER_UPDATE;
+	private double _outputErrorTarget = DEFAULT_OUTPUT_ERROR_TARGET;
+	private boolean _warmStart = false;
+	private double _warmStartTolerance = DEFAULT_WARM_START_TOLERANCE;
 	private MessageTranslatorBase[] _messageTranslator;
 	private VariableBase[] _privateVariables;
 	private FactorGraph _messageGraph;
@@ -63,6 +70,24 @@ public class SampledFactor extends SFactorBase
 	public final static int DEFAULT_SAMPLES_PER_UPDATE = 1000;
 	public final static int DEFAULT_BURN_IN_SCANS_PER_UPDATE = 10;
 	public final static int DEFAULT_SCANS_PER_SAMPLE = 1;
+	public final static int DEFAULT_MIN_SAMPLES_PER_UPDATE = 100;
+	public final static double DEFAULT_OUTPUT_ERROR_TARGET = 0;
+	public final static double DEFAULT_WARM_START_TOLERANCE = 0.01;
+	
+	/*
+	 * State of the message graph's chain between updates. The output edge of the last update
+	 * is -1 if all edges were updated together.
+	 */
+	private boolean _chainStarted = false;
+	private int _lastOutPortNum = -1;
+	private Value[] _chainState;
+	
+	/**
+	 * Random generator used by this factor's sampler when warm starts are enabled, so that results
+	 * do not depend on which thread updates the factor when independent factors are updated
+	 * concurrently. Null otherwise, in which case the current generator is used as before.
+	 */
+	private SolverRandomGenerator _random;
 
 	
 	public SampledFactor(Factor factor)
@@ -97,13 +122,19 @@ public class SampledFactor extends SFactorBase
 		_messageGraph.addFactor(factor.getFactorFunction(), _privateVariables);
 	}
 	
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		_chainStarted = false;
+		// Only split when warm starting, since splitting consumes values from the current generator.
+		_random = _warmStart ? SolverRandomGenerator.current().split() : null;
+	}
+	
 	@Override
 	public void updateEdge(int outPortNum)
 	{
 		int numSiblings = _factor.getSiblingCount();
-		_solverGraph.setNumSamples(_samplesPerUpdate);
-		_solverGraph.setBurnInScans(_burnInScansPerUpdate);
-		_solverGraph.setScansPerSample(_scansPerSample);
 		
 		// Set inputs of the message-graph variables to the incoming message value; all except the output variable
 		for (int edge = 0; edge < numSiblings; edge++)
@@ -122,13 +153,62 @@ public class SampledFactor extends SFactorBase
 		}
 
 		// Run the Gibbs solver
-		_messageGraph.solve();
+		runSampler(outPortNum);
 	
 		// Set the output message using the belief of the message-graph output variable
 		_messageTranslator[outPortNum].setOutputMessageFromVariableBelief();
 
 	}
 	
+	/**
+	 * If {@link #getWarmStart()} is true, updates all of the output messages from a single set of
+	 * samples drawn with the inputs of all of the message-graph variables set from the input messages,
+	 * by dividing each input message out of the corresponding belief. Edges for which the message
+	 * translator cannot do that are updated separately using {@link #updateEdge(int)}: discrete edges
+	 * whose input message is zero or very small for some values, real edges whose output precision is
+	 * within the sampling error of the belief's precision, and all multivariate edges.
+	 * <p>
+	 * Otherwise updates each edge separately, as by default.
+	 */
+	@Override
+	public void update()
+	{
+		if (!_warmStart)
+		{
+			super.update();
+			return;
+		}
+		
+		final int numSiblings = _factor.getSiblingCount();
+		
+		for (int edge = 0; edge < numSiblings; edge++)
+		{
+			MessageTranslatorBase messageTranslator = _messageTranslator[edge];
+			messageTranslator.setMessageDirection(MessageTranslatorBase.MessageDirection.OUTPUT);
+			messageTranslator.setVariableInputFromInputMessage();
+		}
+		
+		runSampler(-1);
+		
+		boolean[] separate = null;
+		for (int edge = 0; edge < numSiblings; edge++)
+		{
+			if (!_messageTranslator[edge].setOutputMessageFromVariableBeliefExcludingInput())
+			{
+				if (separate == null)
+					separate = new boolean[numSiblings];
+				separate[edge] = true;
+			}
+		}
+		
+		if (separate != null)
+		{
+			for (int edge = 0; edge < numSiblings; edge++)
+				if (separate[edge])
+					updateEdge(edge);
+		}
+	}
+	
 	
 	// Set/get operating parameters
 	public void setSamplesPerUpdate(int numSamples)
@@ -156,6 +236,72 @@ public class SampledFactor extends SFactorBase
 	{
 		return _scansPerSample;
 	}
+	
+	/**
+	 * If greater than zero, the number of samples drawn for each update is chosen adaptively:
+	 * sampling starts with {@link #getMinSamplesPerUpdate()} samples and doubles the number of samples
+	 * until the estimated standard error of the output messages is no more than this target, or
+	 * {@link #getSamplesPerUpdate()} samples have been drawn. The error is relative to the spread of
+	 * the message, e.g. the standard error of the probability of a discrete value, or of the mean of a
+	 * real value in units of its standard deviation. Zero by default, which always draws
+	 * {@link #getSamplesPerUpdate()} samples.
+	 * @since 0.06
+	 */
+	public double getOutputErrorTarget()
+	{
+		return _outputErrorTarget;
+	}
+	public void setOutputErrorTarget(double errorTarget)
+	{
+		_outputErrorTarget = errorTarget;
+	}
+	
+	/**
+	 * The number of samples first drawn for each update when {@link #getOutputErrorTarget()} is set.
+	 * @since 0.06
+	 */
+	public int getMinSamplesPerUpdate()
+	{
+		return _minSamplesPerUpdate;
+	}
+	public void setMinSamplesPerUpdate(int numSamples)
+	{
+		_minSamplesPerUpdate = numSamples;
+	}
+	
+	/**
+	 * If true, each update continues the message graph's chain from the state in which
+	 * the previous update left it rather than from a random restart. If in addition the inputs of the
+	 * message graph have changed by no more than {@link #getWarmStartTolerance()} since the previous
+	 * update, burn-in is skipped entirely. False by default.
+	 * <p>
+	 * Warm starts also give the factor its own random generator, split from the current one, so
+	 * that its samples do not depend on which thread updates it.
+	 * @since 0.06
+	 */
+	public boolean getWarmStart()
+	{
+		return _warmStart;
+	}
+	public void setWarmStart(boolean warmStart)
+	{
+		_warmStart = warmStart;
+		_chainStarted = false;
+	}
+	
+	/**
+	 * The largest change in any input message since the previous update for which burn-in is skipped
+	 * when {@link #getWarmStart()} is true, as measured by {@link MessageTranslatorBase#getInputMessageChange()}.
+	 * @since 0.06
+	 */
+	public double getWarmStartTolerance()
+	{
+		return _warmStartTolerance;
+	}
+	public void setWarmStartTolerance(double tolerance)
+	{
+		_warmStartTolerance = tolerance;
+	}
 
 	
 	@Override
@@ -196,4 +342,109 @@ public class SampledFactor extends SFactorBase
 		return _messageTranslator[portIndex].getOutputMessage();
 	}
 
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Runs the Gibbs solver on the message graph, whose inputs have already been set for updating
+	 * {@code outPortNum}, or all edges if negative.
+	 */
+	private void runSampler(int outPortNum)
+	{
+		final SolverRandomGenerator previousRandom = _random != null ? SolverRandomGenerator.setCurrent(_random) : null;
+		try
+		{
+			final com.analog.lyric.dimple.solvers.gibbs.SFactorGraph solverGraph = _solverGraph;
+			solverGraph.setBurnInScans(_burnInScansPerUpdate);
+			solverGraph.setScansPerSample(_scansPerSample);
+			
+			if (_warmStart && _chainStarted)
+			{
+				boolean skipBurnIn = outPortNum == _lastOutPortNum;
+				for (int edge = 0, end = _messageTranslator.length; edge < end && skipBurnIn; edge++)
+					if (edge != outPortNum)
+						skipBurnIn = _messageTranslator[edge].getInputMessageChange() <= _warmStartTolerance;
+				
+				// Initializing clears the samples and beliefs, but also resets the chain, so restore its state
+				saveChainState();
+				_messageGraph.initialize();
+				restoreChainState();
+				if (!skipBurnIn)
+					solverGraph.iterate(solverGraph.getBurnInUpdates());
+			}
+			else
+			{
+				_messageGraph.initialize();
+				solverGraph.burnIn();
+				_chainStarted = true;
+			}
+			
+			for (MessageTranslatorBase translator : _messageTranslator)
+				translator.recordInputMessage();
+			_lastOutPortNum = outPortNum;
+			
+			drawSamples(outPortNum);
+		}
+		finally
+		{
+			if (previousRandom != null)
+				SolverRandomGenerator.setCurrent(previousRandom);
+		}
+	}
+	
+	private void drawSamples(int outPortNum)
+	{
+		final int maxSamples = Math.max(1, _samplesPerUpdate);
+		if (_outputErrorTarget <= 0)
+		{
+			_solverGraph.sample(maxSamples);
+			return;
+		}
+		
+		int numSamples = Math.max(1, Math.min(_minSamplesPerUpdate, maxSamples));
+		_solverGraph.sample(numSamples);
+		while (numSamples < maxSamples && outputMessageError(outPortNum, numSamples) > _outputErrorTarget)
+		{
+			final int moreSamples = Math.min(numSamples, maxSamples - numSamples);
+			_solverGraph.sample(moreSamples);
+			numSamples += moreSamples;
+		}
+	}
+	
+	private double outputMessageError(int outPortNum, int numSamples)
+	{
+		if (outPortNum >= 0)
+			return _messageTranslator[outPortNum].getOutputMessageError(numSamples);
+		
+		double error = 0;
+		for (MessageTranslatorBase translator : _messageTranslator)
+			error = Math.max(error, translator.getOutputMessageError(numSamples));
+		return error;
+	}
+	
+	private void saveChainState()
+	{
+		final int n = _privateVariables.length;
+		if (_chainState == null)
+			_chainState = new Value[n];
+		for (int i = 0; i < n; i++)
+		{
+			final Value value = ((ISolverVariableGibbs)_privateVariables[i].getSolver()).getCurrentSampleValue();
+			if (_chainState[i] == null)
+				_chainState[i] = value.clone();
+			else
+				_chainState[i].setFrom(value);
+		}
+	}
+	
+	private void restoreChainState()
+	{
+		for (int i = 0, n = _privateVariables.length; i < n; i++)
+		{
+			final VariableBase var = _privateVariables[i];
+			if (!var.hasFixedValue())
+				((ISolverVariableGibbs)var.getSolver()).setCurrentSample(_chainState[i]);
+		}
+	}
 }
@@ -81,7 +81,7 @@ public class Options extends AbstractOptions
 	public static <T> T lookup(IOptionHolder holder, IOptionKey<T> key)
 	{
 		T value = Options.lookupOrNull(holder, key);
-		return value != null ? null : key.defaultValue();
+		return value != null ? value : key.defaultValue();
 	}
 
 	public static <T> T lookupOrNull(IOptionHolder holder, IOptionKey<T> key)
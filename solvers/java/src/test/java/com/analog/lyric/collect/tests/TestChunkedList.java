@@ -0,0 +1,158 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.collect.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.collect.ChunkedDoubleList;
+import com.analog.lyric.collect.ChunkedIntList;
+import com.analog.lyric.collect.PrimitiveIterator;
+
+/**
+ * Tests for {@link ChunkedDoubleList} and {@link ChunkedIntList}
+ */
+public class TestChunkedList
+{
+	private final Random _rand = new Random(42);
+
+	@Test
+	public void testDouble()
+	{
+		// Use tiny chunks to exercise chunk boundaries.
+		ChunkedDoubleList list = new ChunkedDoubleList(2);
+		assertTrue(list.isEmpty());
+		assertEquals(0, list.toArray().length);
+		assertFalse(list.iterator().hasNext());
+
+		final int n = 103;
+		double[] expected = new double[n];
+		for (int i = 0; i < n; ++i)
+		{
+			list.add(expected[i] = _rand.nextDouble());
+			assertEquals(i + 1, list.size());
+		}
+		assertFalse(list.isEmpty());
+		assertArrayEquals(expected, list.toArray(), 0.0);
+		for (int i = 0; i < n; ++i)
+			assertEquals(expected[i], list.get(i), 0.0);
+
+		PrimitiveIterator.OfDouble iter = list.iterator();
+		list.add(1.0); // not seen by iterator
+		for (int i = 0; i < n; ++i)
+		{
+			assertTrue(iter.hasNext());
+			assertEquals(expected[i], iter.nextDouble(), 0.0);
+		}
+		assertFalse(iter.hasNext());
+		try
+		{
+			iter.next();
+			fail("expected NoSuchElementException");
+		}
+		catch (NoSuchElementException ex)
+		{
+		}
+
+		// Records spanning chunk boundaries
+		list.clear();
+		assertEquals(0, list.size());
+		final double[] record = new double[] { 1, 2, 3 };
+		for (int i = 0; i < 5; ++i)
+			list.add(record);
+		assertEquals(15, list.size());
+		for (int i = 0; i < 5; ++i)
+			assertArrayEquals(record, list.get(i * 3, new double[3]), 0.0);
+
+		// addAll with different chunk size
+		ChunkedDoubleList other = new ChunkedDoubleList();
+		other.addAll(list);
+		other.addAll(list);
+		assertEquals(30, other.size());
+		for (int i = 0; i < 30; ++i)
+			assertEquals(record[i % 3], other.get(i), 0.0);
+
+		expectIndexOutOfBounds(list, -1);
+		expectIndexOutOfBounds(list, 15);
+		try
+		{
+			list.get(13, new double[3]);
+			fail("expected IndexOutOfBoundsException");
+		}
+		catch (IndexOutOfBoundsException ex)
+		{
+		}
+
+		try
+		{
+			new ChunkedDoubleList(31);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testInt()
+	{
+		ChunkedIntList list = new ChunkedIntList(3);
+		final int n = 1000;
+		int[] expected = new int[n];
+		for (int i = 0; i < n; ++i)
+			list.add(expected[i] = _rand.nextInt());
+		assertEquals(n, list.size());
+		assertArrayEquals(expected, list.toArray());
+
+		PrimitiveIterator.OfInt iter = list.iterator();
+		for (int i = 0; i < n; ++i)
+		{
+			assertEquals(expected[i], list.get(i));
+			assertEquals(expected[i], iter.nextInt());
+		}
+		assertFalse(iter.hasNext());
+
+		ChunkedIntList other = new ChunkedIntList(5);
+		other.add(-1);
+		other.addAll(list);
+		assertEquals(n + 1, other.size());
+		assertEquals(-1, other.get(0));
+		for (int i = 0; i < n; ++i)
+			assertEquals(expected[i], other.get(i + 1));
+
+		list.clear();
+		assertTrue(list.isEmpty());
+		list.add(42);
+		assertArrayEquals(new int[] { 42 }, list.toArray());
+	}
+
+	private static void expectIndexOutOfBounds(ChunkedDoubleList list, int index)
+	{
+		try
+		{
+			list.get(index);
+			fail("expected IndexOutOfBoundsException");
+		}
+		catch (IndexOutOfBoundsException ex)
+		{
+		}
+	}
+}
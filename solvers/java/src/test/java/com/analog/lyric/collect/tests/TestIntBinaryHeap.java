@@ -0,0 +1,182 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.collect.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.collect.IntBinaryHeap;
+
+public class TestIntBinaryHeap
+{
+	@Test
+	public void test()
+	{
+		IntBinaryHeap heap = new IntBinaryHeap(2);
+		assertInvariants(heap);
+		assertTrue(heap.isEmpty());
+		assertEquals(-1, heap.peek());
+		assertTrue(Double.isNaN(heap.peekPriority()));
+		assertEquals(-1, heap.poll());
+
+		assertTrue(heap.offer(3, 2.0));
+		assertTrue(heap.offer(7, 1.0));
+		assertFalse(heap.offer(3, 0.0));
+		assertEquals(2.0, heap.getPriority(3), 0.0);
+		assertEquals(2, heap.size());
+		assertTrue(heap.containsKey(3));
+		assertFalse(heap.containsKey(4));
+		assertFalse(heap.containsKey(100));
+		assertTrue(Double.isNaN(heap.getPriority(100)));
+		assertInvariants(heap);
+
+		assertEquals(7, heap.peek());
+		assertEquals(1.0, heap.peekPriority(), 0.0);
+
+		// Decrease key
+		assertTrue(heap.changePriority(3, 0.5));
+		assertFalse(heap.changePriority(4, 0.5));
+		assertEquals(3, heap.peek());
+
+		// Increase key
+		assertTrue(heap.changePriority(3, 5));
+		assertEquals(7, heap.peek());
+
+		assertFalse(heap.offerOrChangePriority(7, 10));
+		assertTrue(heap.offerOrChangePriority(1, 4));
+		assertEquals(1, heap.poll());
+		assertEquals(3, heap.poll());
+		assertEquals(7, heap.poll());
+		assertTrue(heap.isEmpty());
+
+		// Ties are returned in insertion order
+		for (int key : new int[] { 5, 2, 9, 0 })
+		{
+			heap.offer(key, 1.0);
+		}
+		assertTrue(heap.removeKey(2));
+		assertFalse(heap.removeKey(2));
+		assertEquals(5, heap.poll());
+		assertEquals(9, heap.poll());
+		assertEquals(0, heap.poll());
+
+		heap.offer(4, 1);
+		heap.offer(6, 2);
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.containsKey(4));
+		assertTrue(heap.offer(6, 3));
+
+		try
+		{
+			heap.offer(-1, 1);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+		try
+		{
+			heap.offer(1, Double.NaN);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+		try
+		{
+			heap.changePriority(6, Double.NaN);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testRandom()
+	{
+		final Random rand = new Random(42);
+		final int nKeys = 200;
+		final double[] priorities = new double[nKeys];
+		final boolean[] present = new boolean[nKeys];
+		IntBinaryHeap heap = new IntBinaryHeap();
+
+		for (int i = 0; i < 5000; ++i)
+		{
+			final int key = rand.nextInt(nKeys);
+			final double priority = rand.nextInt(50);
+			switch (rand.nextInt(4))
+			{
+			case 0:
+			case 1:
+				assertEquals(!present[key], heap.offerOrChangePriority(key, priority));
+				present[key] = true;
+				priorities[key] = priority;
+				break;
+			case 2:
+				assertEquals(present[key], heap.removeKey(key));
+				present[key] = false;
+				break;
+			case 3:
+				final int head = heap.poll();
+				if (head >= 0)
+				{
+					assertTrue(present[head]);
+					for (int k = 0; k < nKeys; ++k)
+					{
+						if (present[k])
+						{
+							assertTrue(priorities[head] <= priorities[k]);
+						}
+					}
+					present[head] = false;
+				}
+				break;
+			}
+
+			int size = 0;
+			for (int k = 0; k < nKeys; ++k)
+			{
+				assertEquals(present[k], heap.containsKey(k));
+				if (present[k])
+				{
+					++size;
+					assertEquals(priorities[k], heap.getPriority(k), 0.0);
+				}
+			}
+			assertEquals(size, heap.size());
+		}
+	}
+
+	private static void assertInvariants(IntBinaryHeap heap)
+	{
+		assertEquals(heap.size() == 0, heap.isEmpty());
+		if (heap.isEmpty())
+		{
+			assertEquals(-1, heap.peek());
+		}
+		else
+		{
+			assertTrue(heap.containsKey(heap.peek()));
+			assertEquals(heap.getPriority(heap.peek()), heap.peekPriority(), 0.0);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.FactorFunctions;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Beta;
+import com.analog.lyric.dimple.factorfunctions.Gamma;
+import com.analog.lyric.dimple.factorfunctions.InverseGamma;
+import com.analog.lyric.dimple.factorfunctions.LogNormal;
+import com.analog.lyric.dimple.factorfunctions.NegativeExpGamma;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Product;
+import com.analog.lyric.dimple.factorfunctions.Rayleigh;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.factorfunctions.VonMises;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.values.RealValue;
+import com.analog.lyric.dimple.model.values.Value;
+
+/**
+ * Tests for {@link FactorFunction#evalEnergies(double[][], int, double[])}.
+ */
+public class TestEvalEnergies
+{
+	private final Random _rand = new Random(42);
+
+	@Test
+	public void testBuiltIns()
+	{
+		testFunction(new Normal(1.5, 2), 1, false);
+		testFunction(new Normal(), 4, false);
+		testFunction(new Normal(), 3, true);
+		testFunction(new Gamma(1, 2), 2, true);
+		testFunction(new Gamma(2.5, 1.5), 2, true);
+		testFunction(new Gamma(), 4, false);
+		testFunction(new Sum(), 3, false);
+		testFunction(new Sum(.5), 3, false);
+		testFunction(new Product(), 3, false);
+		testFunction(new Product(.5), 4, true);
+		testFunction(new Beta(1, 1), 2, true);
+		testFunction(new Beta(1, .5), 2, false);
+		testFunction(new Beta(2, 3), 2, false);
+		testFunction(new Beta(), 3, false);
+		testFunction(new LogNormal(.5, 2), 2, true);
+		testFunction(new LogNormal(), 3, false);
+		testFunction(new InverseGamma(2, 1.5), 2, true);
+		testFunction(new InverseGamma(), 3, false);
+		testFunction(new NegativeExpGamma(2, 1.5), 2, true);
+		testFunction(new NegativeExpGamma(), 3, false);
+		testFunction(new Rayleigh(1.5), 2, true);
+		testFunction(new Rayleigh(), 3, false);
+		testFunction(new VonMises(.5, 2), 2, true);
+		testFunction(new VonMises(), 3, true);
+	}
+
+	@Test
+	public void testDefault()
+	{
+		// Function that only overrides eval(Object...)
+		FactorFunction function = new FactorFunction() {
+			@Override
+			public double eval(Object ... arguments)
+			{
+				double x = (Double)arguments[0], y = (Double)arguments[1];
+				return Math.exp(-x*x - y);
+			}
+		};
+		testFunction(function, 2, true);
+	}
+
+	/**
+	 * Compares evalEnergies against evalEnergy on random rows of {@code nArgs} arguments.
+	 */
+	private void testFunction(FactorFunction function, int nArgs, boolean allowNegative)
+	{
+		final int nRows = 50;
+		double[][] columns = new double[nArgs][nRows];
+		for (int row = 0; row < nRows; ++row)
+		{
+			for (int i = 0; i < nArgs; ++i)
+			{
+				double x = _rand.nextDouble() * 3;
+				if (allowNegative && _rand.nextInt(4) == 0)
+					x = -x;
+				columns[i][row] = x;
+			}
+		}
+		// Make some deterministic rows consistent.
+		columns[0][0] = 0;
+		for (int i = 1; i < nArgs; ++i)
+			columns[i][0] = 0;
+
+		double[] energies = new double[nRows + 1];
+		energies[nRows] = 42;
+		function.evalEnergies(columns, nRows, energies);
+		assertEquals(42, energies[nRows], 0.0);
+
+		Object[] objects = new Object[nArgs];
+		Value[] values = new Value[nArgs];
+		for (int row = 0; row < nRows; ++row)
+		{
+			for (int i = 0; i < nArgs; ++i)
+			{
+				objects[i] = columns[i][row];
+				values[i] = RealValue.create(columns[i][row]);
+			}
+			double expected = function.evalEnergy(objects);
+			assertEquals(expected, energies[row], 1e-12 * Math.max(1, Math.abs(expected)));
+			assertEquals(expected, function.evalEnergy(values), 1e-12 * Math.max(1, Math.abs(expected)));
+		}
+	}
+}
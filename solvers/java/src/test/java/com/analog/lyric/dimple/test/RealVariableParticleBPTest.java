@@ -18,6 +18,9 @@ package com.analog.lyric.dimple.test;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 import com.analog.lyric.dimple.factorfunctions.MixedNormal;
@@ -26,9 +29,12 @@ import com.analog.lyric.dimple.factorfunctions.Sum;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.domains.RealDomain;
 import com.analog.lyric.dimple.model.domains.TypedDiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import com.analog.lyric.dimple.solvers.particleBP.SFactorGraph;
+import com.analog.lyric.dimple.solvers.particleBP.SRealFactor;
 import com.analog.lyric.dimple.solvers.particleBP.SRealVariable;
 
 
@@ -571,6 +577,132 @@ public class RealVariableParticleBPTest
 	}
 	
 	
+	@Test
+	public void factorMessageTest() throws Exception
+	{
+		// Compare factor messages against a direct computation over all particle combinations
+		FactorGraph graph = new FactorGraph();
+		graph.setSolverFactory(new com.analog.lyric.dimple.solvers.particleBP.Solver());
+		SFactorGraph solver = (SFactorGraph)graph.getSolver();
+		solver.setNumIterations(2);
+		solver.setNumParticles(12);
+		solver.setResamplingUpdatesPerParticle(2);
+		solver.setSeed(1);
+		
+		final Real[] vars = new Real[3];
+		for (int i = 0; i < vars.length; i++)
+		{
+			vars[i] = new Real();
+			vars[i].setInputObject(new Normal(i - 1, 1));
+		}
+		Factor factor = graph.addFactor(new Normal(0, 2), vars);
+		graph.solve();
+		
+		final SRealFactor sfactor = (SRealFactor)factor.getSolver();
+		for (double beta : new double[] { 1, .5 })
+		{
+			sfactor.setBeta(beta);
+			sfactor.update();
+			for (int outPort = 0; outPort < vars.length; outPort++)
+			{
+				double[] expected = expectedFactorMessage(factor, vars, outPort, beta);
+				assertArrayEquals(expected, (double[])sfactor.getOutputMsg(outPort), 1e-12);
+			}
+		}
+		
+		// Resampling must invalidate the cached factor energies
+		((SRealVariable)vars[1].getSolver()).resample();
+		sfactor.updateEdge(2);
+		assertArrayEquals(expectedFactorMessage(factor, vars, 2, .5), (double[])sfactor.getOutputMsg(2), 1e-12);
+		
+		// The concurrent and uncached computations must match the sequential cached one
+		final double[][] expected = updateFactor(sfactor, vars.length);
+		ThreadPool.setNumThreads(3);
+		try
+		{
+			sfactor.setMinConcurrentCombinations(1);
+			assertMessagesEqual(expected, updateFactor(sfactor, vars.length));
+			
+			// Running on the pool falls back to the sequential computation instead of waiting for it
+			final Future<double[][]> result = ThreadPool.getThreadPool().submit(new Callable<double[][]>() {
+				@Override
+				public double[][] call()
+				{
+					assertTrue(ThreadPool.isPoolThread());
+					return updateFactor(sfactor, vars.length);
+				}
+			});
+			assertMessagesEqual(expected, result.get());
+		}
+		finally
+		{
+			sfactor.setMinConcurrentCombinations(SRealFactor.DEFAULT_MIN_CONCURRENT_COMBINATIONS);
+			ThreadPool.setNumThreadsToDefault();
+		}
+		assertFalse(ThreadPool.isPoolThread());
+		
+		sfactor.setMaxCachedCombinations(0);
+		assertMessagesEqual(expected, updateFactor(sfactor, vars.length));
+		sfactor.setMaxCachedCombinations(SRealFactor.DEFAULT_MAX_CACHED_COMBINATIONS);
+		assertMessagesEqual(expected, updateFactor(sfactor, vars.length));
+	}
+	
+	private double[][] updateFactor(SRealFactor sfactor, int nVars)
+	{
+		sfactor.update();
+		final double[][] messages = new double[nVars][];
+		for (int i = 0; i < nVars; i++)
+			messages[i] = ((double[])sfactor.getOutputMsg(i)).clone();
+		return messages;
+	}
+	
+	private void assertMessagesEqual(double[][] expected, double[][] messages)
+	{
+		for (int i = 0; i < expected.length; i++)
+			assertArrayEquals(expected[i], messages[i], 1e-12);
+	}
+	
+	private double[] expectedFactorMessage(Factor factor, Real[] vars, int outPort, double beta)
+	{
+		final int nVars = vars.length;
+		final double[][] particles = new double[nVars][];
+		final double[][] inputs = new double[nVars][];
+		for (int i = 0; i < nVars; i++)
+		{
+			particles[i] = ((SRealVariable)vars[i].getSolver()).getParticleValues();
+			inputs[i] = (double[])factor.getSolver().getInputMsg(i);
+		}
+		
+		final int nParticles = particles[0].length;
+		final double[] message = new double[nParticles];
+		final Object[] values = new Object[nVars];
+		double sum = 0;
+		for (int i = 0; i < nParticles; i++)
+		{
+			for (int j = 0; j < nParticles; j++)
+			{
+				for (int k = 0; k < nParticles; k++)
+				{
+					final int[] indices = new int[] { i, j, k };
+					double prob = 1;
+					for (int v = 0; v < nVars; v++)
+					{
+						values[v] = particles[v][indices[v]];
+						if (v != outPort)
+							prob *= inputs[v][indices[v]];
+					}
+					prob *= Math.exp(-beta * factor.getFactorFunction().evalEnergy(values));
+					message[indices[outPort]] += prob;
+					sum += prob;
+				}
+			}
+		}
+		for (int i = 0; i < nParticles; i++)
+			message[i] /= sum;
+		return message;
+	}
+	
+	
 	private static double TOLLERANCE = 1e-12;
 	private boolean nearlyEquals(double a, double b)
 	{
@@ -0,0 +1,134 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.schedulers.FloodingScheduler;
+import com.analog.lyric.dimple.schedulers.ResidualScheduler;
+import com.analog.lyric.dimple.schedulers.schedule.ResidualSchedule;
+
+public class ResidualSchedulerTest
+{
+	private final long _seed = 42;
+	private final Random _rand = new Random(_seed);
+
+	@Test
+	public void testChain()
+	{
+		final int n = 30;
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+
+		Discrete[] vars = new Discrete[n];
+		for (int i = 0; i < n; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(1, 3));
+			vars[i].setInput(_rand.nextDouble() + .1, _rand.nextDouble() + .1, _rand.nextDouble() + .1);
+		}
+		for (int i = 1; i < n; ++i)
+		{
+			double[][] weights = new double[3][3];
+			for (double[] row : weights)
+				for (int j = 0; j < 3; ++j)
+					row[j] = _rand.nextDouble() + .1;
+			addPairFactor(fg, weights, vars[i-1], vars[i]);
+		}
+
+		// Flooding needs about n iterations to propagate evidence across the chain.
+		fg.setScheduler(new FloodingScheduler());
+		fg.getSolver().setNumIterations(n);
+		fg.solve();
+		double[][] expected = new double[n][];
+		for (int i = 0; i < n; ++i)
+			expected[i] = vars[i].getBelief().clone();
+
+		ResidualScheduler scheduler = new ResidualScheduler();
+		scheduler.setConvergenceThreshold(1e-12);
+		fg.setScheduler(scheduler);
+		fg.getSolver().setNumIterations(n);
+		fg.solve();
+
+		ResidualSchedule schedule = (ResidualSchedule)fg.getSchedule();
+		assertTrue("seed " + _seed, schedule.hasConverged());
+		assertTrue(schedule.getMaxResidual() < 1e-12);
+		final long updateCount = schedule.getUpdateCount();
+		final int edgeCount = 4 * (n - 1);
+		assertTrue(updateCount >= edgeCount);
+		// Flooding performs n * edgeCount updates; residual scheduling should need several times fewer.
+		assertTrue("seed " + _seed + ": " + updateCount + " updates", 4 * updateCount < n * edgeCount);
+
+		for (int i = 0; i < n; ++i)
+			assertArrayEquals("seed " + _seed, expected[i], vars[i].getBelief(), 1e-9);
+
+		// Further iterations do nothing once converged.
+		fg.getSolver().iterate(5);
+		assertEquals(updateCount, schedule.getUpdateCount());
+
+		// Initializing the graph restarts the schedule.
+		fg.solve();
+		assertTrue(schedule.getUpdateCount() >= updateCount + edgeCount);
+		for (int i = 0; i < n; ++i)
+			assertArrayEquals("seed " + _seed, expected[i], vars[i].getBelief(), 1e-9);
+	}
+
+	@Test
+	public void testIterationLimit()
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		Discrete a = new Discrete(DiscreteDomain.bit());
+		Discrete b = new Discrete(DiscreteDomain.bit());
+		Discrete c = new Discrete(DiscreteDomain.bit());
+		a.setInput(.3, .7);
+		addPairFactor(fg, new double[][] { { 1, 2 }, { 2, 1 } }, a, b);
+		addPairFactor(fg, new double[][] { { 1, 2 }, { 2, 1 } }, b, c);
+		addPairFactor(fg, new double[][] { { 1, 2 }, { 2, 1 } }, c, a);
+
+		ResidualScheduler scheduler = new ResidualScheduler();
+		scheduler.setConvergenceThreshold(0);
+		fg.setScheduler(scheduler);
+		fg.getSolver().setNumIterations(3);
+		fg.solve();
+
+		// With a zero threshold, each iteration performs one update per directed edge.
+		ResidualSchedule schedule = (ResidualSchedule)fg.getSchedule();
+		assertEquals(3 * 12, schedule.getUpdateCount());
+	}
+
+	private static void addPairFactor(FactorGraph fg, double[][] weights, Discrete a, Discrete b)
+	{
+		int[][] indices = new int[weights.length * weights[0].length][];
+		double[] values = new double[indices.length];
+		for (int i = 0, k = 0; i < weights.length; ++i)
+		{
+			for (int j = 0; j < weights[i].length; ++j, ++k)
+			{
+				indices[k] = new int[] { i, j };
+				values[k] = weights[i][j];
+			}
+		}
+		fg.addFactor(indices, values, a, b);
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.matlabproxy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.matlabproxy.PDiscreteVariableVector;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+
+/**
+ * Tests for flat input and belief arrays and solver method invocation in {@link PDiscreteVariableVector}
+ *
+ * @since 0.06
+ */
+public class TestPDiscreteVariableVector
+{
+	@Test
+	public void testFlatArrays()
+	{
+		Discrete a = new Discrete(DiscreteDomain.range(0, 2));
+		Bit b = new Bit();
+		Discrete c = new Discrete(DiscreteDomain.range(0, 3));
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		fg.addFactor(new int[][] { { 0, 0 }, { 1, 1 }, { 2, 0 } }, new double[] { .5, .3, .2 }, a, b);
+		fg.addVariables(c);
+
+		PDiscreteVariableVector vars = new PDiscreteVariableVector(new VariableBase[] { a, b, c });
+
+		int[] indices = new int[] { 2, 0, 1 };
+		assertArrayEquals(new int[] { 0, 4, 7, 9 }, vars.getFlatOffsets(indices));
+		assertArrayEquals(new int[] { 0 }, vars.getFlatOffsets(new int[0]));
+
+		double[] inputs = new double[] { .1, .2, .3, .4, .6, .3, .1, .8, .2 };
+		vars.setInputFlat(indices, inputs);
+		double[][] input = vars.getInput(indices);
+		assertArrayEquals(new double[] { .1, .2, .3, .4 }, input[0], 1e-12);
+		assertArrayEquals(new double[] { .6, .3, .1 }, input[1], 1e-12);
+		assertArrayEquals(new double[] { .8, .2 }, input[2], 1e-12);
+
+		// Inputs are copied, so later changes to the flat array do not affect the variables.
+		inputs[0] = 0;
+		assertEquals(.1, c.getInput()[0], 1e-12);
+
+		try
+		{
+			vars.setInputFlat(indices, new double[8]);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+		try
+		{
+			vars.setInputFlat(indices, new double[10]);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+
+		fg.solve();
+		double[] beliefs = vars.getDiscreteBeliefsFlat(indices);
+		double[][] expectedBeliefs = vars.getDiscreteBeliefs(indices);
+		assertEquals(9, beliefs.length);
+		int offset = 0;
+		for (double[] expected : expectedBeliefs)
+		{
+			for (double value : expected)
+				assertEquals(value, beliefs[offset++], 0.0);
+		}
+	}
+
+	@Test
+	public void testInvokeSolverMethod()
+	{
+		Bit a = new Bit();
+		Bit b = new Bit();
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		fg.addFactor(new int[][] { { 0, 0 }, { 1, 1 } }, new double[] { .7, .3 }, a, b);
+
+		PDiscreteVariableVector vars = new PDiscreteVariableVector(new VariableBase[] { a, b });
+
+		// Integer and Double arguments are unboxed to match setDamping(int, double).
+		vars.invokeSolverMethod("setDamping", 0, .25);
+		Object[] damping = vars.invokeSolverMethodWithReturnValue("getDamping", 0);
+		assertEquals(2, damping.length);
+		assertEquals(.25, (Double)damping[0], 0.0);
+		assertEquals(.25, (Double)damping[1], 0.0);
+
+		try
+		{
+			vars.invokeSolverMethod("setDamping", "zero", .25);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+		try
+		{
+			vars.invokeSolverMethod("noSuchMethod");
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+}
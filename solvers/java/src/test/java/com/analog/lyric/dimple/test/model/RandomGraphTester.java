@@ -0,0 +1,94 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+
+/**
+ * Base class for tests that compare solver results on graphs of discrete variables built by a
+ * {@link RandomGraphGenerator}.
+ * <p>
+ * Everything random is derived from a fixed seed, so failures are reproducible. The seed is included
+ * in assertion messages.
+ *
+ * @since 0.06
+ */
+public abstract class RandomGraphTester
+{
+	protected final long _seed;
+	protected final Random _rand;
+	protected final RandomGraphGenerator _graphGenerator;
+
+	/**
+	 * Creates a fixture whose graph generator uses the given domains, at most two branches per node
+	 * and the given maximum tree width.
+	 */
+	protected RandomGraphTester(long seed, int maxTreeWidth, DiscreteDomain ... domains)
+	{
+		_seed = seed;
+		_rand = new Random(seed);
+		_graphGenerator = new RandomGraphGenerator(_rand)
+			.domains(domains)
+			.maxBranches(2)
+			.maxTreeWidth(maxTreeWidth);
+	}
+
+	/**
+	 * Sets the input of every variable in {@code fg} to random positive weights.
+	 */
+	protected void setRandomInputs(FactorGraph fg)
+	{
+		for (VariableBase var : fg.getVariables())
+		{
+			Discrete discrete = var.asDiscreteVariable();
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = input.length; --i>=0;)
+				input[i] = _rand.nextDouble() + .01;
+			discrete.setInput(input);
+		}
+	}
+
+	/**
+	 * Returns copies of the beliefs of the variables in {@code fg}, in the order of {@link FactorGraph#getVariables()}.
+	 */
+	protected static double[][] beliefs(FactorGraph fg)
+	{
+		double[][] beliefs = new double[fg.getVariables().size()][];
+		int i = 0;
+		for (VariableBase var : fg.getVariables())
+		{
+			beliefs[i++] = ((double[])var.getBeliefObject()).clone();
+		}
+		return beliefs;
+	}
+
+	protected void assertBeliefsEqual(double[][] expected, double[][] beliefs, double delta)
+	{
+		assertEquals("seed " + _seed, expected.length, beliefs.length);
+		for (int i = 0; i < beliefs.length; ++i)
+		{
+			assertArrayEquals("seed " + _seed, expected[i], beliefs[i], delta);
+		}
+	}
+}
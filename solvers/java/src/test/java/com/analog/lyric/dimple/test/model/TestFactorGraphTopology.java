@@ -0,0 +1,184 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.FactorGraphTopology;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
+
+public class TestFactorGraphTopology
+{
+	final Random _rand = new Random(42);
+	final RandomGraphGenerator _generator = new RandomGraphGenerator(_rand);
+
+	@Test
+	public void test()
+	{
+		FactorGraph empty = new FactorGraph();
+		FactorGraphTopology topology = empty.getFlatTopology();
+		assertInvariants(topology);
+		assertEquals(0, topology.getVariableCount());
+		assertEquals(0, topology.getFactorCount());
+		assertTrue(topology.isTreeOrForest(false));
+		assertSame(topology, empty.getFlatTopology());
+
+		FactorGraph triangle = _generator.buildTriangle();
+		topology = triangle.getFlatTopology();
+		assertInvariants(topology);
+		assertEquals(3, topology.getVariableCount());
+		assertEquals(3, topology.getFactorCount());
+		assertFalse(topology.isTreeOrForest(true));
+
+		// Removing a factor invalidates the cached topology.
+		triangle.remove(topology.getFactor(0));
+		assertFalse(topology.isValid());
+		FactorGraphTopology topology2 = triangle.getFlatTopology();
+		assertNotSame(topology, topology2);
+		assertInvariants(topology2);
+		assertEquals(2, topology2.getFactorCount());
+		assertEquals(-1, topology2.getFactorIndex(topology.getFactor(0)));
+		assertTrue(topology2.isTreeOrForest(false));
+
+		FactorGraph tree = _generator.buildRandomTree(20);
+		assertInvariants(tree.getFlatTopology());
+		assertTrue(tree.getFlatTopology().isTreeOrForest(false));
+		assertTrue(tree.isTree());
+
+		FactorGraph grid = _generator.buildGrid(4);
+		assertInvariants(grid.getFlatTopology());
+		assertFalse(grid.isForest());
+
+		// Changes to a nested graph also invalidate the topology of the root graph.
+		Discrete a = _generator.newDiscrete("a");
+		Discrete b = _generator.newDiscrete("b");
+		FactorGraph template = new FactorGraph(a, b);
+		_generator.addClique(template, a, b);
+		FactorGraph root = new FactorGraph();
+		Discrete x = _generator.newDiscrete(a.getDomain(), "x");
+		Discrete y = _generator.newDiscrete(b.getDomain(), "y");
+		FactorGraph subgraph = root.addGraph(template, x, y);
+		topology = root.getFlatTopology();
+		assertInvariants(topology);
+		assertEquals(2, topology.getVariableCount());
+		assertEquals(1, topology.getFactorCount());
+		assertTrue(topology.isTreeOrForest(false));
+
+		FactorGraphTopology subtopology = subgraph.getFlatTopology();
+		assertInvariants(subtopology);
+
+		Discrete z = _generator.newDiscrete(a.getDomain(), "z");
+		subgraph.addVariables(z);
+		assertFalse(topology.isValid());
+		assertFalse(subtopology.isValid());
+		topology = root.getFlatTopology();
+		assertInvariants(topology);
+		assertEquals(3, topology.getVariableCount());
+		assertFalse(topology.isTreeOrForest(false));
+		assertTrue(topology.isTreeOrForest(true));
+
+		// Edges from a nested graph's variables to outer factors do not count against it.
+		_generator.addClique(root, x, z);
+		_generator.addClique(root, y, z);
+		subtopology = subgraph.getFlatTopology();
+		assertInvariants(subtopology);
+		assertEquals(subgraph.isForest(), subtopology.isTreeOrForest(true));
+		assertTrue(subtopology.isTreeOrForest(true));
+		
+		// Adding a variable changes the topology but does not discard a custom schedule.
+		ISchedule schedule = tree.getSchedule();
+		tree.setSchedule(schedule);
+		topology = tree.getFlatTopology();
+		long versionId = tree.getVersionId();
+		tree.addVariables(_generator.newDiscrete("w"));
+		assertEquals(versionId, tree.getVersionId());
+		assertFalse(topology.isValid());
+		assertTrue(tree.isUpToDateSchedulePresent());
+		assertSame(schedule, tree.getSchedule());
+		assertInvariants(tree.getFlatTopology());
+	}
+
+	private static void assertInvariants(FactorGraphTopology topology)
+	{
+		assertTrue(topology.isValid());
+
+		final FactorGraph graph = topology.getGraph();
+		final VariableList variables = graph.getVariablesFlat();
+		final int nVariables = topology.getVariableCount();
+		final int nFactors = topology.getFactorCount();
+		assertEquals(variables.size(), nVariables);
+		assertEquals(graph.getNonGraphFactorsFlat().size(), nFactors);
+
+		final int[] variableOffsets = topology.getVariableEdgeOffsets();
+		final int[] variableSiblings = topology.getVariableEdgeSiblings();
+		final int[] variablePorts = topology.getVariableEdgePorts();
+		final int[] factorOffsets = topology.getFactorEdgeOffsets();
+		final int[] factorSiblings = topology.getFactorEdgeSiblings();
+		final int[] factorPorts = topology.getFactorEdgePorts();
+
+		assertEquals(nVariables + 1, variableOffsets.length);
+		assertEquals(nFactors + 1, factorOffsets.length);
+
+		for (int i = 0; i < nVariables; ++i)
+		{
+			final VariableBase variable = topology.getVariable(i);
+			assertTrue(variables.contains(variable));
+			assertEquals(i, topology.getVariableIndex(variable));
+			assertEquals(variable.getSiblingCount(), topology.getVariableDegrees()[i]);
+			assertEquals(variable.getSiblingCount(), variableOffsets[i + 1] - variableOffsets[i]);
+			if (variable.getDomain().isDiscrete())
+			{
+				assertEquals(variable.getDomain().asDiscrete().size(), topology.getDomainSizes()[i]);
+			}
+
+			for (int port = 0, edge = variableOffsets[i]; edge < variableOffsets[i + 1]; ++port, ++edge)
+			{
+				final int sibling = variableSiblings[edge];
+				if (sibling < 0)
+				{
+					assertEquals(-1, variablePorts[edge]);
+					continue;
+				}
+				final Factor factor = topology.getFactor(sibling);
+				assertSame(variable.getSibling(port), factor);
+				assertEquals(variable.getSiblingPortIndex(port), variablePorts[edge]);
+
+				// The opposite edge leads back to this edge.
+				final int opposite = factorOffsets[sibling] + variablePorts[edge];
+				assertEquals(i, factorSiblings[opposite]);
+				assertEquals(port, factorPorts[opposite]);
+			}
+		}
+
+		for (int i = 0; i < nFactors; ++i)
+		{
+			final Factor factor = topology.getFactor(i);
+			assertEquals(i, topology.getFactorIndex(factor));
+			assertEquals(factor.getSiblingCount(), topology.getFactorDegrees()[i]);
+			assertEquals(factor.getSiblingCount(), factorOffsets[i + 1] - factorOffsets[i]);
+		}
+	}
+}
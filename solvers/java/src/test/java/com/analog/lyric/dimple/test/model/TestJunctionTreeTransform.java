@@ -23,6 +23,7 @@ import java.util.Random;
 import org.apache.commons.math3.stat.descriptive.moment.Variance;
 import org.junit.Test;
 
+import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.domains.DiscreteDomain;
 import com.analog.lyric.dimple.model.factors.Factor;
@@ -127,6 +128,45 @@ public class TestJunctionTreeTransform
 		testGraph(_graphGenerator.buildStudentNetwork());
 	}
 	
+	@Test
+	public void testCliqueBudget()
+	{
+		FactorGraph model = _graphGenerator.domains(d2).buildGrid(3);
+		JunctionTreeTransform jt = new JunctionTreeTransform().random(rand);
+		assertEquals(0, jt.maxTotalCliqueCardinality());
+		
+		// Each of the nine unconditioned variables contributes a clique with at least two entries.
+		assertSame(jt, jt.maxTotalCliqueCardinality(4));
+		assertEquals(4, jt.maxTotalCliqueCardinality());
+		try
+		{
+			jt.transform(model);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+		
+		// Exceeding the budget automatically conditions out fixed values if that helps.
+		VariableList variables = model.getVariables();
+		Discrete unfixed = variables.getByIndex(0).asDiscreteVariable();
+		for (VariableBase var : variables)
+		{
+			if (var != unfixed)
+			{
+				var.asDiscreteVariable().setFixedValueIndex(0);
+			}
+		}
+		JunctionTreeTransformMap transformMap = jt.transform(model);
+		assertFalse(jt.useConditioning());
+		assertEquals(variables.size() - 1, transformMap.conditionedVariables().size());
+		assertFalse(transformMap.conditionedVariables().contains(unfixed));
+		assertTrue(transformMap.isValid());
+		
+		jt.maxTotalCliqueCardinality(0);
+		assertTrue(jt.transform(model).conditionedVariables().isEmpty());
+	}
+	
 	/*-----------------
 	 * Helper methods
 	 */
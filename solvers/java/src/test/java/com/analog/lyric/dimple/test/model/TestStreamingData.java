@@ -0,0 +1,265 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.model;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.repeated.BatchedDataSink;
+import com.analog.lyric.dimple.model.repeated.BinaryFileDataSource;
+import com.analog.lyric.dimple.model.repeated.BitStream;
+import com.analog.lyric.dimple.model.repeated.DoubleArrayDataSink;
+import com.analog.lyric.dimple.model.repeated.DoubleArrayDataSource;
+import com.analog.lyric.dimple.model.repeated.GenericDataSink;
+import com.analog.lyric.dimple.model.repeated.GenericDataSource;
+import com.analog.lyric.dimple.model.repeated.IDataSink;
+import com.analog.lyric.dimple.model.repeated.IDataSource;
+import com.analog.lyric.dimple.model.repeated.PrefetchingDataSource;
+import com.analog.lyric.dimple.model.variables.Bit;
+
+/**
+ * Tests for {@link PrefetchingDataSource}, {@link BinaryFileDataSource} and {@link BatchedDataSink}
+ *
+ * @since 0.06
+ */
+public class TestStreamingData
+{
+	@Test
+	public void testPrefetchingDataSource()
+	{
+		GenericDataSource<Integer> data = new GenericDataSource<Integer>();
+		for (int i = 0; i < 100; ++i)
+			data.add(i % 10 == 0 ? null : i);
+
+		PrefetchingDataSource source = new PrefetchingDataSource(data, 7);
+		assertEquals(7, source.getCapacity());
+		for (int i = 0; i < 100; ++i)
+		{
+			assertTrue(source.hasNext());
+			assertEquals(i % 10 == 0 ? null : i, source.getNext());
+		}
+		assertFalse(source.hasNext());
+		assertFalse(source.hasNext());
+		try
+		{
+			source.getNext();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+
+		// Reading ahead stops when the queue is full.
+		CountingDataSource counter = new CountingDataSource(Integer.MAX_VALUE, -1);
+		source = new PrefetchingDataSource(counter, 5);
+		assertEquals(0, source.getNext());
+		sleep(100);
+		assertTrue(counter._count <= 7);
+		source.close();
+		assertFalse(source.hasNext());
+
+		// Errors are reported after the values read before them.
+		source = new PrefetchingDataSource(new CountingDataSource(Integer.MAX_VALUE, 3), 2);
+		for (int i = 0; i < 3; ++i)
+			assertEquals(i, source.getNext());
+		try
+		{
+			source.hasNext();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("broken"));
+			assertTrue(ex.getCause() instanceof UnsupportedOperationException);
+		}
+	}
+
+	@Test
+	public void testBinaryFileDataSource() throws IOException
+	{
+		File file = File.createTempFile("dimple", ".bin");
+		file.deleteOnExit();
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try
+		{
+			for (int i = 0; i < 31; ++i)
+				out.writeDouble(i);
+		}
+		finally
+		{
+			out.close();
+		}
+
+		BinaryFileDataSource source = new BinaryFileDataSource(file, 3, ByteOrder.BIG_ENDIAN);
+		assertEquals(3, source.getRecordLength());
+		assertEquals(10, source.getRecordCount());
+		for (int i = 0; i < 10; ++i)
+		{
+			assertEquals(10 - i, source.getRemainingRecords());
+			assertTrue(source.hasNext());
+			assertArrayEquals(new double[] { 3*i, 3*i + 1, 3*i + 2 }, source.getNext(), 0.0);
+		}
+		assertFalse(source.hasNext());
+		source.close();
+	}
+
+	@Test
+	public void testBatchedDataSink()
+	{
+		GenericDataSink<Integer> data = new GenericDataSink<Integer>();
+		BatchedDataSink sink = new BatchedDataSink(data, 4, 2);
+		assertEquals(4, sink.getBatchSize());
+		assertEquals(2, sink.getMaxPendingBatches());
+
+		for (int i = 0; i < 37; ++i)
+			sink.push(i);
+		sink.flush();
+		for (int i = 0; i < 37; ++i)
+			assertEquals(i, (int)data.getNext());
+		assertFalse(data.hasNext());
+
+		sink.push(37);
+		sink.close();
+		assertEquals(37, (int)data.getNext());
+		try
+		{
+			sink.push(38);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+
+		// Errors in the underlying sink are reported to the producer.
+		sink = new BatchedDataSink(new IDataSink() {
+			@Override
+			public void push(Object value)
+			{
+				throw new UnsupportedOperationException("broken");
+			}
+		}, 2, 1);
+		sink.push(0);
+		sink.push(1);
+		try
+		{
+			sink.flush();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("broken"));
+			assertTrue(ex.getCause() instanceof UnsupportedOperationException);
+		}
+	}
+
+	/**
+	 * Solves a rolled-up graph with the streaming source and sink and compares with the synchronous ones.
+	 */
+	@Test
+	public void testRolledUpGraph()
+	{
+		final int nSteps = 50;
+		double[][] inputs = new double[nSteps][];
+		for (int i = 0; i < nSteps; ++i)
+		{
+			final double p = (i % 7 + 1) / 8.0;
+			inputs[i] = new double[] { p, 1 - p };
+		}
+
+		DoubleArrayDataSink expected = new DoubleArrayDataSink();
+		solveRolledUp(new DoubleArrayDataSource(inputs), expected);
+
+		DoubleArrayDataSink actual = new DoubleArrayDataSink();
+		BatchedDataSink batched = new BatchedDataSink(actual, 4, 2);
+		PrefetchingDataSource prefetching = new PrefetchingDataSource(new DoubleArrayDataSource(inputs), 3);
+		solveRolledUp(prefetching, batched);
+		batched.close();
+
+		double[][] expectedBeliefs = expected.getArray();
+		double[][] actualBeliefs = actual.getArray();
+		assertTrue(expectedBeliefs.length > 0);
+		assertEquals(expectedBeliefs.length, actualBeliefs.length);
+		for (int i = 0; i < expectedBeliefs.length; ++i)
+			assertArrayEquals(expectedBeliefs[i], actualBeliefs[i], 0.0);
+	}
+
+	private static void solveRolledUp(IDataSource source, IDataSink sink)
+	{
+		Bit x = new Bit();
+		Bit y = new Bit();
+		FactorGraph ng = new FactorGraph(x, y);
+		ng.addFactor(new int[][] { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 } }, new double[] { .8, .2, .3, .7 }, x, y);
+
+		BitStream b = new BitStream();
+		b.setDataSource(source);
+		b.setDataSink(sink);
+
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		fg.addRepeatedFactorWithBufferSize(ng, 3, b, b.getSlice(1));
+		fg.solve();
+	}
+
+	private static void sleep(long millis)
+	{
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class CountingDataSource implements IDataSource
+	{
+		private final int _size;
+		private final int _failAt;
+		private volatile int _count = 0;
+
+		private CountingDataSource(int size, int failAt)
+		{
+			_size = size;
+			_failAt = failAt;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return _count < _size;
+		}
+
+		@Override
+		public Object getNext()
+		{
+			if (_count == _failAt)
+				throw new UnsupportedOperationException("broken");
+			return _count++;
+		}
+	}
+}
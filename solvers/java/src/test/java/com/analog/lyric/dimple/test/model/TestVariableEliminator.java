@@ -19,6 +19,9 @@ package com.analog.lyric.dimple.test.model;
 import static com.analog.lyric.util.test.ExceptionTester.*;
 import static org.junit.Assert.*;
 
+import java.util.HashSet;
+import java.util.Random;
+
 import org.junit.Test;
 
 import com.analog.lyric.dimple.exceptions.DimpleException;
@@ -130,7 +133,7 @@ public class TestVariableEliminator
 		
 		testEliminator(model, VariableCost.MIN_NEIGHBORS,
 			expectedStats().addedEdges(0).addedEdgeWeight(0)
-			.maxCliqueSize(2).maxCliqueCardinality(4)
+			.maxCliqueSize(2).maxCliqueCardinality(4).totalCliqueCardinality(4 + 2)
 			.variablesWithDuplicateEdges(2)
 			, a, b);
 	}
@@ -511,10 +514,65 @@ public class TestVariableEliminator
 			.alreadyGoodForFastExactInference());
 	}
 	
+	@Test
+	public void testGenerateInParallel()
+	{
+		final long seed = 42;
+		final Random rand = new Random(seed);
+		final FactorGraph model = new RandomGraphGenerator(rand).maxBranches(2).maxTreeWidth(3).buildGrid(6);
+		final Stats threshold = new Stats().maxCliqueCardinality(0).addedEdgeWeight(0).maxCliqueSize(0).addedEdges(0);
+		
+		// Deterministic search gives same result as sequential search.
+		Ordering expected = VariableEliminator.generate(new VariableEliminator(model, false, null), -1, threshold);
+		Ordering ordering = VariableEliminator.generateInParallel(new VariableEliminator(model, false, null),
+			4, -1, 0, threshold, VariableCost.values());
+		assertValidOrdering(model, ordering);
+		assertEquals(0, ordering.stats.compareTo(expected.stats, threshold));
+		
+		// Randomized search with fixed number of attempts
+		ordering = VariableEliminator.generateInParallel(new VariableEliminator(model, false, rand),
+			4, 20, 0, threshold);
+		assertValidOrdering(model, ordering);
+		
+		// Randomized search limited by time
+		final long start = System.currentTimeMillis();
+		ordering = VariableEliminator.generateInParallel(new VariableEliminator(model, false, rand),
+			3, 0, 50, threshold);
+		assertValidOrdering(model, ordering);
+		assertTrue("seed " + seed, System.currentTimeMillis() - start < 5000);
+		
+		// Tree-structured model stops as soon as any ordering adds no edges.
+		final FactorGraph tree = new RandomGraphGenerator(rand).buildRandomTree(20);
+		ordering = VariableEliminator.generateInParallel(new VariableEliminator(tree, false, rand),
+			2, 0, 10000, threshold);
+		assertValidOrdering(tree, ordering);
+		assertEquals(0, ordering.stats.addedEdges());
+		
+		// Errors from workers are propagated.
+		final FactorGraph nonDiscrete = new FactorGraph();
+		nonDiscrete.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		addClique(nonDiscrete, newVar(2, "a"), new Real());
+		try
+		{
+			VariableEliminator.generateInParallel(new VariableEliminator(nonDiscrete, false, rand),
+				2, 4, 0, threshold);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+	
 	/*----------------
 	 * Helper methods
 	 */
 	
+	private void assertValidOrdering(FactorGraph model, Ordering ordering)
+	{
+		assertEquals(model.getVariableCount(), ordering.variables.size());
+		assertEquals(new HashSet<VariableBase>(model.getVariables()), new HashSet<VariableBase>(ordering.variables));
+	}
+	
 	private void addClique(FactorGraph model, VariableBase ... variables)
 	{
 		model.addFactor(factorFunction, variables);
@@ -646,6 +704,10 @@ public class TestVariableEliminator
 		{
 			assertEquals(expected.maxCliqueCardinality(), actual.maxCliqueCardinality());
 		}
+		if (expected.totalCliqueCardinality() >= 0)
+		{
+			assertEquals(expected.totalCliqueCardinality(), actual.totalCliqueCardinality());
+		}
 	}
 	
 	private Stats expectedStats()
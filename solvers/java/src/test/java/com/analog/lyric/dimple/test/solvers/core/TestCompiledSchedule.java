@@ -0,0 +1,110 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.schedulers.RandomWithoutReplacementScheduler;
+import com.analog.lyric.dimple.schedulers.SequentialScheduler;
+import com.analog.lyric.dimple.solvers.core.CompiledSchedule;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.test.model.RandomGraphTester;
+
+/**
+ * Tests for {@link CompiledSchedule}
+ *
+ * @since 0.06
+ */
+public class TestCompiledSchedule extends RandomGraphTester
+{
+	public TestCompiledSchedule()
+	{
+		super(42, 3, DiscreteDomain.bit(), DiscreteDomain.range(1, 3));
+	}
+
+	@Test
+	public void testSumProduct()
+	{
+		testSolver(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+	}
+
+	@Test
+	public void testMinSum()
+	{
+		testSolver(new com.analog.lyric.dimple.solvers.minsum.Solver());
+	}
+
+	private void testSolver(IFactorGraphFactory<?> solver)
+	{
+		FactorGraph fg = _graphGenerator.buildGrid(4);
+		setRandomInputs(fg);
+
+		SFactorGraphBase sfg = (SFactorGraphBase)fg.setSolverFactory(solver);
+		sfg.setNumIterations(5);
+		assertFalse(sfg.getUseCompiledSchedule());
+
+		fg.solve();
+		double[][] expected = beliefs(fg);
+
+		sfg.setUseCompiledSchedule(true);
+		assertTrue(sfg.getUseCompiledSchedule());
+		fg.solve();
+		double[][] actual = beliefs(fg);
+		assertBeliefsEqual(expected, actual, 0.0);
+
+		// Compiled schedule is cached until the graph changes.
+		CompiledSchedule compiled = sfg.compileSchedule();
+		assertTrue(compiled.isValid());
+		assertSame(compiled, sfg.compileSchedule());
+		int size = compiled.size();
+		assertTrue(size > 0);
+
+		fg.setScheduler(new SequentialScheduler());
+		assertFalse(compiled.isValid());
+		compiled = sfg.compileSchedule();
+		assertTrue(compiled.isValid());
+
+		Discrete extra = new Discrete(DiscreteDomain.bit());
+		Discrete first = fg.getVariables().iterator().next().asDiscreteVariable();
+		fg.addFactor(new int[][] { {0,0}, {1,0} }, new double[] { 2, .5 }, extra, first);
+		assertFalse(compiled.isValid());
+		compiled = sfg.compileSchedule();
+		assertTrue(compiled.isValid());
+		assertTrue(compiled.size() > size);
+
+		// Same results as the uncompiled schedule after the change.
+		fg.solve();
+		actual = beliefs(fg);
+		sfg.setUseCompiledSchedule(false);
+		fg.solve();
+		expected = beliefs(fg);
+		assertBeliefsEqual(expected, actual, 0.0);
+
+		// Dynamic schedules are not compiled.
+		fg.setScheduler(new RandomWithoutReplacementScheduler());
+		assertNull(CompiledSchedule.compile(fg));
+		sfg.setUseCompiledSchedule(true);
+		assertNull(sfg.compileSchedule());
+		fg.solve();
+	}
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.MixedNormal;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.core.ConvergenceMonitor;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.test.model.RandomGraphTester;
+
+/**
+ * Tests for {@link ConvergenceMonitor}
+ *
+ * @since 0.06
+ */
+public class TestConvergenceMonitor extends RandomGraphTester
+{
+	public TestConvergenceMonitor()
+	{
+		super(42, 3, DiscreteDomain.bit(), DiscreteDomain.range(1, 3));
+	}
+
+	@Test
+	public void testSumProduct()
+	{
+		testSolver(_graphGenerator.buildGrid(3), new com.analog.lyric.dimple.solvers.sumproduct.Solver(), false);
+		testSolver(chain(10), new com.analog.lyric.dimple.solvers.sumproduct.Solver(), false);
+	}
+
+	@Test
+	public void testMultithreaded()
+	{
+		testSolver(_graphGenerator.buildGrid(4), new com.analog.lyric.dimple.solvers.sumproduct.Solver(), true);
+		testSolver(chain(10), new com.analog.lyric.dimple.solvers.minsum.Solver(), true);
+	}
+
+	@Test
+	public void testParticleBP()
+	{
+		FactorGraph fg = chain(6);
+		setRandomInputs(fg);
+		Discrete b = new Discrete(0, 1);
+		b.setInput(.4, .6);
+		fg.addFactor(new int[][] { {0,0}, {1,1}, {1,2} }, new double[] { 1, 2, .5 }, b, fg.getVariables().iterator().next().asDiscreteVariable());
+		Real a = new Real();
+		a.setInputObject(new Normal(0, .04));
+		fg.addFactor(new MixedNormal(-1, 1.8, 1, 1.8), a, b);
+
+		com.analog.lyric.dimple.solvers.particleBP.SFactorGraph sfg =
+			fg.setSolverFactory(new com.analog.lyric.dimple.solvers.particleBP.Solver());
+		sfg.setNumParticles(20);
+		sfg.setResamplingUpdatesPerParticle(5);
+
+		// Particles are only resampled before the first iteration, so the messages can converge.
+		sfg.setNumIterationsBetweenResampling(Integer.MAX_VALUE);
+
+		sfg.setNumIterations(7);
+		sfg.setSeed(_seed);
+		fg.solve();
+		assertEquals(7, sfg.getNumIterationsUsed());
+
+		final double tolerance = 1e-6;
+		sfg.setConvergenceTolerance(tolerance);
+		sfg.setNumIterations(1000);
+		sfg.setSeed(_seed);
+		fg.solve();
+
+		final int iterationsUsed = sfg.getNumIterationsUsed();
+		assertTrue("seed " + _seed, iterationsUsed < 1000);
+		assertTrue(iterationsUsed > 1);
+		assertTrue(sfg.getConvergenceResidual() < tolerance);
+		double[][] beliefs = beliefs(fg);
+
+		sfg.setConvergenceTolerance(0);
+		sfg.setNumIterations(iterationsUsed);
+		sfg.setSeed(_seed);
+		fg.solve();
+		assertBeliefsEqual(beliefs(fg), beliefs, 0.0);
+
+		// Resampling every iteration moves the particles, so the beliefs keep changing.
+		sfg.setNumIterationsBetweenResampling(1);
+		sfg.setConvergenceTolerance(tolerance);
+		sfg.setNumIterations(20);
+		fg.solve();
+		assertEquals(20, sfg.getNumIterationsUsed());
+		assertFalse(sfg.getConvergenceMonitor().hasConverged());
+	}
+
+	@Test
+	public void testMinSum()
+	{
+		// Min-sum is not guaranteed to converge on loopy graphs, so only use a tree.
+		testSolver(chain(10), new com.analog.lyric.dimple.solvers.minsum.Solver(), false);
+	}
+
+	@Test
+	public void testTolerance()
+	{
+		ConvergenceMonitor monitor = new ConvergenceMonitor();
+		assertEquals(0.0, monitor.getTolerance(), 0.0);
+		assertFalse(monitor.isEnabled());
+		monitor.setTolerance(1e-3);
+		assertTrue(monitor.isEnabled());
+		assertEquals(1e-3, monitor.getTolerance(), 0.0);
+
+		try
+		{
+			monitor.setTolerance(-1);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+	}
+
+	private void testSolver(FactorGraph fg, IFactorGraphFactory<?> solver, boolean multithreaded)
+	{
+		setRandomInputs(fg);
+
+		SFactorGraphBase sfg = (SFactorGraphBase)fg.setSolverFactory(solver);
+		if (multithreaded)
+		{
+			sfg.useMultithreading(true);
+			sfg.getMultithreadingManager().setNumWorkers(3);
+		}
+
+		// Without a tolerance every iteration is performed.
+		sfg.setNumIterations(7);
+		fg.solve();
+		assertEquals(7, sfg.getNumIterationsUsed());
+		assertEquals(Double.POSITIVE_INFINITY, sfg.getConvergenceResidual(), 0.0);
+
+		final double tolerance = 1e-6;
+		sfg.setConvergenceTolerance(tolerance);
+		assertEquals(tolerance, sfg.getConvergenceTolerance(), 0.0);
+		sfg.setNumIterations(1000);
+		fg.solve();
+
+		final int iterationsUsed = sfg.getNumIterationsUsed();
+		assertTrue("seed " + _seed, iterationsUsed < 1000);
+		assertTrue(iterationsUsed > 0);
+		assertTrue(sfg.getConvergenceResidual() < tolerance);
+		assertTrue(sfg.getConvergenceMonitor().hasConverged());
+
+		double[][] beliefs = beliefs(fg);
+
+		// Running for the same number of iterations without monitoring should produce the same result.
+		sfg.setConvergenceTolerance(0);
+		sfg.setNumIterations(iterationsUsed);
+		fg.solve();
+		double[][] expected = beliefs(fg);
+		assertBeliefsEqual(expected, beliefs, 0.0);
+	}
+
+	private FactorGraph chain(int n)
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[n];
+		for (int i = 0; i < n; ++i)
+			vars[i] = new Discrete(DiscreteDomain.range(1, 3));
+		for (int i = 1; i < n; ++i)
+		{
+			int[][] indices = new int[9][];
+			double[] weights = new double[9];
+			for (int j = 0; j < 9; ++j)
+			{
+				indices[j] = new int[] { j / 3, j % 3 };
+				weights[j] = _rand.nextDouble() + .01;
+			}
+			fg.addFactor(indices, weights, vars[i-1], vars[i]);
+		}
+		return fg;
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.solvers.core.MessageSnapshot;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.test.model.RandomGraphTester;
+
+/**
+ * Tests for {@link MessageSnapshot}
+ *
+ * @since 0.06
+ */
+public class TestMessageSnapshot extends RandomGraphTester
+{
+	public TestMessageSnapshot()
+	{
+		super(42, 3, DiscreteDomain.bit(), DiscreteDomain.range(1, 3));
+	}
+
+	@Test
+	public void testSumProduct()
+	{
+		testSolver(_graphGenerator.buildGrid(4), new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+	}
+
+	@Test
+	public void testMinSum()
+	{
+		testSolver(_graphGenerator.buildGrid(4), new com.analog.lyric.dimple.solvers.minsum.Solver());
+	}
+
+	private void testSolver(FactorGraph fg, IFactorGraphFactory<?> solver)
+	{
+		setRandomInputs(fg);
+
+		SFactorGraphBase sfg = (SFactorGraphBase)fg.setSolverFactory(solver);
+		sfg.setNumIterations(2);
+		fg.solve();
+
+		MessageSnapshot snapshot = sfg.saveMessages();
+		assertSame(sfg, snapshot.getSolverGraph());
+		int expectedSize = 0;
+		for (VariableBase var : fg.getVariables())
+		{
+			expectedSize += 2 * var.getSiblingCount() * var.asDiscreteVariable().getDomain().size();
+		}
+		assertEquals(expectedSize, snapshot.size());
+
+		sfg.iterate(3);
+		double[][] expected = beliefs(fg);
+
+		// Continuing from the restored messages must give exactly the same result.
+		sfg.restoreMessages(snapshot);
+		sfg.iterate(3);
+		double[][] beliefs = beliefs(fg);
+		assertBeliefsEqual(expected, beliefs, 0.0);
+
+		// Saving into an existing snapshot.
+		final double[] values = snapshot.getValues();
+		snapshot.save();
+		assertSame(values, snapshot.getValues());
+		sfg.iterate(1);
+		sfg.restoreMessages(snapshot);
+
+		// Cannot restore into a different graph.
+		FactorGraph fg2 = new FactorGraph();
+		SFactorGraphBase sfg2 = (SFactorGraphBase)fg2.setSolverFactory(solver);
+		try
+		{
+			sfg2.restoreMessages(snapshot);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+		try
+		{
+			new MessageSnapshot(sfg2).restore();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+
+		// Cannot restore after the graph has changed.
+		Discrete extra = new Discrete(DiscreteDomain.bit());
+		Discrete first = fg.getVariables().iterator().next().asDiscreteVariable();
+		fg.addFactor(new int[][] { {0,0}, {1,0} }, new double[] { 2, .5 }, extra, first);
+		try
+		{
+			sfg.restoreMessages(snapshot);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+
+/**
+ * Tests for {@link MultivariateNormalParameters}
+ *
+ * @since 0.06
+ */
+public class TestMultivariateNormalParameters
+{
+	private final long _seed = 42;
+	private final Random _rand = new Random(_seed);
+
+	@Test
+	public void testConversion()
+	{
+		for (int n = 1; n <= 12; ++n)
+		{
+			final double[][] covariance = randomCovariance(n);
+			final double[] mean = new double[n];
+			for (int i = 0; i < n; ++i)
+				mean[i] = _rand.nextGaussian();
+
+			MultivariateNormalParameters parameters = new MultivariateNormalParameters(mean, covariance);
+			assertFalse(parameters.isInInformationForm());
+			assertEquals(n, parameters.getVectorLength());
+
+			final double[][] information = parameters.getInformationMatrix();
+			final double[] informationVector = parameters.getInformationVector();
+			assertTrue(parameters.isInInformationForm());
+			assertIdentity(multiply(covariance, information));
+			for (int i = 0; i < n; ++i)
+			{
+				double sum = 0;
+				for (int j = 0; j < n; ++j)
+					sum += covariance[i][j] * informationVector[j];
+				assertEquals(mean[i], sum, 1e-8);
+			}
+
+			// Converting back recovers the original parameters.
+			assertArrayEquals(mean, parameters.getMean(), 1e-8);
+			final double[][] covariance2 = parameters.getCovariance();
+			for (int i = 0; i < n; ++i)
+				assertArrayEquals(covariance[i], covariance2[i], 1e-8);
+
+			// The unsafe accessors do not copy when the form is unchanged.
+			assertSame(parameters._getCovarianceUnsafe(), parameters._getCovarianceUnsafe());
+			assertSame(parameters._getMeanUnsafe(), parameters._getMeanUnsafe());
+			assertNotSame(parameters._getCovarianceUnsafe(), parameters.getCovariance());
+
+			// Setting parameters of the same dimension reuses the arrays.
+			final double[][] matrix = parameters._getCovarianceUnsafe();
+			parameters.setInformation(informationVector, information);
+			assertSame(matrix, parameters._getInformationMatrixUnsafe());
+			assertArrayEquals(informationVector, parameters.getInformationVector(), 0.0);
+		}
+	}
+
+	@Test
+	public void testSingular()
+	{
+		// Zero covariance is not positive definite and is regularized to 1/eps precision.
+		MultivariateNormalParameters parameters = new MultivariateNormalParameters(new double[] { 1, 2 }, new double[2][2]);
+		double[][] information = parameters.getInformationMatrix();
+		assertEquals(1e7, information[0][0], 1e-3);
+		assertEquals(1e7, information[1][1], 1e-3);
+		assertEquals(0, information[0][1], 1e-3);
+		assertArrayEquals(new double[] { 1e7, 2e7 }, parameters.getInformationVector(), 1e-2);
+
+		// Infinite variances become zero precision.
+		double[][] covariance = new double[][] { { Double.POSITIVE_INFINITY, 0 }, { 0, Double.POSITIVE_INFINITY } };
+		parameters.setMeanAndCovariance(new double[] { 1, 2 }, covariance);
+		information = parameters.getInformationMatrix();
+		assertArrayEquals(new double[2], information[0], 0.0);
+		assertArrayEquals(new double[2], information[1], 0.0);
+		assertArrayEquals(new double[2], parameters.getInformationVector(), 0.0);
+	}
+
+	private double[][] randomCovariance(int n)
+	{
+		final double[][] B = new double[n][n];
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				B[i][j] = _rand.nextGaussian();
+
+		final double[][] covariance = new double[n][n];
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				double sum = i == j ? 1 : 0;
+				for (int k = 0; k < n; ++k)
+					sum += B[i][k] * B[j][k];
+				covariance[i][j] = sum;
+			}
+		}
+		return covariance;
+	}
+
+	private static double[][] multiply(double[][] A, double[][] B)
+	{
+		final int n = A.length;
+		final double[][] C = new double[n][n];
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				for (int k = 0; k < n; ++k)
+					C[i][j] += A[i][k] * B[k][j];
+		return C;
+	}
+
+	private void assertIdentity(double[][] A)
+	{
+		for (int i = 0; i < A.length; ++i)
+			for (int j = 0; j < A.length; ++j)
+				assertEquals("seed " + _seed, i == j ? 1 : 0, A[i][j], 1e-8);
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingMode;
+import com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm.PersistentPhaseMultithreadingAlgorithm;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.test.model.RandomGraphTester;
+
+/**
+ * Tests for {@link PersistentPhaseMultithreadingAlgorithm}
+ *
+ * @since 0.06
+ */
+public class TestPersistentPhaseMultithreading extends RandomGraphTester
+{
+	public TestPersistentPhaseMultithreading()
+	{
+		super(42, 3, DiscreteDomain.bit(), DiscreteDomain.range(1, 3), DiscreteDomain.range(1, 5));
+	}
+
+	@Test
+	public void testSumProduct()
+	{
+		testSolver(_graphGenerator.buildGrid(6), new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		testSolver(_graphGenerator.buildRandomTree(50), new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+	}
+
+	@Test
+	public void testMinSum()
+	{
+		testSolver(_graphGenerator.buildGrid(5), new com.analog.lyric.dimple.solvers.minsum.Solver());
+	}
+
+	private void testSolver(FactorGraph fg, IFactorGraphFactory<?> solver)
+	{
+		setRandomInputs(fg);
+
+		SFactorGraphBase sfg = (SFactorGraphBase)fg.setSolverFactory(solver);
+		sfg.setNumIterations(5);
+		sfg.useMultithreading(true);
+		MultiThreadingManager manager = sfg.getMultithreadingManager();
+
+		// The entries within a phase are independent, so the order in which they are updated
+		// does not matter and both phase algorithms must produce exactly the same result.
+		manager.setMode(MultithreadingMode.Phase);
+		manager.setNumWorkers(3);
+		fg.solve();
+		double[][] expected = beliefs(fg);
+
+		manager.setMode(MultithreadingMode.PersistentPhase);
+		for (int numWorkers : new int[] { 3, 1, 4, 3 })
+		{
+			manager.setNumWorkers(numWorkers);
+			fg.solve();
+			assertBeliefsEqual(expected, beliefs(fg), 0.0);
+		}
+
+		// Changing the graph must repartition the phases.
+		Discrete extra = new Discrete(DiscreteDomain.bit());
+		extra.setInput(.2, .8);
+		Discrete first = fg.getVariables().iterator().next().asDiscreteVariable();
+		fg.addFactor(new int[][] { {0,0}, {1,0} }, new double[] { 2, .5 }, extra, first);
+		manager.setMode(MultithreadingMode.Phase);
+		fg.solve();
+		expected = beliefs(fg);
+		manager.setMode(MultithreadingMode.PersistentPhase);
+		fg.solve();
+		assertBeliefsEqual(expected, beliefs(fg), 0.0);
+	}
+}
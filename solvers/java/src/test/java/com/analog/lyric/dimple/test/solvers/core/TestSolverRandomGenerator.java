@@ -0,0 +1,146 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
+import com.analog.lyric.dimple.solvers.core.SplittableRandomGenerator;
+
+/**
+ * Tests for {@link SolverRandomGenerator} and {@link SplittableRandomGenerator}
+ *
+ * @since 0.06
+ */
+public class TestSolverRandomGenerator
+{
+	@Test
+	public void testSplittable()
+	{
+		SplittableRandomGenerator rand1 = new SplittableRandomGenerator(42);
+		SplittableRandomGenerator rand2 = new SplittableRandomGenerator(42);
+		for (int i = 0; i < 100; ++i)
+		{
+			assertEquals(rand1.nextLong(), rand2.nextLong());
+			double d = rand1.nextDouble();
+			assertEquals(d, rand2.nextDouble(), 0.0);
+			assertTrue(d >= 0 && d < 1);
+			int n = rand1.nextInt(7);
+			assertEquals(n, rand2.nextInt(7));
+			assertTrue(n >= 0 && n < 7);
+			assertEquals(rand1.nextGaussian(), rand2.nextGaussian(), 0.0);
+		}
+
+		// Splits are deterministic and differ from the parent.
+		SplittableRandomGenerator split1 = rand1.split();
+		SplittableRandomGenerator split2 = rand2.split();
+		assertEquals(split1.nextLong(), split2.nextLong());
+		assertNotEquals(rand1.nextLong(), split1.nextLong());
+
+		// Reseeding restarts the sequence and drops any cached gaussian.
+		rand1.setSeed(23);
+		rand1.nextGaussian();
+		rand1.setSeed(23);
+		rand2.setSeed(23);
+		assertEquals(rand1.nextGaussian(), rand2.nextGaussian(), 0.0);
+		assertEquals(rand1.nextGaussian(), rand2.nextGaussian(), 0.0);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testPerThread() throws InterruptedException
+	{
+		SolverRandomGenerator.setSeed(1234);
+		final double[] expected = new double[10];
+		for (int i = 0; i < expected.length; ++i)
+			expected[i] = SolverRandomGenerator.rand().nextDouble();
+
+		// Seeding reproduces the same sequence from the shared generator.
+		SolverRandomGenerator.setSeed(1234);
+		for (int i = 0; i < expected.length; ++i)
+			assertEquals(expected[i], SolverRandomGenerator.rand().nextDouble(), 0.0);
+
+		// Other threads have their own generators, which are reseeded from a sequence restarted by setSeed,
+		// and sampling with a split generator in another thread does not disturb this thread's sequence.
+		SolverRandomGenerator.setSeed(1234);
+		final SolverRandomGenerator mine = SolverRandomGenerator.current();
+		final SolverRandomGenerator split = mine.split();
+		final SolverRandomGenerator[] theirs = new SolverRandomGenerator[3];
+		final double[] theirValues = new double[2];
+		Runnable runnable = new Runnable() {
+			@Override
+			public void run()
+			{
+				theirs[0] = SolverRandomGenerator.current();
+				theirValues[0] = SolverRandomGenerator.rand().nextDouble();
+				theirs[1] = SolverRandomGenerator.setCurrent(split);
+				theirs[2] = SolverRandomGenerator.current();
+				for (int i = 0; i < 1000; ++i)
+					SolverRandomGenerator.rand().nextDouble();
+			}
+		};
+		Thread thread = new Thread(runnable);
+		thread.start();
+		thread.join();
+
+		assertNotSame(mine, theirs[0]);
+		assertSame(theirs[0], theirs[1]);
+		assertSame(split, theirs[2]);
+		assertSame(mine, SolverRandomGenerator.current());
+		SolverRandomGenerator.setSeed(1234);
+		for (int i = 0; i < expected.length; ++i)
+			assertEquals(expected[i], SolverRandomGenerator.rand().nextDouble(), 0.0);
+		
+		// The first thread to draw a seed after setSeed gets the same one.
+		SolverRandomGenerator.setSeed(1234);
+		theirValues[1] = theirValues[0];
+		thread = new Thread(runnable);
+		thread.start();
+		thread.join();
+		assertEquals(theirValues[1], theirValues[0], 0.0);
+		
+		// Deprecated aliases use the current thread's generator.
+		SolverRandomGenerator.setSeed(1234);
+		for (int i = 0; i < expected.length; ++i)
+			assertEquals(expected[i], SolverRandomGenerator.rand.nextDouble(), 0.0);
+		SolverRandomGenerator.setSeed(1234);
+		final double gamma = SolverRandomGenerator.randGamma().nextDouble(2, 1);
+		final double beta = SolverRandomGenerator.randBeta().nextDouble(2, 3);
+		SolverRandomGenerator.setSeed(1234);
+		SolverRandomGenerator.randGamma.setState(2, 1);
+		assertEquals(gamma, SolverRandomGenerator.randGamma.nextDouble(), 0.0);
+		assertEquals(beta, SolverRandomGenerator.randBeta.nextDouble(2, 3), 0.0);
+
+		// Splits from the same seed are repeatable.
+		SolverRandomGenerator.setSeed(1234);
+		SolverRandomGenerator split1 = SolverRandomGenerator.current().split();
+		SolverRandomGenerator.setSeed(1234);
+		SolverRandomGenerator split2 = SolverRandomGenerator.current().split();
+		assertEquals(split1.getRandom().nextLong(), split2.getRandom().nextLong());
+		assertEquals(split1.getGamma().nextDouble(2, 1), split2.getGamma().nextDouble(2, 1), 0.0);
+
+		// setCurrent replaces and restores the thread's generator.
+		final SolverRandomGenerator current = SolverRandomGenerator.current();
+		assertSame(current, SolverRandomGenerator.setCurrent(split));
+		assertSame(split.getRandom(), SolverRandomGenerator.rand());
+		assertSame(split.getBeta(), SolverRandomGenerator.randBeta());
+		assertSame(split, SolverRandomGenerator.setCurrent(current));
+		assertSame(current.getRandom(), SolverRandomGenerator.rand());
+	}
+}
@@ -16,10 +16,12 @@
 
 package com.analog.lyric.dimple.test.solvers.gibbs;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import com.analog.lyric.collect.PrimitiveIterator;
+import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.factors.Factor;
@@ -111,6 +113,72 @@ public class GibbsTest
 		assertTrue(nearlyEquals(Math.exp(-totalPotential),0.6));
 	}
 	
+	@Test
+	public void thinningTest()
+	{
+		final int numSamples = 300;
+		final int thinning = 3;
+		
+		FactorGraph graph = new FactorGraph();
+		SFactorGraph solver = graph.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		Discrete a = new Discrete(1,0);
+		Discrete b = new Discrete(1,0);
+		graph.addFactor(new PA(), a);
+		graph.addFactor(new PBA(), b, a);
+		
+		solver.setNumSamples(numSamples);
+		solver.saveAllSamples();
+		solver.saveAllScores();
+		assertEquals(1, solver.getSampleThinning());
+		solver.setSeed(1);
+		graph.solve();
+		
+		SDiscreteVariable sb = (SDiscreteVariable)b.getSolver();
+		final int[] allSamples = sb.getAllSampleIndices();
+		final double[] allScores = solver.getAllScores();
+		final double[] belief = b.getBelief().clone();
+		assertEquals(numSamples, allSamples.length);
+		assertEquals(numSamples, sb.getSampleCount());
+		assertEquals(numSamples, allScores.length);
+		
+		// Streaming accessors visit the same values
+		PrimitiveIterator.OfInt sampleIter = sb.getSampleIndexIterator();
+		PrimitiveIterator.OfDouble scoreIter = solver.getScoreIterator();
+		for (int i = 0; i < numSamples; ++i)
+		{
+			assertEquals(allSamples[i], sampleIter.nextInt());
+			assertEquals(allScores[i], scoreIter.nextDouble(), 0.0);
+		}
+		assertFalse(sampleIter.hasNext());
+		assertFalse(scoreIter.hasNext());
+		
+		// Only every thinning'th sample is saved, but beliefs are unchanged
+		solver.setSampleThinning(thinning);
+		assertEquals(thinning, solver.getSampleThinning());
+		solver.setSeed(1);
+		graph.solve();
+		
+		final int[] thinnedSamples = sb.getAllSampleIndices();
+		final double[] thinnedScores = solver.getAllScores();
+		assertEquals(numSamples / thinning, thinnedSamples.length);
+		assertEquals(numSamples / thinning, thinnedScores.length);
+		for (int i = 0; i < thinnedSamples.length; ++i)
+		{
+			assertEquals(allSamples[(i + 1) * thinning - 1], thinnedSamples[i]);
+			assertEquals(allScores[(i + 1) * thinning - 1], thinnedScores[i], 0.0);
+		}
+		assertArrayEquals(belief, b.getBelief(), 0.0);
+		
+		try
+		{
+			solver.setSampleThinning(0);
+			fail("expected exception");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+	
 	public static class PA extends FactorFunction 
 	{
 		public PA() {super("PA");}
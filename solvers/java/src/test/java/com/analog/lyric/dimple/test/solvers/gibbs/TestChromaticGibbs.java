@@ -0,0 +1,203 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static org.junit.Assert.*;
+
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.collect.ReleasableIterator;
+import com.analog.lyric.dimple.factorfunctions.Xor;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsVariableColoring;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverNodeGibbs;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverVariableGibbs;
+import com.analog.lyric.dimple.solvers.gibbs.SFactorGraph;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for chromatic Gibbs sampling using {@link GibbsVariableColoring}.
+ *
+ * @since 0.06
+ */
+public class TestChromaticGibbs
+{
+	private final long _seed = 42;
+	private final Random _rand = new Random(_seed);
+
+	@Test
+	public void testColoring()
+	{
+		RandomGraphGenerator generator = new RandomGraphGenerator(_rand)
+			.domains(DiscreteDomain.bit(), DiscreteDomain.range(1, 3))
+			.maxBranches(2)
+			.maxTreeWidth(3);
+		FactorGraph fg = generator.buildGrid(4);
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		SFactorGraph sfg = (SFactorGraph)fg.getSolver();
+
+		GibbsVariableColoring coloring = sfg.getVariableColoring();
+		assertNotNull(coloring);
+		assertSame(coloring, sfg.getVariableColoring());
+		assertValidColoring(fg, coloring);
+
+		// Adding a variable computes a new coloring that includes it.
+		fg.addVariables(new Bit());
+		coloring = sfg.getVariableColoring();
+		assertNotNull(coloring);
+		assertValidColoring(fg, coloring);
+
+		// Chains only need two colors.
+		fg = chain(20);
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		coloring = ((SFactorGraph)fg.getSolver()).getVariableColoring();
+		assertValidColoring(fg, coloring);
+		assertEquals(2, coloring.getColorCount());
+	}
+
+	@Test
+	public void testDeterministicFallback()
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		Bit a = new Bit(), b = new Bit(), c = new Bit();
+		a.setInput(.2);
+		b.setInput(.7);
+		fg.addFactor(new Xor(), c, a, b);
+
+		SFactorGraph sfg = (SFactorGraph)fg.getSolver();
+		assertNull(sfg.getVariableColoring());
+
+		// Still solves sequentially.
+		sfg.useMultithreading(true);
+		sfg.setNumSamples(100);
+		fg.solve();
+	}
+
+	@Test
+	public void testSampling()
+	{
+		final int n = 200;
+		FactorGraph fg = chain(n);
+
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		fg.solve();
+		double[][] expected = new double[n][];
+		int i = 0;
+		for (VariableBase var : fg.getVariables())
+			expected[i++] = ((double[])var.getBeliefObject()).clone();
+
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		SFactorGraph sfg = (SFactorGraph)fg.getSolver();
+		sfg.useMultithreading(true);
+		sfg.getMultithreadingManager().setNumWorkers(4);
+		sfg.setSeed(_seed);
+		sfg.setNumSamples(4000);
+		sfg.setBurnInScans(10);
+		fg.solve();
+
+		double[][] beliefs = new double[n][];
+		i = 0;
+		for (VariableBase var : fg.getVariables())
+		{
+			beliefs[i] = ((double[])var.getBeliefObject()).clone();
+			assertArrayEquals("seed " + _seed, expected[i], beliefs[i], .06);
+			++i;
+		}
+
+		// Results are repeatable with the same seed and number of workers.
+		sfg.setSeed(_seed);
+		fg.solve();
+		i = 0;
+		for (VariableBase var : fg.getVariables())
+			assertArrayEquals(beliefs[i++], (double[])var.getBeliefObject(), 0.0);
+	}
+
+	private FactorGraph chain(int n)
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[n];
+		for (int i = 0; i < n; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(1, 3));
+			vars[i].setInput(_rand.nextDouble() + .1, _rand.nextDouble() + .1, _rand.nextDouble() + .1);
+		}
+		for (int i = 1; i < n; ++i)
+		{
+			int[][] indices = new int[9][];
+			double[] weights = new double[9];
+			for (int j = 0; j < 9; ++j)
+			{
+				indices[j] = new int[] { j / 3, j % 3 };
+				weights[j] = _rand.nextDouble() + .1;
+			}
+			fg.addFactor(indices, weights, vars[i-1], vars[i]);
+		}
+		return fg;
+	}
+
+	private static void assertValidColoring(FactorGraph fg, GibbsVariableColoring coloring)
+	{
+		IdentityHashMap<ISolverVariableGibbs,Integer> colorOf = new IdentityHashMap<ISolverVariableGibbs,Integer>();
+		for (int color = 0, nColors = coloring.getColorCount(); color < nColors; ++color)
+		{
+			assertTrue(coloring.getColorSize(color) > 0);
+			for (int i = 0, size = coloring.getColorSize(color); i < size; ++i)
+				assertNull(colorOf.put(coloring.getVariable(color, i), color));
+		}
+		assertEquals(fg.getVariables().size(), coloring.getVariableCount());
+		assertEquals(coloring.getVariableCount(), colorOf.size());
+
+		for (Factor factor : fg.getNonGraphFactors())
+		{
+			boolean[] seen = new boolean[coloring.getColorCount()];
+			for (int i = 0, n = factor.getSiblingCount(); i < n; ++i)
+			{
+				int color = colorOf.get(factor.getSibling(i).getSolver());
+				assertFalse(seen[color]);
+				seen[color] = true;
+			}
+		}
+
+		// Variables of the same color have no sample score nodes in common.
+		for (int color = 0, nColors = coloring.getColorCount(); color < nColors; ++color)
+		{
+			IdentityHashMap<ISolverNodeGibbs,ISolverVariableGibbs> scoredBy = new IdentityHashMap<ISolverNodeGibbs,ISolverVariableGibbs>();
+			for (int i = 0, size = coloring.getColorSize(color); i < size; ++i)
+			{
+				ISolverVariableGibbs svar = coloring.getVariable(color, i);
+				assertNull(scoredBy.put(svar, svar));
+				ReleasableIterator<ISolverNodeGibbs> nodes = svar.getSampleScoreNodes();
+				while (nodes.hasNext())
+				{
+					ISolverNodeGibbs node = nodes.next();
+					ISolverVariableGibbs other = scoredBy.put(node, svar);
+					assertTrue(other == null || other == svar);
+				}
+				nodes.release();
+			}
+		}
+	}
+}
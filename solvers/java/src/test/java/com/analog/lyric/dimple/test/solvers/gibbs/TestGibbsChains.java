@@ -0,0 +1,148 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsChainDiagnostics;
+import com.analog.lyric.dimple.solvers.gibbs.SDiscreteVariable;
+import com.analog.lyric.dimple.solvers.gibbs.SFactorGraph;
+
+/**
+ * Tests for running multiple Gibbs chains with {@link SFactorGraph#setNumChains(int)}.
+ *
+ * @since 0.06
+ */
+public class TestGibbsChains
+{
+	private final long _seed = 42;
+	private final Random _rand = new Random(_seed);
+
+	@Test
+	public void testChains()
+	{
+		final int n = 10;
+		final int nChains = 4;
+		final int nSamples = 2000;
+
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[n];
+		for (int i = 0; i < n; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(1, 3));
+			vars[i].setInput(_rand.nextDouble() + .1, _rand.nextDouble() + .1, _rand.nextDouble() + .1);
+		}
+		for (int i = 1; i < n; ++i)
+		{
+			int[][] indices = new int[9][];
+			double[] weights = new double[9];
+			for (int j = 0; j < 9; ++j)
+			{
+				indices[j] = new int[] { j / 3, j % 3 };
+				weights[j] = _rand.nextDouble() + .1;
+			}
+			fg.addFactor(indices, weights, vars[i-1], vars[i]);
+		}
+
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		fg.solve();
+		double[][] expected = new double[n][];
+		for (int i = 0; i < n; ++i)
+			expected[i] = vars[i].getBelief().clone();
+
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		assertEquals(1, sfg.getNumChains());
+		assertNull(sfg.getChainDiagnostics());
+
+		sfg.setNumChains(nChains);
+		assertEquals(nChains, sfg.getNumChains());
+		sfg.setNumSamples(nSamples);
+		sfg.setBurnInScans(10);
+		sfg.saveAllSamples();
+		sfg.saveAllScores();
+		sfg.setSeed(_seed);
+		fg.solve();
+
+		double[][] beliefs = new double[n][];
+		for (int i = 0; i < n; ++i)
+		{
+			beliefs[i] = vars[i].getBelief().clone();
+			assertArrayEquals("seed " + _seed, expected[i], beliefs[i], .05);
+			SDiscreteVariable svar = (SDiscreteVariable)vars[i].getSolver();
+			assertEquals(nChains * nSamples, svar.getAllSampleIndices().length);
+		}
+		assertEquals(nChains * nSamples, sfg.getAllScores().length);
+
+		GibbsChainDiagnostics diagnostics = sfg.getChainDiagnostics();
+		assertNotNull(diagnostics);
+		assertEquals(nChains, diagnostics.getChainCount());
+		double totalEss = 0;
+		for (int chain = 0; chain < nChains; ++chain)
+		{
+			assertEquals(nSamples, diagnostics.getChainScores(chain).length);
+			double ess = diagnostics.getEffectiveSampleSize(chain);
+			assertTrue(ess > 0);
+			totalEss += ess;
+		}
+		assertEquals(totalEss, diagnostics.getEffectiveSampleSize(), 1e-9);
+		assertEquals("seed " + _seed, 1.0, diagnostics.getPotentialScaleReduction(), .1);
+
+		// Results are repeatable.
+		sfg.setSeed(_seed);
+		fg.solve();
+		for (int i = 0; i < n; ++i)
+			assertArrayEquals(beliefs[i], vars[i].getBelief(), 0.0);
+	}
+
+	@Test
+	public void testDiagnostics()
+	{
+		final int n = 1000;
+		double[][] chains = new double[3][n];
+		for (double[] chain : chains)
+			for (int i = 0; i < n; ++i)
+				chain[i] = _rand.nextGaussian();
+
+		// Independent samples from the same distribution.
+		assertEquals(1.0, GibbsChainDiagnostics.potentialScaleReduction(chains), .05);
+		for (double[] chain : chains)
+			assertEquals(n, GibbsChainDiagnostics.effectiveSampleSize(chain), n * .4);
+
+		// Chains that have not mixed.
+		for (int i = 0; i < n; ++i)
+			chains[2][i] += 5;
+		assertTrue(GibbsChainDiagnostics.potentialScaleReduction(chains) > 2);
+
+		// Highly correlated samples.
+		double[] correlated = new double[n];
+		for (int i = 1; i < n; ++i)
+			correlated[i] = .95 * correlated[i-1] + _rand.nextGaussian();
+		assertTrue(GibbsChainDiagnostics.effectiveSampleSize(correlated) < n / 5);
+
+		// Degenerate cases
+		assertTrue(Double.isNaN(GibbsChainDiagnostics.potentialScaleReduction(new double[][] { chains[0] })));
+		assertEquals(1.0, GibbsChainDiagnostics.potentialScaleReduction(new double[2][n]), 0.0);
+		assertEquals(n, GibbsChainDiagnostics.effectiveSampleSize(new double[n]), 0.0);
+	}
+}
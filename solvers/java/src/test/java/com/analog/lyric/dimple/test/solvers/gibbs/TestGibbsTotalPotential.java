@@ -0,0 +1,152 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Xor;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.gibbs.SFactorGraph;
+import com.analog.lyric.dimple.solvers.gibbs.SRealVariable;
+
+/**
+ * Tests for incremental tracking of the total potential by the Gibbs solver.
+ *
+ * @see SFactorGraph#setPotentialRefreshInterval(int)
+ * @since 0.06
+ */
+public class TestGibbsTotalPotential
+{
+	private final long _seed = 42;
+	private final Random _rand = new Random(_seed);
+
+	@Test
+	public void testMixedGraph()
+	{
+		FactorGraph fg = new FactorGraph();
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+
+		// Discrete chain
+		Discrete[] vars = chain(fg, 10);
+
+		// Deterministic dependents
+		Bit a = new Bit(), b = new Bit(), c = new Bit();
+		a.setInput(.3);
+		b.setInput(.6);
+		fg.addFactor(new Xor(), c, a, b);
+		fg.addFactor(new int[][] { {0,0}, {1,1}, {0,1} }, new double[] { 2, 1, .5 }, c, vars[0]);
+
+		// Real variables using slice and MH samplers
+		Real x = new Real(), y = new Real();
+		x.setInputObject(new Normal(1, 2));
+		y.setInputObject(new Normal(-1, .5));
+		fg.addFactor(new Normal(0, 1), x, y);
+		((SRealVariable)y.getSolver()).setSampler("MHSampler");
+
+		assertEquals(SFactorGraph.DEFAULT_POTENTIAL_REFRESH_INTERVAL, sfg.getPotentialRefreshInterval());
+		assertTrackedScores(sfg, 500);
+	}
+
+	@Test
+	public void testChromatic()
+	{
+		FactorGraph fg = new FactorGraph();
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		chain(fg, 200);
+		sfg.useMultithreading(true);
+		sfg.getMultithreadingManager().setNumWorkers(4);
+		assertNotNull(sfg.getVariableColoring());
+		assertTrackedScores(sfg, 200);
+	}
+
+	@Test
+	public void testRefreshInterval()
+	{
+		SFactorGraph sfg = new FactorGraph().setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		sfg.setPotentialRefreshInterval(7);
+		assertEquals(7, sfg.getPotentialRefreshInterval());
+		try
+		{
+			sfg.setPotentialRefreshInterval(0);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+
+	/**
+	 * Solves graph with incremental tracking of the total potential and checks that the saved
+	 * scores match those computed from scratch on every sample.
+	 */
+	private void assertTrackedScores(SFactorGraph sfg, int nSamples)
+	{
+		FactorGraph fg = sfg.getModelObject();
+		sfg.setNumSamples(nSamples);
+		sfg.setBurnInScans(5);
+		sfg.saveAllScores();
+
+		sfg.setPotentialRefreshInterval(1);
+		sfg.setSeed(_seed);
+		fg.solve();
+		final double[] expected = sfg.getAllScores();
+		assertEquals(nSamples, expected.length);
+
+		sfg.setPotentialRefreshInterval(Integer.MAX_VALUE);
+		sfg.setSeed(_seed);
+		fg.solve();
+		final double[] scores = sfg.getAllScores();
+		assertEquals(nSamples, scores.length);
+		for (int i = 0; i < nSamples; ++i)
+		{
+			assertEquals("seed " + _seed, expected[i], scores[i], 1e-8 * Math.max(1, Math.abs(expected[i])));
+		}
+		assertEquals(sfg.getTotalPotential(), scores[nSamples - 1], 1e-8 * Math.max(1, Math.abs(scores[nSamples - 1])));
+	}
+
+	private Discrete[] chain(FactorGraph fg, int n)
+	{
+		Discrete[] vars = new Discrete[n];
+		for (int i = 0; i < n; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(1, 3));
+			vars[i].setInput(_rand.nextDouble() + .1, _rand.nextDouble() + .1, _rand.nextDouble() + .1);
+		}
+		for (int i = 1; i < n; ++i)
+		{
+			int[][] indices = new int[9][];
+			double[] weights = new double[9];
+			for (int j = 0; j < 9; ++j)
+			{
+				indices[j] = new int[] { j / 3, j % 3 };
+				weights[j] = _rand.nextDouble() + .1;
+			}
+			fg.addFactor(indices, weights, vars[i-1], vars[i]);
+		}
+		return vars;
+	}
+}
@@ -95,6 +95,86 @@ public class TestJunctionTree
 		
 	}
 	
+	@Test
+	public void testIncrementalUpdates()
+	{
+		RandomGraphGenerator gen = _graphGenerator.maxBranches(2).maxTreeWidth(3);
+		for (boolean useMap : new boolean[] { false, true })
+		{
+			testIncrementalUpdates(gen.buildGrid(4), useMap, false);
+			testIncrementalUpdates(gen.buildRandomGraph(_rand.nextInt(200) + 10), useMap, false);
+			testIncrementalUpdates(gen.buildRandomGraph(_rand.nextInt(200) + 10), useMap, true);
+			// A ladder's junction tree is a long chain of cliques, so updates must propagate many hops.
+			testIncrementalUpdates(gen.buildGrid(2, 12), useMap, false);
+		}
+	}
+	
+	private static JunctionTreeSolverGraphBase<?> setJunctionTreeSolver(FactorGraph model, boolean useMap)
+	{
+		if (useMap)
+		{
+			return model.setSolverFactory(new JunctionTreeMAPSolver());
+		}
+		else
+		{
+			return model.setSolverFactory(new JunctionTreeSolver());
+		}
+	}
+	
+	private void testIncrementalUpdates(FactorGraph model, boolean useMap, boolean useConditioning)
+	{
+		JunctionTreeSolverGraphBase<?> jtgraph = setJunctionTreeSolver(model, useMap);
+		jtgraph.useConditioning(useConditioning);
+		jtgraph.getTransformer().random(_rand);
+		assertFalse(jtgraph.useIncrementalUpdates());
+		assertSame(jtgraph, jtgraph.useIncrementalUpdates(true));
+		assertTrue(jtgraph.useIncrementalUpdates());
+		model.solve();
+		
+		final VariableList variables = model.getVariables();
+		for (int round = 0; round < 5; ++round)
+		{
+			// Change evidence on a couple of variables
+			for (int i = 0; i < 2; ++i)
+			{
+				final Discrete variable = variables.getByIndex(_rand.nextInt(variables.size())).asDiscreteVariable();
+				final int size = variable.getDomain().size();
+				if (_rand.nextInt(3) == 0)
+				{
+					variable.setFixedValueIndex(_rand.nextInt(size));
+				}
+				else
+				{
+					final double[] input = new double[size];
+					for (int j = 0; j < size; ++j)
+					{
+						input[j] = _rand.nextDouble() + .01;
+					}
+					variable.setInput(input);
+				}
+			}
+			model.solve();
+			
+			final double[][] beliefs = new double[variables.size()][];
+			for (int i = beliefs.length; --i>=0;)
+			{
+				beliefs[i] = ((double[])variables.getByIndex(i).getBeliefObject()).clone();
+			}
+			final double score = model.getScore();
+			
+			// Compare against full solve.
+			jtgraph.useIncrementalUpdates(false);
+			model.solve();
+			for (int i = beliefs.length; --i>=0;)
+			{
+				assertArrayEquals((double[])variables.getByIndex(i).getBeliefObject(), beliefs[i], 1e-10);
+			}
+			assertEquals(model.getScore(), score, 1e-10);
+			jtgraph.useIncrementalUpdates(true);
+			model.solve();
+		}
+	}
+	
 	private void testGraph(FactorGraph model)
 	{
 		try
@@ -137,8 +217,7 @@ public class TestJunctionTree
 	
 	private void testGraphImpl(FactorGraph model, boolean useMap, boolean useConditioning)
 	{
-		JunctionTreeSolverGraphBase<?> jtgraph =
-			model.setSolverFactory(useMap ? new JunctionTreeMAPSolver() : new JunctionTreeSolver());
+		JunctionTreeSolverGraphBase<?> jtgraph = setJunctionTreeSolver(model, useMap);
 		jtgraph.useConditioning(useConditioning);
 		jtgraph.getTransformer().random(_rand); // set random generator so we can reproduce failures
 		model.solve();
@@ -0,0 +1,186 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.minsum;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.minsum.PrunedTableFactorEngine;
+import com.analog.lyric.dimple.solvers.minsum.SFactorGraph;
+import com.analog.lyric.dimple.solvers.minsum.STableFactor;
+import com.analog.lyric.dimple.test.model.RandomGraphTester;
+
+/**
+ * Tests for {@link PrunedTableFactorEngine}
+ *
+ * @since 0.06
+ */
+public class TestPrunedTableFactorEngine extends RandomGraphTester
+{
+	public TestPrunedTableFactorEngine()
+	{
+		super(42, 4, DiscreteDomain.bit(), DiscreteDomain.range(1, 3), DiscreteDomain.range(1,5));
+	}
+
+	@Test
+	public void testDenseTables()
+	{
+		for (int i = 0; i < 10; ++i)
+		{
+			testGraph(_graphGenerator.buildRandomGraph(20 + _rand.nextInt(30)));
+		}
+		testGraph(_graphGenerator.buildGrid(4));
+	}
+
+	@Test
+	public void testSparseTables()
+	{
+		testGraph(buildSparseGraph());
+	}
+
+	@Test
+	public void testKBest()
+	{
+		FactorGraph fg = buildSparseGraph();
+		setRandomInputs(fg);
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.minsum.Solver());
+		sfg.setNumIterations(3);
+		fg.solve();
+
+		for (int k = 1; k <= 4; ++k)
+		{
+			for (Factor factor : fg.getFactors())
+			{
+				STableFactor sfactor = (STableFactor)factor.getSolver();
+				sfactor.setK(k);
+				for (int port = 0, n = factor.getSiblingCount(); port < n; ++port)
+				{
+					// Uses KBestFactorTableEngine
+					sfactor.usePrunedTableFactorEngine(false);
+					sfactor.updateEdge(port);
+					double[] expected = ((double[])sfactor.getOutputMsg(port)).clone();
+
+					sfactor.usePrunedTableFactorEngine(true);
+					sfactor.updateEdge(port);
+					assertArrayEquals("seed " + _seed, expected, (double[])sfactor.getOutputMsg(port), 1e-10);
+				}
+				sfactor.setK(Integer.MAX_VALUE);
+			}
+		}
+	}
+
+	private void testGraph(FactorGraph fg)
+	{
+		setRandomInputs(fg);
+
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.minsum.Solver());
+		sfg.setNumIterations(5);
+
+		compareEngines(fg, sfg);
+
+		sfg.setDamping(.3);
+		compareEngines(fg, sfg);
+	}
+
+	private void compareEngines(FactorGraph fg, SFactorGraph sfg)
+	{
+		sfg.usePrunedTableFactorEngine(false);
+		fg.solve();
+		double[][] expectedBeliefs = beliefs(fg);
+
+		sfg.usePrunedTableFactorEngine(true);
+		for (Factor factor : fg.getFactors())
+		{
+			assertTrue(((STableFactor)factor.getSolver()).usePrunedTableFactorEngine());
+		}
+		fg.solve();
+		double[][] beliefs = beliefs(fg);
+
+		assertBeliefsEqual(expectedBeliefs, beliefs, 1e-10);
+
+		// Compare individual edge updates
+		for (Factor factor : fg.getFactors())
+		{
+			STableFactor sfactor = (STableFactor)factor.getSolver();
+			for (int port = 0, n = factor.getSiblingCount(); port < n; ++port)
+			{
+				double[] saved = ((double[])sfactor.getOutputMsg(port)).clone();
+
+				sfactor.usePrunedTableFactorEngine(false);
+				sfactor.setOutputMsgValues(port, saved);
+				sfactor.updateEdge(port);
+				double[] expected = ((double[])sfactor.getOutputMsg(port)).clone();
+
+				sfactor.usePrunedTableFactorEngine(true);
+				sfactor.setOutputMsgValues(port, saved);
+				sfactor.updateEdge(port);
+				assertArrayEquals("seed " + _seed, expected, (double[])sfactor.getOutputMsg(port), 1e-10);
+			}
+		}
+	}
+
+	private FactorGraph buildSparseGraph()
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete a = new Discrete(DiscreteDomain.range(1,4));
+		Discrete b = new Discrete(DiscreteDomain.range(1,3));
+		Discrete c = new Discrete(DiscreteDomain.bit());
+		Discrete d = new Discrete(DiscreteDomain.range(1,5));
+
+		fg.addFactor(sparseTable(a, b, c), a, b, c);
+		fg.addFactor(sparseTable(b, c, d), b, c, d);
+		fg.addFactor(sparseTable(a, d), a, d);
+		fg.addFactor(sparseTable(a, b, c, d), a, b, c, d);
+		return fg;
+	}
+
+	/**
+	 * Builds table over variables containing a random subset of the joint entries.
+	 */
+	private IFactorTable sparseTable(Discrete ... variables)
+	{
+		DiscreteDomain[] domains = new DiscreteDomain[variables.length];
+		for (int i = 0; i < variables.length; ++i)
+			domains[i] = variables[i].getDomain();
+
+		IFactorTable table = FactorTable.create(domains);
+		int jointSize = table.jointSize();
+		int count = 0;
+		int[] jointIndices = new int[jointSize];
+		for (int joint = 0; joint < jointSize; ++joint)
+		{
+			if (joint == 0 || _rand.nextInt(3) != 0)
+				jointIndices[count++] = joint;
+		}
+
+		double[] weights = new double[count];
+		for (int i = 0; i < count; ++i)
+			weights[i] = _rand.nextDouble() + .01;
+
+		int[] nonZero = new int[count];
+		System.arraycopy(jointIndices, 0, nonZero, 0, count);
+		table.setWeightsSparse(nonZero, weights);
+		return table;
+	}
+}
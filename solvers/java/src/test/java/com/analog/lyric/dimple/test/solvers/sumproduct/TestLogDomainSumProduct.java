@@ -0,0 +1,191 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.Multiplexer;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.sumproduct.SDiscreteVariable;
+import com.analog.lyric.dimple.solvers.sumproduct.SFactorGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.STableFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.customFactors.CustomMultiplexer;
+import com.analog.lyric.dimple.test.model.RandomGraphTester;
+
+/**
+ * Tests for {@link SumProductOptions#LOG_DOMAIN}
+ *
+ * @since 0.06
+ */
+public class TestLogDomainSumProduct extends RandomGraphTester
+{
+	public TestLogDomainSumProduct()
+	{
+		super(42, 4, DiscreteDomain.bit(), DiscreteDomain.range(1, 3), DiscreteDomain.range(1,5));
+	}
+
+	@Test
+	public void testMatchesLinearDomain()
+	{
+		for (int i = 0; i < 5; ++i)
+		{
+			testGraph(_graphGenerator.buildRandomGraph(20 + _rand.nextInt(30)));
+		}
+		testGraph(_graphGenerator.buildGrid(4));
+	}
+
+	@Test
+	public void testUnderflow()
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete a = new Discrete(DiscreteDomain.bit());
+		Discrete b = new Discrete(DiscreteDomain.bit());
+		Discrete c = new Discrete(DiscreteDomain.bit());
+		a.setInput(1e-200, 1);
+		b.setInput(1e-200, 1);
+
+		// Only allow a == b == 0, whose combined probability underflows in the linear domain.
+		IFactorTable table = FactorTable.create(a.getDomain(), b.getDomain(), c.getDomain());
+		table.setWeightsSparse(new int[][] { new int[] { 0, 0, 0 }, new int[] { 0, 0, 1} }, new double[] { 1, 1 });
+		fg.addFactor(table, a, b, c);
+
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		sfg.setNumIterations(2);
+
+		try
+		{
+			fg.solve();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("All probabilities were zero"));
+		}
+
+		sfg.options().set(SumProductOptions.LOG_DOMAIN, true);
+		fg.solve();
+
+		assertArrayEquals(new double[] { .5, .5 }, (double[])c.getBeliefObject(), 1e-12);
+		assertArrayEquals(new double[] { 1, 0 }, (double[])a.getBeliefObject(), 1e-12);
+		assertArrayEquals(new double[] { 1, 0 }, (double[])b.getBeliefObject(), 1e-12);
+	}
+
+	@Test
+	public void testExactZeros()
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete a = new Discrete(DiscreteDomain.range(1, 3));
+		Discrete b = new Discrete(DiscreteDomain.range(1, 3));
+		a.setInput(0, .5, .5);
+		b.setInput(.2, .3, .5);
+		IFactorTable table = FactorTable.create(a.getDomain(), b.getDomain());
+		table.setWeightsSparse(new int[][] { new int[] { 0, 0 }, new int[] { 1, 1 }, new int[] { 2, 2 } }, new double[] { 1, 1, 1 });
+		fg.addFactor(table, a, b);
+
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		sfg.options().set(SumProductOptions.LOG_DOMAIN, true);
+		sfg.setNumIterations(3);
+		fg.solve();
+
+		assertTrue(((SDiscreteVariable)b.getSolver()).useLogDomain());
+		assertArrayEquals(new double[] { 0, .375, .625 }, (double[])b.getBeliefObject(), 1e-12);
+		assertArrayEquals(new double[] { 0, .375, .625 }, (double[])a.getBeliefObject(), 1e-12);
+	}
+
+	@Test
+	public void testMultiplexer()
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete y = new Discrete(DiscreteDomain.range(1, 4));
+		Discrete a = new Discrete(DiscreteDomain.range(0, 2));
+		Discrete[] zs = new Discrete[] {
+			new Discrete(DiscreteDomain.range(1, 4)), new Discrete(DiscreteDomain.range(1, 3)), new Discrete(DiscreteDomain.range(2, 4))
+		};
+		Factor factor = fg.addFactor(new Multiplexer(), y, a, zs[0], zs[1], zs[2]);
+		setRandomInputs(fg);
+
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		sfg.setNumIterations(3);
+		CustomMultiplexer sfactor = (CustomMultiplexer)factor.getSolver();
+
+		fg.solve();
+		assertFalse(sfactor.useLogDomain());
+		double[][] expectedBeliefs = beliefs(fg);
+
+		sfg.options().set(SumProductOptions.LOG_DOMAIN, true);
+		fg.solve();
+		assertTrue(sfactor.useLogDomain());
+		assertBeliefsEqual(expectedBeliefs, beliefs(fg), 1e-12);
+
+		// Impossible inputs are reported instead of producing NaNs.
+		y.setInput(0, 0, 0, 1);
+		for (Discrete z : zs)
+		{
+			double[] input = new double[z.getDomain().size()];
+			input[0] = 1;
+			z.setInput(input);
+		}
+		try
+		{
+			fg.solve();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("All probabilities were zero"));
+		}
+	}
+
+	private void testGraph(FactorGraph fg)
+	{
+		setRandomInputs(fg);
+
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		sfg.setNumIterations(5);
+
+		compareDomains(fg, sfg);
+
+		sfg.setDamping(.3);
+		compareDomains(fg, sfg);
+	}
+
+	private void compareDomains(FactorGraph fg, SFactorGraph sfg)
+	{
+		sfg.options().set(SumProductOptions.LOG_DOMAIN, false);
+		fg.solve();
+		double[][] expectedBeliefs = beliefs(fg);
+
+		sfg.options().set(SumProductOptions.LOG_DOMAIN, true);
+		fg.solve();
+		for (Factor factor : fg.getFactors())
+		{
+			assertTrue(((STableFactor)factor.getSolver()).useLogDomain());
+		}
+		double[][] beliefs = beliefs(fg);
+
+		assertBeliefsEqual(expectedBeliefs, beliefs, 1e-10);
+	}
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.VariableBase;
+import com.analog.lyric.dimple.solvers.core.MessageSnapshot;
+import com.analog.lyric.dimple.solvers.core.MessageStore;
+import com.analog.lyric.dimple.solvers.sumproduct.SDiscreteVariable;
+import com.analog.lyric.dimple.solvers.sumproduct.SFactorGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.STableFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.test.model.RandomGraphTester;
+
+/**
+ * Tests for {@link SumProductOptions#PACKED_MESSAGES}
+ *
+ * @since 0.06
+ */
+public class TestPackedMessages extends RandomGraphTester
+{
+	public TestPackedMessages()
+	{
+		super(42, 3, DiscreteDomain.bit(), DiscreteDomain.range(1, 3), DiscreteDomain.range(1,5));
+	}
+
+	@Test
+	public void testMatchesUnpacked()
+	{
+		for (int i = 0; i < 3; ++i)
+		{
+			testGraph(_graphGenerator.buildRandomGraph(20 + _rand.nextInt(30)), false, false, false);
+		}
+		testGraph(_graphGenerator.buildGrid(4), false, false, false);
+		testGraph(_graphGenerator.buildGrid(4), true, false, false);
+		testGraph(_graphGenerator.buildGrid(4), false, true, false);
+		testGraph(_graphGenerator.buildGrid(4), false, false, true);
+	}
+
+	@Test
+	public void testRepacking()
+	{
+		final FactorGraph fg = _graphGenerator.buildGrid(3);
+		final SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		sfg.options().set(SumProductOptions.PACKED_MESSAGES, true);
+		sfg.setNumIterations(3);
+		fg.solve();
+
+		final MessageStore store = sfg.getMessageStore();
+		assertNotNull(store);
+		assertEquals(edgeMessageSize(fg), store.size());
+		assertEquals(store.capacity(), store.size());
+		assertPacked(fg, store);
+
+		// Initializing again does not repack an unchanged graph.
+		fg.solve();
+		assertSame(store, sfg.getMessageStore());
+
+		// Changing the graph does.
+		final Discrete first = fg.getVariables().iterator().next().asDiscreteVariable();
+		final int size = first.getDomain().size();
+		final int[][] indices = new int[2 * size][];
+		final double[] weights = new double[2 * size];
+		for (int i = 0; i < indices.length; ++i)
+		{
+			indices[i] = new int[] { i / size, i % size };
+			weights[i] = _rand.nextDouble() + .01;
+		}
+		final Factor added = fg.addFactor(indices, weights, new Discrete(DiscreteDomain.bit()), first);
+		fg.solve();
+		final MessageStore store2 = sfg.getMessageStore();
+		assertNotSame(store, store2);
+		assertEquals(edgeMessageSize(fg), store2.size());
+		assertPacked(fg, store2);
+
+		// Using the k-best engine unpacks the factor's edges.
+		final STableFactor sfactor = (STableFactor)added.getSolver();
+		sfactor.setK(1);
+		for (int port = 0; port < 2; ++port)
+		{
+			assertEquals(0, sfactor.getInPortMsgOffsets()[port]);
+			assertEquals(sfactor.getMsgLength(port), sfactor.getInPortMsgs()[port].length);
+		}
+		fg.solve();
+		
+		// Snapshot of a mix of packed and unpacked messages. The unpacked edges' old slots in the store are
+		// still included.
+		final MessageSnapshot snapshot = sfg.saveMessages();
+		assertEquals(store2.size() + 2 * (2 + size), snapshot.size());
+		sfg.iterate(1);
+		final double[][] expected = beliefs(fg);
+		sfg.restoreMessages(snapshot);
+		sfg.iterate(1);
+		assertBeliefsEqual(expected, beliefs(fg), 0.0);
+
+		// Turning the option off unpacks everything.
+		sfg.options().set(SumProductOptions.PACKED_MESSAGES, false);
+		fg.initialize();
+		assertNull(sfg.getMessageStore());
+		assertPacked(fg, null);
+	}
+
+	private void testGraph(FactorGraph fg, boolean damping, boolean flat, boolean logDomain)
+	{
+		setRandomInputs(fg);
+
+		final SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		sfg.setNumIterations(5);
+		if (damping)
+			sfg.setDamping(.3);
+		sfg.useFlatTableFactorEngine(flat);
+		sfg.options().set(SumProductOptions.LOG_DOMAIN, logDomain);
+
+		fg.solve();
+		assertNull(sfg.getMessageStore());
+		final double[][] expected = beliefs(fg);
+
+		sfg.options().set(SumProductOptions.PACKED_MESSAGES, true);
+		fg.solve();
+		assertPacked(fg, sfg.getMessageStore());
+		assertBeliefsEqual(expected, beliefs(fg), 0.0);
+
+		// Snapshot taken from the packed messages.
+		final MessageSnapshot snapshot = sfg.saveMessages();
+		assertEquals(edgeMessageSize(fg), snapshot.size());
+		sfg.iterate(2);
+		final double[][] expected2 = beliefs(fg);
+		sfg.restoreMessages(snapshot);
+		sfg.iterate(2);
+		assertBeliefsEqual(expected2, beliefs(fg), 0.0);
+
+		sfg.options().set(SumProductOptions.PACKED_MESSAGES, false);
+		fg.solve();
+		assertPacked(fg, null);
+		assertBeliefsEqual(expected, beliefs(fg), 0.0);
+	}
+
+	/**
+	 * Asserts that the messages of each edge of {@code fg} are held in {@code store}, or have their own arrays if
+	 * {@code store} is null, and that the variables and factors agree on where they are.
+	 */
+	private void assertPacked(FactorGraph fg, MessageStore store)
+	{
+		for (VariableBase var : fg.getVariables())
+		{
+			final SDiscreteVariable svar = (SDiscreteVariable)var.getSolver();
+			final int length = var.asDiscreteVariable().getDomain().size();
+			for (int port = 0, end = var.getSiblingCount(); port < end; ++port)
+			{
+				final STableFactor sfactor = (STableFactor)var.getSibling(port).getSolver();
+				final int factorPort = var.getSiblingPortIndex(port);
+				final int inputOffset = svar.getInputMsgOffset(port);
+				final int outputOffset = svar.getOutputMsgOffset(port);
+				assertEquals(inputOffset, sfactor.getOutPortMsgOffsets()[factorPort]);
+				assertEquals(outputOffset, sfactor.getInPortMsgOffsets()[factorPort]);
+
+				final double[] input = sfactor.getOutPortMsgs()[factorPort];
+				if (store != null && sfactor.getK() >= length)
+				{
+					assertSame(store.getBuffer(), input);
+					assertSame(store.getBuffer(), sfactor.getInPortMsgs()[factorPort]);
+					assertEquals(inputOffset + length, outputOffset);
+				}
+				else
+				{
+					assertEquals(0, inputOffset);
+					assertEquals(0, outputOffset);
+					assertEquals(length, input.length);
+				}
+
+				// Introspection returns the message itself.
+				final double[] message = (double[])svar.getInputMsg(port);
+				assertEquals(length, message.length);
+				for (int i = 0; i < length; ++i)
+					assertEquals(input[inputOffset + i], message[i], 0.0);
+				assertArrayEquals(message, (double[])sfactor.getOutputMsg(factorPort), 0.0);
+			}
+		}
+	}
+
+	private int edgeMessageSize(FactorGraph fg)
+	{
+		int size = 0;
+		for (VariableBase var : fg.getVariables())
+		{
+			size += 2 * var.getSiblingCount() * var.asDiscreteVariable().getDomain().size();
+		}
+		return size;
+	}
+}
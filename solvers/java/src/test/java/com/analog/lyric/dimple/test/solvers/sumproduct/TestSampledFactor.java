@@ -0,0 +1,167 @@
+/*******************************************************************************
+*   Copyright 2014 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.core.SolverRandomGenerator;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.SFactorGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.sampledfactor.SampledFactor;
+
+/**
+ * Tests for {@link SampledFactor}
+ *
+ * @since 0.06
+ */
+public class TestSampledFactor
+{
+	/**
+	 * Couples two real variables with unit variance, i.e. b ~ Normal(a, 1).
+	 */
+	private static class Coupling extends FactorFunction
+	{
+		@Override
+		public double evalEnergy(Object ... arguments)
+		{
+			final double diff = (Double)arguments[0] - (Double)arguments[1];
+			return diff * diff / 2;
+		}
+	}
+	
+	/**
+	 * Couples a bit to a real variable with unit variance, i.e. b ~ Normal(a ? 1 : -1, 1).
+	 */
+	private static class BitCoupling extends FactorFunction
+	{
+		@Override
+		public double evalEnergy(Object ... arguments)
+		{
+			final double mean = ((Number)arguments[0]).intValue() == 1 ? 1 : -1;
+			final double diff = mean - (Double)arguments[1];
+			return diff * diff / 2;
+		}
+	}
+	
+	@Test
+	public void testRealMessages()
+	{
+		testRealMessages(true, 0);
+		testRealMessages(false, 0);
+		testRealMessages(true, .02);
+	}
+	
+	private void testRealMessages(boolean warmStart, double errorTarget)
+	{
+		SolverRandomGenerator.setSeed(42);
+		
+		FactorGraph fg = new FactorGraph();
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		assertFalse(sfg.getSampledFactorWarmStart());
+		sfg.setNumIterations(3);
+		sfg.setSampledFactorSamplesPerUpdate(4000);
+		sfg.setSampledFactorWarmStart(warmStart);
+		sfg.setSampledFactorOutputErrorTarget(errorTarget);
+		
+		Real a = new Real();
+		Real b = new Real();
+		a.setInputObject(new Normal(1, 1));
+		b.setInputObject(new Normal(-1, 1));
+		Factor factor = fg.addFactor(new Coupling(), a, b);
+		
+		SampledFactor sf = (SampledFactor)factor.getSolver();
+		assertEquals(4000, sf.getSamplesPerUpdate());
+		assertEquals(warmStart, sf.getWarmStart());
+		assertEquals(errorTarget, sf.getOutputErrorTarget(), 0.0);
+		
+		// Each output message is the other variable's input convolved with the coupling.
+		fg.solve();
+		assertMessage(sf, 0, -1, 2);
+		assertMessage(sf, 1, 1, 2);
+		
+		// Same messages when updating edges one at a time.
+		sf.updateEdge(0);
+		sf.updateEdge(1);
+		assertMessage(sf, 0, -1, 2);
+		assertMessage(sf, 1, 1, 2);
+		
+		// Belief combines the output message with the input.
+		NormalParameters belief = (NormalParameters)b.getBeliefObject();
+		assertEquals(-1.0/3, belief.getMean(), .15);
+		assertEquals(1.5, belief.getPrecision(), .3);
+	}
+	
+	@Test
+	public void testDiscreteMessages()
+	{
+		// An input that nearly excludes a value must not be divided out of the belief
+		testDiscreteMessages(false, new double[] { .5, .5 });
+		testDiscreteMessages(true, new double[] { .5, .5 });
+		testDiscreteMessages(false, new double[] { 1, 1e-9 });
+		testDiscreteMessages(true, new double[] { 1, 1e-9 });
+		testDiscreteMessages(true, new double[] { 1, 0 });
+	}
+	
+	private void testDiscreteMessages(boolean warmStart, double[] input)
+	{
+		SolverRandomGenerator.setSeed(42);
+		
+		FactorGraph fg = new FactorGraph();
+		SFactorGraph sfg = fg.setSolverFactory(new com.analog.lyric.dimple.solvers.sumproduct.Solver());
+		sfg.setNumIterations(2);
+		sfg.setSampledFactorSamplesPerUpdate(4000);
+		sfg.setSampledFactorWarmStart(warmStart);
+		
+		Discrete a = new Discrete(0, 1);
+		Real b = new Real();
+		a.setInput(input);
+		b.setInputObject(new Normal(1, 1));
+		Factor factor = fg.addFactor(new BitCoupling(), a, b);
+		SampledFactor sf = (SampledFactor)factor.getSolver();
+		
+		// The output message is proportional to exp(-d^2/4) for the distance d between the means.
+		fg.solve();
+		assertBitMessage(sf);
+		
+		// Same message when updating all edges together.
+		sf.update();
+		assertBitMessage(sf);
+	}
+	
+	private void assertBitMessage(SampledFactor sf)
+	{
+		final double[] message = (double[])sf.getOutputMsg(0);
+		final double p1 = 1 / (1 + Math.exp(-1));
+		assertEquals(1 - p1, message[0], .05);
+		assertEquals(p1, message[1], .05);
+	}
+	
+	private void assertMessage(SampledFactor sf, int edge, double expectedMean, double expectedVariance)
+	{
+		NormalParameters message = (NormalParameters)sf.getOutputMsg(edge);
+		assertEquals(expectedMean, message.getMean(), .15);
+		assertEquals(expectedVariance, message.getVariance(), .5);
+	}
+}